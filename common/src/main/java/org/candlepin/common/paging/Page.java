@@ -25,6 +25,7 @@ public class Page<T> {
     private T pageData;
     private Integer maxRecords;
     private PageRequest pageRequest;
+    private String nextCursor;
 
     public T getPageData() {
         return pageData;
@@ -50,4 +51,15 @@ public class Page<T> {
         this.pageRequest = pageRequest;
     }
 
+    /**
+     * @return the cursor of the page following this one, for a keyset page request; or null if
+     *  this is the last page, or the request pages by page number
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
 }
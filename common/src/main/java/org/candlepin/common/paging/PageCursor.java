@@ -0,0 +1,225 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.common.paging;
+
+import org.apache.commons.codec.binary.Base64;
+
+import java.nio.charset.Charset;
+import java.sql.Timestamp;
+import java.util.Date;
+
+
+
+/**
+ * A position in a sorted result set, from which the next page of results can be fetched without
+ * skipping over the preceding ones (keyset or "cursor" paging). The position is the sort value
+ * and the ID of the last result of a page, along with the sort field and order it applies to.
+ * <p></p>
+ * Clients receive cursors as opaque, URL-safe tokens, and hand them back unchanged in the
+ * {@link PageRequest#CURSOR_PARAM} query parameter.
+ */
+public class PageCursor {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String VERSION = "1";
+
+    private final String sortBy;
+    private final PageRequest.Order order;
+    private final Object value;
+    private final Object id;
+
+    /**
+     * Creates a cursor positioned after the result with the given sort value and ID.
+     *
+     * @param sortBy
+     *  the field the results are sorted by
+     *
+     * @param order
+     *  the order the results are sorted in
+     *
+     * @param value
+     *  the sort value of the last result of the page; may be null
+     *
+     * @param id
+     *  the ID of the last result of the page
+     *
+     * @throws IllegalArgumentException
+     *  if the sort field, order or ID is null, or the value or ID is of an unsupported type
+     */
+    public PageCursor(String sortBy, PageRequest.Order order, Object value, Object id) {
+        if (sortBy == null || order == null) {
+            throw new IllegalArgumentException("sortBy and order are required");
+        }
+
+        if ((value != null && !isSupported(value)) || !isSupported(id)) {
+            throw new IllegalArgumentException("Unsupported cursor value: " + value + ", " + id);
+        }
+
+        this.sortBy = sortBy;
+        this.order = order;
+        this.value = value;
+        this.id = id;
+    }
+
+    public String getSortBy() {
+        return this.sortBy;
+    }
+
+    public PageRequest.Order getOrder() {
+        return this.order;
+    }
+
+    public Object getValue() {
+        return this.value;
+    }
+
+    public Object getId() {
+        return this.id;
+    }
+
+    /**
+     * Checks whether the given value can be held by a cursor. Cursors hold non-null strings,
+     * numbers, booleans and dates; only the sort value of a cursor may also be null.
+     *
+     * @param value
+     *  the value to check
+     *
+     * @return
+     *  true if the value can be held by a cursor; false otherwise
+     */
+    public static boolean isSupported(Object value) {
+        return value != null && isSupportedType(value.getClass());
+    }
+
+    /**
+     * Checks whether the values of the given type can be held by a cursor, and so whether a
+     * field of that type can be paged through with cursors.
+     *
+     * @param type
+     *  the type to check
+     *
+     * @return
+     *  true if values of the type can be held by a cursor; false otherwise
+     */
+    public static boolean isSupportedType(Class<?> type) {
+        return type != null && (String.class.equals(type) || Integer.class.equals(type) ||
+            Long.class.equals(type) || Boolean.class.equals(type) || Date.class.isAssignableFrom(type));
+    }
+
+    /**
+     * @return this cursor as an opaque, URL-safe token
+     */
+    public String encode() {
+        // The sort value goes last, as it is the only part which may hold line breaks
+        String raw = VERSION + '\n' + this.order.name() + '\n' + this.sortBy + '\n' +
+            encodeValue(this.id) + '\n' + encodeValue(this.value);
+
+        return Base64.encodeBase64URLSafeString(raw.getBytes(UTF8));
+    }
+
+    /**
+     * Reads a cursor from a token created by {@link #encode()}.
+     *
+     * @param token
+     *  the token to read
+     *
+     * @throws IllegalArgumentException
+     *  if the token is not a valid cursor
+     *
+     * @return
+     *  the cursor the token represents
+     */
+    public static PageCursor decode(String token) {
+        if (token == null || token.isEmpty()) {
+            throw new IllegalArgumentException("Malformed cursor: " + token);
+        }
+
+        String[] parts = new String(Base64.decodeBase64(token), UTF8).split("\n", 5);
+        if (parts.length != 5 || !VERSION.equals(parts[0])) {
+            throw new IllegalArgumentException("Malformed cursor: " + token);
+        }
+
+        return new PageCursor(parts[2], PageRequest.Order.valueOf(parts[1]), decodeValue(parts[4]),
+            decodeValue(parts[3]));
+    }
+
+    private static String encodeValue(Object value) {
+        if (value == null) {
+            return "n:";
+        }
+        else if (value instanceof Timestamp) {
+            Timestamp timestamp = (Timestamp) value;
+            return "t:" + timestamp.getTime() + ":" + timestamp.getNanos();
+        }
+        else if (value instanceof Date) {
+            return "d:" + ((Date) value).getTime();
+        }
+        else if (value instanceof Integer) {
+            return "i:" + value;
+        }
+        else if (value instanceof Long) {
+            return "l:" + value;
+        }
+        else if (value instanceof Boolean) {
+            return "b:" + value;
+        }
+
+        return "s:" + value;
+    }
+
+    private static Object decodeValue(String encoded) {
+        if (encoded.length() < 2 || encoded.charAt(1) != ':') {
+            throw new IllegalArgumentException("Malformed cursor value: " + encoded);
+        }
+
+        String value = encoded.substring(2);
+
+        try {
+            switch (encoded.charAt(0)) {
+                case 'n':
+                    return null;
+
+                case 's':
+                    return value;
+
+                case 'i':
+                    return Integer.valueOf(value);
+
+                case 'l':
+                    return Long.valueOf(value);
+
+                case 'b':
+                    return Boolean.valueOf(value);
+
+                case 'd':
+                    return new Date(Long.parseLong(value));
+
+                case 't':
+                    int split = value.indexOf(':');
+                    Timestamp timestamp = new Timestamp(Long.parseLong(value.substring(0, split)));
+                    timestamp.setNanos(Integer.parseInt(value.substring(split + 1)));
+                    return timestamp;
+
+                default:
+                    throw new IllegalArgumentException("Malformed cursor value: " + encoded);
+            }
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cursor value: " + encoded, e);
+        }
+        catch (StringIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Malformed cursor value: " + encoded, e);
+        }
+    }
+}
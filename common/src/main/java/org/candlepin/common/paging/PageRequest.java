@@ -30,6 +30,7 @@ public class PageRequest {
     public static final String SORT_BY_PARAM = "sort_by";
     public static final String PAGE_PARAM = "page";
     public static final String PER_PAGE_PARAM = "per_page";
+    public static final String CURSOR_PARAM = "cursor";
 
     public static final Integer DEFAULT_PAGE = Integer.valueOf(1);
     public static final Integer DEFAULT_PER_PAGE = Integer.valueOf(10);
@@ -39,6 +40,7 @@ public class PageRequest {
     private Integer perPage;
     private String sortBy;
     private Order order;
+    private String cursor;
 
     public Integer getPage() {
         return page;
@@ -72,6 +74,18 @@ public class PageRequest {
         this.order = order;
     }
 
+    /**
+     * @return the opaque cursor of a keyset page request, as created by PageCursor.encode; an
+     *  empty string for the first page; or null if the request pages by page number
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
     public boolean isPaging() {
         return perPage != null && page != null;
     }
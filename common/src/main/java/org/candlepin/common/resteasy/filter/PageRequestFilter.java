@@ -34,6 +34,7 @@ import javax.ws.rs.ext.Provider;
 
 /**
  * PageRequestFilter parses a common set of query parameters used to page through results from Candlepin.
+ * Results are paged either by page number, or by the cursor handed out with the previous page.
  */
 @Provider
 @Priority(Priorities.USER)
@@ -55,8 +56,9 @@ public class PageRequestFilter implements ContainerRequestFilter {
         String perPage = params.getFirst(PageRequest.PER_PAGE_PARAM);
         String order = params.getFirst(PageRequest.ORDER_PARAM);
         String sortBy = params.getFirst(PageRequest.SORT_BY_PARAM);
+        String cursor = params.getFirst(PageRequest.CURSOR_PARAM);
 
-        if (page != null || perPage != null || order != null || sortBy != null) {
+        if (page != null || perPage != null || order != null || sortBy != null || cursor != null) {
             p = new PageRequest();
 
             if (order == null) {
@@ -70,6 +72,18 @@ public class PageRequestFilter implements ContainerRequestFilter {
              * sortBy is null. */
             p.setSortBy(sortBy);
 
+            if (cursor != null) {
+                if (page != null) {
+                    I18n i18n = this.i18nProvider.get();
+                    throw new BadRequestException(i18n.tr("the page and cursor parameters" +
+                        " cannot be used together"));
+                }
+
+                // An empty cursor asks for the first page of a keyset paged listing
+                p.setCursor(cursor.trim());
+                page = String.valueOf(PageRequest.DEFAULT_PAGE);
+            }
+
             try {
                 if (page == null && perPage != null) {
                     p.setPage(PageRequest.DEFAULT_PAGE);
@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.common.paging;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.util.Date;
+
+
+
+/**
+ * PageCursorTest
+ */
+public class PageCursorTest {
+
+    private PageCursor roundTrip(Object value, Object id) {
+        PageCursor cursor = new PageCursor("field", PageRequest.Order.ASCENDING, value, id);
+        return PageCursor.decode(cursor.encode());
+    }
+
+    @Test
+    public void testRoundTripString() {
+        PageCursor cursor = this.roundTrip("some value, with\nodd characters: ü", "8a8b7c6d");
+
+        assertEquals("field", cursor.getSortBy());
+        assertEquals(PageRequest.Order.ASCENDING, cursor.getOrder());
+        assertEquals("some value, with\nodd characters: ü", cursor.getValue());
+        assertEquals("8a8b7c6d", cursor.getId());
+    }
+
+    @Test
+    public void testRoundTripNumbersAndBooleans() {
+        assertEquals(Integer.valueOf(42), this.roundTrip(42, "id").getValue());
+        assertEquals(Long.valueOf(-42L), this.roundTrip(-42L, "id").getValue());
+        assertEquals(Boolean.TRUE, this.roundTrip(true, "id").getValue());
+        assertEquals(Long.valueOf(7L), this.roundTrip("value", 7L).getId());
+    }
+
+    @Test
+    public void testRoundTripDate() {
+        Date date = new Date(1234567890123L);
+        assertEquals(date, this.roundTrip(date, "id").getValue());
+    }
+
+    @Test
+    public void testRoundTripTimestampKeepsNanos() {
+        Timestamp timestamp = new Timestamp(1234567890123L);
+        timestamp.setNanos(123456789);
+
+        Object value = this.roundTrip(timestamp, "id").getValue();
+
+        assertTrue(value instanceof Timestamp);
+        assertEquals(timestamp, value);
+    }
+
+    @Test
+    public void testEncodedCursorIsUrlSafe() {
+        String encoded = new PageCursor("field", PageRequest.Order.DESCENDING, "???>>>~~~", "id").encode();
+        assertTrue(encoded.matches("[A-Za-z0-9_-]+"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedValueType() {
+        new PageCursor("field", PageRequest.Order.ASCENDING, new Object(), "id");
+    }
+
+    @Test
+    public void testRoundTripNullValue() {
+        PageCursor cursor = this.roundTrip(null, "id");
+
+        assertNull(cursor.getValue());
+        assertEquals("id", cursor.getId());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullId() {
+        new PageCursor("field", PageRequest.Order.ASCENDING, "value", null);
+    }
+
+    @Test
+    public void testSupportedTypes() {
+        assertTrue(PageCursor.isSupportedType(String.class));
+        assertTrue(PageCursor.isSupportedType(Timestamp.class));
+        assertFalse(PageCursor.isSupportedType(Object.class));
+        assertFalse(PageCursor.isSupportedType(null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeGarbage() {
+        PageCursor.decode("bm90IGEgY3Vyc29y");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeNull() {
+        PageCursor.decode(null);
+    }
+}
@@ -355,4 +355,42 @@ public class LinkHeaderResponseFilterTest {
         assertTrue(header.contains("rel=\"next\""));
         assertTrue(header.contains("rel=\"prev\""));
     }
+
+    @Test
+    public void testBuildCursorLink() {
+        UriBuilder bu = UriBuilder.fromUri("https://localhost:8443/candlepin/resource");
+        assertEquals("https://localhost:8443/candlepin/resource?cursor=abc-_",
+            interceptor.buildCursorLink(bu, "abc-_"));
+    }
+
+    @Test
+    public void testPostProcessWithCursorPaging() throws Exception {
+        when(page.getPageRequest()).thenReturn(pageRequest);
+        when(page.getNextCursor()).thenReturn("next-cursor");
+        when(pageRequest.isPaging()).thenReturn(true);
+        when(pageRequest.getCursor()).thenReturn("this-cursor");
+        when(pageRequest.getPerPage()).thenReturn(5);
+
+        when(config.containsKey(eq(this.apiUrlPrefixKey))).thenReturn(false);
+
+        MultivaluedMap<String, Object> map = new MultivaluedMapImpl<String, Object>();
+        ResteasyProviderFactory.pushContext(Page.class, page);
+
+        mockReq = MockHttpRequest.create("GET",
+                new URI("/candlepin/resource?per_page=5&cursor=this-cursor"),
+                new URI("https://example.com"));
+        when(mockRequestContext.getUriInfo()).thenReturn(mockReq.getUri());
+        when(mockResponseContext.getHeaders()).thenReturn(map);
+
+        interceptor.filter(mockRequestContext, mockResponseContext);
+        String header = (String) map.getFirst(LinkHeaderResponseFilter.LINK_HEADER);
+
+        // Cursor paged listings are not counted, so there are no last or prev links
+        assertTrue(header.contains("cursor=next-cursor>; rel=\"next\""));
+        assertTrue(header.contains("rel=\"first\""));
+        assertFalse(header.contains("this-cursor"));
+        assertFalse(header.contains("rel=\"last\""));
+        assertFalse(header.contains("rel=\"prev\""));
+        verify(page, never()).getMaxRecords();
+    }
 }
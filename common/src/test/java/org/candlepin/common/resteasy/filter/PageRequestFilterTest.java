@@ -174,4 +174,42 @@ public class PageRequestFilterTest {
         assertEquals(PageRequest.Order.DESCENDING, p.getOrder());
         assertEquals("id", p.getSortBy());
     }
+
+    @Test
+    public void testCursor() throws Exception {
+        mockReq = MockHttpRequest.create("GET",
+            "http://localhost/candlepin/status?per_page=10&cursor=abc&sort_by=id");
+        when(mockRequestContext.getUriInfo()).thenReturn(mockReq.getUri());
+
+        interceptor.filter(mockRequestContext);
+
+        PageRequest p = ResteasyProviderFactory.getContextData(PageRequest.class);
+        assertTrue(p.isPaging());
+        assertEquals("abc", p.getCursor());
+        assertEquals(Integer.valueOf(10), p.getPerPage());
+        assertEquals("id", p.getSortBy());
+    }
+
+    @Test
+    public void testEmptyCursorRequestsFirstPage() throws Exception {
+        mockReq = MockHttpRequest.create("GET",
+            "http://localhost/candlepin/status?cursor=");
+        when(mockRequestContext.getUriInfo()).thenReturn(mockReq.getUri());
+
+        interceptor.filter(mockRequestContext);
+
+        PageRequest p = ResteasyProviderFactory.getContextData(PageRequest.class);
+        assertTrue(p.isPaging());
+        assertEquals("", p.getCursor());
+        assertEquals(PageRequest.DEFAULT_PER_PAGE, p.getPerPage());
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testCursorAndPageTogether() throws Exception {
+        mockReq = MockHttpRequest.create("GET",
+            "http://localhost/candlepin/status?page=2&cursor=abc");
+        when(mockRequestContext.getUriInfo()).thenReturn(mockReq.getUri());
+
+        interceptor.filter(mockRequestContext);
+    }
 }
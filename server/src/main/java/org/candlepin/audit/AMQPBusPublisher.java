@@ -24,23 +24,36 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * An EventListener that publishes events to an AMQP bus (qpid).
+ * An EventListener that publishes events to an AMQP bus (qpid). When async publishing is
+ * enabled, events are handed to an AMQPPublishQueue rather than sent from the listener thread.
  */
 public class AMQPBusPublisher implements EventListener {
     private static Logger log = LoggerFactory.getLogger(AMQPBusPublisher.class);
     private QpidConnection sender;
     private ObjectMapper mapper;
+    private AMQPPublishQueue publishQueue;
 
-    @Inject
     public AMQPBusPublisher(ObjectMapper omapper, QpidConnection sender) {
+        this(omapper, sender, null);
+    }
+
+    @Inject
+    public AMQPBusPublisher(ObjectMapper omapper, QpidConnection sender,
+        AMQPPublishQueue publishQueue) {
         this.sender = sender;
         this.mapper = omapper;
+        this.publishQueue = publishQueue;
     }
 
     @Override
     public void onEvent(Event e) {
         try {
-            sender.sendTextMessage(e.getTarget(), e.getType(), this.apply(e));
+            if (publishQueue != null) {
+                publishQueue.publish(e.getTarget(), e.getType(), this.apply(e));
+            }
+            else {
+                sender.sendTextMessage(e.getTarget(), e.getType(), this.apply(e));
+            }
         }
         catch (Exception ex) {
             throw new RuntimeException("Error sending event to message bus", ex);
@@ -48,6 +61,10 @@ public class AMQPBusPublisher implements EventListener {
     }
 
     public void close() {
+        if (publishQueue != null) {
+            publishQueue.shutdown();
+        }
+
         Util.closeSafely(sender, "QpidConnection");
     }
 
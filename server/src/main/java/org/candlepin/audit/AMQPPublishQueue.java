@@ -0,0 +1,720 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.audit;
+
+import org.candlepin.audit.Event.Target;
+import org.candlepin.audit.Event.Type;
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+
+/**
+ * AMQPPublishQueue
+ *
+ * Sends events to the AMQP bus from a background thread, so that a slow or unavailable broker
+ * does not hold up the HornetQ listener thread. Events wait in a bounded queue and are sent in
+ * batches, grouped by destination, after which the broker is asked to confirm the whole batch.
+ * Events the broker has not confirmed are sent again after a pause.
+ *
+ * Events are acknowledged to HornetQ once they are queued, before the broker has them, so each
+ * event is first appended to a journal in the spill directory. A journal segment is deleted once
+ * all of its events have been confirmed by the broker or spilled; segments left behind by a crash
+ * are sent when the queue is next started. Async publishing therefore needs a spill directory.
+ *
+ * When the queue is full, the publisher waits for room for a while, after which the event is
+ * written to a spill file on disk, to be sent once the queue has drained. Events read back from
+ * disk may reach the broker after events published since, and events recovered from the journal
+ * may reach it twice.
+ *
+ * Until the queue is started, and when async publishing is disabled, events are sent right away.
+ */
+@Singleton
+public class AMQPPublishQueue implements AMQPPublishQueueMBean {
+    private static Logger log = LoggerFactory.getLogger(AMQPPublishQueue.class);
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String SPILL_FILE = "amqp-events.spill";
+    private static final String REPLAY_FILE = "amqp-events.replay";
+    private static final String JOURNAL_PREFIX = "amqp-events.";
+    private static final String JOURNAL_SUFFIX = ".journal";
+
+    private final QpidConnection sender;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long offerTimeout;
+    private final long retryInterval;
+    private final File spillDir;
+    private final File spillFile;
+    private final File replayFile;
+    private final int segmentSize;
+
+    private final BlockingQueue<Message> queue;
+    private final List<Message> inFlight;
+    private final Object spillLock;
+    private final Object journalLock;
+    private Segment segment;
+    private long segmentSequence;
+    private volatile ExecutorService executor;
+    private volatile CountDownLatch stopSignal;
+
+    private final AtomicLong published;
+    private final AtomicLong batches;
+    private final AtomicLong failedSends;
+    private final AtomicLong spilled;
+
+    @Inject
+    public AMQPPublishQueue(QpidConnection sender, Configuration config) {
+        this.sender = sender;
+        this.batchSize = Math.max(1, config.getInt(ConfigProperties.AMQP_ASYNC_BATCH_SIZE));
+        this.offerTimeout = config.getLong(ConfigProperties.AMQP_ASYNC_OFFER_TIMEOUT);
+        this.retryInterval = config.getLong(ConfigProperties.AMQP_ASYNC_RETRY_INTERVAL);
+
+        String spillDir = config.getString(ConfigProperties.AMQP_ASYNC_SPILL_DIR, "");
+        if (spillDir != null && !spillDir.trim().isEmpty()) {
+            this.spillDir = new File(spillDir.trim());
+            this.spillFile = new File(this.spillDir, SPILL_FILE);
+            this.replayFile = new File(this.spillDir, REPLAY_FILE);
+        }
+        else {
+            this.spillDir = null;
+            this.spillFile = null;
+            this.replayFile = null;
+        }
+
+        boolean async = config.getBoolean(ConfigProperties.AMQP_ASYNC_ENABLED);
+        if (async && this.spillDir == null) {
+            log.warn("{} is set without {}; events are sent to the message bus right away",
+                ConfigProperties.AMQP_ASYNC_ENABLED, ConfigProperties.AMQP_ASYNC_SPILL_DIR);
+        }
+
+        this.enabled = async && this.spillDir != null;
+
+        int queueSize = Math.max(1, config.getInt(ConfigProperties.AMQP_ASYNC_QUEUE_SIZE));
+        this.queue = new ArrayBlockingQueue<Message>(queueSize);
+        this.segmentSize = Math.max(this.batchSize, queueSize);
+        this.inFlight = new ArrayList<Message>(this.batchSize);
+        this.spillLock = new Object();
+        this.journalLock = new Object();
+
+        this.published = new AtomicLong();
+        this.batches = new AtomicLong();
+        this.failedSends = new AtomicLong();
+        this.spilled = new AtomicLong();
+    }
+
+    /**
+     * Starts sending events from the background thread, if async publishing is enabled.
+     */
+    public synchronized void start() {
+        if (!this.enabled || this.executor != null) {
+            return;
+        }
+
+        if (!this.spillDir.isDirectory() && !this.spillDir.mkdirs()) {
+            log.warn("Unable to create AMQP spill directory {}", this.spillDir);
+        }
+
+        this.recoverJournal();
+        this.segmentSequence = System.currentTimeMillis();
+
+        this.stopSignal = new CountDownLatch(1);
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("amqp-publisher")
+            .setDaemon(true)
+            .build());
+
+        this.executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        });
+
+        log.info("Publishing AMQP events in the background, in batches of up to {}", this.batchSize);
+    }
+
+    /**
+     * Stops the background thread, and sends the events still held in memory. Events the broker
+     * does not take are written to the spill file. Should the background thread not stop in
+     * time, the batch it is sending is left to the journal, to be sent on the next start.
+     */
+    public void shutdown() {
+        ExecutorService current;
+
+        synchronized (this) {
+            current = this.executor;
+            this.executor = null;
+        }
+
+        if (current == null) {
+            return;
+        }
+
+        this.stopSignal.countDown();
+        current.shutdown();
+
+        boolean stopped = false;
+
+        try {
+            stopped = current.awaitTermination(30, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<Message> remaining = new ArrayList<Message>();
+
+        // The in-flight batch belongs to the background thread until it has stopped
+        if (stopped) {
+            remaining.addAll(this.inFlight);
+            this.inFlight.clear();
+        }
+        else {
+            log.warn("Timed out waiting for the AMQP publisher to stop; its current batch is " +
+                "left in the journal");
+        }
+
+        this.queue.drainTo(remaining);
+
+        try {
+            if (!remaining.isEmpty()) {
+                this.sendBatch(remaining);
+            }
+        }
+        catch (RuntimeException e) {
+            log.error("Unable to send {} events to the message bus on shutdown", remaining.size(), e);
+
+            try {
+                this.writeSpill(remaining);
+                this.spilled.addAndGet(remaining.size());
+                this.release(remaining);
+            }
+            catch (IOException ioe) {
+                log.error("Unable to write events to {}; they are left in the journal",
+                    this.spillFile, ioe);
+            }
+        }
+        finally {
+            this.closeJournal();
+        }
+    }
+
+    /**
+     * Queues an event for the message bus, after appending it to the journal. When the queue is
+     * full, waits for room for up to the configured offer timeout, then writes the event to the
+     * spill file.
+     *
+     * @param target
+     *  the target of the event
+     *
+     * @param type
+     *  the type of the event
+     *
+     * @param body
+     *  the serialized event
+     *
+     * @throws RuntimeException
+     *  if the event could not be written to the journal, or the queue is full and the event could
+     *  not be written to the spill file
+     */
+    public void publish(Target target, Type type, String body) {
+        if (this.executor == null) {
+            this.sender.sendTextMessage(target, type, body);
+            return;
+        }
+
+        Message message = new Message(target, type, body);
+
+        try {
+            this.journal(message);
+        }
+        catch (IOException e) {
+            throw new RuntimeException("Unable to write event to the AMQP journal in " + this.spillDir, e);
+        }
+
+        try {
+            if (this.queue.offer(message, this.offerTimeout, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<Message> spill = Collections.singletonList(message);
+
+        try {
+            this.writeSpill(spill);
+            this.spilled.incrementAndGet();
+        }
+        catch (IOException e) {
+            throw new RuntimeException("Unable to write event to " + this.spillFile, e);
+        }
+        finally {
+            // Either spilled, or refused and left to HornetQ
+            this.release(spill);
+        }
+    }
+
+    private boolean isRunning() {
+        CountDownLatch signal = this.stopSignal;
+        return signal != null && signal.getCount() > 0;
+    }
+
+    private void drain() {
+        while (this.isRunning()) {
+            try {
+                if (this.inFlight.isEmpty()) {
+                    if (this.queue.isEmpty() && this.hasSpilled()) {
+                        this.replay();
+                        continue;
+                    }
+
+                    Message first = this.queue.poll(1, TimeUnit.SECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+
+                    this.inFlight.add(first);
+                    this.queue.drainTo(this.inFlight, this.batchSize - 1);
+                }
+
+                this.sendBatch(this.inFlight);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            catch (Exception e) {
+                log.warn("Unable to send events to the message bus; retrying in {}ms",
+                    this.retryInterval, e);
+                this.pause();
+            }
+        }
+    }
+
+    private void pause() {
+        try {
+            this.stopSignal.await(this.retryInterval, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sends the given events, one group per destination, and removes those the broker has
+     * confirmed from the list.
+     */
+    private void sendBatch(List<Message> batch) {
+        Map<String, List<Message>> groups = new LinkedHashMap<String, List<Message>>();
+
+        for (Message message : batch) {
+            String key = message.target + "." + message.type;
+            List<Message> group = groups.get(key);
+
+            if (group == null) {
+                group = new ArrayList<Message>();
+                groups.put(key, group);
+            }
+
+            group.add(message);
+        }
+
+        try {
+            Iterator<List<Message>> iterator = groups.values().iterator();
+
+            while (iterator.hasNext()) {
+                List<Message> group = iterator.next();
+                List<String> bodies = new ArrayList<String>(group.size());
+
+                for (Message message : group) {
+                    bodies.add(message.body);
+                }
+
+                this.sender.sendTextMessages(group.get(0).target, group.get(0).type, bodies);
+                this.published.addAndGet(group.size());
+                this.release(group);
+                iterator.remove();
+            }
+
+            this.batches.incrementAndGet();
+        }
+        catch (RuntimeException e) {
+            this.failedSends.incrementAndGet();
+            throw e;
+        }
+        finally {
+            batch.clear();
+
+            for (List<Message> group : groups.values()) {
+                batch.addAll(group);
+            }
+        }
+    }
+
+    private boolean hasSpilled() {
+        return this.spillFile.exists() || this.replayFile.exists();
+    }
+
+    /**
+     * Appends the event to the current journal segment, starting a new segment once the current
+     * one holds as many events as the queue.
+     */
+    private void journal(Message message) throws IOException {
+        synchronized (this.journalLock) {
+            if (this.segment != null && this.segment.written >= this.segmentSize) {
+                this.closeSegment(this.segment);
+            }
+
+            if (this.segment == null) {
+                String name = JOURNAL_PREFIX + (++this.segmentSequence) + JOURNAL_SUFFIX;
+                this.segment = new Segment(new File(this.spillDir, name));
+            }
+
+            try {
+                this.segment.writer.write(message.toLine());
+                this.segment.writer.write('\n');
+                this.segment.writer.flush();
+            }
+            catch (IOException e) {
+                // Whatever made it to the file is an incomplete line, which recovery skips
+                this.closeSegment(this.segment);
+                throw e;
+            }
+
+            this.segment.written++;
+            this.segment.pending++;
+            message.segment = this.segment;
+        }
+    }
+
+    /**
+     * Marks the given events as no longer needing the journal, as the broker has confirmed them or
+     * they have been spilled. Segments without pending events are deleted.
+     */
+    private void release(List<Message> messages) {
+        synchronized (this.journalLock) {
+            for (Message message : messages) {
+                Segment released = message.segment;
+                message.segment = null;
+
+                if (released != null && --released.pending == 0) {
+                    this.closeSegment(released);
+                }
+            }
+        }
+    }
+
+    private void closeSegment(Segment closing) {
+        if (closing == this.segment) {
+            this.segment = null;
+        }
+
+        if (!closing.closed) {
+            closing.closed = true;
+
+            try {
+                closing.writer.close();
+            }
+            catch (IOException e) {
+                log.warn("Unable to close {}", closing.file, e);
+            }
+        }
+
+        if (closing.pending == 0 && !closing.file.delete()) {
+            log.warn("Unable to delete {}", closing.file);
+        }
+    }
+
+    private void closeJournal() {
+        synchronized (this.journalLock) {
+            if (this.segment != null) {
+                this.closeSegment(this.segment);
+            }
+        }
+    }
+
+    /**
+     * Moves the events of the journal segments left behind by a crash to the spill file, from
+     * which they are sent once the queue is running. A segment which cannot be read is kept.
+     */
+    private void recoverJournal() {
+        File[] segments = this.spillDir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(JOURNAL_PREFIX) && name.endsWith(JOURNAL_SUFFIX);
+            }
+        });
+
+        if (segments == null) {
+            return;
+        }
+
+        Arrays.sort(segments);
+
+        for (File file : segments) {
+            try {
+                int recovered = this.recoverSegment(file);
+
+                if (!file.delete()) {
+                    log.warn("Unable to delete {}", file);
+                }
+
+                log.info("Recovered {} unconfirmed events from {}", recovered, file);
+            }
+            catch (IOException e) {
+                log.error("Unable to recover the events of {}", file, e);
+            }
+        }
+    }
+
+    private int recoverSegment(File file) throws IOException {
+        // A last line without a line break was being written when the server stopped; its
+        // event was never acknowledged, so HornetQ still has it
+        boolean complete = file.length() == 0 || endsWithLineBreak(file);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF8));
+        List<Message> chunk = new ArrayList<Message>(this.batchSize);
+        int recovered = 0;
+
+        try {
+            String line = reader.readLine();
+
+            while (line != null) {
+                String next = reader.readLine();
+                Message message = next != null || complete ? Message.fromLine(line) : null;
+
+                if (message != null) {
+                    chunk.add(message);
+                }
+
+                if (chunk.size() >= this.batchSize || (next == null && !chunk.isEmpty())) {
+                    this.writeSpill(chunk);
+                    recovered += chunk.size();
+                    chunk.clear();
+                }
+
+                line = next;
+            }
+        }
+        finally {
+            reader.close();
+        }
+
+        return recovered;
+    }
+
+    private static boolean endsWithLineBreak(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+        try {
+            raf.seek(raf.length() - 1);
+            return raf.read() == '\n';
+        }
+        finally {
+            raf.close();
+        }
+    }
+
+    private void writeSpill(List<Message> messages) throws IOException {
+        synchronized (this.spillLock) {
+            Writer writer = new OutputStreamWriter(new FileOutputStream(this.spillFile, true), UTF8);
+
+            try {
+                for (Message message : messages) {
+                    writer.write(message.toLine());
+                    writer.write('\n');
+                }
+            }
+            finally {
+                writer.close();
+            }
+        }
+    }
+
+    /**
+     * Sends the events of the spill file. The spill file is first moved aside, so that events
+     * spilled in the meantime go to a new one; whatever cannot be sent is spilled again.
+     */
+    private void replay() throws IOException {
+        synchronized (this.spillLock) {
+            if (!this.replayFile.exists() && !this.spillFile.renameTo(this.replayFile)) {
+                throw new IOException("Unable to move " + this.spillFile + " to " + this.replayFile);
+            }
+        }
+
+        log.info("Sending events spilled to {}", this.replayFile);
+        BufferedReader reader = new BufferedReader(
+            new InputStreamReader(new FileInputStream(this.replayFile), UTF8));
+        boolean consumed = false;
+
+        try {
+            List<Message> chunk = this.readChunk(reader);
+
+            try {
+                while (!chunk.isEmpty() && this.isRunning()) {
+                    this.sendBatch(chunk);
+                    chunk = this.readChunk(reader);
+                }
+            }
+            finally {
+                for (; !chunk.isEmpty(); chunk = this.readChunk(reader)) {
+                    this.writeSpill(chunk);
+                }
+
+                consumed = true;
+            }
+        }
+        finally {
+            reader.close();
+
+            if (consumed && !this.replayFile.delete()) {
+                log.warn("Unable to delete {}", this.replayFile);
+            }
+        }
+    }
+
+    private List<Message> readChunk(BufferedReader reader) throws IOException {
+        List<Message> chunk = new ArrayList<Message>(this.batchSize);
+
+        while (chunk.size() < this.batchSize) {
+            String line = reader.readLine();
+            if (line == null) {
+                break;
+            }
+
+            Message message = Message.fromLine(line);
+            if (message != null) {
+                chunk.add(message);
+            }
+            else {
+                log.warn("Skipping malformed line in {}", this.replayFile);
+            }
+        }
+
+        return chunk;
+    }
+
+    @Override
+    public int getDepth() {
+        return this.queue.size();
+    }
+
+    @Override
+    public long getPublished() {
+        return this.published.get();
+    }
+
+    @Override
+    public long getBatches() {
+        return this.batches.get();
+    }
+
+    @Override
+    public long getFailedSends() {
+        return this.failedSends.get();
+    }
+
+    @Override
+    public long getSpilled() {
+        return this.spilled.get();
+    }
+
+    /**
+     * An event waiting to be sent. On disk, it takes one line: the target, the type and the
+     * serialized event, separated by tabs. Serialized events never hold raw tabs or line breaks.
+     */
+    private static class Message {
+        private final Target target;
+        private final Type type;
+        private final String body;
+        private Segment segment;
+
+        Message(Target target, Type type, String body) {
+            this.target = target;
+            this.type = type;
+            this.body = body;
+        }
+
+        String toLine() {
+            return this.target.name() + '\t' + this.type.name() + '\t' + this.body;
+        }
+
+        static Message fromLine(String line) {
+            String[] parts = line.split("\t", 3);
+
+            if (parts.length != 3) {
+                return null;
+            }
+
+            try {
+                return new Message(Target.valueOf(parts[0]), Type.valueOf(parts[1]), parts[2]);
+            }
+            catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * A journal file, along with the number of its events not yet confirmed or spilled.
+     */
+    private static class Segment {
+        private final File file;
+        private final Writer writer;
+        private int written;
+        private int pending;
+        private boolean closed;
+
+        Segment(File file) throws IOException {
+            this.file = file;
+            this.writer = new OutputStreamWriter(new FileOutputStream(file, true), UTF8);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.audit;
+
+
+
+/**
+ * AMQPPublishQueueMBean
+ *
+ * The statistics of the asynchronous AMQP publish queue, as published over JMX.
+ */
+public interface AMQPPublishQueueMBean {
+
+    /**
+     * @return the number of events waiting in memory to be sent to the broker
+     */
+    int getDepth();
+
+    /**
+     * @return the number of events the broker has confirmed
+     */
+    long getPublished();
+
+    /**
+     * @return the number of batches the broker has confirmed
+     */
+    long getBatches();
+
+    /**
+     * @return the number of failed attempts to send a batch
+     */
+    long getFailedSends();
+
+    /**
+     * @return the number of events written to disk because the queue was full
+     */
+    long getSpilled();
+}
@@ -0,0 +1,155 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.audit;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.client.ClientMessage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+
+
+/**
+ * EventEnvelope
+ *
+ * Writes serialized events to, and reads them from, the body of HornetQ messages. A message
+ * carrying a single event with the JSON codec holds just the event, as it always has. Any
+ * other message is marked with the number of events it carries and the codec used for them:
+ * <ul>
+ *   <li>json - each event is written to the body as a string</li>
+ *   <li>deflate - the events are written as length-prefixed UTF-8 and deflated as a whole</li>
+ * </ul>
+ */
+public class EventEnvelope {
+
+    public static final String CODEC_JSON = "json";
+    public static final String CODEC_DEFLATE = "deflate";
+
+    static final String COUNT_PROPERTY = "cp_event_count";
+    static final String CODEC_PROPERTY = "cp_event_codec";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private EventEnvelope() {
+        // Static methods only
+    }
+
+    /**
+     * Writes the given serialized events to the body of the message.
+     *
+     * @param message
+     *  the message to write the events to
+     *
+     * @param events
+     *  the serialized events to write
+     *
+     * @param codec
+     *  the codec to write the events with; either CODEC_JSON or CODEC_DEFLATE
+     *
+     * @throws IOException
+     *  if the events cannot be deflated
+     */
+    public static void write(ClientMessage message, List<String> events, String codec)
+        throws IOException {
+
+        HornetQBuffer body = message.getBodyBuffer();
+
+        if (CODEC_DEFLATE.equals(codec)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes));
+            for (String event : events) {
+                byte[] encoded = event.getBytes(UTF8);
+                out.writeInt(encoded.length);
+                out.write(encoded);
+            }
+            out.close();
+
+            message.putIntProperty(COUNT_PROPERTY, events.size());
+            message.putStringProperty(CODEC_PROPERTY, CODEC_DEFLATE);
+            body.writeBytes(bytes.toByteArray());
+        }
+        else if (CODEC_JSON.equals(codec)) {
+            if (events.size() != 1) {
+                message.putIntProperty(COUNT_PROPERTY, events.size());
+                message.putStringProperty(CODEC_PROPERTY, CODEC_JSON);
+            }
+
+            for (String event : events) {
+                body.writeString(event);
+            }
+        }
+        else {
+            throw new IllegalArgumentException("Unknown event codec: " + codec);
+        }
+    }
+
+    /**
+     * Reads the serialized events carried by the body of the message.
+     *
+     * @param message
+     *  the message to read the events from
+     *
+     * @return
+     *  the serialized events carried by the message, in the order they were queued
+     *
+     * @throws IOException
+     *  if the events cannot be inflated
+     */
+    public static List<String> read(ClientMessage message) throws IOException {
+        HornetQBuffer body = message.getBodyBuffer();
+
+        if (!message.containsProperty(COUNT_PROPERTY)) {
+            return Collections.singletonList(body.readString());
+        }
+
+        int count = message.getIntProperty(COUNT_PROPERTY);
+        String codec = message.getStringProperty(CODEC_PROPERTY);
+        List<String> events = new ArrayList<String>(count);
+
+        if (CODEC_DEFLATE.equals(codec)) {
+            byte[] deflated = new byte[body.readableBytes()];
+            body.readBytes(deflated);
+
+            DataInputStream in = new DataInputStream(
+                new InflaterInputStream(new ByteArrayInputStream(deflated)));
+            for (int i = 0; i < count; i++) {
+                byte[] encoded = new byte[in.readInt()];
+                in.readFully(encoded);
+                events.add(new String(encoded, UTF8));
+            }
+            in.close();
+        }
+        else if (CODEC_JSON.equals(codec)) {
+            for (int i = 0; i < count; i++) {
+                events.add(body.readString());
+            }
+        }
+        else {
+            throw new IOException("Unknown event codec: " + codec);
+        }
+
+        return events;
+    }
+}
@@ -42,6 +42,7 @@ import org.hornetq.core.remoting.impl.invm.InVMConnectorFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
@@ -62,6 +63,8 @@ public class EventSinkImpl implements EventSink {
     private ObjectMapper mapper;
     private EventFilter eventFilter;
     private int largeMsgSize;
+    private int batchSize;
+    private String codec;
     private ModeManager modeManager;
 
     /*
@@ -73,6 +76,17 @@ public class EventSinkImpl implements EventSink {
     private ThreadLocal<ClientSession> sessions = new ThreadLocal<ClientSession>();
     private ThreadLocal<ClientProducer> producers = new ThreadLocal<ClientProducer>();
 
+    /*
+     * The serialized events of the current request/job which have not been written to a
+     * message yet. These are written out in batches, and dropped on rollback.
+     */
+    private ThreadLocal<List<String>> pending = new ThreadLocal<List<String>>() {
+        @Override
+        protected List<String> initialValue() {
+            return new ArrayList<String>();
+        }
+    };
+
 
 
     @Inject
@@ -84,6 +98,8 @@ public class EventSinkImpl implements EventSink {
         this.eventFilter = eventFilter;
         this.modeManager = modeManager;
         largeMsgSize = config.getInt(ConfigProperties.HORNETQ_LARGE_MSG_SIZE);
+        batchSize = Math.max(config.getInt(ConfigProperties.HORNETQ_EVENT_BATCH_SIZE, 1), 1);
+        codec = config.getString(ConfigProperties.HORNETQ_EVENT_CODEC, EventEnvelope.CODEC_JSON);
     }
 
     /**
@@ -149,6 +165,11 @@ public class EventSinkImpl implements EventSink {
                 String queueName = "event." + listenerClassName;
                 long msgCount = session.queueQuery(new SimpleString(queueName)).getMessageCount();
                 results.add(new QueueStatus(queueName, msgCount));
+
+                // Events the listener failed on, waiting to be retried
+                String parkedQueueName = queueName + EventSource.PARKED_SUFFIX;
+                msgCount = session.queueQuery(new SimpleString(parkedQueueName)).getMessageCount();
+                results.add(new QueueStatus(parkedQueueName, msgCount));
             }
         }
         catch (Exception e) {
@@ -166,7 +187,9 @@ public class EventSinkImpl implements EventSink {
      * Events are filtered, meaning that some of them might not even get into HornetQ.
      * Details about the filtering are documented in EventFilter class
      *
-     * HornetQ transaction actually manages the queue of events to be sent.
+     * Events are serialized right away, but written to HornetQ in batches of up to the
+     * configured batch size per message. The HornetQ transaction then manages the queue of
+     * messages to be sent.
      */
     @Override
     public void queueEvent(Event event) {
@@ -179,19 +202,39 @@ public class EventSinkImpl implements EventSink {
         log.debug("Queuing event: {}", event);
 
         try {
-            ClientSession session = getClientSession();
-            ClientMessage message = session.createMessage(true);
-            String eventString = mapper.writeValueAsString(event);
-            message.getBodyBuffer().writeString(eventString);
+            List<String> events = pending.get();
+            events.add(mapper.writeValueAsString(event));
 
-            // NOTE: not actually send until we commit the session.
-            getClientProducer().send(message);
+            if (events.size() >= batchSize) {
+                writePendingEvents();
+            }
         }
         catch (Exception e) {
             log.error("Error while trying to send event: " + event, e);
         }
     }
 
+    /*
+     * Writes the pending events of this thread to a single message. Like the rest of the
+     * messages of the session, it is not actually sent until the session is committed.
+     */
+    private void writePendingEvents() throws Exception {
+        List<String> events = pending.get();
+        if (events.isEmpty()) {
+            return;
+        }
+
+        try {
+            ClientMessage message = getClientSession().createMessage(true);
+            EventEnvelope.write(message, events, codec);
+            getClientProducer().send(message);
+            log.debug("Wrote {} events to a HornetQ message", events.size());
+        }
+        finally {
+            events.clear();
+        }
+    }
+
     /**
      * Dispatch queued events. (if there are any)
      *
@@ -200,6 +243,7 @@ public class EventSinkImpl implements EventSink {
     @Override
     public void sendEvents() {
         try {
+            writePendingEvents();
             log.debug("Committing hornetq transaction.");
             getClientSession().commit();
         }
@@ -213,6 +257,7 @@ public class EventSinkImpl implements EventSink {
     @Override
     public void rollback() {
         log.warn("Rolling back hornetq transaction.");
+        pending.get().clear();
         try {
             ClientSession session = getClientSession();
             session.rollback();
@@ -21,6 +21,7 @@ import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.HornetQExceptionType;
 import org.hornetq.api.core.TransportConfiguration;
 import org.hornetq.api.core.client.ClientConsumer;
+import org.hornetq.api.core.client.ClientProducer;
 import org.hornetq.api.core.client.ClientSession;
 import org.hornetq.api.core.client.ClientSessionFactory;
 import org.hornetq.api.core.client.HornetQClient;
@@ -34,6 +35,7 @@ import org.slf4j.LoggerFactory;
 public class EventSource {
     private static  Logger log = LoggerFactory.getLogger(EventSource.class);
     static final String QUEUE_ADDRESS = "event";
+    static final String PARKED_SUFFIX = ".parked";
     private ClientSession session;
     private ClientSessionFactory factory;
     private ObjectMapper mapper;
@@ -80,26 +82,39 @@ public class EventSource {
 
     void registerListener(EventListener listener) {
         String queueName = QUEUE_ADDRESS + "." + listener.getClass().getCanonicalName();
+        // Events of a batch which the listener fails on are parked on a queue of their own,
+        // addressed to this listener only
+        String parkedQueueName = queueName + PARKED_SUFFIX;
         log.debug("registering listener for " + queueName);
         try {
-            try {
-                // Create a durable queue that will be persisted to disk:
-                session.createQueue(QUEUE_ADDRESS, queueName, true);
-                log.debug("created new event queue " + queueName);
-            }
-            catch (HornetQException e) {
-                // if the queue exists already we already created it in a previous run,
-                // so that's fine.
-                if (e.getType() != HornetQExceptionType.QUEUE_EXISTS) {
-                    throw e;
-                }
-            }
+            createQueue(QUEUE_ADDRESS, queueName);
+            createQueue(parkedQueueName, parkedQueueName);
+
+            ClientProducer parkingProducer = session.createProducer(parkedQueueName);
+            ListenerWrapper wrapper = new ListenerWrapper(listener, mapper, session, parkingProducer);
 
             ClientConsumer consumer = session.createConsumer(queueName);
-            consumer.setMessageHandler(new ListenerWrapper(listener, mapper));
+            consumer.setMessageHandler(wrapper);
+            ClientConsumer parkedConsumer = session.createConsumer(parkedQueueName);
+            parkedConsumer.setMessageHandler(wrapper);
         }
         catch (HornetQException e) {
             log.error("Unable to register listener :" + listener, e);
         }
     }
+
+    private void createQueue(String address, String queueName) throws HornetQException {
+        try {
+            // Create a durable queue that will be persisted to disk:
+            session.createQueue(address, queueName, true);
+            log.debug("created new event queue " + queueName);
+        }
+        catch (HornetQException e) {
+            // if the queue exists already we already created it in a previous run,
+            // so that's fine.
+            if (e.getType() != HornetQExceptionType.QUEUE_EXISTS) {
+                throw e;
+            }
+        }
+    }
 }
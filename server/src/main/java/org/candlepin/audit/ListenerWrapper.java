@@ -20,46 +20,94 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.ClientSession;
 import org.hornetq.api.core.client.MessageHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * ListnerWrapper
+ *
+ * Delivers the events of each message to a listener. A message carrying a single event is
+ * only acknowledged once the listener has handled it, so a failing event remains in hornetq.
+ * The events of a batch are delivered one at a time instead: those the listener fails on are
+ * parked as messages of their own, for the listener to retry separately, and the batch is
+ * acknowledged without delivering its other events again.
  */
 public class ListenerWrapper implements MessageHandler {
 
     private EventListener listener;
     private static Logger log = LoggerFactory.getLogger(ListenerWrapper.class);
     private ObjectMapper mapper;
-    public ListenerWrapper(EventListener listener, ObjectMapper mapper) {
+    private ClientSession session;
+    private ClientProducer parkingProducer;
+
+    public ListenerWrapper(EventListener listener, ObjectMapper mapper, ClientSession session,
+        ClientProducer parkingProducer) {
+
         this.listener = listener;
         this.mapper = mapper;
+        this.session = session;
+        this.parkingProducer = parkingProducer;
     }
 
     @Override
     public void onMessage(ClientMessage msg) {
-        String body = msg.getBodyBuffer().readString();
-        log.debug("Got event: {}", body);
-
-        // Exceptions thrown here will cause the event to remain in hornetq:
+        List<String> bodies;
         try {
-            Event event = mapper.readValue(body, Event.class);
-            listener.onEvent(event);
+            bodies = EventEnvelope.read(msg);
         }
-        catch (JsonMappingException e) {
-            log.error("Unable to deserialize event object from msg: " + body, e);
-            throw new RuntimeException("Error deserializing event", e);
+        catch (IOException e) {
+            log.error("Unable to read events from msg: " + msg, e);
+            throw new RuntimeException("Error reading events", e);
+        }
+
+        // Exceptions thrown here will cause the events to remain in hornetq. As the events of
+        // a message are acknowledged together, they are all read before any is delivered.
+        List<Event> events = new ArrayList<Event>(bodies.size());
+        for (String body : bodies) {
+            log.debug("Got event: {}", body);
+
+            try {
+                events.add(mapper.readValue(body, Event.class));
+            }
+            catch (JsonMappingException e) {
+                log.error("Unable to deserialize event object from msg: " + body, e);
+                throw new RuntimeException("Error deserializing event", e);
+            }
+            catch (JsonParseException e) {
+                log.error("Unable to deserialize event object from msg: " + body, e);
+                throw new RuntimeException("Error deserializing event", e);
+            }
+            catch (IOException e) {
+                log.error("Unable to deserialize event object from msg: " + body, e);
+                throw new RuntimeException("Error deserializing event", e);
+            }
         }
-        catch (JsonParseException e) {
-            log.error("Unable to deserialize event object from msg: " + body, e);
-            throw new RuntimeException("Error deserializing event", e);
+
+        if (events.size() == 1) {
+            listener.onEvent(events.get(0));
         }
-        catch (IOException e) {
-            log.error("Unable to deserialize event object from msg: " + body, e);
-            throw new RuntimeException("Error deserializing event", e);
+        else {
+            List<String> failed = new ArrayList<String>();
+            for (int i = 0; i < events.size(); i++) {
+                try {
+                    listener.onEvent(events.get(i));
+                }
+                catch (RuntimeException e) {
+                    log.warn("Listener {} failed on event {}; parking it for retry", listener,
+                        events.get(i).getId(), e);
+                    failed.add(bodies.get(i));
+                }
+            }
+
+            park(failed);
         }
 
         try {
@@ -71,4 +119,26 @@ public class ListenerWrapper implements MessageHandler {
         }
     }
 
+    /*
+     * Sends each of the given events to the listener's parking queue as a message of its own.
+     * Should parking fail, the batch is left in hornetq, to be delivered again as a whole.
+     */
+    private void park(List<String> bodies) {
+        for (String body : bodies) {
+            try {
+                ClientMessage parked = session.createMessage(true);
+                EventEnvelope.write(parked, Collections.singletonList(body), EventEnvelope.CODEC_JSON);
+                parkingProducer.send(parked);
+            }
+            catch (HornetQException e) {
+                log.error("Unable to park failed event: " + body, e);
+                throw new RuntimeException("Error parking event", e);
+            }
+            catch (IOException e) {
+                log.error("Unable to park failed event: " + body, e);
+                throw new RuntimeException("Error parking event", e);
+            }
+        }
+    }
+
 }
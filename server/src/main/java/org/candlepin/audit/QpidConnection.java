@@ -27,10 +27,13 @@ import org.candlepin.util.Util;
 import com.google.inject.Inject;
 
 import org.apache.qpid.client.AMQConnectionFactory;
+import org.apache.qpid.client.AMQSession;
 import org.apache.qpid.jms.BrokerDetails;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -140,6 +143,21 @@ public class QpidConnection {
      * @throws Exception
      */
     public void sendTextMessage(Target target, Type type, String msg) {
+        this.send(target, type, Collections.singletonList(msg), false);
+    }
+
+    /**
+     * Sends a batch of text messages to a Qpid Broker, with the binding key of the given Target
+     * and Type, and waits for the broker to confirm that it has received all of them.
+     * @param target enumeration
+     * @param type enumeration
+     * @param msgs Usually contain serialized JSON with the messages
+     */
+    public void sendTextMessages(Target target, Type type, List<String> msgs) {
+        this.send(target, type, msgs, true);
+    }
+
+    private void send(Target target, Type type, List<String> msgs, boolean confirm) {
         try {
             /**
              * When Candlepin is in NORMAL mode and at the same time the
@@ -154,7 +172,14 @@ public class QpidConnection {
             Map<Type, TopicPublisher> m = this.producerMap.get(target);
             if (m != null) {
                 TopicPublisher tp = m.get(type);
-                tp.send(session.createTextMessage(msg));
+                for (String msg : msgs) {
+                    tp.send(session.createTextMessage(msg));
+                }
+
+                // The publishers do not wait for the broker; a sync does, for all of them at once
+                if (confirm && session instanceof AMQSession) {
+                    ((AMQSession) session).sync();
+                }
             }
         }
         catch (Exception ex) {
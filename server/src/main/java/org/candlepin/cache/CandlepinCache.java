@@ -15,6 +15,7 @@
 package org.candlepin.cache;
 
 import org.candlepin.model.Product;
+import org.candlepin.policy.js.compliance.ConsumerCoverage;
 
 import com.google.inject.Inject;
 
@@ -28,6 +29,7 @@ import javax.cache.CacheManager;
  */
 public class CandlepinCache {
     private static final String CACHE_PRODUCT_FULL = "productfullcache";
+    private static final String CACHE_COMPLIANCE_COVERAGE = "compliancecoveragecache";
 
     /**
      * Cache manager for Ehcache configured caches.
@@ -67,4 +69,13 @@ public class CandlepinCache {
     public Cache<String, Product> getProductCache() {
         return cacheManager.getCache(CACHE_PRODUCT_FULL);
     }
+
+    /**
+     * Cache for the compliance coverage last calculated for each consumer, by consumer UUID
+     *
+     * @return Cache for ConsumerCoverage
+     */
+    public Cache<String, ConsumerCoverage> getComplianceCoverageCache() {
+        return cacheManager.getCache(CACHE_COMPLIANCE_COVERAGE);
+    }
 }
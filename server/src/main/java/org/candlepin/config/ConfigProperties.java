@@ -20,8 +20,11 @@ import static org.candlepin.common.config.ConfigurationPrefixes.JPA_CONFIG_PREFI
 import org.candlepin.pinsetter.tasks.ActiveEntitlementJob;
 import org.candlepin.pinsetter.tasks.CancelJobJob;
 import org.candlepin.pinsetter.tasks.CertificateRevocationListTask;
+import org.candlepin.pinsetter.tasks.DeltaCertificateRevocationListTask;
+import org.candlepin.pinsetter.tasks.DirtyEntitlementSweeperJob;
 import org.candlepin.pinsetter.tasks.EntitlerJob;
 import org.candlepin.pinsetter.tasks.ExpiredPoolsJob;
+import org.candlepin.pinsetter.tasks.HealEntireOrgJob;
 import org.candlepin.pinsetter.tasks.ImportRecordJob;
 import org.candlepin.pinsetter.tasks.JobCleaner;
 import org.candlepin.pinsetter.tasks.ManifestCleanerJob;
@@ -102,6 +105,16 @@ public class ConfigProperties {
      */
     public static final String HORNETQ_MAX_PAGE_SIZE = "candlepin.audit.hornetq.max_page_size";
 
+    /**
+     * The maximum number of events of a request or job written to a single HornetQ message.
+     * Setting this to 1 writes each event to a message of its own.
+     */
+    public static final String HORNETQ_EVENT_BATCH_SIZE = "candlepin.audit.hornetq.event_batch_size";
+    /**
+     * The codec used to write events to HornetQ messages; either json or deflate.
+     */
+    public static final String HORNETQ_EVENT_CODEC = "candlepin.audit.hornetq.event_codec";
+
     public static final String AUDIT_LISTENERS = "candlepin.audit.listeners";
     public static final String AUDIT_LOG_FILE = "candlepin.audit.log_file";
     /**
@@ -149,6 +162,33 @@ public class ConfigProperties {
     public static final String AMQP_CONNECTION_RETRY_ATTEMPTS = "gutterball.amqp.connection.retry_attempts";
     public static final String AMQP_CONNECTION_RETRY_INTERVAL = "gutterball.amqp.connection.retry_interval";
 
+    /**
+     * Publish events to the AMQP bus from a background thread, in batches, rather than from the
+     * HornetQ listener thread. See AMQPPublishQueue.
+     *
+     * An event is acknowledged to HornetQ once it is queued, before the broker has it, so it is
+     * first appended to a journal in the spill directory. Events left in the journal by a crash
+     * are sent on the next start, and may reach the broker twice. Requires spill_dir; without it
+     * events are sent right away.
+     */
+    public static final String AMQP_ASYNC_ENABLED = "candlepin.amqp.async.enable";
+    /**
+     * The number of events held in memory while waiting for the broker; also the number of events
+     * per journal file
+     */
+    public static final String AMQP_ASYNC_QUEUE_SIZE = "candlepin.amqp.async.queue_size";
+    /** The largest number of events sent to the broker before waiting for it to confirm them */
+    public static final String AMQP_ASYNC_BATCH_SIZE = "candlepin.amqp.async.batch_size";
+    /** How long, in milliseconds, an event waits for room in a full queue before it is spilled */
+    public static final String AMQP_ASYNC_OFFER_TIMEOUT = "candlepin.amqp.async.offer_timeout";
+    /** How long, in milliseconds, to wait before sending a failed batch again */
+    public static final String AMQP_ASYNC_RETRY_INTERVAL = "candlepin.amqp.async.retry_interval";
+    /**
+     * The directory holding the journal of queued events, and the events written out when the
+     * queue is full. When blank, async publishing is disabled.
+     */
+    public static final String AMQP_ASYNC_SPILL_DIR = "candlepin.amqp.async.spill_dir";
+
     /**
      * A possibility to enable Suspend Mode. By default, the suspend mode is enabled
      */
@@ -198,6 +238,8 @@ public class ConfigProperties {
         ActiveEntitlementJob.class.getName(),
         CancelJobJob.class.getName(),
         CertificateRevocationListTask.class.getName(),
+        DeltaCertificateRevocationListTask.class.getName(),
+        DirtyEntitlementSweeperJob.class.getName(),
         ExpiredPoolsJob.class.getName(),
         ImportRecordJob.class.getName(),
         JobCleaner.class.getName(),
@@ -214,6 +256,39 @@ public class ConfigProperties {
     public static final String ENTITLER_JOB_THROTTLE =
         "pinsetter." + EntitlerJob.class.getName() + ".throttle";
 
+    /**
+     * The number of dirty entitlements regenerated in each transaction of the sweeper job.
+     */
+    public static final String DIRTY_ENTITLEMENT_SWEEPER_BATCH_SIZE =
+        "pinsetter." + DirtyEntitlementSweeperJob.class.getName() + ".batch_size";
+
+    /**
+     * The maximum number of dirty entitlements regenerated by a single run of the sweeper job.
+     */
+    public static final String DIRTY_ENTITLEMENT_SWEEPER_MAX_PER_RUN =
+        "pinsetter." + DirtyEntitlementSweeperJob.class.getName() + ".max_per_run";
+
+    /**
+     * The time, in milliseconds, the sweeper job pauses between two batches, leaving the
+     * database and signing capacity to interactive requests.
+     */
+    public static final String DIRTY_ENTITLEMENT_SWEEPER_PAUSE =
+        "pinsetter." + DirtyEntitlementSweeperJob.class.getName() + ".pause_ms";
+
+    /**
+     * The number of threads shared by all heal entire org jobs for healing consumers in
+     * parallel, each consumer in its own transaction. 0 heals consumers on the job's thread.
+     */
+    public static final String HEAL_ENTIRE_ORG_THREADS =
+        "pinsetter." + HealEntireOrgJob.class.getName() + ".threads";
+
+    /**
+     * The number of consumers whose compliance is recalculated in each transaction of the
+     * active entitlement job.
+     */
+    public static final String ACTIVE_ENTITLEMENT_JOB_BATCH_SIZE =
+        "pinsetter." + ActiveEntitlementJob.class.getName() + ".batch_size";
+
     public static final String BATCH_BIND_NUMBER_OF_POOLS_LIMIT =
         "candlepin.batch.bind.number_of_pools_limit";
 
@@ -241,6 +316,94 @@ public class ConfigProperties {
 
     public static final String PRODUCT_CACHE_MAX = "candlepin.cache.product_cache_max";
 
+    /**
+     * The number of pre-built rules scopes to keep warm for incoming requests. Setting
+     * this to 0 disables the pool, and a scope is built on every request.
+     */
+    public static final String RULES_SCOPE_POOL_SIZE = "candlepin.rules.scope_pool_size";
+
+    /**
+     * How often, in seconds, to check for new rules in the background, so they are compiled
+     * and the scope pool warmed before requests need them. Set to 0 to only check on request.
+     */
+    public static final String RULES_REFRESH_INTERVAL = "candlepin.rules.refresh_interval";
+
+    /**
+     * Directory in which the bytecode compiled from the rules is stored, so restarts (and
+     * other nodes sharing the directory) can skip recompiling the same rules. Entries are
+     * signed with the CA key and ignored unless the signature verifies. The directory is
+     * created readable by the candlepin user only. Leave empty to always compile the rules
+     * in memory.
+     */
+    public static final String RULES_COMPILED_CACHE_DIR = "candlepin.rules.compiled_cache_dir";
+
+    /**
+     * The engine used to calculate consumer compliance status: "js" runs the get_status
+     * function of the rules, "java" uses the native port of the rules' compliance logic,
+     * which also reuses stack and entitlement coverage between checks of a consumer. "js"
+     * remains the default, as rules imported from a manifest can change the compliance logic
+     * the port does not follow.
+     */
+    public static final String COMPLIANCE_ENGINE = "candlepin.compliance.engine";
+
+    /**
+     * The number of threads shared by all requests for evaluating the compliance status of
+     * many consumers at once. 0 evaluates the statuses on the requesting thread.
+     */
+    public static final String COMPLIANCE_BULK_THREADS = "candlepin.compliance.bulk.threads";
+
+    /**
+     * The maximum number of consumers whose compliance status can be requested at once.
+     */
+    public static final String COMPLIANCE_BULK_MAX_CONSUMERS = "candlepin.compliance.bulk.max_consumers";
+
+    /**
+     * The number of seconds consumer check-ins are held in memory before they are written to
+     * the database in one batch. 0 writes each check-in as it happens.
+     */
+    public static final String CONSUMER_CHECKIN_FLUSH_INTERVAL = "candlepin.consumer.checkin.flush_interval";
+
+    /**
+     * The number of consumers with a pending check-in at which the check-ins are written to
+     * the database, without waiting for the flush interval.
+     */
+    public static final String CONSUMER_CHECKIN_FLUSH_SIZE = "candlepin.consumer.checkin.flush_size";
+
+    /**
+     * The number of RSA key pairs generated ahead of time for new consumer and content access
+     * certificates. 0 generates each key pair when it is needed.
+     */
+    public static final String KEYPAIR_POOL_SIZE = "candlepin.pki.keypair_pool.size";
+
+    /**
+     * The number of background threads keeping the key pair pool filled.
+     */
+    public static final String KEYPAIR_POOL_THREADS = "candlepin.pki.keypair_pool.threads";
+
+    /**
+     * The number of threads shared by all requests for building and signing the entitlement
+     * certificates of a bind in parallel. 0 signs the certificates on the requesting thread.
+     */
+    public static final String CERT_SIGNING_THREADS = "candlepin.pki.signing_threads";
+
+    /**
+     * The number of compressed content set payloads of v3 entitlement certificates kept in
+     * memory for reuse by consumers of the same products. 0 builds every payload.
+     */
+    public static final String CONTENT_PAYLOAD_CACHE_SIZE = "candlepin.pki.content_payload_cache.size";
+
+    /**
+     * The number of signed owner/environment content access payloads kept in memory. 0 reads
+     * the payload from the database on every fetch.
+     */
+    public static final String CONTENT_ACCESS_CACHE_SIZE = "candlepin.content_access.cache.size";
+
+    /**
+     * The number of seconds a cached content access payload is used before it is read from the
+     * database again, which bounds how long a change made on another node can go unnoticed.
+     */
+    public static final String CONTENT_ACCESS_CACHE_MAX_AGE = "candlepin.content_access.cache.max_age";
+
     public static final String INTEGER_FACTS = "candlepin.integer_facts";
     private static final String INTEGER_FACT_LIST = "";
 
@@ -283,6 +446,19 @@ public class ConfigProperties {
     public static final String CRL_NEXT_UPDATE_DELTA = "candlepin.crl.nextupdate.delta_days";
     public static final String CRL_FILE_PATH = "candlepin.crl.file";
 
+    /**
+     * The file to write the delta CRL to. Delta CRLs list the certificates revoked since the
+     * base CRL was last rebuilt; leaving this empty disables them. The delta CRL is refreshed by
+     * DeltaCertificateRevocationListTask, hourly unless its pinsetter schedule is configured.
+     */
+    public static final String CRL_DELTA_FILE_PATH = "candlepin.crl.delta.file";
+
+    /**
+     * The number of hours after which the delta CRL job rebuilds the base CRL itself, should the
+     * CRL job not have rebuilt it in the meantime.
+     */
+    public static final String CRL_BASE_REBUILD_INTERVAL = "candlepin.crl.base.rebuild_hours";
+
     public static final String IDENTITY_CERT_YEAR_ADDENDUM = "candlepin.identityCert.yr.addendum";
     /**
      * Identity certificate expiry threshold in days
@@ -312,6 +488,8 @@ public class ConfigProperties {
             this.put(HORNETQ_ADDRESS_FULL_POLICY, "PAGE");
             this.put(HORNETQ_MAX_QUEUE_SIZE, "10");
             this.put(HORNETQ_MAX_PAGE_SIZE, "1");
+            this.put(HORNETQ_EVENT_BATCH_SIZE, "100");
+            this.put(HORNETQ_EVENT_CODEC, "json");
             this.put(AUDIT_LISTENERS,
                 "org.candlepin.audit.DatabaseListener," +
                 "org.candlepin.audit.LoggingListener," +
@@ -339,6 +517,8 @@ public class ConfigProperties {
             this.put(PRETTY_PRINT, "false");
             this.put(CRL_FILE_PATH, "/var/lib/candlepin/candlepin-crl.crl");
             this.put(CRL_NEXT_UPDATE_DELTA, "1");
+            this.put(CRL_DELTA_FILE_PATH, "/var/lib/candlepin/candlepin-crl-delta.crl");
+            this.put(CRL_BASE_REBUILD_INTERVAL, "24");
 
             this.put(SYNC_WORK_DIR, "/var/cache/candlepin/sync");
             this.put(CONSUMER_FACTS_MATCHER, ".*");
@@ -364,6 +544,11 @@ public class ConfigProperties {
             this.put("org.quartz.threadPool.threadPriority", "5");
             this.put(DEFAULT_TASKS, StringUtils.join(DEFAULT_TASK_LIST, ","));
             this.put(ENTITLER_JOB_THROTTLE, "7");
+            this.put(DIRTY_ENTITLEMENT_SWEEPER_BATCH_SIZE, "50");
+            this.put(DIRTY_ENTITLEMENT_SWEEPER_MAX_PER_RUN, "5000");
+            this.put(DIRTY_ENTITLEMENT_SWEEPER_PAUSE, "250");
+            this.put(HEAL_ENTIRE_ORG_THREADS, "4");
+            this.put(ACTIVE_ENTITLEMENT_JOB_BATCH_SIZE, "100");
             this.put(BATCH_BIND_NUMBER_OF_POOLS_LIMIT, "100");
 
             // AMQP (Qpid) configuration used by events
@@ -381,6 +566,12 @@ public class ConfigProperties {
 
             this.put(AMQP_CONNECTION_RETRY_INTERVAL, "10"); // Every 10 seconds
             this.put(AMQP_CONNECTION_RETRY_ATTEMPTS, "1"); // Try for 10 seconds (1*10s)
+            this.put(AMQP_ASYNC_ENABLED, "false");
+            this.put(AMQP_ASYNC_QUEUE_SIZE, "10000");
+            this.put(AMQP_ASYNC_BATCH_SIZE, "100");
+            this.put(AMQP_ASYNC_OFFER_TIMEOUT, "5000");
+            this.put(AMQP_ASYNC_RETRY_INTERVAL, "5000");
+            this.put(AMQP_ASYNC_SPILL_DIR, "/var/lib/candlepin/amqp");
 
             this.put(IDENTITY_CERT_YEAR_ADDENDUM, "16");
             this.put(IDENTITY_CERT_EXPIRY_THRESHOLD, "90");
@@ -410,6 +601,21 @@ public class ConfigProperties {
              */
             this.put(PRODUCT_CACHE_MAX, "100");
 
+            this.put(RULES_SCOPE_POOL_SIZE, "32");
+            this.put(RULES_REFRESH_INTERVAL, "30");
+            this.put(RULES_COMPILED_CACHE_DIR, "/var/cache/candlepin/rules");
+            this.put(COMPLIANCE_ENGINE, "js");
+            this.put(COMPLIANCE_BULK_THREADS, "4");
+            this.put(COMPLIANCE_BULK_MAX_CONSUMERS, "5000");
+            this.put(CONSUMER_CHECKIN_FLUSH_INTERVAL, "5");
+            this.put(CONSUMER_CHECKIN_FLUSH_SIZE, "1000");
+            this.put(KEYPAIR_POOL_SIZE, "100");
+            this.put(KEYPAIR_POOL_THREADS, "2");
+            this.put(CERT_SIGNING_THREADS, "4");
+            this.put(CONTENT_PAYLOAD_CACHE_SIZE, "500");
+            this.put(CONTENT_ACCESS_CACHE_SIZE, "1000");
+            this.put(CONTENT_ACCESS_CACHE_MAX_AGE, "300");
+
             /**
              * As we do math on some facts and attributes, we need to constrain
              * some values
@@ -106,6 +106,7 @@ public class CandlepinPoolManager implements PoolManager {
     private static Logger log = LoggerFactory.getLogger(CandlepinPoolManager.class);
 
     private static final int MAX_ENTITLE_RETRIES = 3;
+    private static final int POOL_FILTER_CHUNK_SIZE = 100;
 
     private EventSink sink;
     private EventFactory eventFactory;
@@ -128,6 +129,7 @@ public class CandlepinPoolManager implements PoolManager {
     private PinsetterKernel pinsetterKernel;
     private OwnerManager ownerManager;
     private BindChainFactory bindChainFactory;
+    private PoolProductIndex poolProductIndex;
 
     /**
      * @param poolCurator
@@ -159,7 +161,8 @@ public class CandlepinPoolManager implements PoolManager {
         OwnerManager ownerManager,
         PinsetterKernel pinsetterKernel,
         I18n i18n,
-        BindChainFactory bindChainFactory) {
+        BindChainFactory bindChainFactory,
+        PoolProductIndex poolProductIndex) {
 
         this.poolCurator = poolCurator;
         this.sink = sink;
@@ -185,6 +188,7 @@ public class CandlepinPoolManager implements PoolManager {
         this.pinsetterKernel = pinsetterKernel;
         this.i18n = i18n;
         this.bindChainFactory = bindChainFactory;
+        this.poolProductIndex = poolProductIndex;
     }
 
     /*
@@ -640,6 +644,8 @@ public class CandlepinPoolManager implements PoolManager {
             else {
                 log.warn("Pool updated without an event builder: {}", existingPool);
             }
+
+            poolProductIndex.invalidate(existingPool.getOwner());
         }
 
         // Flush our merged changes
@@ -730,6 +736,7 @@ public class CandlepinPoolManager implements PoolManager {
 
         if (created != null) {
             sink.emitPoolCreated(created);
+            poolProductIndex.invalidate(created.getOwner());
         }
 
         return created;
@@ -745,6 +752,7 @@ public class CandlepinPoolManager implements PoolManager {
 
                 if (pool != null) {
                     sink.emitPoolCreated(pool);
+                    poolProductIndex.invalidate(pool.getOwner());
                 }
             }
         }
@@ -1193,6 +1201,7 @@ public class CandlepinPoolManager implements PoolManager {
             allOwnerPools.remove(ent.getPool());
         }
         List<Pool> filteredPools = new LinkedList<Pool>();
+        List<PoolQuantity> candidatePools = new ArrayList<PoolQuantity>();
 
         ComplianceStatus guestCompliance = complianceRules.getStatus(guest, entitleDate, false);
         Set<String> tmpSet = new HashSet<String>();
@@ -1266,7 +1275,18 @@ public class CandlepinPoolManager implements PoolManager {
             }
 
             if (providesProduct) {
-                ValidationResult result = enforcer.preEntitlement(host, pool, 1, CallerType.BEST_POOLS);
+                candidatePools.add(new PoolQuantity(pool, 1));
+            }
+        }
+
+        // Validate all of the candidates with a single rules call
+        if (!candidatePools.isEmpty()) {
+            Map<String, ValidationResult> results = enforcer.preEntitlement(host, candidatePools,
+                CallerType.BEST_POOLS);
+
+            for (PoolQuantity candidate : candidatePools) {
+                Pool pool = candidate.getPool();
+                ValidationResult result = results.get(pool.getId());
 
                 if (result.hasErrors() || result.hasWarnings()) {
                     // Just keep the last one around, if we need it
@@ -1376,12 +1396,8 @@ public class CandlepinPoolManager implements PoolManager {
             activePoolDate = new Date();
         }
 
-        PoolFilterBuilder poolFilter = new PoolFilterBuilder();
-        poolFilter.addIdFilters(fromPools);
-        List<Pool> allOwnerPools = this.listAvailableEntitlementPools(
-            consumer, null, owner, null, null, activePoolDate, false,
-            poolFilter, null, false, false, null).getPageData();
         List<Pool> filteredPools = new LinkedList<Pool>();
+        List<PoolQuantity> candidatePools = new ArrayList<PoolQuantity>();
 
         // We have to check compliance status here so we can replace an empty
         // array of product IDs with the array the consumer actually needs. (i.e. during
@@ -1402,6 +1418,26 @@ public class CandlepinPoolManager implements PoolManager {
             }
         }
 
+        // Only pools which provide one of the products, or which can complete one of the partial
+        // stacks, can be selected; fetch just those rather than every pool of the owner.
+        Set<String> candidatePoolIds = this.poolProductIndex.getPoolIds(owner, Arrays.asList(productIds),
+            compliance.getPartialStacks().keySet());
+
+        if (fromPools != null && !fromPools.isEmpty()) {
+            candidatePoolIds.retainAll(fromPools);
+        }
+
+        List<Pool> allOwnerPools = new LinkedList<Pool>();
+        if (!candidatePoolIds.isEmpty()) {
+            PoolFilterBuilder poolFilter = new PoolFilterBuilder();
+            poolFilter.addIdFilters(candidatePoolIds);
+            allOwnerPools = this.listAvailableEntitlementPools(
+                consumer, null, owner, null, null, activePoolDate, false,
+                poolFilter, null, false, false, null).getPageData();
+        }
+
+        log.debug("Considering {} candidate pools", allOwnerPools.size());
+
         // Bulk fetch our provided product IDs so we're not hitting the DB several times
         // for this lookup.
         Map<String, Set<String>> providedProductIds = this.poolCurator.getProvidedProductIds(allOwnerPools);
@@ -1440,7 +1476,18 @@ public class CandlepinPoolManager implements PoolManager {
             }
 
             if (providesProduct) {
-                ValidationResult result = enforcer.preEntitlement(consumer, pool, 1, CallerType.BEST_POOLS);
+                candidatePools.add(new PoolQuantity(pool, 1));
+            }
+        }
+
+        // Validate all of the candidates with a single rules call
+        if (!candidatePools.isEmpty()) {
+            Map<String, ValidationResult> results = enforcer.preEntitlement(consumer, candidatePools,
+                CallerType.BEST_POOLS);
+
+            for (PoolQuantity candidate : candidatePools) {
+                Pool pool = candidate.getPool();
+                ValidationResult result = results.get(pool.getId());
 
                 if (result.hasErrors() || result.hasWarnings()) {
                     failedResults.put(pool.getId(), result);
@@ -1989,6 +2036,7 @@ public class CandlepinPoolManager implements PoolManager {
 
         poolCurator.delete(pool);
         sink.queueEvent(event);
+        poolProductIndex.invalidate(pool.getOwner());
     }
 
     @Override
@@ -2246,6 +2294,7 @@ public class CandlepinPoolManager implements PoolManager {
             log.info("Firing pool deletion events for {} pools...", pools.size());
             for (Pool pool : pools) {
                 this.sink.queueEvent(this.eventFactory.poolDeleted(pool));
+                this.poolProductIndex.invalidate(pool.getOwner());
             }
         }
         else {
@@ -2390,6 +2439,15 @@ public class CandlepinPoolManager implements PoolManager {
             filters.addAttributeFilter(Pool.Attributes.DEVELOPMENT_POOL, "!true");
         }
 
+        // Rather than rules-filtering every pool to cut out one page, filter only as far as needed
+        if (postFilter && pageRequest != null && pageRequest.isPaging()) {
+            List<String> poolIds = this.poolCurator.listAvailableEntitlementPoolIds(consumer, owner,
+                productId != null ? Arrays.asList(productId) : null, subscriptionId, activeOn, filters,
+                pageRequest, addFuture, onlyFuture, after);
+
+            return this.filterPoolPage(consumer, key, poolIds, includeWarnings, pageRequest);
+        }
+
         Page<List<Pool>> page = this.poolCurator.listAvailableEntitlementPools(consumer,
             owner, productId, subscriptionId, activeOn, filters, pageRequest, postFilter,
             addFuture, onlyFuture, after);
@@ -2426,6 +2484,97 @@ public class CandlepinPoolManager implements PoolManager {
         return page;
     }
 
+    /**
+     * Loads and rules-filters the given pools, in order and a chunk at a time, until the requested
+     * page is filled and one more pool is known to pass. The pools past that point are never
+     * loaded; how many of them would pass is estimated from the share of the loaded pools which
+     * did. The estimate is only used for the page count, is never below the pools known to pass
+     * plus another page, and becomes exact on the last page.
+     *
+     * @param consumer
+     *  the consumer to filter the pools for, or null
+     *
+     * @param key
+     *  the activation key to filter the pools for, or null
+     *
+     * @param poolIds
+     *  the IDs of the pools to filter, in the order of the page request
+     *
+     * @param includeWarnings
+     *  whether to include pools which pass the rules with warnings
+     *
+     * @param pageRequest
+     *  the page to fill
+     *
+     * @return
+     *  the requested page of pools
+     */
+    private Page<List<Pool>> filterPoolPage(Consumer consumer, ActivationKey key, List<String> poolIds,
+        boolean includeWarnings, PageRequest pageRequest) {
+
+        int skip = (pageRequest.getPage() - 1) * pageRequest.getPerPage();
+        int end = skip + pageRequest.getPerPage();
+        int chunkSize = Math.max(pageRequest.getPerPage(), POOL_FILTER_CHUNK_SIZE);
+
+        List<Pool> pageData = new ArrayList<Pool>(pageRequest.getPerPage());
+        int examined = 0;
+        int passed = 0;
+
+        while (examined < poolIds.size() && passed <= end) {
+            List<String> chunkIds = poolIds.subList(examined, Math.min(examined + chunkSize, poolIds.size()));
+            examined += chunkIds.size();
+
+            // Restore the sort order, which loading by ID does not keep
+            Map<String, Pool> loaded = new HashMap<String, Pool>();
+            for (Pool pool : this.poolCurator.listAllByIds(chunkIds)) {
+                loaded.put(pool.getId(), pool);
+            }
+
+            List<Pool> chunk = new ArrayList<Pool>(loaded.size());
+            for (String poolId : chunkIds) {
+                if (loaded.containsKey(poolId)) {
+                    chunk.add(loaded.get(poolId));
+                }
+            }
+
+            if (consumer != null) {
+                chunk = enforcer.filterPools(consumer, chunk, includeWarnings);
+            }
+
+            if (key != null) {
+                chunk = this.filterPoolsForActKey(key, chunk, includeWarnings);
+            }
+
+            for (Pool pool : chunk) {
+                if (passed >= skip && passed < end) {
+                    pageData.add(pool);
+                }
+
+                passed++;
+            }
+        }
+
+        // The count is exact once every pool has been examined. Otherwise it is estimated from the
+        // share of examined pools which passed, but never put below the pools known to pass plus
+        // another page, so clients are always offered the next page while pools remain
+        int maxRecords = passed;
+        if (examined < poolIds.size()) {
+            int estimate = passed +
+                (int) Math.ceil((double) (poolIds.size() - examined) * passed / examined);
+            maxRecords = Math.max(estimate, passed + pageRequest.getPerPage());
+        }
+
+        log.debug("Rules-filtered {} of {} pools for page {}; {} passed", examined, poolIds.size(),
+            pageRequest.getPage(), passed);
+
+        Page<List<Pool>> page = new Page<List<Pool>>();
+        page.setPageData(pageData);
+        page.setMaxRecords(maxRecords);
+        page.setPageRequest(pageRequest);
+
+        return page;
+    }
+
     /**
      * Creates a Subscription object using information derived from the specified pool. Used to
      * support deprecated API calls that still require a subscription.
@@ -0,0 +1,291 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerCurator;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.persist.UnitOfWork;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+
+/**
+ * ConsumerCheckInBuffer
+ *
+ * Collects consumer check-ins in memory and writes them to the database in batches, rather
+ * than updating the consumer row on every request. Repeated check-ins of a consumer between
+ * two flushes are coalesced into one, keeping the latest check-in time.
+ *
+ * The buffer is flushed on a configurable interval, as soon as it holds a configurable number
+ * of consumers, and on shutdown. With an interval of 0, check-ins are written right away.
+ */
+@Singleton
+public class ConsumerCheckInBuffer implements ConsumerCheckInBufferMBean {
+    private static Logger log = LoggerFactory.getLogger(ConsumerCheckInBuffer.class);
+
+    private final ConsumerCurator consumerCurator;
+    private final UnitOfWork unitOfWork;
+    private final int flushInterval;
+    private final int flushSize;
+
+    private final ConcurrentMap<String, Date> pending;
+    private final AtomicBoolean flushQueued;
+    private volatile ScheduledExecutorService executor;
+
+    // Statistics are only written by flush, and read without blocking on a flush in progress
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong flushedCheckIns = new AtomicLong();
+    private final AtomicLong lastFlushTime = new AtomicLong();
+    private final AtomicLong maxFlushTime = new AtomicLong();
+    private final AtomicLong totalFlushTime = new AtomicLong();
+
+    @Inject
+    public ConsumerCheckInBuffer(ConsumerCurator consumerCurator, UnitOfWork unitOfWork,
+        Configuration config) {
+
+        this.consumerCurator = consumerCurator;
+        this.unitOfWork = unitOfWork;
+        this.flushInterval = config.getInt(ConfigProperties.CONSUMER_CHECKIN_FLUSH_INTERVAL);
+        this.flushSize = config.getInt(ConfigProperties.CONSUMER_CHECKIN_FLUSH_SIZE);
+
+        this.pending = new ConcurrentHashMap<String, Date>();
+        this.flushQueued = new AtomicBoolean();
+    }
+
+    /**
+     * Starts flushing the buffer periodically. Until then, check-ins are written right away.
+     */
+    public synchronized void start() {
+        if (this.flushInterval <= 0 || this.executor != null) {
+            return;
+        }
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("consumer-checkin-flush")
+            .setDaemon(true)
+            .build());
+
+        this.executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                flushInUnitOfWork();
+            }
+        }, this.flushInterval, this.flushInterval, TimeUnit.SECONDS);
+
+        log.info("Buffering consumer check-ins for up to {}s or {} consumers", this.flushInterval,
+            this.flushSize);
+    }
+
+    /**
+     * Stops the periodic flush, and writes any check-ins still held by the buffer.
+     */
+    public void shutdown() {
+        ScheduledExecutorService current;
+
+        synchronized (this) {
+            current = this.executor;
+            this.executor = null;
+        }
+
+        if (current != null) {
+            current.shutdown();
+
+            try {
+                current.awaitTermination(30, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            this.flushInUnitOfWork();
+        }
+    }
+
+    /**
+     * Records that the given consumer has checked in now.
+     *
+     * @param consumer
+     *  the consumer which checked in
+     */
+    public void checkIn(Consumer consumer) {
+        this.checkIn(consumer, new Date());
+    }
+
+    /**
+     * Records that the given consumer checked in at the given time. If the buffer is not in
+     * use, the check-in is written right away.
+     *
+     * @param consumer
+     *  the consumer which checked in
+     *
+     * @param checkInDate
+     *  the time of the check-in
+     */
+    public void checkIn(Consumer consumer, Date checkInDate) {
+        ScheduledExecutorService current = this.executor;
+
+        if (current == null) {
+            this.consumerCurator.updateLastCheckin(consumer, checkInDate);
+            return;
+        }
+
+        // Keep the latest check-in, should a request with an earlier date come in late
+        Date previous = this.pending.putIfAbsent(consumer.getId(), checkInDate);
+        while (previous != null && previous.before(checkInDate) &&
+            !this.pending.replace(consumer.getId(), previous, checkInDate)) {
+
+            previous = this.pending.putIfAbsent(consumer.getId(), checkInDate);
+        }
+
+        if (this.pending.size() >= this.flushSize && this.flushQueued.compareAndSet(false, true)) {
+            try {
+                current.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        flushQueued.set(false);
+                        flushInUnitOfWork();
+                    }
+                });
+            }
+            catch (RuntimeException e) {
+                // Shutting down; the remaining check-ins are flushed by shutdown
+                this.flushQueued.set(false);
+            }
+        }
+    }
+
+    /**
+     * Writes all buffered check-ins to the database.
+     *
+     * @return
+     *  the number of consumers whose check-in was written
+     */
+    public synchronized int flush() {
+        if (this.pending.isEmpty()) {
+            return 0;
+        }
+
+        long start = System.currentTimeMillis();
+        Map<String, Date> checkIns = new HashMap<String, Date>();
+
+        for (String consumerId : this.pending.keySet()) {
+            Date checkInDate = this.pending.remove(consumerId);
+
+            if (checkInDate != null) {
+                checkIns.put(consumerId, checkInDate);
+            }
+        }
+
+        try {
+            this.consumerCurator.updateLastCheckins(checkIns);
+        }
+        catch (RuntimeException e) {
+            // Put the check-ins back, unless the consumers have checked in again since
+            for (Map.Entry<String, Date> entry : checkIns.entrySet()) {
+                this.pending.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+
+            throw e;
+        }
+
+        long elapsed = System.currentTimeMillis() - start;
+
+        this.flushCount.incrementAndGet();
+        this.flushedCheckIns.addAndGet(checkIns.size());
+        this.lastFlushTime.set(elapsed);
+        this.totalFlushTime.addAndGet(elapsed);
+
+        if (elapsed > this.maxFlushTime.get()) {
+            this.maxFlushTime.set(elapsed);
+        }
+
+        log.debug("Wrote check-ins of {} consumers in {}ms", checkIns.size(), elapsed);
+        return checkIns.size();
+    }
+
+    private void flushInUnitOfWork() {
+        boolean startedUow = false;
+
+        try {
+            this.unitOfWork.begin();
+            startedUow = true;
+        }
+        catch (IllegalStateException e) {
+            log.debug("Already have an open unit of work");
+        }
+
+        try {
+            this.flush();
+        }
+        catch (RuntimeException e) {
+            log.error("Unable to write consumer check-ins", e);
+        }
+        finally {
+            if (startedUow) {
+                this.unitOfWork.end();
+            }
+        }
+    }
+
+    @Override
+    public int getDepth() {
+        return this.pending.size();
+    }
+
+    @Override
+    public long getFlushCount() {
+        return this.flushCount.get();
+    }
+
+    @Override
+    public long getFlushedCheckIns() {
+        return this.flushedCheckIns.get();
+    }
+
+    @Override
+    public long getLastFlushTime() {
+        return this.lastFlushTime.get();
+    }
+
+    @Override
+    public long getMaxFlushTime() {
+        return this.maxFlushTime.get();
+    }
+
+    @Override
+    public long getAverageFlushTime() {
+        long count = this.flushCount.get();
+        return count > 0 ? this.totalFlushTime.get() / count : 0;
+    }
+}
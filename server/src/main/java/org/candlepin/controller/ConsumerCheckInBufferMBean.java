@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+
+
+/**
+ * ConsumerCheckInBufferMBean
+ *
+ * The statistics of the consumer check-in buffer, as published over JMX.
+ */
+public interface ConsumerCheckInBufferMBean {
+
+    /**
+     * @return the number of consumers whose check-in has not been written yet
+     */
+    int getDepth();
+
+    /**
+     * @return the number of times the buffer has been written to the database
+     */
+    long getFlushCount();
+
+    /**
+     * @return the number of check-ins written to the database
+     */
+    long getFlushedCheckIns();
+
+    /**
+     * @return the time taken by the last write, in milliseconds
+     */
+    long getLastFlushTime();
+
+    /**
+     * @return the longest time taken by a write, in milliseconds
+     */
+    long getMaxFlushTime();
+
+    /**
+     * @return the average time taken by a write, in milliseconds
+     */
+    long getAverageFlushTime();
+}
@@ -32,6 +32,7 @@ import org.candlepin.service.EntitlementCertServiceAdapter;
 import org.candlepin.util.CertificateSizeException;
 import org.candlepin.version.CertVersionConflictException;
 
+import com.google.common.collect.Iterables;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 
@@ -42,7 +43,6 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -62,6 +62,9 @@ import java.util.Set;
 public class EntitlementCertificateGenerator {
     private static Logger log = LoggerFactory.getLogger(EntitlementCertificateGenerator.class);
 
+    /** The number of entitlements loaded and regenerated at a time by bulk regeneration */
+    private static final int REGENERATION_BATCH_SIZE = 100;
+
     private EntitlementCertificateCurator entitlementCertificateCurator;
     private EntitlementCertServiceAdapter entCertServiceAdapter;
     private EntitlementCurator entitlementCurator;
@@ -382,30 +385,37 @@ public class EntitlementCertificateGenerator {
     @Transactional
     public void regenerateCertificatesOf(Collection<Owner> owners, Collection<Product> products,
         boolean lazy) {
-        List<Pool> pools = new LinkedList<Pool>();
 
         Set<String> productIds = new HashSet<String>();
-        Date now = new Date();
 
         for (Product product : products) {
             productIds.add(product.getId());
         }
 
-        // TODO: This is a very expensive operation. Update pool curator with something to let us
-        // do this without hitting the DB several times over.
-        for (Owner owner : owners) {
-            if (lazy) {
+        if (lazy) {
+            for (Owner owner : owners) {
                 poolCurator.markCertificatesDirtyForPoolsWithProducts(owner, productIds);
             }
-            else {
-                pools.addAll(
-                    this.poolCurator.listAvailableEntitlementPools(null, owner, productIds, now)
-                );
-            }
+
+            return;
         }
 
-        for (Pool pool : pools) {
-            this.regenerateCertificatesOf(pool.getEntitlements(), lazy);
+        // Resolve the affected entitlements with a single query rather than walking the pool graphs,
+        // and regenerate them in batches, evicting each batch once it has been written out so a
+        // global product update does not keep every entitlement in the session.
+        Set<String> entitlementIds = this.poolCurator.getEntitlementIdsForPoolsWithProducts(
+            owners, productIds, new Date());
+
+        log.info("Regenerating {} entitlement certificates for {} products", entitlementIds.size(),
+            productIds.size());
+
+        for (List<String> batch : Iterables.partition(entitlementIds, REGENERATION_BATCH_SIZE)) {
+            List<Entitlement> entitlements = this.entitlementCurator.listAllByIds(batch).list();
+
+            this.regenerateCertificatesOf(entitlements, false);
+
+            this.entitlementCurator.flush();
+            this.entitlementCurator.evictAll(entitlements);
         }
     }
 
@@ -35,6 +35,7 @@ import org.candlepin.model.activationkeys.ActivationKey;
 import org.candlepin.model.activationkeys.ActivationKeyCurator;
 import org.candlepin.service.ContentAccessCertServiceAdapter;
 import org.candlepin.service.OwnerServiceAdapter;
+import org.candlepin.util.ContentAccessPayloadCache;
 
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
@@ -77,6 +78,7 @@ public class OwnerManager {
     private OwnerEnvContentAccessCurator ownerEnvContentAccessCurator;
     private UeberCertificateCurator uberCertificateCurator;
     private OwnerServiceAdapter ownerServiceAdapter;
+    private ContentAccessPayloadCache contentAccessPayloadCache;
 
     @Inject
     public OwnerManager(ConsumerCurator consumerCurator,
@@ -88,7 +90,8 @@ public class OwnerManager {
         ContentAccessCertServiceAdapter contentAccessCertService,
         ContentAccessCertificateCurator contentAccessCertCurator,
         OwnerEnvContentAccessCurator ownerEnvContentAccessCurator,
-        UeberCertificateCurator uberCertificateCurator, OwnerServiceAdapter ownerServiceAdapter) {
+        UeberCertificateCurator uberCertificateCurator, OwnerServiceAdapter ownerServiceAdapter,
+        ContentAccessPayloadCache contentAccessPayloadCache) {
 
         this.consumerCurator = consumerCurator;
         this.activationKeyCurator = activationKeyCurator;
@@ -106,6 +109,7 @@ public class OwnerManager {
         this.ownerEnvContentAccessCurator = ownerEnvContentAccessCurator;
         this.uberCertificateCurator = uberCertificateCurator;
         this.ownerServiceAdapter = ownerServiceAdapter;
+        this.contentAccessPayloadCache = contentAccessPayloadCache;
     }
     @Transactional
     public void cleanupAndDelete(Owner owner, boolean revokeCerts) {
@@ -277,8 +281,18 @@ public class OwnerManager {
         }
 
         // removed cached versions of content access cert data
-        ownerEnvContentAccessCurator.removeAllForOwner(owner.getId());
+        final String ownerId = owner.getId();
+        ownerEnvContentAccessCurator.removeAllForOwner(ownerId);
+        contentAccessPayloadCache.invalidateOwner(ownerId);
         ownerCurator.flush();
+
+        // Payloads read by other requests before this commits are stale; drop them once it has
+        ownerEnvContentAccessCurator.afterTransaction(new Runnable() {
+            @Override
+            public void run() {
+                contentAccessPayloadCache.invalidateOwner(ownerId);
+            }
+        });
     }
 
     public void updateRefreshDate(Owner owner) {
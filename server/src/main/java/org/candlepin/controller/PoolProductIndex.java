@@ -0,0 +1,153 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+import org.candlepin.model.Owner;
+import org.candlepin.model.PoolCurator;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+
+
+/**
+ * PoolProductIndex
+ *
+ * An in-memory index, per owner, from product IDs and stacking IDs to the IDs of the pools
+ * which provide them. Autobind uses it to load and validate only the pools which could cover
+ * the products a consumer needs, rather than every pool of the owner.
+ *
+ * The index of an owner is dropped by the pool manager whenever one of the owner's pools is
+ * created, updated or deleted. Since pools can also be created or deleted by other nodes, or by
+ * code which does not go through the pool manager, each index also records the pool version of
+ * the owner it was built from, and is rebuilt when that version no longer matches. The version
+ * ignores pool updates, so binds, which update the consumed counts of pools, keep the index.
+ */
+@Singleton
+public class PoolProductIndex {
+    private static Logger log = LoggerFactory.getLogger(PoolProductIndex.class);
+
+    private final PoolCurator poolCurator;
+    private final ConcurrentMap<String, OwnerIndex> indexes;
+
+    @Inject
+    public PoolProductIndex(PoolCurator poolCurator) {
+        this.poolCurator = poolCurator;
+        this.indexes = new ConcurrentHashMap<String, OwnerIndex>();
+    }
+
+    /**
+     * Fetches the IDs of the pools of the given owner which provide any of the given products,
+     * or which carry any of the given stacking IDs.
+     *
+     * @param owner
+     *  the owner whose pools to look up
+     *
+     * @param productIds
+     *  the IDs of the products the pools should provide
+     *
+     * @param stackingIds
+     *  the stacking IDs the pools should carry; may be null
+     *
+     * @return
+     *  the IDs of the matching pools
+     */
+    public Set<String> getPoolIds(Owner owner, Collection<String> productIds,
+        Collection<String> stackingIds) {
+
+        OwnerIndex index = this.getIndex(owner);
+        Set<String> poolIds = new HashSet<String>();
+
+        if (productIds != null) {
+            for (String productId : productIds) {
+                poolIds.addAll(index.get(index.byProductId, productId));
+            }
+        }
+
+        if (stackingIds != null) {
+            for (String stackingId : stackingIds) {
+                poolIds.addAll(index.get(index.byStackingId, stackingId));
+            }
+        }
+
+        return poolIds;
+    }
+
+    /**
+     * Drops the index of the given owner, so that it is rebuilt on its next use.
+     *
+     * @param owner
+     *  the owner whose pools have changed
+     */
+    public void invalidate(Owner owner) {
+        if (owner != null && owner.getId() != null) {
+            this.indexes.remove(owner.getId());
+        }
+    }
+
+    private OwnerIndex getIndex(Owner owner) {
+        String version = this.poolCurator.getPoolsVersion(owner);
+        OwnerIndex index = this.indexes.get(owner.getId());
+
+        if (index == null || !index.version.equals(version)) {
+            long start = System.currentTimeMillis();
+
+            // The version is read before the pools, so a change made while the index is built
+            // will at worst cause it to be built again on its next use.
+            index = new OwnerIndex(version, this.poolCurator.getPoolIdsByProvidedProductId(owner),
+                this.poolCurator.getPoolIdsByStackingId(owner));
+
+            this.indexes.put(owner.getId(), index);
+
+            log.debug("Indexed pools of owner {} by {} products and {} stacks in {}ms", owner.getKey(),
+                index.byProductId.size(), index.byStackingId.size(), System.currentTimeMillis() - start);
+        }
+
+        return index;
+    }
+
+    /**
+     * The pool IDs of a single owner, along with the pool version they were read at.
+     */
+    private static class OwnerIndex {
+        private final String version;
+        private final Map<String, Set<String>> byProductId;
+        private final Map<String, Set<String>> byStackingId;
+
+        OwnerIndex(String version, Map<String, Set<String>> byProductId,
+            Map<String, Set<String>> byStackingId) {
+
+            this.version = version;
+            this.byProductId = byProductId;
+            this.byStackingId = byStackingId;
+        }
+
+        Set<String> get(Map<String, Set<String>> map, String key) {
+            Set<String> poolIds = map.get(key);
+            return poolIds != null ? poolIds : Collections.<String>emptySet();
+        }
+    }
+}
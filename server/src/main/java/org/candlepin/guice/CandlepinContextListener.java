@@ -19,6 +19,7 @@ import static org.candlepin.config.ConfigProperties.HORNETQ_ENABLED;
 import static org.candlepin.config.ConfigProperties.PASSPHRASE_SECRET_FILE;
 
 import org.candlepin.audit.AMQPBusPublisher;
+import org.candlepin.audit.AMQPPublishQueue;
 import org.candlepin.audit.HornetqContextListener;
 import org.candlepin.audit.QpidQmf;
 import org.candlepin.audit.QpidQmf.QpidStatus;
@@ -29,18 +30,29 @@ import org.candlepin.common.config.MapConfiguration;
 import org.candlepin.common.logging.LoggingConfigurator;
 import org.candlepin.config.ConfigProperties;
 import org.candlepin.config.DatabaseConfigFactory;
+import org.candlepin.controller.ConsumerCheckInBuffer;
 import org.candlepin.controller.SuspendModeTransitioner;
 import org.candlepin.logging.LoggerContextListener;
 import org.candlepin.model.Status;
 import org.candlepin.pinsetter.core.PinsetterContextListener;
+import org.candlepin.pinsetter.tasks.HealEntireOrgExecutorProvider;
+import org.candlepin.pinsetter.tasks.HypervisorUpdateJobStatistics;
+import org.candlepin.pki.CertificateSigningExecutorProvider;
+import org.candlepin.pki.KeyPairPool;
+import org.candlepin.policy.js.JsRunnerProvider;
+import org.candlepin.policy.js.compliance.ComplianceExecutorProvider;
 import org.candlepin.resteasy.ResourceLocatorMap;
 import org.candlepin.swagger.CandlepinSwaggerModelConverter;
+import org.candlepin.util.ContentAccessPayloadCache;
+import org.candlepin.util.ContentPayloadCache;
+import org.candlepin.util.CrlScanExecutorProvider;
 import org.candlepin.util.Util;
 
 import com.google.inject.AbstractModule;
 import com.google.inject.Injector;
 import com.google.inject.Module;
 import com.google.inject.Stage;
+import com.google.inject.persist.UnitOfWork;
 import com.google.inject.util.Modules;
 
 import org.apache.commons.lang.StringUtils;
@@ -70,6 +82,7 @@ import java.util.Locale;
 import java.util.Set;
 
 import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.persistence.EntityManagerFactory;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
@@ -92,6 +105,14 @@ public class CandlepinContextListener extends GuiceResteasyBootstrapServletConte
     private HornetqContextListener hornetqListener;
     private PinsetterContextListener pinsetterListener;
     private LoggerContextListener loggerListener;
+    private ConsumerCheckInBuffer checkInBuffer;
+    private KeyPairPool keyPairPool;
+    private JsRunnerProvider jsRunnerProvider;
+    private ComplianceExecutorProvider complianceExecutorProvider;
+    private CrlScanExecutorProvider crlScanExecutorProvider;
+    private CertificateSigningExecutorProvider signingExecutorProvider;
+    private HealEntireOrgExecutorProvider healExecutorProvider;
+    private List<ObjectName> mBeanNames = new LinkedList<ObjectName>();
 
     // a bit of application-initialization code. Not sure if this is the
     // best spot for it.
@@ -165,6 +186,12 @@ public class CandlepinContextListener extends GuiceResteasyBootstrapServletConte
             mw.startPeriodicExecutions();
         }
 
+        if (config.getBoolean(ConfigProperties.AMQP_INTEGRATION_ENABLED)) {
+            AMQPPublishQueue publishQueue = injector.getInstance(AMQPPublishQueue.class);
+            publishQueue.start();
+            registerMBean(publishQueue, "AMQPPublishQueue");
+        }
+
         if (config.getBoolean(HORNETQ_ENABLED)) {
             try {
                 hornetqListener = injector.getInstance(HornetqContextListener.class);
@@ -181,6 +208,27 @@ public class CandlepinContextListener extends GuiceResteasyBootstrapServletConte
                 true, true, true, true);
         }
 
+        jsRunnerProvider = injector.getInstance(JsRunnerProvider.class);
+        jsRunnerProvider.startRefresh(injector.getInstance(UnitOfWork.class),
+            config.getLong(ConfigProperties.RULES_REFRESH_INTERVAL));
+        registerMBean(jsRunnerProvider.getScopePool(), "RulesScopePool");
+
+        complianceExecutorProvider = injector.getInstance(ComplianceExecutorProvider.class);
+        crlScanExecutorProvider = injector.getInstance(CrlScanExecutorProvider.class);
+        signingExecutorProvider = injector.getInstance(CertificateSigningExecutorProvider.class);
+        healExecutorProvider = injector.getInstance(HealEntireOrgExecutorProvider.class);
+
+        checkInBuffer = injector.getInstance(ConsumerCheckInBuffer.class);
+        checkInBuffer.start();
+        registerMBean(checkInBuffer, "ConsumerCheckInBuffer");
+
+        keyPairPool = injector.getInstance(KeyPairPool.class);
+        keyPairPool.start();
+        registerMBean(keyPairPool, "KeyPairPool");
+        registerMBean(injector.getInstance(ContentPayloadCache.class), "ContentPayloadCache");
+        registerMBean(injector.getInstance(ContentAccessPayloadCache.class), "ContentAccessPayloadCache");
+        registerMBean(new HypervisorUpdateJobStatistics(), "HypervisorUpdateJob");
+
         pinsetterListener = injector.getInstance(PinsetterContextListener.class);
         pinsetterListener.contextInitialized();
 
@@ -197,6 +245,37 @@ public class CandlepinContextListener extends GuiceResteasyBootstrapServletConte
 
     @Override
     public void contextDestroyed(ServletContextEvent event) {
+        // Write any buffered check-ins while the persistence layer is still around
+        if (checkInBuffer != null) {
+            checkInBuffer.shutdown();
+        }
+
+        if (keyPairPool != null) {
+            keyPairPool.shutdown();
+        }
+
+        if (jsRunnerProvider != null) {
+            jsRunnerProvider.shutdown();
+        }
+
+        if (complianceExecutorProvider != null) {
+            complianceExecutorProvider.shutdown();
+        }
+
+        if (crlScanExecutorProvider != null) {
+            crlScanExecutorProvider.shutdown();
+        }
+
+        if (healExecutorProvider != null) {
+            healExecutorProvider.shutdown();
+        }
+
+        if (signingExecutorProvider != null) {
+            signingExecutorProvider.shutdown();
+        }
+
+        unregisterMBeans();
+
         super.contextDestroyed(event);
         if (config.getBoolean(HORNETQ_ENABLED)) {
             hornetqListener.contextDestroyed();
@@ -211,6 +290,39 @@ public class CandlepinContextListener extends GuiceResteasyBootstrapServletConte
         }
     }
 
+    private void registerMBean(Object mBean, String type) {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("org.candlepin:type=" + type);
+            if (mBeanServer.isRegistered(name)) {
+                // Left behind by a deployment that was not shut down cleanly
+                mBeanServer.unregisterMBean(name);
+            }
+            mBeanServer.registerMBean(mBean, name);
+            mBeanNames.add(name);
+        }
+        catch (Exception e) {
+            log.warn("Unable to publish {} statistics over JMX", type, e);
+        }
+    }
+
+    /*
+     * The platform MBean server outlives the webapp, so anything we registered would otherwise
+     * pin this deployment's classloader and block the next deployment from registering.
+     */
+    private void unregisterMBeans() {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : mBeanNames) {
+            try {
+                mBeanServer.unregisterMBean(name);
+            }
+            catch (Exception e) {
+                log.warn("Unable to unregister MBean {}", name, e);
+            }
+        }
+        mBeanNames.clear();
+    }
+
     protected void setCapabilities(Configuration config) {
         Set<String> blacklistedSet = config.getSet(ConfigProperties.HIDDEN_CAPABILITIES,
             Collections.<String>emptySet());
@@ -15,6 +15,7 @@
 package org.candlepin.guice;
 
 import org.candlepin.audit.AMQPBusPublisher;
+import org.candlepin.audit.AMQPPublishQueue;
 import org.candlepin.audit.EventSink;
 import org.candlepin.audit.EventSinkImpl;
 import org.candlepin.audit.NoopEventSinkImpl;
@@ -68,12 +69,15 @@ import org.candlepin.pinsetter.core.PinsetterJobListener;
 import org.candlepin.pinsetter.core.PinsetterKernel;
 import org.candlepin.pinsetter.core.PinsetterTriggerListener;
 import org.candlepin.pinsetter.tasks.CertificateRevocationListTask;
+import org.candlepin.pinsetter.tasks.DeltaCertificateRevocationListTask;
 import org.candlepin.pinsetter.tasks.EntitlerJob;
+import org.candlepin.pinsetter.tasks.HealEntireOrgExecutorProvider;
 import org.candlepin.pinsetter.tasks.HypervisorUpdateJob;
 import org.candlepin.pinsetter.tasks.JobCleaner;
 import org.candlepin.pinsetter.tasks.RefreshPoolsJob;
 import org.candlepin.pinsetter.tasks.SweepBarJob;
 import org.candlepin.pinsetter.tasks.UnpauseJob;
+import org.candlepin.pki.CertificateSigningExecutorProvider;
 import org.candlepin.pki.PKIReader;
 import org.candlepin.pki.PKIUtility;
 import org.candlepin.pki.impl.BouncyCastlePKIReader;
@@ -82,6 +86,10 @@ import org.candlepin.policy.criteria.CriteriaRules;
 import org.candlepin.policy.js.JsRunner;
 import org.candlepin.policy.js.JsRunnerProvider;
 import org.candlepin.policy.js.RulesObjectMapper;
+import org.candlepin.policy.js.compliance.ComplianceEngine;
+import org.candlepin.policy.js.compliance.ComplianceExecutorProvider;
+import org.candlepin.policy.js.compliance.JavaComplianceEngine;
+import org.candlepin.policy.js.compliance.JsComplianceEngine;
 import org.candlepin.policy.js.entitlement.Enforcer;
 import org.candlepin.policy.js.entitlement.EntitlementRules;
 import org.candlepin.policy.js.entitlement.EntitlementRulesTranslator;
@@ -142,6 +150,7 @@ import org.candlepin.sync.Exporter;
 import org.candlepin.sync.MetaExporter;
 import org.candlepin.sync.RulesExporter;
 import org.candlepin.util.AttributeValidator;
+import org.candlepin.util.CrlScanExecutorProvider;
 import org.candlepin.util.FactValidator;
 import org.candlepin.util.DateSource;
 import org.candlepin.util.DateSourceImpl;
@@ -166,6 +175,7 @@ import org.quartz.spi.JobFactory;
 import org.xnap.commons.i18n.I18n;
 
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 
 import javax.cache.CacheManager;
@@ -205,6 +215,7 @@ public class CandlepinModule extends AbstractModule {
 
         bind(PKIUtility.class).to(BouncyCastlePKIUtility.class).asEagerSingleton();
         bind(PKIReader.class).to(BouncyCastlePKIReader.class).asEagerSingleton();
+        configureExecutors();
         bind(X509ExtensionUtil.class);
         bind(ResolverUtil.class);
         bind(GuestMigration.class);
@@ -307,6 +318,7 @@ public class CandlepinModule extends AbstractModule {
         configureInterceptors();
         configureAuth();
         configureEventSink();
+        configureComplianceEngine();
         configurePinsetter();
         configureExporter();
         configureSwagger();
@@ -333,6 +345,15 @@ public class CandlepinModule extends AbstractModule {
         bind(JPAInitializer.class).asEagerSingleton();
     }
 
+    private void configureExecutors() {
+        bind(ExecutorService.class).annotatedWith(Names.named("CertificateSigningExecutor"))
+            .toProvider(CertificateSigningExecutorProvider.class).in(Singleton.class);
+        bind(ExecutorService.class).annotatedWith(Names.named("CrlScanExecutor"))
+            .toProvider(CrlScanExecutorProvider.class).in(Singleton.class);
+        bind(ExecutorService.class).annotatedWith(Names.named("HealEntireOrgExecutor"))
+            .toProvider(HealEntireOrgExecutorProvider.class).in(Singleton.class);
+    }
+
     private void configureBindFactories() {
         install(new FactoryModuleBuilder().build(BindChainFactory.class));
         install(new FactoryModuleBuilder().build(BindContextFactory.class));
@@ -368,6 +389,7 @@ public class CandlepinModule extends AbstractModule {
         bind(TriggerListener.class).to(PinsetterTriggerListener.class);
         bind(PinsetterKernel.class);
         bind(CertificateRevocationListTask.class);
+        bind(DeltaCertificateRevocationListTask.class);
         bind(JobCleaner.class);
         bind(UnpauseJob.class);
         bind(SweepBarJob.class);
@@ -409,11 +431,24 @@ public class CandlepinModule extends AbstractModule {
         // for lazy loading:
 
         bind(AMQPBusPublisher.class).in(Singleton.class);
+        bind(AMQPPublishQueue.class).in(Singleton.class);
         //TODO make sure these two classes are always singletons
         bind(QpidConnection.class).in(Singleton.class);
         bind(QpidConfigBuilder.class).in(Singleton.class);
     }
 
+    private void configureComplianceEngine() {
+        if ("java".equalsIgnoreCase(config.getString(ConfigProperties.COMPLIANCE_ENGINE))) {
+            bind(ComplianceEngine.class).to(JavaComplianceEngine.class);
+        }
+        else {
+            bind(ComplianceEngine.class).to(JsComplianceEngine.class);
+        }
+
+        bind(ExecutorService.class).annotatedWith(Names.named("ComplianceExecutor"))
+            .toProvider(ComplianceExecutorProvider.class).in(Singleton.class);
+    }
+
     private void configureEventSink() {
         if (config.getBoolean(ConfigProperties.HORNETQ_ENABLED)) {
             bind(EventSink.class).to(EventSinkImpl.class);
@@ -17,13 +17,19 @@ package org.candlepin.jackson;
 import com.fasterxml.jackson.databind.ser.impl.BeanAsArraySerializer;
 import com.fasterxml.jackson.databind.ser.impl.ObjectIdWriter;
 import com.fasterxml.jackson.databind.ser.std.BeanSerializerBase;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import org.candlepin.model.Pool;
+import org.candlepin.model.Product;
 import org.candlepin.model.ProductCurator;
+import org.candlepin.policy.js.RulesInputCache;
 
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.SerializerProvider;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 
 /**
  * Jackson JsonSerializer that will populate transient fields on
@@ -44,8 +50,65 @@ public class PoolSerializer extends BeanSerializerBase {
     @Override
     public final void serialize(Object bean, JsonGenerator jgen, SerializerProvider provider)
         throws IOException {
-        ((Pool) bean).populateAllTransientProvidedProducts(productCurator);
-        base.serialize(bean, jgen, provider);
+        Pool pool = (Pool) bean;
+        pool.populateAllTransientProvidedProducts(productCurator);
+
+        // When serializing for the rules, replay the JSON of pools which have already been
+        // serialized during this request
+        RulesInputCache cache = (RulesInputCache) provider.getAttribute(RulesInputCache.class);
+        if (cache == null) {
+            base.serialize(bean, jgen, provider);
+            return;
+        }
+
+        List<Object> version = getVersion(pool);
+        TokenBuffer json = cache.get(pool, version);
+
+        if (json == null) {
+            json = new TokenBuffer(jgen.getCodec(), false);
+            base.serialize(bean, json, provider);
+            cache.put(pool, version, json);
+        }
+
+        json.serialize(jgen);
+    }
+
+    /**
+     * Collects the properties of a pool which can change while it is in use by a request.
+     * The product and provided products are not expected to change in place; instead they are
+     * replaced, which is caught by their UUIDs and the identity of the provided product sets.
+     */
+    private static List<Object> getVersion(Pool pool) {
+        Product product = pool.getProduct();
+        Product derived = pool.getDerivedProduct();
+
+        return Arrays.<Object>asList(pool.getUpdated(), pool.getQuantity(), pool.getConsumed(),
+            pool.getExported(), pool.getShared(), pool.getStartDate(), pool.getEndDate(),
+            product != null ? product.getUuid() : null, derived != null ? derived.getUuid() : null,
+            new HashMap<String, String>(pool.getAttributes()), pool.getCalculatedAttributes() != null ?
+            new HashMap<String, String>(pool.getCalculatedAttributes()) : null,
+            new Identity(pool.getProvidedProductDtos()), new Identity(pool.getDerivedProvidedProductDtos()));
+    }
+
+    /**
+     * Compares the wrapped object by identity.
+     */
+    private static class Identity {
+        private final Object object;
+
+        Identity(Object object) {
+            this.object = object;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Identity && ((Identity) other).object == this.object;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this.object);
+        }
     }
 
     protected PoolSerializer(BeanSerializerBase src, ProductCurator productCurator) {
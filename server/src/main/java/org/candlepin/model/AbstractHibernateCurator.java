@@ -34,6 +34,7 @@ import org.hibernate.Criteria;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.SQLQuery;
+import org.hibernate.Transaction;
 import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.Order;
@@ -47,6 +48,7 @@ import org.hibernate.internal.SessionImpl;
 import org.hibernate.jpa.AvailableSettings;
 import org.hibernate.metadata.ClassMetadata;
 import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.resource.transaction.spi.TransactionStatus;
 import org.hibernate.transform.ResultTransformer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -73,6 +75,7 @@ import javax.persistence.NonUniqueResultException;
 import javax.persistence.NoResultException;
 import javax.persistence.OptimisticLockException;
 import javax.persistence.TypedQuery;
+import javax.transaction.Synchronization;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
@@ -259,7 +262,7 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
         return c.list();
     }
 
-    private Order createPagingOrder(PageRequest p) {
+    protected Order createPagingOrder(PageRequest p) {
         String sortBy = (p.getSortBy() == null) ? AbstractHibernateObject.DEFAULT_SORT_FIELD : p.getSortBy();
         PageRequest.Order order = (p.getOrder() == null) ? PageRequest.DEFAULT_ORDER : p.getOrder();
 
@@ -572,6 +575,36 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
         return sess;
     }
 
+    /**
+     * Runs the given action once the current transaction has completed, whether it was
+     * committed or rolled back, or right away if no transaction is active. This is meant for
+     * in-memory state derived from the database, which must not be reloaded until the
+     * changes of the transaction are visible to other sessions.
+     *
+     * @param action
+     *  the action to run
+     */
+    public void afterTransaction(final Runnable action) {
+        Transaction transaction = this.currentSession().getTransaction();
+
+        if (transaction == null || transaction.getStatus() != TransactionStatus.ACTIVE) {
+            action.run();
+            return;
+        }
+
+        transaction.registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+                // Nothing to do until the transaction is done
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                action.run();
+            }
+        });
+    }
+
     public Session openSession() {
         SessionFactory factory = this.currentSession().getSessionFactory();
         return factory.openSession();
@@ -1121,57 +1154,70 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
                 }
             }
 
-            // First address the slow (and hopefully smaller) part of the lookup and refresh the
-            // entities that exist
-
-            // TODO: Maybe add a debug warning here to call out situations where our existing
-            // entity size is larger than our absent entity size. Those are areas where we may be
-            // reloading entities unnecessarily and could be optimized to avoid doing extraneous
-            // work.
-            if (entitySet.size() > 0) {
-                for (E entity : entitySet.values()) {
-                    entityManager.refresh(entity, LockModeType.PESSIMISTIC_WRITE);
-                    result.add(entity);
-                }
+            // Get the entity's metadata so we can ask Hibernate for the name of its identifier
+            String idName = metadata.getIdentifierPropertyName();
+            if (idName == null) {
+                // This shouldn't happen.
+                throw new RuntimeException("Unable to fetch identifier property name");
             }
 
-            // Build a query to fetch the remaining entities
-            if (idSet.size() > 0) {
-                // Get the entity's metadata so we can ask Hibernate for the name of its identifier
-                String idName = metadata.getIdentifierPropertyName();
-                if (idName == null) {
-                    // This shouldn't happen.
-                    throw new RuntimeException("Unable to fetch identifier property name");
-                }
+            // Impl note:
+            // We're building the query here using JPA Criteria to avoid fiddling with string
+            // building and, potentially, erroneously using the class name as the entity name.
+            // Additionally, using a query (as opposed to the .find and .load methods) lets us set
+            // the flush, cache and lock modes for the entity we're attempting to fetch.
+            CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+            CriteriaQuery<E> query = builder.createQuery(entityClass);
+            Root<E> root = query.from(entityClass);
+            Path<Serializable> target = root.<Serializable>get(idName);
+            ParameterExpression<List> param = builder.parameter(List.class);
 
-                // Impl note:
-                // We're building the query here using JPA Criteria to avoid fiddling with string
-                // building and, potentially, erroneously using the class name as the entity name.
-                // Additionally, using a query (as opposed to the .find and .load methods) lets us set
-                // the flush, cache and lock modes for the entity we're attempting to fetch.
-                CriteriaBuilder builder = entityManager.getCriteriaBuilder();
-                CriteriaQuery<E> query = builder.createQuery(entityClass);
-                Root<E> root = query.from(entityClass);
-                Path<Serializable> target = root.<Serializable>get(idName);
-                ParameterExpression<List> param = builder.parameter(List.class);
-
-                query.select(root).where(target.in(param));
-
-                // Note that it's critical here to set both modes, as Hibernate is wildly inconsistent
-                // (and non-standard) in which properties it actually accepts when processing its own
-                // config objects. The cache mode combination specified below ends up being evaluated
-                // by Hibernate down to a CacheMode.REFRESH.
-                TypedQuery<E> executable = entityManager.createQuery(query)
-                    .setFlushMode(FlushModeType.COMMIT)
-                    .setHint(AvailableSettings.SHARED_CACHE_RETRIEVE_MODE, CacheRetrieveMode.BYPASS)
-                    .setHint(AvailableSettings.SHARED_CACHE_STORE_MODE, CacheStoreMode.REFRESH)
-                    .setLockMode(LockModeType.PESSIMISTIC_WRITE);
+            query.select(root).where(target.in(param)).orderBy(builder.asc(target));
 
-                // Step through the query in blocks
-                for (List<Serializable> block : Iterables.partition(idSet, getBatchBlockSize())) {
-                    executable.setParameter(param, block);
-                    result.addAll(executable.getResultList());
+            // Note that it's critical here to set both modes, as Hibernate is wildly inconsistent
+            // (and non-standard) in which properties it actually accepts when processing its own
+            // config objects. The cache mode combination specified below ends up being evaluated
+            // by Hibernate down to a CacheMode.REFRESH.
+            TypedQuery<E> executable = entityManager.createQuery(query)
+                .setFlushMode(FlushModeType.COMMIT)
+                .setHint(AvailableSettings.SHARED_CACHE_RETRIEVE_MODE, CacheRetrieveMode.BYPASS)
+                .setHint(AvailableSettings.SHARED_CACHE_STORE_MODE, CacheStoreMode.REFRESH)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE);
+
+            // Lock the entities strictly in the order of their IDs, refreshing the ones we already
+            // have and querying the rest in ordered blocks, so that concurrent callers locking
+            // overlapping sets of entities wait on each other rather than deadlock.
+            SortedSet<Serializable> allIds = new TreeSet<Serializable>(idSet);
+            allIds.addAll(entitySet.keySet());
+
+            List<Serializable> block = new ArrayList<Serializable>();
+            int blockSize = getBatchBlockSize();
+
+            for (Serializable id : allIds) {
+                E entity = entitySet.get(id);
+
+                if (entity == null) {
+                    block.add(id);
+
+                    if (block.size() >= blockSize) {
+                        result.addAll(executable.setParameter(param, block).getResultList());
+                        block = new ArrayList<Serializable>();
+                    }
+
+                    continue;
                 }
+
+                if (!block.isEmpty()) {
+                    result.addAll(executable.setParameter(param, block).getResultList());
+                    block = new ArrayList<Serializable>();
+                }
+
+                entityManager.refresh(entity, LockModeType.PESSIMISTIC_WRITE);
+                result.add(entity);
+            }
+
+            if (!block.isEmpty()) {
+                result.addAll(executable.setParameter(param, block).getResultList());
             }
         }
 
@@ -19,6 +19,7 @@ import org.candlepin.util.ElementTransformer;
 import org.hibernate.Session;
 import org.hibernate.criterion.Order;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Iterator;
 
@@ -88,6 +89,60 @@ public interface CandlepinQuery<T> extends Iterable<T> {
      */
     CandlepinQuery<T> addOrder(Order order);
 
+    /**
+     * Orders the results of this query by the given property and then by the entity identifier,
+     * and, if a position is given, restricts the results to those which follow it in that order.
+     * This allows paging through the results without skipping over the preceding ones. Null
+     * property values sort after all others: last when ascending, and first when descending.
+     *
+     * @param property
+     *  The property by which to order the results
+     *
+     * @param ascending
+     *  Whether the results should be in ascending or descending order
+     *
+     * @param value
+     *  The property value of the result after which to continue, which may be null; ignored if id
+     *  is null
+     *
+     * @param id
+     *  The identifier of the result after which to continue, or null to start with the first result
+     *
+     * @throws IllegalArgumentException
+     *  if the property is not a property of the queried entity, or its values cannot be held by
+     *  a page cursor
+     *
+     * @return
+     *  this query instance
+     */
+    CandlepinQuery<T> addKeysetOrder(String property, boolean ascending, Object value, Object id);
+
+    /**
+     * Limits the query to fetching the identifier and the given properties of the queried entity,
+     * rather than entire entities and their eagerly fetched associations. The results will then be
+     * detached instances of the entity, with all other properties left uninitialized.
+     * <p></p>
+     * The projection is only applied if every given property is a plain column of the entity; if
+     * any is an association, collection or component, or the query already has a projection, the
+     * query continues to fetch entire entities.
+     *
+     * @param properties
+     *  The names of the properties to fetch, or null to fetch entire entities
+     *
+     * @return
+     *  this query instance
+     */
+    CandlepinQuery<T> setProjectedProperties(Collection<String> properties);
+
+    /**
+     * Fetches the class of the entities returned by this query.
+     *
+     * @return
+     *  the class of the entities returned by this query, or null if the results are not entities,
+     *  or their class is unknown
+     */
+    Class<?> getEntityClass();
+
     /**
      * Sets the locking mode for the query. The lock mode will be applied to the database rows
      * representing the entities returned by this query.
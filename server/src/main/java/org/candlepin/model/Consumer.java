@@ -162,9 +162,11 @@ public class Consumer extends AbstractHibernateObject implements Linkable, Owned
     @NotNull
     private Long entitlementCount;
 
+    @BatchSize(size = 32)
     @OneToMany(cascade = CascadeType.ALL, mappedBy = "consumer", fetch = FetchType.LAZY)
     private Set<Entitlement> entitlements;
 
+    @BatchSize(size = 32)
     @ElementCollection
     @CollectionTable(name = "cp_consumer_facts", joinColumns = @JoinColumn(name = "cp_consumer_id"))
     @MapKeyColumn(name = "mapkey")
@@ -180,6 +182,7 @@ public class Consumer extends AbstractHibernateObject implements Linkable, Owned
 
     private Date lastCheckin;
 
+    @BatchSize(size = 32)
     @OneToMany(mappedBy = "consumer", orphanRemoval = true, cascade = { CascadeType.ALL })
     private Set<ConsumerInstalledProduct> installedProducts;
 
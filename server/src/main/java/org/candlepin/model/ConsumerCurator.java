@@ -434,6 +434,43 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
             .executeUpdate();
     }
 
+    /**
+     * Updates the check-in time of many consumers at once. Consumers which checked in at the
+     * same time are updated by a single statement. As the check-ins may have been buffered
+     * for a while, the update time of a consumer is only moved forward, never back past a
+     * change made since.
+     *
+     * @param checkIns
+     *  a mapping of consumer IDs to the time they last checked in
+     */
+    @Transactional
+    public void updateLastCheckins(Map<String, Date> checkIns) {
+        String hql = "UPDATE Consumer c SET c.lastCheckin = :date, " +
+            "c.updated = CASE WHEN c.updated < :date THEN :date ELSE c.updated END " +
+            "WHERE c.id IN (:cids)";
+        Map<Date, List<String>> consumerIdsByDate = new HashMap<Date, List<String>>();
+
+        for (Map.Entry<String, Date> entry : checkIns.entrySet()) {
+            List<String> consumerIds = consumerIdsByDate.get(entry.getValue());
+
+            if (consumerIds == null) {
+                consumerIds = new ArrayList<String>();
+                consumerIdsByDate.put(entry.getValue(), consumerIds);
+            }
+
+            consumerIds.add(entry.getKey());
+        }
+
+        for (Map.Entry<Date, List<String>> entry : consumerIdsByDate.entrySet()) {
+            for (List<String> block : Iterables.partition(entry.getValue(), getInBlockSize())) {
+                this.currentSession().createQuery(hql)
+                    .setTimestamp("date", entry.getKey())
+                    .setParameterList("cids", block)
+                    .executeUpdate();
+            }
+        }
+    }
+
     private boolean factsChanged(Map<String, String> updatedFacts, Map<String, String> existingFacts) {
         return !existingFacts.equals(updatedFacts);
     }
@@ -914,4 +951,34 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
             .list();
     }
 
+    /**
+     * Fetches a page of the IDs of consumers with entitlements which have started, but have not
+     * yet been updated on start. The IDs are returned in ascending order, so that callers can
+     * walk all such consumers by passing the last ID of each page into the next call.
+     *
+     * @param afterId
+     *  the ID after which to start the page, or null to start with the first consumer
+     *
+     * @param limit
+     *  the maximum number of IDs to return
+     *
+     * @return
+     *  a list of at most limit consumer IDs, in ascending order
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> getConsumerIdsWithStartedEnts(String afterId, int limit) {
+        Criteria criteria = currentSession().createCriteria(Entitlement.class)
+            .createAlias("pool", "p")
+            .add(Restrictions.eq("updatedOnStart", false))
+            .add(Restrictions.lt("p.startDate", new Date()))
+            .setProjection(Projections.distinct(Projections.property("consumer.id")))
+            .addOrder(Order.asc("consumer.id"))
+            .setMaxResults(limit);
+
+        if (afterId != null) {
+            criteria.add(Restrictions.gt("consumer.id", afterId));
+        }
+
+        return criteria.list();
+    }
 }
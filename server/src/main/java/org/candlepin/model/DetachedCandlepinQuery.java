@@ -14,6 +14,7 @@
  */
 package org.candlepin.model;
 
+import org.candlepin.common.paging.PageCursor;
 import org.candlepin.util.ElementTransformer;
 
 import com.google.inject.persist.Transactional;
@@ -21,27 +22,39 @@ import com.google.inject.persist.Transactional;
 import org.hibernate.CacheMode;
 import org.hibernate.Criteria;
 import org.hibernate.LockMode;
+import org.hibernate.NullPrecedence;
 import org.hibernate.ScrollMode;
 import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
+import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projection;
+import org.hibernate.criterion.ProjectionList;
 import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
 import org.hibernate.internal.CriteriaImpl;
 import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.engine.spi.SessionImplementor;
 import org.hibernate.loader.criteria.CriteriaQueryTranslator;
+import org.hibernate.metadata.ClassMetadata;
 import org.hibernate.type.Type;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.lang.reflect.Field;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.Set;
 
 import javax.persistence.LockModeType;
 
@@ -55,6 +68,7 @@ import javax.persistence.LockModeType;
  *  The entity type to be returned by this criteria's result output methods
  */
 public class DetachedCandlepinQuery<T> implements CandlepinQuery<T> {
+    private static Logger log = LoggerFactory.getLogger(DetachedCandlepinQuery.class);
 
     protected Session session;
     protected DetachedCriteria criteria;
@@ -64,6 +78,7 @@ public class DetachedCandlepinQuery<T> implements CandlepinQuery<T> {
     protected int offset;
     protected int limit;
     protected LockMode lockMode;
+    protected String[] projectedProperties;
 
     /**
      * Creates a new DetachedCandlepinQuery instance using the specified criteria and session.
@@ -97,6 +112,7 @@ public class DetachedCandlepinQuery<T> implements CandlepinQuery<T> {
         this.offset = -1;
         this.limit = -1;
         this.lockMode = null;
+        this.projectedProperties = null;
     }
 
     /**
@@ -174,6 +190,20 @@ public class DetachedCandlepinQuery<T> implements CandlepinQuery<T> {
             executable.setLockMode(this.lockMode);
         }
 
+        // Only project onto plain entity queries; anything else already shapes its own results
+        if (this.projectedProperties != null && executable.getProjection() == null &&
+            executable.getResultTransformer() == Criteria.ROOT_ENTITY) {
+
+            ProjectionList projection = Projections.projectionList().add(Projections.id());
+            for (String property : this.projectedProperties) {
+                projection.add(Projections.property(property));
+            }
+
+            executable.setProjection(projection);
+            executable.setResultTransformer(new EntityProjectionTransformer(this.getClassMetadata(),
+                (SessionImplementor) this.session, this.projectedProperties));
+        }
+
         // TODO: Add read-only when we have a requirement to do so.
 
         return executable;
@@ -223,6 +253,153 @@ public class DetachedCandlepinQuery<T> implements CandlepinQuery<T> {
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CandlepinQuery<T> addKeysetOrder(String property, boolean ascending, Object value, Object id) {
+        if (property == null) {
+            throw new IllegalArgumentException("property is null");
+        }
+
+        ClassMetadata metadata = this.getClassMetadata();
+
+        if (metadata == null) {
+            throw new IllegalStateException("Unable to find the identifier of the queried entity");
+        }
+
+        String idName = metadata.getIdentifierPropertyName();
+        boolean byId = property.equals(idName);
+        boolean nullable = !byId && this.checkKeysetProperty(metadata, property);
+
+        if (id != null) {
+            // (property, id) > (value, lastId), spelled out for databases without row comparisons.
+            // Nulls sort after every other value, so they are last when ascending and first when
+            // descending.
+            Criterion afterId = ascending ? Restrictions.gt(idName, id) : Restrictions.lt(idName, id);
+            Criterion next = afterId;
+
+            if (!byId && value == null) {
+                next = Restrictions.and(Restrictions.isNull(property), afterId);
+
+                if (!ascending) {
+                    next = Restrictions.or(next, Restrictions.isNotNull(property));
+                }
+            }
+            else if (!byId) {
+                next = Restrictions.or(
+                    ascending ? Restrictions.gt(property, value) : Restrictions.lt(property, value),
+                    Restrictions.and(Restrictions.eq(property, value), afterId));
+
+                if (ascending && nullable) {
+                    next = Restrictions.or(next, Restrictions.isNull(property));
+                }
+            }
+
+            this.criteria.add(next);
+        }
+
+        if (byId) {
+            this.addOrder(ascending ? Order.asc(property) : Order.desc(property));
+        }
+        else {
+            this.addOrder(ascending ?
+                Order.asc(property).nulls(NullPrecedence.LAST) :
+                Order.desc(property).nulls(NullPrecedence.FIRST));
+
+            this.addOrder(ascending ? Order.asc(idName) : Order.desc(idName));
+        }
+
+        return this;
+    }
+
+    /**
+     * Checks that the given property of the queried entity can be paged through with keysets,
+     * which requires its values to fit in a page cursor.
+     *
+     * @return
+     *  whether the property is nullable
+     */
+    private boolean checkKeysetProperty(ClassMetadata metadata, String property) {
+        int index = Arrays.asList(metadata.getPropertyNames()).indexOf(property);
+
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown property: " + property);
+        }
+
+        if (!PageCursor.isSupportedType(metadata.getPropertyTypes()[index].getReturnedClass())) {
+            throw new IllegalArgumentException("Unable to page through property: " + property);
+        }
+
+        return metadata.getPropertyNullability()[index];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CandlepinQuery<T> setProjectedProperties(Collection<String> properties) {
+        this.projectedProperties = null;
+
+        if (properties == null) {
+            return this;
+        }
+
+        ClassMetadata metadata = this.getClassMetadata();
+
+        if (metadata == null || metadata.hasSubclasses()) {
+            log.debug("Not projecting properties of an unknown or polymorphic entity: {}",
+                this.initialState.getEntityOrClassName());
+
+            return this;
+        }
+
+        Set<String> columns = new LinkedHashSet<String>();
+        Set<String> mapped = new HashSet<String>(Arrays.asList(metadata.getPropertyNames()));
+
+        for (String property : properties) {
+            // The identifier is always fetched
+            if (property == null || property.equals(metadata.getIdentifierPropertyName())) {
+                continue;
+            }
+
+            Type type = mapped.contains(property) ? metadata.getPropertyType(property) : null;
+
+            if (type == null || type.isAssociationType() || type.isCollectionType() ||
+                type.isComponentType()) {
+
+                log.debug("Not projecting properties of {}; {} is not a plain column",
+                    metadata.getEntityName(), property);
+
+                return this;
+            }
+
+            columns.add(property);
+        }
+
+        this.projectedProperties = columns.toArray(new String[columns.size()]);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Class<?> getEntityClass() {
+        ClassMetadata metadata = this.getClassMetadata();
+        return metadata != null ? metadata.getMappedClass() : null;
+    }
+
+    /**
+     * Fetches the Hibernate metadata of the entity queried by this criteria.
+     *
+     * @return
+     *  the metadata of the queried entity, or null if it is not a mapped entity
+     */
+    protected ClassMetadata getClassMetadata() {
+        return this.session.getSessionFactory().getClassMetadata(this.initialState.getEntityOrClassName());
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -19,6 +19,7 @@ import org.candlepin.util.ElementTransformer;
 import org.hibernate.Session;
 import org.hibernate.criterion.Order;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -121,6 +122,49 @@ public class EmptyCandlepinQuery<T> implements CandlepinQuery<T> {
         return this;
     }
 
+    /**
+     * Returns a reference to this CandlepinQuery instance.
+     *
+     * @param property
+     *
+     * @param ascending
+     *
+     * @param value
+     *
+     * @param id
+     *
+     * @return
+     *  this query instance
+     */
+    @Override
+    public CandlepinQuery<T> addKeysetOrder(String property, boolean ascending, Object value, Object id) {
+        return this;
+    }
+
+    /**
+     * Returns a reference to this CandlepinQuery instance.
+     *
+     * @param properties
+     *
+     * @return
+     *  this query instance
+     */
+    @Override
+    public CandlepinQuery<T> setProjectedProperties(Collection<String> properties) {
+        return this;
+    }
+
+    /**
+     * Returns null, as there are no results of any class.
+     *
+     * @return
+     *  null
+     */
+    @Override
+    public Class<?> getEntityClass() {
+        return null;
+    }
+
     /**
      * Returns a reference to this CandlepinQuery instance.
      *
@@ -24,6 +24,7 @@ import com.google.inject.persist.Transactional;
 
 import org.hibernate.Criteria;
 import org.hibernate.Hibernate;
+import org.hibernate.NullPrecedence;
 import org.hibernate.ReplicationMode;
 import org.hibernate.criterion.CriteriaSpecification;
 import org.hibernate.criterion.Criterion;
@@ -507,6 +508,41 @@ public class EntitlementCurator extends AbstractHibernateCurator<Entitlement> {
         return criteria.list();
     }
 
+    /**
+     * Lists the IDs of dirty entitlements across all consumers, those of the consumers which
+     * checked in most recently first, as they are the most likely to check in again soon.
+     * Consumers which never checked in come last.
+     *
+     * @param limit
+     *  the maximum number of IDs to return
+     *
+     * @return
+     *  the IDs of up to the given number of dirty entitlements
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> listDirtyIdsByLastCheckin(int limit) {
+        return this.currentSession().createCriteria(Entitlement.class)
+            .createAlias("consumer", "c")
+            .add(Restrictions.eq("dirty", true))
+            .addOrder(Order.desc("c.lastCheckin").nulls(NullPrecedence.LAST))
+            .addOrder(Order.asc("id"))
+            .setProjection(Projections.id())
+            .setMaxResults(limit)
+            .list();
+    }
+
+    /**
+     * @return the number of dirty entitlements across all consumers
+     */
+    public long countDirty() {
+        Long count = (Long) this.currentSession().createCriteria(Entitlement.class)
+            .add(Restrictions.eq("dirty", true))
+            .setProjection(Projections.rowCount())
+            .uniqueResult();
+
+        return count != null ? count : 0L;
+    }
+
     /**
      * List all entitled product IDs from entitlements which overlap the given date range.
      *
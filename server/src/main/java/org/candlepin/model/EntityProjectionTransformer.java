@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.transform.ResultTransformer;
+
+import java.io.Serializable;
+import java.util.List;
+
+
+
+/**
+ * The EntityProjectionTransformer builds entity instances from the rows of a query projecting the
+ * identifier and a subset of the properties of an entity. The first column of each row must be
+ * the identifier, and the remaining columns the given properties, in order.
+ *
+ * The entities built are not attached to any session, and properties outside of the projection
+ * are left uninitialized. As such, they should only be used where those properties are never
+ * read, such as when serializing with a filter that omits them.
+ */
+public class EntityProjectionTransformer implements ResultTransformer {
+    private static final long serialVersionUID = 1L;
+
+    private final transient ClassMetadata metadata;
+    private final transient SessionImplementor session;
+    private final String[] properties;
+
+    /**
+     * Creates a new EntityProjectionTransformer for the given entity and properties.
+     *
+     * @param metadata
+     *  The metadata of the entity to build
+     *
+     * @param session
+     *  The session executing the query
+     *
+     * @param properties
+     *  The names of the properties projected after the identifier
+     *
+     * @throws IllegalArgumentException
+     *  if metadata or properties are null
+     */
+    public EntityProjectionTransformer(ClassMetadata metadata, SessionImplementor session,
+        String[] properties) {
+
+        if (metadata == null) {
+            throw new IllegalArgumentException("metadata is null");
+        }
+
+        if (properties == null) {
+            throw new IllegalArgumentException("properties is null");
+        }
+
+        this.metadata = metadata;
+        this.session = session;
+        this.properties = properties;
+    }
+
+    @Override
+    public Object transformTuple(Object[] tuple, String[] aliases) {
+        Object entity = this.metadata.instantiate((Serializable) tuple[0], this.session);
+
+        for (int i = 0; i < this.properties.length; ++i) {
+            this.metadata.setPropertyValue(entity, this.properties[i], tuple[i + 1]);
+        }
+
+        return entity;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public List transformList(List collection) {
+        return collection;
+    }
+}
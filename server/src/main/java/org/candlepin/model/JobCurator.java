@@ -81,6 +81,56 @@ public class JobCurator extends AbstractHibernateCurator<JobStatus> {
         }
     }
 
+    /**
+     * Cancels the given job if, and only if, it is still waiting to be triggered.
+     *
+     * @param jobId
+     *  the ID of the job to cancel
+     *
+     * @param result
+     *  the result to record on the canceled job
+     *
+     * @return
+     *  true if the job was waiting and has been canceled; false otherwise
+     */
+    @Transactional
+    public boolean cancelWaitingJob(String jobId, String result) {
+        String hql = "update JobStatus j " +
+            "set j.state = :canceled, j.result = :result " +
+            "where j.id = :jobid and j.state = :waiting";
+
+        return this.currentSession().createQuery(hql)
+            .setParameter("jobid", jobId)
+            .setParameter("result", result)
+            .setInteger("canceled", JobState.CANCELED.ordinal())
+            .setInteger("waiting", JobState.WAITING.ordinal())
+            .executeUpdate() > 0;
+    }
+
+    /**
+     * Claims the given job for triggering if, and only if, it is still waiting, moving it to
+     * the created state. Only one of the nodes racing to trigger the same waiting job will
+     * succeed in claiming it.
+     *
+     * @param jobId
+     *  the ID of the job to claim
+     *
+     * @return
+     *  true if the job was waiting and has been claimed; false otherwise
+     */
+    @Transactional
+    public boolean claimWaitingJob(String jobId) {
+        String hql = "update JobStatus j " +
+            "set j.state = :created " +
+            "where j.id = :jobid and j.state = :waiting";
+
+        return this.currentSession().createQuery(hql)
+            .setParameter("jobid", jobId)
+            .setInteger("created", JobState.CREATED.ordinal())
+            .setInteger("waiting", JobState.WAITING.ordinal())
+            .executeUpdate() > 0;
+    }
+
     @Transactional
     public int deleteJobNoStatusReturn(String jobId) {
         return this.currentSession().createQuery(
@@ -176,6 +226,29 @@ public class JobCurator extends AbstractHibernateCurator<JobStatus> {
         return this.cpQueryFactory.<JobStatus>buildQuery(this.currentSession(), criteria);
     }
 
+    /**
+     * Fetches the waiting jobs of the given class and target, oldest first.
+     *
+     * @param jobClass
+     *  the name of the job class
+     *
+     * @param target
+     *  the ID of the target of the jobs
+     *
+     * @return
+     *  a query fetching the waiting jobs of the given class and target
+     */
+    @SuppressWarnings("unchecked")
+    public CandlepinQuery<JobStatus> findWaitingJobs(String jobClass, String target) {
+        DetachedCriteria criteria = DetachedCriteria.forClass(JobStatus.class)
+            .add(Restrictions.eq("state", JobState.WAITING))
+            .add(Restrictions.eq("jobClass", jobClass))
+            .add(Restrictions.eq("targetId", target))
+            .addOrder(Order.asc("created"));
+
+        return this.cpQueryFactory.<JobStatus>buildQuery(this.currentSession(), criteria);
+    }
+
     public long findNumRunningByClassAndTarget(String target, Class<? extends KingpinJob> jobClass) {
         if (jobClass == null) {
             throw new IllegalArgumentException("jobClass can not be null");
@@ -316,12 +316,76 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
      * @return List of entitlement pools.
      */
     @Transactional
-    @SuppressWarnings({"unchecked", "checkstyle:indentation", "checkstyle:methodlength"})
-    // TODO: Remove the methodlength suppression once this method is cleaned up
     public Page<List<Pool>> listAvailableEntitlementPools(Consumer consumer, Owner owner,
         Collection<String> productIds, String subscriptionId, Date activeOn, PoolFilterBuilder filters,
         PageRequest pageRequest, boolean postFilter, boolean addFuture, boolean onlyFuture, Date after) {
 
+        List<String> poolIds = this.findAvailableEntitlementPoolIds(consumer, owner, productIds,
+            subscriptionId, activeOn, filters, addFuture, onlyFuture, after);
+
+        if (!poolIds.isEmpty()) {
+            Criteria criteria = this.currentSession()
+                .createCriteria(Pool.class)
+                .add(CPRestrictions.in("id", poolIds));
+
+            return this.listByCriteria(criteria, pageRequest, postFilter);
+        }
+
+        Page<List<Pool>> output = new Page<List<Pool>>();
+        output.setPageData(Collections.<Pool>emptyList());
+        output.setMaxRecords(0);
+
+        return output;
+    }
+
+    /**
+     * Lists the IDs of the pools listAvailableEntitlementPools would return, sorted by the sort
+     * field and order of the given page request, then by ID. The page and page size are ignored,
+     * so that the caller can load and filter the pools a chunk at a time.
+     *
+     * @param consumer Consumer being entitled.
+     * @param owner Owner whose subscriptions should be inspected.
+     * @param productIds only entitlements which provide these products are included.
+     * @param subscriptionId only entitlements of this subscription are included.
+     * @param activeOn Indicates to return only pools valid on this date.
+     *        Set to null for no date filtering.
+     * @param filters filter builder with set filters to apply to the criteria.
+     * @param pageRequest used to specify the sort order.
+     * @param addFuture include pools which start after activeOn.
+     * @param onlyFuture include only pools which start after activeOn.
+     * @param after include only pools which start after this date.
+     * @return the sorted IDs of the matching pools.
+     */
+    @Transactional
+    @SuppressWarnings("unchecked")
+    public List<String> listAvailableEntitlementPoolIds(Consumer consumer, Owner owner,
+        Collection<String> productIds, String subscriptionId, Date activeOn, PoolFilterBuilder filters,
+        PageRequest pageRequest, boolean addFuture, boolean onlyFuture, Date after) {
+
+        List<String> poolIds = this.findAvailableEntitlementPoolIds(consumer, owner, productIds,
+            subscriptionId, activeOn, filters, addFuture, onlyFuture, after);
+
+        if (poolIds.isEmpty()) {
+            return poolIds;
+        }
+
+        // The filtering query returns distinct IDs, which cannot be sorted by another column
+        Criteria criteria = this.currentSession()
+            .createCriteria(Pool.class)
+            .add(CPRestrictions.in("id", poolIds))
+            .setProjection(Projections.id())
+            .addOrder(this.createPagingOrder(pageRequest != null ? pageRequest : new PageRequest()))
+            .addOrder(Order.asc("id"));
+
+        return criteria.list();
+    }
+
+    @SuppressWarnings({"unchecked", "checkstyle:indentation", "checkstyle:methodlength"})
+    // TODO: Remove the methodlength suppression once this method is cleaned up
+    private List<String> findAvailableEntitlementPoolIds(Consumer consumer, Owner owner,
+        Collection<String> productIds, String subscriptionId, Date activeOn, PoolFilterBuilder filters,
+        boolean addFuture, boolean onlyFuture, Date after) {
+
         if (log.isDebugEnabled()) {
             log.debug("Listing available pools for:");
             log.debug("    consumer: {}", consumer);
@@ -349,11 +413,7 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
                 log.warn("Attempting to filter entitlement pools by owner and a consumer belonging to a " +
                     "different owner: {}, {}", owner, consumer);
 
-                Page<List<Pool>> output = new Page<List<Pool>>();
-                output.setPageData(Collections.<Pool>emptyList());
-                output.setMaxRecords(0);
-
-                return output;
+                return Collections.<String>emptyList();
             }
 
             // We'll set the owner restriction later
@@ -540,20 +600,7 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
         // functionality doesn't work with cursors.
 
         List<String> poolIds = criteria.list();
-
-        if (poolIds != null && !poolIds.isEmpty()) {
-            criteria = this.currentSession()
-                .createCriteria(Pool.class)
-                .add(CPRestrictions.in("id", poolIds));
-
-            return this.listByCriteria(criteria, pageRequest, postFilter);
-        }
-
-        Page<List<Pool>> output = new Page<List<Pool>>();
-        output.setPageData(Collections.<Pool>emptyList());
-        output.setMaxRecords(0);
-
-        return output;
+        return poolIds != null ? poolIds : Collections.<String>emptyList();
     }
 
     @SuppressWarnings("checkstyle:indentation")
@@ -1558,6 +1605,58 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
         query.executeUpdate();
     }
 
+    /**
+     * Fetches the IDs of the entitlements of all pools active on the given date, which belong to
+     * any of the given owners and use any of the given products as their product or as one of
+     * their provided products.
+     *
+     * @param owners
+     *  A collection of owners whose entitlements should be fetched
+     *
+     * @param productIds
+     *  A collection of IDs of the products for which to fetch affected entitlements
+     *
+     * @param activeOn
+     *  The date on which the pools of the entitlements must be active
+     *
+     * @return
+     *  a set of IDs of the entitlements of the matching pools
+     */
+    @SuppressWarnings("unchecked")
+    public Set<String> getEntitlementIdsForPoolsWithProducts(Collection<Owner> owners,
+        Collection<String> productIds, Date activeOn) {
+
+        Set<String> output = new HashSet<String>();
+
+        if (owners == null || owners.isEmpty() || productIds == null || productIds.isEmpty()) {
+            return output;
+        }
+
+        Set<String> ownerIds = new HashSet<String>();
+        for (Owner owner : owners) {
+            ownerIds.add(owner.getId());
+        }
+
+        String statement = "select distinct e.id from Entitlement e join e.pool p " +
+            "left join p.providedProducts pp " +
+            "where p.owner.id in :ownerIds and (p.product.id in :productIds or pp.id in :productIds) " +
+            "and p.startDate <= :activeOn and p.endDate >= :activeOn";
+
+        Query query = currentSession().createQuery(statement);
+        query.setParameter("activeOn", activeOn);
+
+        for (List<String> ownerBlock : Iterables.partition(ownerIds, getInBlockSize())) {
+            query.setParameterList("ownerIds", ownerBlock);
+
+            for (List<String> productBlock : Iterables.partition(productIds, getInBlockSize())) {
+                query.setParameterList("productIds", productBlock);
+                output.addAll(query.list());
+            }
+        }
+
+        return output;
+    }
+
     /**
      * Check if this pool provides the given product
      *
@@ -1695,6 +1794,119 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
         return providedProductMap;
     }
 
+    /**
+     * Fetches a value which changes whenever a pool of the given owner is created or deleted, or
+     * one of the owner's products changes. Used to tell whether data derived from which pools an
+     * owner has and which products they carry is still current.
+     * <p></p>
+     * Pool updates are deliberately not part of the version: every bind and unbind updates the
+     * consumed counts of a pool, which would otherwise change the version on nearly every call.
+     * Code changing the products of an existing pool is expected to invalidate such data itself.
+     *
+     * @param owner
+     *  The owner for which to fetch the pool version
+     *
+     * @return
+     *  the version of the pools of the owner
+     */
+    public String getPoolsVersion(Owner owner) {
+        String poolStmt = "SELECT COUNT(Pool.id), MAX(Pool.created) " +
+            "FROM Pool AS Pool " +
+            "WHERE Pool.owner.id = :owner_id";
+
+        String productStmt = "SELECT MAX(op.product.updated) " +
+            "FROM OwnerProduct op " +
+            "WHERE op.owner.id = :owner_id";
+
+        Object[] pools = (Object[]) currentSession().createQuery(poolStmt)
+            .setParameter("owner_id", owner.getId())
+            .uniqueResult();
+
+        Date productsUpdated = (Date) currentSession().createQuery(productStmt)
+            .setParameter("owner_id", owner.getId())
+            .uniqueResult();
+
+        Date poolsCreated = (Date) pools[1];
+        return pools[0] + ":" + (poolsCreated != null ? poolsCreated.getTime() : 0) + ":" +
+            (productsUpdated != null ? productsUpdated.getTime() : 0);
+    }
+
+    /**
+     * Fetches a mapping of product IDs to the IDs of the pools of the given owner which provide
+     * them, either as the pool's product or as one of its provided products.
+     *
+     * @param owner
+     *  The owner for which to fetch the pool IDs
+     *
+     * @return
+     *  A mapping of product IDs to pool IDs
+     */
+    public Map<String, Set<String>> getPoolIdsByProvidedProductId(Owner owner) {
+        Map<String, Set<String>> poolIdMap = new HashMap<String, Set<String>>();
+
+        String productStmt = "SELECT Product.id, Pool.id " +
+            "FROM Pool AS Pool " +
+            "  INNER JOIN Pool.product AS Product " +
+            "WHERE Pool.owner.id = :owner_id";
+
+        String providedStmt = "SELECT Provided.id, Pool.id " +
+            "FROM Pool AS Pool " +
+            "  INNER JOIN Pool.providedProducts AS Provided " +
+            "WHERE Pool.owner.id = :owner_id";
+
+        for (String stmt : Arrays.asList(productStmt, providedStmt)) {
+            List<Object[]> results = currentSession().createQuery(stmt)
+                .setParameter("owner_id", owner.getId())
+                .list();
+
+            this.addToMapping(poolIdMap, results);
+        }
+
+        return poolIdMap;
+    }
+
+    /**
+     * Fetches a mapping of stacking IDs to the IDs of the pools of the given owner whose product
+     * carries the stacking ID.
+     *
+     * @param owner
+     *  The owner for which to fetch the pool IDs
+     *
+     * @return
+     *  A mapping of stacking IDs to pool IDs
+     */
+    public Map<String, Set<String>> getPoolIdsByStackingId(Owner owner) {
+        Map<String, Set<String>> poolIdMap = new HashMap<String, Set<String>>();
+
+        String stmt = "SELECT value(Attribute), Pool.id " +
+            "FROM Pool AS Pool " +
+            "  INNER JOIN Pool.product AS Product " +
+            "  INNER JOIN Product.attributes AS Attribute " +
+            "WHERE Pool.owner.id = :owner_id " +
+            "  AND key(Attribute) = :stacking_attr";
+
+        List<Object[]> results = currentSession().createQuery(stmt)
+            .setParameter("owner_id", owner.getId())
+            .setParameter("stacking_attr", Product.Attributes.STACKING_ID)
+            .list();
+
+        this.addToMapping(poolIdMap, results);
+        return poolIdMap;
+    }
+
+    private void addToMapping(Map<String, Set<String>> mapping, List<Object[]> results) {
+        for (Object[] cols : results) {
+            Set<String> values = mapping.get((String) cols[0]);
+
+            if (values == null) {
+                values = new HashSet<String>();
+                mapping.put((String) cols[0], values);
+            }
+
+            values.add((String) cols[1]);
+        }
+    }
+
 
     /**
      * Fetches a mapping of pool IDs to sets of product IDs representing the provided products of
@@ -19,6 +19,7 @@ import org.candlepin.util.ElementTransformer;
 import org.hibernate.Session;
 import org.hibernate.criterion.Order;
 
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.LinkedList;
@@ -155,6 +156,40 @@ public class TransformedCandlepinQuery<I, O> implements CandlepinQuery<O> {
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CandlepinQuery<O> addKeysetOrder(String property, boolean ascending, Object value, Object id) {
+        this.query.addKeysetOrder(property, ascending, value, id);
+        return this;
+    }
+
+    /**
+     * Returns a reference to this CandlepinQuery instance. The projection is not passed on to the
+     * backing query, as the transformer may read any property of its results.
+     *
+     * @param properties
+     *
+     * @return
+     *  this query instance
+     */
+    @Override
+    public CandlepinQuery<O> setProjectedProperties(Collection<String> properties) {
+        return this;
+    }
+
+    /**
+     * Returns null, as the results of this query are the output of its transformer.
+     *
+     * @return
+     *  null
+     */
+    @Override
+    public Class<?> getEntityClass() {
+        return null;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -22,6 +22,7 @@ import org.candlepin.pinsetter.core.model.JobStatus.JobState;
 import org.candlepin.pinsetter.tasks.UniqueByEntityJob;
 
 import com.google.inject.Inject;
+import com.google.inject.Provider;
 import com.google.inject.persist.Transactional;
 import com.google.inject.persist.UnitOfWork;
 
@@ -46,6 +47,7 @@ public class PinsetterJobListener implements JobListener {
     public static final String PRINCIPAL_KEY = "principal_key";
 
     private JobCurator curator;
+    private Provider<PinsetterKernel> kernelProvider;
 
     // this is a separate unitOfWork and units of work from the actual pinsetter
     // job because we want to tie this closer to the quartz execution, rather than
@@ -53,9 +55,12 @@ public class PinsetterJobListener implements JobListener {
     private UnitOfWork unitOfWork;
 
     @Inject
-    public PinsetterJobListener(JobCurator curator, UnitOfWork unitOfWork) {
+    public PinsetterJobListener(JobCurator curator, UnitOfWork unitOfWork,
+        Provider<PinsetterKernel> kernelProvider) {
+
         this.curator = curator;
         this.unitOfWork = unitOfWork;
+        this.kernelProvider = kernelProvider;
     }
 
     @Override
@@ -92,7 +97,8 @@ public class PinsetterJobListener implements JobListener {
         deleteDetail(context);
         try {
             unitOfWork.begin();
-            updateJob(context, exception);
+            JobStatus status = updateJob(context, exception);
+            triggerWaitingJobs(status);
         }
         catch (Exception e) {
             if (UniqueByEntityJob.class.isAssignableFrom(context.getJobDetail().getJobClass())) {
@@ -123,7 +129,7 @@ public class PinsetterJobListener implements JobListener {
     }
 
     @Transactional
-    private void updateJob(JobExecutionContext ctx, JobExecutionException exc) {
+    private JobStatus updateJob(JobExecutionContext ctx, JobExecutionException exc) {
         JobStatus status = curator.find(ctx.getJobDetail().getKey().getName());
         if (status != null) {
             if (exc != null) {
@@ -143,6 +149,26 @@ public class PinsetterJobListener implements JobListener {
         else {
             log.debug("No jobinfo found for job: " + ctx);
         }
+
+        return status;
+    }
+
+    /*
+     * Hands the completed job to the kernel, so the jobs waiting on it are triggered right
+     * away rather than on the next UnpauseJob run.
+     */
+    private void triggerWaitingJobs(JobStatus status) {
+        if (status == null || status.getTargetId() == null || status.getJobClass() == null) {
+            return;
+        }
+
+        try {
+            int triggered = kernelProvider.get().jobCompleted(status);
+            log.debug("Triggered {} jobs waiting on job {}", triggered, status.getId());
+        }
+        catch (Exception e) {
+            log.warn("Unable to trigger the jobs waiting on job {}", status.getId(), e);
+        }
     }
 
     private void deleteDetail(JobExecutionContext cx) {
@@ -30,6 +30,7 @@ import org.candlepin.controller.ModeManager;
 import org.candlepin.model.CandlepinModeChange.Mode;
 import org.candlepin.model.JobCurator;
 import org.candlepin.pinsetter.core.model.JobStatus;
+import org.candlepin.pinsetter.core.model.JobStatus.JobState;
 import org.candlepin.pinsetter.tasks.CancelJobJob;
 import org.candlepin.pinsetter.tasks.KingpinJob;
 import org.candlepin.util.PropertyUtil;
@@ -499,6 +500,96 @@ public class PinsetterKernel implements ModeChangeListener {
         scheduler.scheduleJob(trigger);
     }
 
+    /**
+     * Triggers the given waiting jobs which are now allowed to run, according to the
+     * isSchedulable check of their job class. Waiting jobs whose class no longer exists are
+     * canceled.
+     *
+     * Each job is claimed in the database before it is triggered, so of the nodes racing to
+     * trigger the same job, through either the notification path or the UnpauseJob, only one
+     * schedules it.
+     *
+     * @param waitingJobs
+     *  the statuses of the waiting jobs to check
+     *
+     * @return
+     *  the number of jobs triggered
+     */
+    public int triggerWaitingJobs(Collection<JobStatus> waitingJobs) {
+        int triggered = 0;
+
+        for (JobStatus status : waitingJobs) {
+            try {
+                Class jobClass = Class.forName(status.getJobClass());
+                boolean schedule = (Boolean) jobClass.getMethod("isSchedulable", JobCurator.class,
+                    JobStatus.class).invoke(null, jobCurator, status);
+                if (schedule) {
+                    if (!jobCurator.claimWaitingJob(status.getId())) {
+                        log.debug("Waiting job already triggered elsewhere: {}", status.getId());
+                        continue;
+                    }
+
+                    log.debug("Triggering waiting job: " + status.getId());
+                    triggerClaimedJob(status);
+                    ++triggered;
+                }
+            }
+            catch (ClassNotFoundException cnfe) {
+                log.warn("Job class {} not found. It was likely removed from candlepin and is no " +
+                    "longer valid.", status.getJobClass());
+                // Maintain job history. Mark it as CANCELED and update the status.
+                status.setState(JobState.CANCELED);
+                status.setResult("Job canceled because job class no longer exists.");
+                jobCurator.merge(status);
+            }
+            catch (Exception e) {
+                log.error("Failed to schedule waiting job: " + status.getId(), e);
+            }
+        }
+
+        return triggered;
+    }
+
+    /*
+     * Triggers a waiting job this node has claimed, handing it back to the waiting state if it
+     * cannot be triggered so it is picked up again later.
+     */
+    private void triggerClaimedJob(JobStatus status) throws SchedulerException {
+        try {
+            addTrigger(status);
+            status.setState(JobState.CREATED);
+            jobCurator.merge(status);
+        }
+        catch (SchedulerException e) {
+            status.setState(JobState.WAITING);
+            jobCurator.merge(status);
+            throw e;
+        }
+    }
+
+    /**
+     * Notifies the kernel that the given job has completed, immediately triggering the jobs
+     * of the same class and target which were waiting on it. Waiting jobs which are missed
+     * here are still picked up by the UnpauseJob.
+     *
+     * @param status
+     *  the status of the completed job
+     *
+     * @return
+     *  the number of waiting jobs triggered
+     */
+    public int jobCompleted(JobStatus status) {
+        if (status == null || status.getTargetId() == null || status.getJobClass() == null) {
+            return 0;
+        }
+
+        List<JobStatus> waitingJobs = jobCurator
+            .findWaitingJobs(status.getJobClass(), status.getTargetId())
+            .list();
+
+        return waitingJobs.isEmpty() ? 0 : triggerWaitingJobs(waitingJobs);
+    }
+
     public boolean getSchedulerStatus() throws PinsetterException {
         try {
             // return true when scheduler is running (double negative)
@@ -14,41 +14,107 @@
  */
 package org.candlepin.pinsetter.tasks;
 
+import org.candlepin.audit.EventSink;
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.ConsumerCurator;
 import org.candlepin.policy.js.compliance.ComplianceRules;
+import org.candlepin.policy.js.compliance.ComplianceStatus;
 
 import com.google.inject.Inject;
+import com.google.inject.persist.Transactional;
 
+import org.quartz.DisallowConcurrentExecution;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Job to recalculate compliance for consumers when entitlements become active
+ *
+ * Consumers are walked in pages ordered by ID, each page in its own transaction, with their
+ * statuses calculated in parallel on the compliance executor. Every page flags the started
+ * entitlements of its consumers as updated before it is committed, so a run which is
+ * interrupted resumes with the remaining consumers the next time it runs.
  */
+@DisallowConcurrentExecution
 public class ActiveEntitlementJob extends KingpinJob {
+    private static Logger log = LoggerFactory.getLogger(ActiveEntitlementJob.class);
 
     // Every hour:
     public static final String DEFAULT_SCHEDULE = "0 0 0/1 * * ?";
 
     private ConsumerCurator consumerCurator;
     private ComplianceRules complianceRules;
+    private EventSink eventSink;
+    private int batchSize;
 
     @Inject
-    public ActiveEntitlementJob(ConsumerCurator consumerCurator, ComplianceRules complianceRules) {
+    public ActiveEntitlementJob(Configuration config, ConsumerCurator consumerCurator,
+        ComplianceRules complianceRules, EventSink eventSink) {
+
         this.consumerCurator = consumerCurator;
         this.complianceRules = complianceRules;
+        this.eventSink = eventSink;
+        this.batchSize = Math.max(config.getInt(ConfigProperties.ACTIVE_ENTITLEMENT_JOB_BATCH_SIZE), 1);
     }
 
     @Override
     public void toExecute(JobExecutionContext ctx) throws JobExecutionException {
-        // not uuids
-        List<String> ids = consumerCurator.getConsumerIdsWithStartedEnts();
-        for (String id : ids) {
-            Consumer c = consumerCurator.find(id);
-            complianceRules.getStatus(c);
+        String lastId = null;
+        int processed = 0;
+        List<String> ids;
+
+        do {
+            // not uuids
+            ids = consumerCurator.getConsumerIdsWithStartedEnts(lastId, this.batchSize);
+            if (ids.isEmpty()) {
+                break;
+            }
+
+            processed += this.updateCompliance(ids);
+
+            // Send the compliance events of the committed page, and start the next page with a
+            // clean session
+            this.eventSink.sendEvents();
+            this.consumerCurator.clear();
+
+            lastId = ids.get(ids.size() - 1);
         }
+        while (ids.size() >= this.batchSize);
+
+        log.info("Recalculated compliance of {} consumers with newly active entitlements", processed);
+    }
+
+    /**
+     * Recalculates the compliance of the given consumers in a single transaction.
+     *
+     * @param ids
+     *  the IDs of the consumers to update
+     *
+     * @return
+     *  the number of consumers updated
+     */
+    @Transactional
+    protected int updateCompliance(List<String> ids) {
+        List<Consumer> consumers = this.consumerCurator.listAllByIds(ids).list();
+        // As before paging, only the current status is needed here, not how long it lasts
+        Iterator<Map.Entry<Consumer, ComplianceStatus>> statuses =
+            this.complianceRules.getStatuses(consumers, false);
+
+        int count = 0;
+        while (statuses.hasNext()) {
+            statuses.next();
+            ++count;
+        }
+
+        this.consumerCurator.flush();
+        return count;
     }
 }
@@ -35,13 +35,14 @@ import java.util.Set;
 
 /**
  * CancelJobJob attempts to cancel the jobs in Quartz for the jobs whose
- * status is JobStatus.CANCEL.
+ * status is JobStatus.CANCEL. Jobs canceled through the API are removed from the
+ * scheduler right away, so this only catches the jobs which were missed there.
  */
 @DisallowConcurrentExecution
 public class CancelJobJob extends KingpinJob {
 
     private static Logger log = LoggerFactory.getLogger(CancelJobJob.class);
-    public static final String DEFAULT_SCHEDULE = "0/5 * * * * ?"; //every five seconds
+    public static final String DEFAULT_SCHEDULE = "0 0/1 * * * ?"; //every minute
     private JobCurator jobCurator;
     private PinsetterKernel pinsetterKernel;
 
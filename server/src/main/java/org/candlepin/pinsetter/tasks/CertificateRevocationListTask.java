@@ -34,6 +34,10 @@ import java.io.IOException;
  * CertificateRevocationListTask synchronizes the CRL with the DB, we add newly
  * revoked certificates, and remove expired certificates from the file. The job
  * then writes the CRL file.
+ *
+ * When delta CRLs are enabled, every run rebuilds the base CRL and restarts the
+ * delta CRL from it. The delta CRL is refreshed in between by
+ * DeltaCertificateRevocationListTask, on its own schedule.
  */
 public class CertificateRevocationListTask extends KingpinJob {
 
@@ -66,7 +70,14 @@ public class CertificateRevocationListTask extends KingpinJob {
         }
         try {
             File crlFile = new File(filePath);
-            this.crlFileUtil.syncCRLWithDB(crlFile);
+            String deltaFilePath = config.getString(ConfigProperties.CRL_DELTA_FILE_PATH);
+
+            if (deltaFilePath != null && !deltaFilePath.isEmpty()) {
+                this.crlFileUtil.syncCRLWithDB(crlFile, new File(deltaFilePath), 0);
+            }
+            else {
+                this.crlFileUtil.syncCRLWithDB(crlFile);
+            }
         }
         catch (IOException e) {
             log.error("IOException:", e);
@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pinsetter.tasks;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.util.CrlFileUtil;
+
+import com.google.inject.Inject;
+
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+
+
+/**
+ * DeltaCertificateRevocationListTask writes the certificates revoked since the
+ * base CRL was last rebuilt to the delta CRL file. It does nothing while delta
+ * CRLs are disabled.
+ *
+ * The base CRL is rebuilt by CertificateRevocationListTask; should that not have
+ * happened within the configured rebuild interval, this job rebuilds it first.
+ */
+public class DeltaCertificateRevocationListTask extends KingpinJob {
+
+    public static final String DEFAULT_SCHEDULE = "0 0 * * * ?";
+
+    private Configuration config;
+    private CrlFileUtil crlFileUtil;
+
+    private static Logger log = LoggerFactory.getLogger(DeltaCertificateRevocationListTask.class);
+
+    @Inject
+    public DeltaCertificateRevocationListTask(Configuration conf, CrlFileUtil crlFileUtil) {
+        this.config = conf;
+        this.crlFileUtil = crlFileUtil;
+    }
+
+    public void toExecute(JobExecutionContext ctx) throws JobExecutionException {
+        String deltaFilePath = config.getString(ConfigProperties.CRL_DELTA_FILE_PATH);
+
+        if (deltaFilePath == null || deltaFilePath.isEmpty()) {
+            log.debug("Delta CRLs are disabled; skipping");
+            return;
+        }
+
+        String filePath = config.getString(ConfigProperties.CRL_FILE_PATH);
+        log.info("Executing delta CRL Job. Delta CRL filePath={}", deltaFilePath);
+
+        if (filePath == null) {
+            throw new JobExecutionException("Invalid " + ConfigProperties.CRL_FILE_PATH, false);
+        }
+
+        try {
+            long interval = TimeUnit.HOURS.toMillis(
+                config.getLong(ConfigProperties.CRL_BASE_REBUILD_INTERVAL));
+
+            this.crlFileUtil.syncCRLWithDB(new File(filePath), new File(deltaFilePath), interval);
+        }
+        catch (IOException e) {
+            log.error("IOException:", e);
+            throw new JobExecutionException(e, false);
+        }
+    }
+}
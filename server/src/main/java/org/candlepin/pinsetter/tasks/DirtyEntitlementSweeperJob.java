@@ -0,0 +1,187 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pinsetter.tasks;
+
+import org.candlepin.audit.EventSink;
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.controller.PoolManager;
+import org.candlepin.model.Entitlement;
+import org.candlepin.model.EntitlementCurator;
+import org.candlepin.model.JobCurator;
+import org.candlepin.pinsetter.core.model.JobStatus;
+
+import com.google.inject.Inject;
+import com.google.inject.persist.Transactional;
+
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+
+
+
+/**
+ * DirtyEntitlementSweeperJob
+ *
+ * Regenerates the certificates of entitlements marked dirty by product and content changes
+ * ahead of time, so that the consumers' next check-in does not have to pay for it. The
+ * entitlements of the consumers which checked in most recently are regenerated first.
+ *
+ * Entitlements are regenerated in batches, each in its own transaction, with a pause between
+ * batches and a cap on the number regenerated per run to leave headroom for interactive
+ * requests; whatever is left is picked up by the next run. The progress of a run is reported
+ * through the job's status.
+ *
+ * A batch which fails is rolled back, along with its events, and its entitlements are then
+ * regenerated one at a time, so an entitlement which cannot be regenerated only fails by
+ * itself rather than halting the sweep.
+ */
+public class DirtyEntitlementSweeperJob extends KingpinJob {
+    private static Logger log = LoggerFactory.getLogger(DirtyEntitlementSweeperJob.class);
+
+    // Every 15 minutes
+    public static final String DEFAULT_SCHEDULE = "0 0/15 * * * ?";
+
+    private Configuration config;
+    private EntitlementCurator entitlementCurator;
+    private PoolManager poolManager;
+    private JobCurator jobCurator;
+    private EventSink eventSink;
+
+    @Inject
+    public DirtyEntitlementSweeperJob(Configuration config, EntitlementCurator entitlementCurator,
+        PoolManager poolManager, JobCurator jobCurator, EventSink eventSink) {
+
+        this.config = config;
+        this.entitlementCurator = entitlementCurator;
+        this.poolManager = poolManager;
+        this.jobCurator = jobCurator;
+        this.eventSink = eventSink;
+    }
+
+    @Override
+    public void toExecute(JobExecutionContext context) throws JobExecutionException {
+        int batchSize = this.config.getInt(ConfigProperties.DIRTY_ENTITLEMENT_SWEEPER_BATCH_SIZE);
+        int maxPerRun = this.config.getInt(ConfigProperties.DIRTY_ENTITLEMENT_SWEEPER_MAX_PER_RUN);
+        long pause = this.config.getLong(ConfigProperties.DIRTY_ENTITLEMENT_SWEEPER_PAUSE);
+
+        // Take the IDs up front, so entitlements which cannot be regenerated right now are only
+        // attempted once per run
+        List<String> entitlementIds = this.entitlementCurator.listDirtyIdsByLastCheckin(maxPerRun);
+
+        if (entitlementIds.isEmpty()) {
+            log.debug("No dirty entitlements to regenerate");
+            context.setResult("No dirty entitlements to regenerate");
+            return;
+        }
+
+        batchSize = Math.max(batchSize, 1);
+        log.info("Regenerating {} dirty entitlements, in batches of {}", entitlementIds.size(), batchSize);
+        String jobId = context.getJobDetail().getKey().getName();
+        int processed = 0;
+        int failed = 0;
+
+        for (int offset = 0; offset < entitlementIds.size(); offset += batchSize) {
+            if (offset > 0 && pause > 0) {
+                try {
+                    Thread.sleep(pause);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+
+            List<String> batch = entitlementIds.subList(offset,
+                Math.min(offset + batchSize, entitlementIds.size()));
+
+            if (!this.regenerate(batch)) {
+                if (batch.size() == 1) {
+                    ++failed;
+                }
+                else {
+                    // Regenerate the entitlements of the failed batch one at a time, so only
+                    // the ones at fault are left dirty
+                    for (String entitlementId : batch) {
+                        if (!this.regenerate(Collections.singletonList(entitlementId))) {
+                            ++failed;
+                        }
+                    }
+                }
+            }
+
+            processed += batch.size();
+            this.reportProgress(jobId, String.format("Processed %d of %d dirty entitlements",
+                processed, entitlementIds.size()));
+        }
+
+        String result = String.format("Processed %d dirty entitlements; %d failed; %d still dirty",
+            processed, failed, this.entitlementCurator.countDirty());
+
+        log.info(result);
+        context.setResult(result);
+    }
+
+    /**
+     * Regenerates the given entitlements in a transaction of their own, and sends their
+     * events. On failure, the transaction and the events are rolled back.
+     *
+     * @return
+     *  true if the entitlements were regenerated, false otherwise
+     */
+    private boolean regenerate(List<String> entitlementIds) {
+        try {
+            this.regenerateBatch(entitlementIds);
+            this.eventSink.sendEvents();
+            return true;
+        }
+        catch (RuntimeException e) {
+            log.error("Unable to regenerate dirty entitlements: {}", entitlementIds, e);
+            this.eventSink.rollback();
+            return false;
+        }
+        finally {
+            // Drop the regenerated entitlements and certificates from the session
+            this.entitlementCurator.clear();
+        }
+    }
+
+    /*
+     * Each batch is regenerated in a separate transaction, so the regenerated certificates
+     * are committed as the run goes
+     */
+    @Transactional
+    protected void regenerateBatch(List<String> entitlementIds) {
+        List<Entitlement> entitlements = this.entitlementCurator.listAllByIds(entitlementIds).list();
+
+        // Entitlements regenerated by their consumer since the run started are no longer dirty,
+        // and are skipped
+        this.poolManager.regenerateDirtyEntitlements(entitlements);
+    }
+
+    @Transactional
+    protected void reportProgress(String jobId, String progress) {
+        JobStatus status = this.jobCurator.find(jobId);
+
+        if (status != null) {
+            status.setResult(progress);
+            this.jobCurator.merge(status);
+        }
+    }
+}
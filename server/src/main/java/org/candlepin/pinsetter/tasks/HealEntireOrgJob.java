@@ -16,22 +16,31 @@ package org.candlepin.pinsetter.tasks;
 
 import static org.quartz.JobBuilder.*;
 
+import org.candlepin.audit.EventSink;
+import org.candlepin.auth.Principal;
 import org.candlepin.common.filter.LoggingFilter;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.controller.AutobindDisabledForOwnerException;
 import org.candlepin.controller.Entitler;
+import org.candlepin.guice.CandlepinRequestScope;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.ConsumerCurator;
 import org.candlepin.model.Entitlement;
 import org.candlepin.model.Owner;
 import org.candlepin.model.OwnerCurator;
 import org.candlepin.pinsetter.core.model.JobStatus;
+import org.candlepin.policy.js.RulesInputCache;
 import org.candlepin.resource.dto.AutobindData;
 import org.candlepin.util.Util;
 
 import org.apache.log4j.MDC;
 import org.jboss.resteasy.spi.BadRequestException;
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
 
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.name.Named;
 import com.google.inject.persist.Transactional;
 
 import org.quartz.JobDataMap;
@@ -42,27 +51,48 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xnap.commons.i18n.I18n;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * HealEntireOrgJob
+ *
+ * Heals every consumer of an owner. The consumers are partitioned across the workers of a
+ * shared thread pool, each worker healing its consumers one at a time, each in its own
+ * transaction. Pools are locked in the order of their IDs, so concurrent heals of consumers
+ * sharing pools wait on each other rather than deadlock.
  */
 public class HealEntireOrgJob extends UniqueByEntityJob {
     private static Logger log = LoggerFactory.getLogger(HealEntireOrgJob.class);
     protected static String prefix = "heal_entire_org_";
 
     protected OwnerCurator ownerCurator;
-    protected Entitler entitler;
+    protected Provider<Entitler> entitlerProvider;
     protected ConsumerCurator consumerCurator;
     private I18n i18n;
+    private CandlepinRequestScope requestScope;
+    private EventSink eventSink;
+    private ExecutorService executor;
+    private Provider<RulesInputCache> rulesInputCacheProvider;
 
     @Inject
-    public HealEntireOrgJob(Entitler e, ConsumerCurator c, OwnerCurator o, I18n i18n) {
-        this.entitler = e;
+    public HealEntireOrgJob(Provider<Entitler> entitlerProvider, ConsumerCurator c, OwnerCurator o,
+        I18n i18n, CandlepinRequestScope requestScope, EventSink eventSink,
+        @Named("HealEntireOrgExecutor") ExecutorService executor,
+        Provider<RulesInputCache> rulesInputCacheProvider) {
+
+        this.entitlerProvider = entitlerProvider;
         this.consumerCurator = c;
         this.ownerCurator = o;
         this.i18n = i18n;
+        this.requestScope = requestScope;
+        this.eventSink = eventSink;
+        this.executor = executor;
+        this.rulesInputCacheProvider = rulesInputCacheProvider;
     }
 
     @Override
@@ -79,20 +109,33 @@ public class HealEntireOrgJob extends UniqueByEntityJob {
             }
 
             Date entitleDate = (Date) map.get("entitle_date");
+            List<String> uuids = ownerCurator.getConsumerUuids(owner).list();
+
+            // Split the consumers evenly across the workers; any workers beyond the size of the
+            // pool simply wait for a free thread
+            int workers = Math.max(config.getInt(ConfigProperties.HEAL_ENTIRE_ORG_THREADS), 1);
+            int partitionSize = Math.max((uuids.size() + workers - 1) / workers, 1);
+
+            // Workers run as the job's principal, which the job listener only set up on this thread
+            Principal principal = ResteasyProviderFactory.getContextData(Principal.class);
+            Thread jobThread = Thread.currentThread();
+            HealCounts counts = new HealCounts();
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+
+            for (List<String> partition : Lists.partition(uuids, partitionSize)) {
+                futures.add(executor.submit(new HealWorker(partition, entitleDate, counts, principal,
+                    jobThread)));
+            }
 
-            for (String uuid : ownerCurator.getConsumerUuids(owner).list()) {
-                // Do not send in product IDs.  CandlepinPoolManager will take care
-                // of looking up the non or partially compliant products to bind.
-                try {
-                    Consumer consumer = consumerCurator.getConsumer(uuid);
-                    healSingleConsumer(consumer, entitleDate);
-                }
-                // We want to catch everything and continue.
-                // Perhaps add something to surface errors later
-                catch (Exception e) {
-                    log.debug("Healing failed for UUID \"{}\" with message: {}", uuid, e.getMessage());
-                }
+            for (Future<?> future : futures) {
+                future.get();
             }
+
+            String result = String.format("Healed %d of %d consumers; %d failed", counts.healed.get(),
+                uuids.size(), counts.failed.get());
+
+            log.info("{} of owner {}", result, owner.getKey());
+            ctx.setResult(result);
         }
         catch (Exception e) {
             log.error("EntitlerJob encountered a problem.", e);
@@ -101,11 +144,68 @@ public class HealEntireOrgJob extends UniqueByEntityJob {
         }
     }
 
+    /*
+     * Heals the given consumers on the current thread, each consumer in its own transaction.
+     */
+    private void healConsumers(List<String> uuids, Date entitleDate, HealCounts counts) {
+        Entitler entitler = entitlerProvider.get();
+
+        for (String uuid : uuids) {
+            // Do not send in product IDs.  CandlepinPoolManager will take care
+            // of looking up the non or partially compliant products to bind.
+            try {
+                healSingleConsumer(entitler, uuid, entitleDate);
+                eventSink.sendEvents();
+                counts.healed.incrementAndGet();
+            }
+            // We want to catch everything and continue.
+            catch (Exception e) {
+                eventSink.rollback();
+                counts.failed.incrementAndGet();
+                log.debug("Healing failed for UUID \"{}\" with message: {}", uuid, e.getMessage());
+            }
+            finally {
+                // Keep the session and the rules input cache from growing with every consumer
+                // healed; the cached JSON is of entities the session no longer holds
+                consumerCurator.clear();
+                rulesInputCacheProvider.get().clear();
+            }
+        }
+    }
+
+    /*
+     * Heals the given consumers on a worker thread. Workers run outside of the job's unit of work
+     * and request scope, so they open their own as the job's principal, along with their own
+     * entitler and rules.
+     */
+    private void healConsumersInWorker(List<String> uuids, Date entitleDate, HealCounts counts,
+        Principal principal) {
+
+        requestScope.enter();
+        ResteasyProviderFactory.pushContext(Principal.class, principal);
+        boolean startedUow = startUnitOfWork();
+
+        try {
+            healConsumers(uuids, entitleDate, counts);
+        }
+        finally {
+            if (startedUow) {
+                endUnitOfWork();
+            }
+
+            ResteasyProviderFactory.popContextData(Principal.class);
+            requestScope.exit();
+        }
+    }
+
     /*
      * Each consumer heal should be a separate transaction
      */
-    @Transactional
-    private void healSingleConsumer(Consumer consumer, Date date) throws AutobindDisabledForOwnerException {
+    @Transactional(rollbackOn = Exception.class)
+    protected void healSingleConsumer(Entitler entitler, String uuid, Date date)
+        throws AutobindDisabledForOwnerException {
+
+        Consumer consumer = consumerCurator.getConsumer(uuid);
         List<Entitlement> ents = entitler.bindByProducts(AutobindData.create(consumer).on(date), true);
         entitler.sendEvents(ents);
     }
@@ -127,4 +227,39 @@ public class HealEntireOrgJob extends UniqueByEntityJob {
 
         return detail;
     }
+
+    private static class HealCounts {
+        private final AtomicInteger healed = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+    }
+
+    private class HealWorker implements Runnable {
+        private final List<String> uuids;
+        private final Date entitleDate;
+        private final HealCounts counts;
+        private final Principal principal;
+        private final Thread jobThread;
+
+        HealWorker(List<String> uuids, Date entitleDate, HealCounts counts, Principal principal,
+            Thread jobThread) {
+
+            this.uuids = uuids;
+            this.entitleDate = entitleDate;
+            this.counts = counts;
+            this.principal = principal;
+            this.jobThread = jobThread;
+        }
+
+        @Override
+        public void run() {
+            // Without a pool of its own the worker runs on the job's thread, inside the job's
+            // unit of work and request scope, which must be left for the job to close
+            if (Thread.currentThread() == this.jobThread) {
+                healConsumers(this.uuids, this.entitleDate, this.counts);
+            }
+            else {
+                healConsumersInWorker(this.uuids, this.entitleDate, this.counts, this.principal);
+            }
+        }
+    }
 }
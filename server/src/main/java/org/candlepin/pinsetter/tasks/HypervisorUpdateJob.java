@@ -112,9 +112,63 @@ public class HypervisorUpdateJob extends KingpinJob {
         }
         log.debug("Scheduling job without a trigger: " + detail.getKey().getName());
         JobStatus status = KingpinJob.scheduleJob(jobCurator, scheduler, detail, null);
+        HypervisorUpdateJobStatistics.recordQueued();
+
+        supersedeWaitingJobs(jobCurator, scheduler, detail);
         return status;
     }
 
+    /*
+     * Each report carries the complete mapping of its reporter, so a newer report makes the
+     * reports of the same reporter still waiting on the owner redundant. These are canceled
+     * before they ever inflate their payload. A report which may not create hosts does not
+     * replace one which may.
+     */
+    private static void supersedeWaitingJobs(JobCurator jobCurator, Scheduler scheduler,
+        JobDetail detail) throws SchedulerException {
+
+        JobDataMap map = detail.getJobDataMap();
+        String reporterId = map.getString(REPORTER_ID);
+        if (reporterId == null) {
+            return;
+        }
+
+        boolean create = map.getBoolean(CREATE);
+        String result = "Superseded by hypervisor update " + detail.getKey().getName();
+        int superseded = 0;
+
+        String ownerKey = map.getString(JobStatus.TARGET_ID);
+        List<JobStatus> waitingJobs = jobCurator
+            .findWaitingJobs(HypervisorUpdateJob.class.getCanonicalName(), ownerKey)
+            .list();
+
+        for (JobStatus waiting : waitingJobs) {
+            if (waiting.getId().equals(detail.getKey().getName())) {
+                continue;
+            }
+
+            JobDetail waitingDetail = scheduler.getJobDetail(waiting.getJobKey());
+            if (waitingDetail == null) {
+                continue;
+            }
+
+            JobDataMap waitingMap = waitingDetail.getJobDataMap();
+            if (reporterId.equals(waitingMap.getString(REPORTER_ID)) &&
+                (create || !waitingMap.getBoolean(CREATE)) &&
+                jobCurator.cancelWaitingJob(waiting.getId(), result)) {
+
+                scheduler.deleteJob(waiting.getJobKey());
+                ++superseded;
+            }
+        }
+
+        if (superseded > 0) {
+            log.info("Hypervisor update {} from reporter {} superseded {} queued updates",
+                detail.getKey().getName(), reporterId, superseded);
+            HypervisorUpdateJobStatistics.recordSuperseded(superseded);
+        }
+    }
+
     public static boolean isSchedulable(JobCurator jobCurator, JobStatus status) {
         JobStatus nextJob = jobCurator.getNextByClassAndTarget(status.getTargetId(),
             HypervisorUpdateJob.class);
@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pinsetter.tasks;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+
+/**
+ * HypervisorUpdateJobStatistics
+ *
+ * Counts the hypervisor updates which had to wait on another update of the same owner, and
+ * those of them which were superseded by a newer report before they could run. Hypervisor
+ * updates are scheduled through a static method, so the counters are shared by the class.
+ */
+public class HypervisorUpdateJobStatistics implements HypervisorUpdateJobStatisticsMBean {
+
+    private static final AtomicLong QUEUED = new AtomicLong();
+    private static final AtomicLong SUPERSEDED = new AtomicLong();
+
+    static void recordQueued() {
+        QUEUED.incrementAndGet();
+    }
+
+    static void recordSuperseded(int count) {
+        SUPERSEDED.addAndGet(count);
+    }
+
+    @Override
+    public long getQueuedCount() {
+        return QUEUED.get();
+    }
+
+    @Override
+    public long getSupersededCount() {
+        return SUPERSEDED.get();
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pinsetter.tasks;
+
+
+
+/**
+ * HypervisorUpdateJobStatisticsMBean
+ *
+ * The statistics of queued hypervisor updates, as published over JMX.
+ */
+public interface HypervisorUpdateJobStatisticsMBean {
+
+    /**
+     * @return the number of hypervisor updates queued behind another update of the same owner
+     */
+    long getQueuedCount();
+
+    /**
+     * @return the number of queued hypervisor updates superseded by a newer report
+     */
+    long getSupersededCount();
+}
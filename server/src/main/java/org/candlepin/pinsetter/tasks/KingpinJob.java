@@ -14,6 +14,7 @@
  */
 package org.candlepin.pinsetter.tasks;
 
+import static org.quartz.TriggerBuilder.newTrigger;
 import static org.quartz.impl.matchers.NameMatcher.jobNameEquals;
 
 import org.candlepin.audit.EventSink;
@@ -22,8 +23,10 @@ import org.candlepin.config.ConfigProperties;
 import org.candlepin.guice.CandlepinRequestScope;
 import org.candlepin.model.JobCurator;
 import org.candlepin.pinsetter.core.PinsetterJobListener;
+import org.candlepin.pinsetter.core.PinsetterKernel;
 import org.candlepin.pinsetter.core.RetryJobException;
 import org.candlepin.pinsetter.core.model.JobStatus;
+import org.candlepin.pinsetter.core.model.JobStatus.JobState;
 import org.candlepin.util.Traceable;
 
 import com.google.inject.Inject;
@@ -183,9 +186,58 @@ public abstract class KingpinJob implements Job {
             throw e;
         }
 
+        if (trigger == null) {
+            triggerIfSchedulable(jobCurator, scheduler, detail, status);
+        }
+
         return status;
     }
 
+    /*
+     * The job a waiting job waits on may finish after the waiting job was found to be blocked,
+     * but before its waiting status is stored, in which case the completion check does not see
+     * it. Checking again once the status is stored closes that window; whichever of the two
+     * checks claims the job first triggers it. Anything still missed, such as a status stored in
+     * a transaction which had not committed yet, is left to the UnpauseJob sweep.
+     */
+    private static void triggerIfSchedulable(JobCurator jobCurator, Scheduler scheduler,
+        JobDetail detail, JobStatus status) {
+
+        if (status == null || status.getState() != JobState.WAITING) {
+            return;
+        }
+
+        try {
+            boolean schedulable = (Boolean) detail.getJobClass()
+                .getMethod("isSchedulable", JobCurator.class, JobStatus.class)
+                .invoke(null, jobCurator, status);
+
+            if (!schedulable || !jobCurator.claimWaitingJob(status.getId())) {
+                return;
+            }
+
+            try {
+                scheduler.scheduleJob(newTrigger()
+                    .withIdentity(status.getId() + " trigger", PinsetterKernel.SINGLE_JOB_GROUP)
+                    .forJob(detail.getKey())
+                    .build());
+
+                status.setState(JobState.CREATED);
+                jobCurator.merge(status);
+                log.debug("Triggered waiting job on scheduling: {}", status.getId());
+            }
+            catch (SchedulerException e) {
+                // Hand the job back, so the next completion or sweep picks it up
+                status.setState(JobState.WAITING);
+                jobCurator.merge(status);
+                throw e;
+            }
+        }
+        catch (Exception e) {
+            log.warn("Unable to trigger waiting job {}; leaving it to wait", status.getId(), e);
+        }
+    }
+
     private static void failStatus(JobCurator curator, JobStatus status) {
         // if there was any error in scheduling, ensure that the status is updated
         status.setState(JobStatus.JobState.FAILED);
@@ -17,7 +17,6 @@ package org.candlepin.pinsetter.tasks;
 import org.candlepin.model.JobCurator;
 import org.candlepin.pinsetter.core.PinsetterKernel;
 import org.candlepin.pinsetter.core.model.JobStatus;
-import org.candlepin.pinsetter.core.model.JobStatus.JobState;
 
 import com.google.inject.Inject;
 
@@ -31,16 +30,16 @@ import org.slf4j.LoggerFactory;
 import java.util.List;
 
 /**
- * UnpauseJob prompts each paused job to check if it
- * is safe to continue executing every 5 seconds.  The polling
- * approach isn't as fast or efficient as allowing blocking jobs
- * to trigger the next in line, but this avoids concurrency
- * and locking problems
+ * UnpauseJob prompts each paused job to check if it is safe to continue executing.
+ * Blocking jobs trigger the next in line as soon as they complete through
+ * PinsetterKernel.jobCompleted, and a job queued just as the one it waits on completes
+ * checks again once it is stored, so this is only a safety net for waiting jobs missed
+ * by both, and runs once a minute.
  */
 @DisallowConcurrentExecution
 public class UnpauseJob extends KingpinJob {
     private static Logger log = LoggerFactory.getLogger(UnpauseJob.class);
-    public static final String DEFAULT_SCHEDULE = "0/5 * * * * ?"; //every five seconds
+    public static final String DEFAULT_SCHEDULE = "0 0/1 * * * ?"; //every minute
     private JobCurator jobCurator;
     private PinsetterKernel pinsetterKernel;
 
@@ -61,29 +60,9 @@ public class UnpauseJob extends KingpinJob {
             log.error("Cannot execute query: ", e);
             throw new JobExecutionException(e);
         }
-        for (JobStatus j : waitingJobs) {
-            try {
-                Class jobClass = Class.forName(j.getJobClass());
-                boolean schedule = (Boolean) jobClass.getMethod("isSchedulable", JobCurator.class,
-                    JobStatus.class).invoke(null, jobCurator, j);
-                if (schedule) {
-                    log.debug("Triggering waiting job: " + j.getId());
-                    pinsetterKernel.addTrigger(j);
-                    j.setState(JobState.CREATED);
-                    jobCurator.merge(j);
-                }
-            }
-            catch (ClassNotFoundException cnfe) {
-                log.warn("Job class {} not found. It was likely removed from candlepin and is no " +
-                    "longer valid.", j.getJobClass());
-                // Maintain job history. Mark it as CANCELED and update the status.
-                j.setState(JobState.CANCELED);
-                j.setResult("Job canceled because job class no longer exists.");
-                jobCurator.merge(j);
-            }
-            catch (Exception e) {
-                log.error("Failed to schedule waiting job: " + j.getId(), e);
-            }
+        if (!waitingJobs.isEmpty()) {
+            int triggered = pinsetterKernel.triggerWaitingJobs(waitingJobs);
+            log.debug("Triggered {} of {} waiting jobs", triggered, waitingJobs.size());
         }
     }
 
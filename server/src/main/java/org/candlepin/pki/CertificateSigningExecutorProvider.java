@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pki;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+
+/**
+ * CertificateSigningExecutorProvider
+ *
+ * Provides the bounded thread pool used to build and sign the entitlement certificates of a
+ * single bind in parallel. All requests share the pool, so the number of threads also caps
+ * the CPU spent on signing across the node. With no threads configured, certificates are
+ * signed on the requesting thread. The pool is shut down along with the servlet context.
+ */
+@Singleton
+public class CertificateSigningExecutorProvider implements Provider<ExecutorService> {
+
+    private final int threads;
+    private ExecutorService executor;
+
+    @Inject
+    public CertificateSigningExecutorProvider(Configuration config) {
+        this.threads = config.getInt(ConfigProperties.CERT_SIGNING_THREADS);
+    }
+
+    @Override
+    public synchronized ExecutorService get() {
+        if (this.executor == null) {
+            this.executor = this.threads <= 0 ? MoreExecutors.sameThreadExecutor() :
+                Executors.newFixedThreadPool(this.threads, new ThreadFactoryBuilder()
+                .setNameFormat("cert-signing-%d")
+                .setDaemon(true)
+                .build());
+        }
+
+        return this.executor;
+    }
+
+    /**
+     * Shuts down the pool, if one was created. Certificates already being signed are allowed
+     * to finish.
+     */
+    public synchronized void shutdown() {
+        if (this.executor != null) {
+            this.executor.shutdown();
+        }
+    }
+}
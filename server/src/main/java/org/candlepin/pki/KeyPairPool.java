@@ -0,0 +1,174 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pki;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+
+/**
+ * KeyPairPool
+ *
+ * Keeps a bounded pool of freshly generated RSA key pairs, so that registering a consumer or
+ * issuing a content access certificate does not have to wait for a key pair to be generated.
+ * Background threads refill the pool as key pairs are taken from it. Should the pool run dry,
+ * key pairs are generated on the requesting thread, as they were before.
+ */
+@Singleton
+public class KeyPairPool implements KeyPairPoolMBean {
+    private static Logger log = LoggerFactory.getLogger(KeyPairPool.class);
+
+    private final PKIUtility pki;
+    private final int size;
+    private final int threads;
+
+    private final BlockingQueue<KeyPair> pool;
+    private ExecutorService executor;
+
+    private final AtomicLong generated;
+    private final AtomicLong served;
+    private final AtomicLong inlineFallbacks;
+
+    @Inject
+    public KeyPairPool(PKIUtility pki, Configuration config) {
+        this.pki = pki;
+        this.size = config.getInt(ConfigProperties.KEYPAIR_POOL_SIZE);
+        this.threads = config.getInt(ConfigProperties.KEYPAIR_POOL_THREADS);
+
+        this.pool = new LinkedBlockingQueue<KeyPair>(Math.max(this.size, 1));
+        this.generated = new AtomicLong();
+        this.served = new AtomicLong();
+        this.inlineFallbacks = new AtomicLong();
+    }
+
+    /**
+     * Starts filling the pool in the background. Until then, key pairs are generated when they
+     * are taken.
+     */
+    public synchronized void start() {
+        if (this.size <= 0 || this.threads <= 0 || this.executor != null) {
+            return;
+        }
+
+        this.executor = Executors.newFixedThreadPool(this.threads, new ThreadFactoryBuilder()
+            .setNameFormat("keypair-pool-%d")
+            .setDaemon(true)
+            .setPriority(Thread.MIN_PRIORITY)
+            .build());
+
+        for (int i = 0; i < this.threads; i++) {
+            this.executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    fill();
+                }
+            });
+        }
+
+        log.info("Keeping up to {} key pairs ready, generated by {} threads", this.size, this.threads);
+    }
+
+    /**
+     * Stops filling the pool, and discards the key pairs it holds.
+     */
+    public synchronized void shutdown() {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+
+        this.pool.clear();
+    }
+
+    private void fill() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                KeyPair keyPair = this.pki.generateNewKeyPair();
+                this.generated.incrementAndGet();
+
+                // Blocks while the pool is full
+                this.pool.put(keyPair);
+            }
+        }
+        catch (InterruptedException e) {
+            // Shutting down
+        }
+        catch (NoSuchAlgorithmException e) {
+            log.error("Unable to generate key pairs in the background", e);
+        }
+    }
+
+    /**
+     * Takes a key pair from the pool, or generates one right away if the pool is empty.
+     *
+     * @throws NoSuchAlgorithmException
+     *  if a key pair has to be generated, and the RSA algorithm is not available
+     *
+     * @return
+     *  a key pair which has not been handed out before
+     */
+    public KeyPair take() throws NoSuchAlgorithmException {
+        KeyPair keyPair = this.pool.poll();
+
+        if (keyPair != null) {
+            this.served.incrementAndGet();
+            return keyPair;
+        }
+
+        this.inlineFallbacks.incrementAndGet();
+        return this.pki.generateNewKeyPair();
+    }
+
+    @Override
+    public int getDepth() {
+        return this.pool.size();
+    }
+
+    @Override
+    public int getCapacity() {
+        return this.size;
+    }
+
+    @Override
+    public long getGeneratedCount() {
+        return this.generated.get();
+    }
+
+    @Override
+    public long getServedCount() {
+        return this.served.get();
+    }
+
+    @Override
+    public long getInlineFallbackCount() {
+        return this.inlineFallbacks.get();
+    }
+}
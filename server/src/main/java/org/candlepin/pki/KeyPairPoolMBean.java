@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pki;
+
+
+
+/**
+ * KeyPairPoolMBean
+ *
+ * The statistics of the key pair pool, as published over JMX.
+ */
+public interface KeyPairPoolMBean {
+
+    /**
+     * @return the number of key pairs ready to be taken
+     */
+    int getDepth();
+
+    /**
+     * @return the maximum number of key pairs kept ready
+     */
+    int getCapacity();
+
+    /**
+     * @return the number of key pairs generated in the background
+     */
+    long getGeneratedCount();
+
+    /**
+     * @return the number of key pairs taken from the pool
+     */
+    long getServedCount();
+
+    /**
+     * @return the number of key pairs generated on the requesting thread, as the pool was empty
+     */
+    long getInlineFallbackCount();
+}
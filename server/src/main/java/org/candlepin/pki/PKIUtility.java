@@ -84,6 +84,17 @@ public abstract class PKIUtility {
     public abstract X509CRL createX509CRL(List<X509CRLEntryWrapper> entries,
         BigInteger crlNumber);
 
+    /**
+     * Generate a delta CRL, as described in RFC 5280, section 5.2.4.
+     *
+     * @param entries the entries revoked since the base CRL was issued
+     * @param crlNumber the CRL number of the delta CRL
+     * @param baseCrlNumber the CRL number of the base CRL the delta CRL updates
+     * @return the x509 delta CRL
+     */
+    public abstract X509CRL createX509DeltaCRL(List<X509CRLEntryWrapper> entries,
+        BigInteger crlNumber, BigInteger baseCrlNumber);
+
     public KeyPair decodeKeys(byte[] privKeyBits, byte[] pubKeyBits)
         throws InvalidKeySpecException, NoSuchAlgorithmException {
 
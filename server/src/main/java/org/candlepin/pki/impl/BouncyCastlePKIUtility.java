@@ -190,6 +190,22 @@ public class BouncyCastlePKIUtility extends PKIUtility {
 
     @Override
     public X509CRL createX509CRL(List<X509CRLEntryWrapper> entries, BigInteger crlNumber) {
+        return this.createX509CRL(entries, crlNumber, null);
+    }
+
+    @Override
+    public X509CRL createX509DeltaCRL(List<X509CRLEntryWrapper> entries, BigInteger crlNumber,
+        BigInteger baseCrlNumber) {
+
+        if (baseCrlNumber == null) {
+            throw new IllegalArgumentException("baseCrlNumber is null");
+        }
+
+        return this.createX509CRL(entries, crlNumber, baseCrlNumber);
+    }
+
+    private X509CRL createX509CRL(List<X509CRLEntryWrapper> entries, BigInteger crlNumber,
+        BigInteger baseCrlNumber) {
 
         try {
             X509Certificate caCert = reader.getCACert();
@@ -209,6 +225,13 @@ public class BouncyCastlePKIUtility extends PKIUtility {
                 false, new AuthorityKeyIdentifierStructure(caCert));
             generator.addExtension(X509Extensions.CRLNumber, false,
                 new CRLNumber(crlNumber));
+
+            if (baseCrlNumber != null) {
+                // RFC 5280 requires the delta CRL indicator to be critical
+                generator.addExtension(X509Extensions.DeltaCRLIndicator, true,
+                    new CRLNumber(baseCrlNumber));
+            }
+
             return generator.generate(reader.getCaKey());
         }
         catch (Exception e) {
@@ -0,0 +1,299 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js;
+
+import org.candlepin.pki.PKIReader;
+import org.candlepin.pki.PKIUtility;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.GeneratedClassLoader;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.optimizer.ClassCompiler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.cert.X509Certificate;
+
+/**
+ * CompiledRulesCache - persists the JVM bytecode Rhino generates for the rules, so the
+ * (expensive) optimizing compile is done once per rules version rather than on every
+ * node start and rules refresh.
+ *
+ * Compiled rules are stored in the configured directory, keyed by a hash of the rules
+ * source, the Rhino version and the optimization level. Pointing several nodes at a
+ * shared directory lets later nodes load the rules compiled by the first one. Any failure
+ * to read or write the cache falls back to compiling the rules in memory.
+ *
+ * Since the stored bytecode is loaded into the JVM, every entry is signed with the CA key
+ * over its cache key and class files, and is only loaded if the signature verifies against
+ * the CA certificate. Entries written by anyone without the CA key, or copied from another
+ * key's entry, are ignored and recompiled.
+ */
+public class CompiledRulesCache {
+    private static Logger log = LoggerFactory.getLogger(CompiledRulesCache.class);
+
+    private static final String FILE_PREFIX = "rules-";
+    private static final String FILE_SUFFIX = ".class.bin";
+    private static final String CLASS_PREFIX = "org.candlepin.policy.js.compiled.Rules_";
+    private static final String SOURCE_NAME = "rules";
+    private static final int MAX_SIGNATURE_LENGTH = 4096;
+
+    private final File cacheDir;
+    private final PKIUtility pkiUtility;
+    private final PKIReader pkiReader;
+
+    /**
+     * Creates a new compiled rules cache.
+     *
+     * @param cacheDir
+     *  the directory in which to store compiled rules, or null/empty to disable caching
+     *
+     * @param pkiUtility
+     *  the PKI utility used to sign and verify stored entries; may be null if caching is disabled
+     *
+     * @param pkiReader
+     *  the PKI reader providing the CA certificate; may be null if caching is disabled
+     */
+    public CompiledRulesCache(String cacheDir, PKIUtility pkiUtility, PKIReader pkiReader) {
+        this.cacheDir = cacheDir != null && !cacheDir.isEmpty() ? new File(cacheDir) : null;
+        this.pkiUtility = pkiUtility;
+        this.pkiReader = pkiReader;
+    }
+
+    public boolean isEnabled() {
+        return this.cacheDir != null;
+    }
+
+    /**
+     * Fetches the compiled form of the given rules, loading it from the cache if it has
+     * been compiled before, or compiling (and caching) it otherwise.
+     *
+     * @param context
+     *  the current Rhino context, used for the optimization level and class loading
+     *
+     * @param rules
+     *  the rules source
+     *
+     * @return
+     *  the compiled rules script
+     */
+    public Script compile(Context context, String rules) {
+        // Interpreted rules (optimization level -1) produce no bytecode to cache
+        if (!this.isEnabled() || context.getOptimizationLevel() < 0) {
+            return context.compileString(rules, SOURCE_NAME, 1, null);
+        }
+
+        String key = this.getKey(context, rules);
+        File file = new File(this.cacheDir, FILE_PREFIX + key + FILE_SUFFIX);
+        long start = System.currentTimeMillis();
+
+        if (file.isFile()) {
+            try {
+                Script script = this.loadScript(context, this.readClassFiles(file, key));
+                log.info("Loaded compiled rules from {} in {}ms", file,
+                    System.currentTimeMillis() - start);
+
+                return script;
+            }
+            catch (Exception e) {
+                log.warn("Unable to load compiled rules from {}; recompiling", file, e);
+            }
+        }
+
+        Object[] classFiles;
+        Script script;
+
+        try {
+            CompilerEnvirons env = new CompilerEnvirons();
+            env.initFromContext(context);
+
+            classFiles = new ClassCompiler(env)
+                .compileToClassFiles(rules, SOURCE_NAME, 1, CLASS_PREFIX + key);
+
+            script = this.loadScript(context, classFiles);
+            log.info("Compiled rules in {}ms", System.currentTimeMillis() - start);
+        }
+        catch (InstantiationException e) {
+            log.warn("Unable to load rules compiled to bytecode; compiling in memory", e);
+            return context.compileString(rules, SOURCE_NAME, 1, null);
+        }
+        catch (IllegalAccessException e) {
+            log.warn("Unable to load rules compiled to bytecode; compiling in memory", e);
+            return context.compileString(rules, SOURCE_NAME, 1, null);
+        }
+
+        try {
+            this.writeClassFiles(file, key, classFiles);
+        }
+        catch (IOException e) {
+            log.warn("Unable to store compiled rules in {}", file, e);
+        }
+
+        return script;
+    }
+
+    /**
+     * Builds the cache key for the given rules. Bytecode generated by one Rhino version or
+     * optimization level is not usable by another, so both are part of the key.
+     */
+    protected String getKey(Context context, String rules) {
+        return DigestUtils.sha256Hex(rules + '\0' + context.getImplementationVersion() + '\0' +
+            context.getOptimizationLevel());
+    }
+
+    /**
+     * Defines the given classes and instantiates the main (first) class as a script.
+     */
+    private Script loadScript(Context context, Object[] classFiles)
+        throws InstantiationException, IllegalAccessException {
+
+        GeneratedClassLoader loader = context.createClassLoader(this.getClass().getClassLoader());
+        Class<?> main = null;
+
+        for (int i = 0; i < classFiles.length; i += 2) {
+            Class<?> cls = loader.defineClass((String) classFiles[i], (byte[]) classFiles[i + 1]);
+
+            if (main == null) {
+                main = cls;
+            }
+        }
+
+        loader.linkClass(main);
+        return (Script) main.newInstance();
+    }
+
+    /**
+     * Reads the entry into memory and verifies its signature before parsing it, so the
+     * bytes checked are exactly the bytes loaded.
+     */
+    private Object[] readClassFiles(File file, String key) throws Exception {
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        byte[] signature;
+        byte[] payload;
+
+        try {
+            int length = in.readInt();
+            if (length <= 0 || length > MAX_SIGNATURE_LENGTH) {
+                throw new SecurityException("Malformed compiled rules entry: " + file);
+            }
+
+            signature = new byte[length];
+            in.readFully(signature);
+            payload = IOUtils.toByteArray(in);
+        }
+        finally {
+            IOUtils.closeQuietly(in);
+        }
+
+        X509Certificate ca = this.pkiReader.getCACert();
+        if (!this.pkiUtility.verifySHA256WithRSAHash(new ByteArrayInputStream(payload), signature, ca)) {
+            throw new SecurityException("Invalid signature on compiled rules: " + file);
+        }
+
+        DataInputStream data = new DataInputStream(new ByteArrayInputStream(payload));
+        if (!key.equals(data.readUTF())) {
+            throw new SecurityException("Compiled rules stored under the wrong key: " + file);
+        }
+
+        int count = data.readInt();
+        Object[] classFiles = new Object[count * 2];
+
+        for (int i = 0; i < classFiles.length; i += 2) {
+            classFiles[i] = data.readUTF();
+            byte[] bytes = new byte[data.readInt()];
+            data.readFully(bytes);
+            classFiles[i + 1] = bytes;
+        }
+
+        return classFiles;
+    }
+
+    /**
+     * Writes the signed class files to a temporary file and renames it into place, so
+     * concurrent readers (possibly on other nodes) never see a partially written entry.
+     */
+    private void writeClassFiles(File file, String key, Object[] classFiles) throws IOException {
+        if (!this.cacheDir.isDirectory()) {
+            if (!this.cacheDir.mkdirs()) {
+                throw new IOException("Unable to create directory: " + this.cacheDir);
+            }
+
+            this.restrictToOwner(this.cacheDir);
+        }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(buffer);
+
+        data.writeUTF(key);
+        data.writeInt(classFiles.length / 2);
+
+        for (int i = 0; i < classFiles.length; i += 2) {
+            byte[] bytes = (byte[]) classFiles[i + 1];
+
+            data.writeUTF((String) classFiles[i]);
+            data.writeInt(bytes.length);
+            data.write(bytes);
+        }
+
+        data.flush();
+        byte[] payload = buffer.toByteArray();
+        byte[] signature = this.pkiUtility.getSHA256WithRSAHash(new ByteArrayInputStream(payload));
+
+        File tmp = File.createTempFile(FILE_PREFIX, ".tmp", this.cacheDir);
+        this.restrictToOwner(tmp);
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp));
+
+        try {
+            out.writeInt(signature.length);
+            out.write(signature);
+            out.write(payload);
+        }
+        finally {
+            IOUtils.closeQuietly(out);
+        }
+
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Unable to move compiled rules into place: " + file);
+        }
+
+        log.debug("Stored compiled rules in {}", file);
+    }
+
+    /**
+     * Limits access to the given file or directory to the user running candlepin.
+     */
+    private void restrictToOwner(File file) {
+        boolean dir = file.isDirectory();
+        boolean restricted = file.setReadable(false, false) && file.setReadable(true, true) &&
+            file.setWritable(false, false) && file.setWritable(true, true) &&
+            file.setExecutable(false, false) && (!dir || file.setExecutable(true, true));
+
+        if (!restricted) {
+            log.warn("Unable to restrict permissions on {}", file);
+        }
+    }
+}
@@ -14,12 +14,18 @@
  */
 package org.candlepin.policy.js;
 
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.model.Rules;
 import org.candlepin.model.Rules.RulesSourceEnum;
 import org.candlepin.model.RulesCurator;
+import org.candlepin.pki.PKIReader;
+import org.candlepin.pki.PKIUtility;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
+import com.google.inject.persist.UnitOfWork;
 
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.ContextFactory;
@@ -30,13 +36,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Reads/compiles our javascript rules and the standard js objects only
- * once across the JVM lifetime (and whenever the rules require a recompile), and creates
- * lightweight execution scopes per thread/request.
+ * once across the JVM lifetime (and whenever the rules require a recompile), and hands
+ * out lightweight execution scopes per thread/request from a pool of pre-built scopes.
  */
 public class JsRunnerProvider implements Provider<JsRunner> {
     private static Logger log = LoggerFactory.getLogger(JsRunnerProvider.class);
@@ -61,6 +70,10 @@ public class JsRunnerProvider implements Provider<JsRunner> {
     // Use this lock to access script, scope and updated
     private ReadWriteLock scriptLock = new ReentrantReadWriteLock();
 
+    private RulesScopePool scopePool;
+    private CompiledRulesCache compiledRulesCache;
+    private ScheduledExecutorService refresher;
+
     /**
      * DynamicScopeContextFactory - replace the standard rhino context factory with one that
      * enables dynamic scopes. Dynamic scopes allow us to define a global var (ie pools) in
@@ -81,10 +94,28 @@ public class JsRunnerProvider implements Provider<JsRunner> {
         ContextFactory.initGlobal(new DynamicScopeContextFactory());
     }
 
-    @Inject
     public JsRunnerProvider(RulesCurator rulesCurator, Provider<JsRunnerRequestCache> cacheProvider) {
+        this(rulesCurator, cacheProvider,
+            new RulesScopePool(Integer.parseInt(ConfigProperties.DEFAULT_PROPERTIES.get(
+            ConfigProperties.RULES_SCOPE_POOL_SIZE))),
+            new CompiledRulesCache(null, null, null));
+    }
+
+    @Inject
+    public JsRunnerProvider(RulesCurator rulesCurator, Provider<JsRunnerRequestCache> cacheProvider,
+        Configuration config, PKIUtility pkiUtility, PKIReader pkiReader) {
+        this(rulesCurator, cacheProvider,
+            new RulesScopePool(config.getInt(ConfigProperties.RULES_SCOPE_POOL_SIZE)),
+            new CompiledRulesCache(config.getString(ConfigProperties.RULES_COMPILED_CACHE_DIR),
+            pkiUtility, pkiReader));
+    }
+
+    JsRunnerProvider(RulesCurator rulesCurator, Provider<JsRunnerRequestCache> cacheProvider,
+        RulesScopePool scopePool, CompiledRulesCache compiledRulesCache) {
         this.rulesCurator = rulesCurator;
         this.cacheProvider = cacheProvider;
+        this.scopePool = scopePool;
+        this.compiledRulesCache = compiledRulesCache;
 
         log.debug("Compiling rules for initial load");
         this.rulesCurator.updateDbRules();
@@ -121,11 +152,11 @@ public class JsRunnerProvider implements Provider<JsRunner> {
                 Rules rules = rulesCurator.getRules();
                 rulesVersion = rules.getVersion();
                 rulesSource = rules.getRulesSource();
-                script = context.compileString(
-                    rules.getRules(), "rules", 1, null);
+                script = compiledRulesCache.compile(context, rules.getRules());
                 script.exec(context, scope);
                 ((ScriptableObject) scope).sealObject();
                 this.currentRulesUpdated = newUpdated;
+                this.scopePool.reset(newUpdated, scope);
             }
             finally {
                 Context.exit();
@@ -156,20 +187,101 @@ public class JsRunnerProvider implements Provider<JsRunner> {
         if (!updated.equals(this.currentRulesUpdated)) {
             compileRules();
         }
-        Scriptable rulesScope;
-        scriptLock.readLock().lock();
+        // Prefer a pre-built scope; only build one inline if the pool has run dry.
+        Scriptable rulesScope = this.scopePool.take(updated);
+        if (rulesScope == null) {
+            if (!scriptLock.readLock().tryLock()) {
+                this.scopePool.recordWait();
+                scriptLock.readLock().lock();
+            }
+
+            try {
+                rulesScope = RulesScopePool.createScope(scope);
+            }
+            finally {
+                scriptLock.readLock().unlock();
+            }
+        }
+
+        return new JsRunner(rulesScope);
+    }
+
+    /**
+     * Starts checking the database for new rules periodically, so they are recompiled and the
+     * scope pool rewarmed in the background, rather than by the first request to see them.
+     *
+     * @param unitOfWork
+     *  the unit of work in which to read the rules version
+     *
+     * @param interval
+     *  the number of seconds between checks; zero or less disables the background refresh
+     */
+    public synchronized void startRefresh(final UnitOfWork unitOfWork, long interval) {
+        if (interval <= 0 || this.refresher != null) {
+            return;
+        }
+
+        this.refresher = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("rules-refresh")
+            .setDaemon(true)
+            .build());
+
+        this.refresher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                refreshInUnitOfWork(unitOfWork);
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+
+    private void refreshInUnitOfWork(UnitOfWork unitOfWork) {
+        boolean startedUow = false;
+
+        try {
+            unitOfWork.begin();
+            startedUow = true;
+        }
+        catch (IllegalStateException e) {
+            log.debug("Already have an open unit of work");
+        }
+
         try {
-            Context context = Context.enter();
-            rulesScope = context.newObject(scope);
-            rulesScope.setPrototype(scope);
-            rulesScope.setParentScope(null);
-            Context.exit();
+            // compileRules only takes the write lock if the rules have changed
+            if (!rulesCurator.getUpdated().equals(this.currentRulesUpdated)) {
+                this.compileRules();
+            }
+        }
+        catch (RuntimeException e) {
+            log.error("Unable to refresh the rules", e);
         }
         finally {
-            scriptLock.readLock().unlock();
+            if (startedUow) {
+                unitOfWork.end();
+            }
         }
+    }
 
-        return new JsRunner(rulesScope);
+    /**
+     * Stops the background rules refresh and the scope pool's warming thread.
+     */
+    public synchronized void shutdown() {
+        if (this.refresher != null) {
+            this.refresher.shutdownNow();
+            this.refresher = null;
+        }
+
+        this.scopePool.shutdown();
+    }
+
+    /**
+     * Fetches the pool of pre-built rules scopes, mainly to publish its hit, miss and
+     * wait counters over JMX.
+     *
+     * @return
+     *  the rules scope pool used by this provider
+     */
+    public RulesScopePool getScopePool() {
+        return this.scopePool;
     }
 
     public String getRulesVersion() {
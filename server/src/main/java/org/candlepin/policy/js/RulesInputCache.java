@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js;
+
+import org.candlepin.guice.CandlepinRequestScoped;
+
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+
+
+/**
+ * A request scoped cache of the JSON which entities passed to the rules are serialized to.
+ * A single request can pass the same entities to several rules functions; with this cache
+ * each version of an entity is only serialized once, and later rules calls replay the
+ * recorded JSON.
+ *
+ * Entities are looked up by identity, along with a version which must change whenever
+ * the entity changes in a way that affects its JSON.
+ */
+@CandlepinRequestScoped
+public class RulesInputCache {
+
+    private final Map<Object, Entry> entries = new IdentityHashMap<Object, Entry>();
+
+    /**
+     * Fetches the JSON recorded for the given entity.
+     *
+     * @param entity
+     *  the entity to look up
+     *
+     * @param version
+     *  the current version of the entity
+     *
+     * @return
+     *  the recorded JSON, or null if the entity has not been serialized at this version
+     */
+    public synchronized TokenBuffer get(Object entity, Object version) {
+        Entry entry = this.entries.get(entity);
+        return entry != null && entry.version.equals(version) ? entry.json : null;
+    }
+
+    /**
+     * Records the JSON of the given entity at the given version, replacing the JSON
+     * recorded for any earlier version.
+     */
+    public synchronized void put(Object entity, Object version, TokenBuffer json) {
+        this.entries.put(entity, new Entry(version, json));
+    }
+
+    /**
+     * Discards all recorded JSON. Long running units of work which detach their entities as
+     * they go should clear the cache along with them, as detached entities are never looked
+     * up again.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+    }
+
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    private static class Entry {
+        private final Object version;
+        private final TokenBuffer json;
+
+        Entry(Object version, TokenBuffer json) {
+            this.version = version;
+            this.json = json;
+        }
+    }
+}
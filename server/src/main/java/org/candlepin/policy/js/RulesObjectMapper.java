@@ -30,6 +30,8 @@ import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
 import com.fasterxml.jackson.datatype.hibernate4.Hibernate4Module;
 import com.fasterxml.jackson.module.jaxb.JaxbAnnotationIntrospector;
 import com.google.inject.Inject;
+import com.google.inject.OutOfScopeException;
+import com.google.inject.Provider;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,10 +59,17 @@ public class RulesObjectMapper {
     private static Logger log = LoggerFactory.getLogger(RulesObjectMapper.class);
 
     private ObjectMapper mapper;
+    private Provider<RulesInputCache> cacheProvider;
 
-    @Inject
     public RulesObjectMapper(ProductCachedSerializationModule poolCachedSerializationModule) {
+        this(poolCachedSerializationModule, null);
+    }
+
+    @Inject
+    public RulesObjectMapper(ProductCachedSerializationModule poolCachedSerializationModule,
+        Provider<RulesInputCache> cacheProvider) {
         this.mapper = new ObjectMapper();
+        this.cacheProvider = cacheProvider;
 
         SimpleFilterProvider filterProvider = new SimpleFilterProvider();
         filterProvider.setFailOnUnknownId(false);
@@ -98,12 +107,20 @@ public class RulesObjectMapper {
     }
 
     public String toJsonString(Map<String, Object> toSerialize) {
-        ObjectNode mainNode = this.mapper.createObjectNode();
-        for (Entry<String, Object> entry : toSerialize.entrySet()) {
-            mainNode.putPOJO(entry.getKey(), entry.getValue());
-        }
-
         try {
+            // POJO nodes are written through a fresh serializer provider, which would lose the
+            // cache attribute, so the map is serialized as it is when the cache is in use.
+            RulesInputCache cache = this.getInputCache();
+            if (cache != null) {
+                return this.mapper.writer().withAttribute(RulesInputCache.class, cache)
+                    .writeValueAsString(toSerialize);
+            }
+
+            ObjectNode mainNode = this.mapper.createObjectNode();
+            for (Entry<String, Object> entry : toSerialize.entrySet()) {
+                mainNode.putPOJO(entry.getKey(), entry.getValue());
+            }
+
             return this.mapper.writeValueAsString(mainNode);
         }
         catch (Exception e) {
@@ -112,6 +129,23 @@ public class RulesObjectMapper {
         }
     }
 
+    /**
+     * Fetches the input cache of the current request. Rules run outside of a request scope
+     * serialize their input every time.
+     */
+    private RulesInputCache getInputCache() {
+        if (this.cacheProvider == null) {
+            return null;
+        }
+
+        try {
+            return this.cacheProvider.get();
+        }
+        catch (OutOfScopeException e) {
+            return null;
+        }
+    }
+
     public <T extends Object> T toObject(String json, Class<T> clazz) {
         try {
             return mapper.readValue(json, clazz);
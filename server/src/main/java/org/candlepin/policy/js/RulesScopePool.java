@@ -0,0 +1,245 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * RulesScopePool - a bounded pool of pre-built request scopes for the compiled rules.
+ *
+ * Each scope handed out by the pool is used by exactly one {@link JsRunner} and is never
+ * returned, as the rules contexts write their arguments into it. The pool is keyed by the
+ * rules version (the cp_rules updated timestamp) it was warmed for; once the rules are
+ * recompiled, the pool is reset and scopes built for the old rules are never handed out.
+ *
+ * Warming happens on a single background thread, so requests only build a scope inline
+ * (a pool miss) when the pool has been drained faster than it could be refilled.
+ */
+public class RulesScopePool implements RulesScopePoolMBean {
+    private static Logger log = LoggerFactory.getLogger(RulesScopePool.class);
+
+    private final int capacity;
+    private final ExecutorService warmer;
+    private final AtomicBoolean warming = new AtomicBoolean(false);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong waits = new AtomicLong();
+
+    private volatile Generation generation;
+
+    /**
+     * The set of pooled scopes built for a single version of the compiled rules.
+     */
+    private static class Generation {
+        private final Date updated;
+        private final Scriptable rulesScope;
+        private final BlockingQueue<Scriptable> scopes;
+
+        Generation(Date updated, Scriptable rulesScope, int capacity) {
+            this.updated = updated;
+            this.rulesScope = rulesScope;
+            this.scopes = new LinkedBlockingQueue<Scriptable>(Math.max(capacity, 1));
+        }
+    }
+
+    public RulesScopePool(int capacity) {
+        this(capacity, createWarmer());
+    }
+
+    RulesScopePool(int capacity, ExecutorService warmer) {
+        this.capacity = Math.max(capacity, 0);
+        this.warmer = warmer;
+    }
+
+    private static ExecutorService createWarmer() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactoryBuilder().setNameFormat("rules-scope-pool-%d").setDaemon(true).build());
+
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Creates a new request scope on top of the given (sealed) global rules scope.
+     *
+     * @param rulesScope
+     *  the global scope containing the compiled rules
+     *
+     * @return
+     *  a new scope which may be used by a single JsRunner
+     */
+    public static Scriptable createScope(Scriptable rulesScope) {
+        Context context = Context.enter();
+        try {
+            Scriptable scope = context.newObject(rulesScope);
+            scope.setPrototype(rulesScope);
+            scope.setParentScope(null);
+            return scope;
+        }
+        finally {
+            Context.exit();
+        }
+    }
+
+    /**
+     * Discards any pooled scopes and starts warming the pool for the given rules.
+     *
+     * @param updated
+     *  the version of the rules the global scope was compiled from
+     *
+     * @param rulesScope
+     *  the sealed global scope containing the compiled rules
+     */
+    public void reset(Date updated, Scriptable rulesScope) {
+        if (this.capacity == 0) {
+            return;
+        }
+
+        log.debug("Resetting rules scope pool for rules version {}; hits: {}, misses: {}, waits: {}",
+            updated, this.getHits(), this.getMisses(), this.getWaits());
+
+        this.generation = new Generation(updated, rulesScope, this.capacity);
+        this.scheduleWarming();
+    }
+
+    /**
+     * Takes a pre-built scope for the given rules version from the pool.
+     *
+     * @param updated
+     *  the version of the rules the caller expects to run
+     *
+     * @return
+     *  a pooled scope, or null if the pool is empty or was warmed for other rules
+     */
+    public Scriptable take(Date updated) {
+        if (this.capacity == 0) {
+            return null;
+        }
+
+        Generation current = this.generation;
+        Scriptable scope = null;
+
+        if (current != null && current.updated.equals(updated)) {
+            scope = current.scopes.poll();
+        }
+
+        if (scope != null) {
+            this.hits.incrementAndGet();
+        }
+        else {
+            this.misses.incrementAndGet();
+        }
+
+        if (current != null && current.scopes.size() <= this.capacity / 2) {
+            this.scheduleWarming();
+        }
+
+        return scope;
+    }
+
+    /**
+     * Records that a caller building a scope inline had to wait for the rules to be
+     * recompiled.
+     */
+    public void recordWait() {
+        this.waits.incrementAndGet();
+    }
+
+    private void scheduleWarming() {
+        if (!this.warming.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            this.warmer.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        warm();
+                    }
+                    finally {
+                        warming.set(false);
+                    }
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            log.warn("Unable to warm rules scope pool", e);
+            this.warming.set(false);
+        }
+    }
+
+    private void warm() {
+        Generation current = this.generation;
+
+        // Stop as soon as the pool is full or the rules have changed underneath us; the
+        // reset which replaced the generation will schedule another run.
+        while (current == this.generation && current.scopes.size() < this.capacity) {
+            if (!current.scopes.offer(createScope(current.rulesScope))) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Stops the background warming thread. Scopes remaining in the pool may still be taken.
+     */
+    public void shutdown() {
+        this.warmer.shutdownNow();
+    }
+
+    @Override
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    @Override
+    public int getSize() {
+        Generation current = this.generation;
+        return current != null ? current.scopes.size() : 0;
+    }
+
+    @Override
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    @Override
+    public long getWaits() {
+        return this.waits.get();
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js;
+
+
+
+/**
+ * RulesScopePoolMBean
+ *
+ * The statistics of the pool of pre-built rules scopes, as published over JMX.
+ */
+public interface RulesScopePoolMBean {
+
+    /**
+     * @return the maximum number of scopes kept in the pool
+     */
+    int getCapacity();
+
+    /**
+     * @return the number of scopes currently in the pool
+     */
+    int getSize();
+
+    /**
+     * @return the number of requests which were handed a pooled scope
+     */
+    long getHits();
+
+    /**
+     * @return the number of requests which had to build a scope themselves
+     */
+    long getMisses();
+
+    /**
+     * @return the number of requests which had to wait for the rules to be recompiled
+     */
+    long getWaits();
+}
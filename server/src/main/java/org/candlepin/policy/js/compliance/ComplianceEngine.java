@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance;
+
+import org.candlepin.model.Consumer;
+import org.candlepin.model.Entitlement;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+
+
+/**
+ * ComplianceEngine
+ *
+ * Calculates the raw compliance status of a consumer. Implementations only evaluate the
+ * given entitlements; generating reason messages and persisting the resulting status is
+ * left to {@link ComplianceRules}.
+ */
+public interface ComplianceEngine {
+
+    /**
+     * Calculates the compliance status of a consumer on a specific date.
+     *
+     * @param consumer Consumer to check.
+     * @param entitlements All entitlements to consider for the consumer.
+     * @param onDate Date to check compliance status for.
+     * @param calculateCompliantUntil calculate how long the system will remain compliant
+     * @param calculateProductComplianceDateRanges calculate the individual compliance ranges
+     *        for each product
+     * @return Compliance status, with reason messages not yet set.
+     */
+    ComplianceStatus getStatus(Consumer consumer, List<Entitlement> entitlements, Date onDate,
+        boolean calculateCompliantUntil, boolean calculateProductComplianceDateRanges);
+
+    /**
+     * Prepares the calculation of the compliance status of a consumer, so it can be run on
+     * another thread. Everything which requires the database or the current request is
+     * resolved by this call; the returned task only evaluates the prepared data.
+     *
+     * @param consumer Consumer to check.
+     * @param entitlements All entitlements to consider for the consumer.
+     * @param onDate Date to check compliance status for.
+     * @param calculateCompliantUntil calculate how long the system will remain compliant
+     * @param calculateProductComplianceDateRanges calculate the individual compliance ranges
+     *        for each product
+     * @return Task calculating the compliance status, with reason messages not yet set.
+     */
+    Callable<ComplianceStatus> prepareStatus(Consumer consumer, List<Entitlement> entitlements,
+        Date onDate, boolean calculateCompliantUntil, boolean calculateProductComplianceDateRanges);
+
+    /**
+     * Checks whether the given entitlements fully cover the consumer for a stack.
+     *
+     * @param consumer Consumer to check.
+     * @param stackId Stack to check.
+     * @param entitlements Entitlements to consider.
+     * @return true if the stack is compliant.
+     */
+    boolean isStackCompliant(Consumer consumer, String stackId, List<Entitlement> entitlements);
+
+    /**
+     * Checks whether a single entitlement covers the consumer.
+     *
+     * @param consumer Consumer to check.
+     * @param entitlement Entitlement to check.
+     * @param entitlements All entitlements of the consumer on the date being checked.
+     * @return true if the entitlement is compliant.
+     */
+    boolean isEntitlementCompliant(Consumer consumer, Entitlement entitlement,
+        List<Entitlement> entitlements);
+}
@@ -20,20 +20,31 @@ import org.candlepin.model.ConsumerCurator;
 import org.candlepin.model.Entitlement;
 import org.candlepin.model.EntitlementCurator;
 import org.candlepin.policy.js.JsRunner;
-import org.candlepin.policy.js.JsonJsContext;
-import org.candlepin.policy.js.RuleExecutionException;
 import org.candlepin.policy.js.RulesObjectMapper;
 import org.candlepin.policy.js.compliance.hash.ComplianceStatusHasher;
 
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.inject.Inject;
+import com.google.inject.name.Named;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
 import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 
 
@@ -45,26 +56,51 @@ import java.util.List;
 public class ComplianceRules {
     private static Logger log = LoggerFactory.getLogger(ComplianceRules.class);
 
-    private JsRunner jsRules;
+    /**
+     * The maximum number of statuses of a single bulk request which are prepared, but not
+     * yet handed back to the caller.
+     */
+    private static final int MAX_PENDING_STATUSES = 64;
+
+    private static final Callable<ComplianceStatus> NOT_CALCULATED = new Callable<ComplianceStatus>() {
+        @Override
+        public ComplianceStatus call() {
+            return null;
+        }
+    };
+
+    private ComplianceEngine engine;
     private EntitlementCurator entCurator;
     private StatusReasonMessageGenerator generator;
     private EventSink eventSink;
     private ConsumerCurator consumerCurator;
-    private RulesObjectMapper mapper;
+    private ExecutorService executor;
 
-    @Inject
     public ComplianceRules(JsRunner jsRules, EntitlementCurator entCurator,
         StatusReasonMessageGenerator generator, EventSink eventSink, ConsumerCurator consumerCurator,
         RulesObjectMapper mapper) {
 
-        this.jsRules = jsRules;
+        this(new JsComplianceEngine(jsRules, mapper), entCurator, generator, eventSink, consumerCurator);
+    }
+
+    public ComplianceRules(ComplianceEngine engine, EntitlementCurator entCurator,
+        StatusReasonMessageGenerator generator, EventSink eventSink, ConsumerCurator consumerCurator) {
+
+        this(engine, entCurator, generator, eventSink, consumerCurator,
+            MoreExecutors.sameThreadExecutor());
+    }
+
+    @Inject
+    public ComplianceRules(ComplianceEngine engine, EntitlementCurator entCurator,
+        StatusReasonMessageGenerator generator, EventSink eventSink, ConsumerCurator consumerCurator,
+        @Named("ComplianceExecutor") ExecutorService executor) {
+
+        this.engine = engine;
         this.entCurator = entCurator;
         this.generator = generator;
         this.eventSink = eventSink;
         this.consumerCurator = consumerCurator;
-        this.mapper = mapper;
-
-        jsRules.init("compliance_name_space");
+        this.executor = executor;
     }
 
     /**
@@ -154,33 +190,37 @@ public class ComplianceRules {
             return new ComplianceStatus(new Date());
         }
 
-        JsonJsContext args = new JsonJsContext(mapper);
-        args.put("consumer", c);
-        args.put("entitlements", allEnts);
-        args.put("ondate", date);
-        args.put("calculateCompliantUntil", calculateCompliantUntil);
-        args.put("calculateProductComplianceDateRanges", calculateProductComplianceDateRanges);
-        args.put("log", log, false);
-        args.put("guestIds", c.getGuestIds());
+        ComplianceStatus status = engine.getStatus(c, allEnts, date, calculateCompliantUntil,
+            calculateProductComplianceDateRanges);
 
-        // Convert the JSON returned into a ComplianceStatus object:
-        String json = jsRules.runJsFunction(String.class, "get_status", args);
-        try {
-            ComplianceStatus status = mapper.toObject(json, ComplianceStatus.class);
+        for (ComplianceReason reason : status.getReasons()) {
+            generator.setMessage(c, reason, status.getDate());
+        }
 
-            for (ComplianceReason reason : status.getReasons()) {
-                generator.setMessage(c, reason, status.getDate());
-            }
+        if (currentCompliance) {
+            applyStatus(c, status, updateConsumer);
+        }
 
-            if (currentCompliance) {
-                applyStatus(c, status, updateConsumer);
-            }
+        return status;
+    }
 
-            return status;
-        }
-        catch (Exception e) {
-            throw new RuleExecutionException(e);
-        }
+    /**
+     * Calculates the current compliance status of several consumers, as
+     * {@link #getStatus(Consumer, Date, boolean)} would for each of them.
+     *
+     * The consumers are prepared on the calling thread as the returned iterator is advanced,
+     * while the statuses themselves are evaluated in parallel on the compliance executor.
+     * Statuses are returned in the order they complete, and are applied to their consumer
+     * on the calling thread before being returned.
+     *
+     * @param consumers Consumers to check.
+     * @param calculateCompliantUntil calculate how long the systems will remain compliant (expensive)
+     * @return Iterator over the consumers and their compliance status.
+     */
+    public Iterator<Map.Entry<Consumer, ComplianceStatus>> getStatuses(Iterable<Consumer> consumers,
+        boolean calculateCompliantUntil) {
+
+        return new StatusIterator(consumers.iterator(), calculateCompliantUntil);
     }
 
     public void updateEntsOnStart(Consumer c) {
@@ -213,27 +253,12 @@ public class ComplianceRules {
     }
 
     public boolean isStackCompliant(Consumer consumer, String stackId, List<Entitlement> entsToConsider) {
-        JsonJsContext args = new JsonJsContext(mapper);
-        args.put("stack_id", stackId);
-        args.put("consumer", consumer);
-        args.put("entitlements", entsToConsider);
-        args.put("log", log, false);
-        args.put("guestIds", consumer.getGuestIds());
-
-        return jsRules.runJsFunction(Boolean.class, "is_stack_compliant", args);
+        return engine.isStackCompliant(consumer, stackId, entsToConsider);
     }
 
     public boolean isEntitlementCompliant(Consumer consumer, Entitlement ent, Date onDate) {
         List<Entitlement> ents = entCurator.listByConsumerAndDate(consumer, onDate).list();
-
-        JsonJsContext args = new JsonJsContext(mapper);
-        args.put("consumer", consumer);
-        args.put("entitlement", ent);
-        args.put("entitlements", ents);
-        args.put("log", log, false);
-        args.put("guestIds", consumer.getGuestIds());
-
-        return jsRules.runJsFunction(Boolean.class, "is_ent_compliant", args);
+        return engine.isEntitlementCompliant(consumer, ent, ents);
     }
 
     private String getComplianceStatusHash(ComplianceStatus status, Consumer consumer) {
@@ -241,5 +266,112 @@ public class ComplianceRules {
         return hasher.hash();
     }
 
+    /**
+     * Keeps up to {@link #MAX_PENDING_STATUSES} statuses in progress on the executor,
+     * preparing the next consumers whenever a status is handed back.
+     */
+    private class StatusIterator implements Iterator<Map.Entry<Consumer, ComplianceStatus>> {
+        private final Iterator<Consumer> consumers;
+        private final CompletionService<ComplianceStatus> completionService;
+        private final Map<Future<ComplianceStatus>, Consumer> pending =
+            new IdentityHashMap<Future<ComplianceStatus>, Consumer>();
+        private final boolean calculateCompliantUntil;
+
+        private boolean finished;
+        private int count;
+        private long prepareTime;
+        private long waitTime;
+
+        StatusIterator(Iterator<Consumer> consumers, boolean calculateCompliantUntil) {
+            this.consumers = consumers;
+            this.calculateCompliantUntil = calculateCompliantUntil;
+            this.completionService = new ExecutorCompletionService<ComplianceStatus>(executor);
+        }
+
+        @Override
+        public boolean hasNext() {
+            long start = System.currentTimeMillis();
+
+            while (this.pending.size() < MAX_PENDING_STATUSES && this.consumers.hasNext()) {
+                Consumer consumer = this.consumers.next();
+                this.pending.put(this.completionService.submit(this.prepare(consumer)), consumer);
+            }
+
+            this.prepareTime += System.currentTimeMillis() - start;
+
+            if (this.pending.isEmpty()) {
+                if (!this.finished) {
+                    this.finished = true;
+                    log.debug("Calculated compliance status of {} consumers; {}ms preparing, {}ms waiting",
+                        this.count, this.prepareTime, this.waitTime);
+                }
+
+                return false;
+            }
+
+            return true;
+        }
+
+        private Callable<ComplianceStatus> prepare(Consumer consumer) {
+            updateEntsOnStart(consumer);
+
+            // Distributors and shares are never calculated, see getStatus
+            if (consumer.isManifestDistributor() || consumer.isShare()) {
+                return NOT_CALCULATED;
+            }
+
+            List<Entitlement> entitlements = new LinkedList<Entitlement>(consumer.getEntitlements());
+            return engine.prepareStatus(consumer, entitlements, new Date(), this.calculateCompliantUntil,
+                false);
+        }
+
+        @Override
+        public Map.Entry<Consumer, ComplianceStatus> next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            long start = System.currentTimeMillis();
+            Future<ComplianceStatus> future;
+            ComplianceStatus status;
+
+            try {
+                future = this.completionService.take();
+                status = future.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+
+                throw new RuntimeException(e.getCause());
+            }
+
+            this.waitTime += System.currentTimeMillis() - start;
+            Consumer consumer = this.pending.remove(future);
+            ++this.count;
+
+            if (status == null) {
+                return Maps.immutableEntry(consumer, new ComplianceStatus(new Date()));
+            }
+
+            for (ComplianceReason reason : status.getReasons()) {
+                generator.setMessage(consumer, reason, status.getDate());
+            }
+
+            applyStatus(consumer, status, true);
+            return Maps.immutableEntry(consumer, status);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
 
 }
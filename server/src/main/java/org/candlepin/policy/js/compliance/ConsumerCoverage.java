@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+
+/**
+ * ConsumerCoverage
+ *
+ * The stack and entitlement coverage calculated during the last compliance check of a
+ * consumer. Each coverage is keyed by everything it was calculated from, so a later check
+ * only needs to calculate the coverage of stacks and entitlements which have changed since.
+ *
+ * The entry also records a version of the consumer's entitlements, built from their ids and
+ * update timestamps only. While the version is unchanged, a later check reuses the installed
+ * products each entitlement was found to provide, rather than loading the provided products
+ * of every pool again.
+ *
+ * Instances are shared between threads once cached, and must not be modified.
+ */
+public class ConsumerCoverage {
+    private final String consumerKey;
+    private final String version;
+    private final Map<String, Coverage> coverages;
+    private final Map<String, List<String>> relevantProductIds;
+
+    ConsumerCoverage(String consumerKey, String version, Map<String, Coverage> coverages,
+        Map<String, List<String>> relevantProductIds) {
+
+        this.consumerKey = consumerKey;
+        this.version = version;
+        this.coverages = Collections.unmodifiableMap(new HashMap<String, Coverage>(coverages));
+        this.relevantProductIds = Collections.unmodifiableMap(
+            new HashMap<String, List<String>>(relevantProductIds));
+    }
+
+    /**
+     * Fetches the coverage stored under the given key, provided it was calculated for a
+     * consumer with the same key.
+     *
+     * @return the coverage, or null if it is not known
+     */
+    Coverage get(String consumerKey, String key) {
+        return this.consumerKey.equals(consumerKey) ? this.coverages.get(key) : null;
+    }
+
+    /**
+     * Fetches the installed products the given entitlement provided, provided the entry was
+     * stored for the same version of the consumer's entitlements.
+     *
+     * @return the installed product ids, or null if they are not known
+     */
+    List<String> getRelevantProductIds(String version, String entitlementId) {
+        return this.version.equals(version) ? this.relevantProductIds.get(entitlementId) : null;
+    }
+
+    int size() {
+        return this.coverages.size();
+    }
+
+    /**
+     * Whether a stack or entitlement covers the consumer, and if not, why.
+     */
+    static class Coverage {
+        private final boolean covered;
+        private final List<ComplianceReason> reasons;
+
+        Coverage(boolean covered, List<ComplianceReason> reasons) {
+            this.covered = covered;
+            this.reasons = reasons;
+        }
+
+        boolean isCovered() {
+            return this.covered;
+        }
+
+        /**
+         * Adds copies of the reasons to the given list. The reason messages are set on the
+         * status later on, so the cached reasons themselves are never handed out.
+         */
+        void copyReasonsTo(List<ComplianceReason> target) {
+            for (ComplianceReason reason : this.reasons) {
+                ComplianceReason copy = new ComplianceReason();
+                copy.setKey(reason.getKey());
+                copy.setMessage(reason.getMessage());
+                copy.getAttributes().putAll(reason.getAttributes());
+
+                target.add(copy);
+            }
+        }
+    }
+}
@@ -0,0 +1,1261 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance;
+
+import org.candlepin.cache.CandlepinCache;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerInstalledProduct;
+import org.candlepin.model.Entitlement;
+import org.candlepin.model.GuestId;
+import org.candlepin.model.Pool;
+import org.candlepin.model.Product;
+import org.candlepin.model.ProductCurator;
+import org.candlepin.model.ProvidedProduct;
+import org.candlepin.policy.js.compliance.ConsumerCoverage.Coverage;
+
+import com.google.inject.Inject;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.regex.Pattern;
+
+import javax.cache.Cache;
+
+
+
+/**
+ * JavaComplianceEngine
+ *
+ * A native port of the compliance functions of the rules (get_status, is_stack_compliant
+ * and is_ent_compliant). The consumer and its entitlements are evaluated in place, rather
+ * than being serialized to JSON and run through Rhino on every check.
+ *
+ * The port deliberately keeps the rules' JavaScript semantics, including the way fact and
+ * attribute values are coerced to numbers, so both engines report the same status for the
+ * same input. Any change to the compliance logic of the rules must be mirrored here.
+ *
+ * The coverage of each stack and entitlement is kept between status checks of a consumer.
+ * When an entitlement is added or removed, only the stacks and entitlements whose inputs
+ * changed are evaluated again, rather than all entitlements of the consumer. While none of
+ * the consumer's entitlements or their pools have been updated, the provided products of
+ * each pool are not looked up again either.
+ */
+public class JavaComplianceEngine implements ComplianceEngine {
+    private static Logger log = LoggerFactory.getLogger(JavaComplianceEngine.class);
+
+    private static final String SYSTEM_TYPE = "system";
+
+    private static final String SOCKET_FACT = "cpu.cpu_socket(s)";
+    private static final String RAM_FACT = "memory.memtotal";
+    private static final String CORES_FACT = "cpu.core(s)_per_socket";
+    private static final String ARCH_FACT = "uname.machine";
+    private static final String IS_VIRT_GUEST_FACT = "virt.is_guest";
+    private static final String STORAGE_BAND_USAGE = "band.storage.usage";
+
+    private static final String STORAGE_BAND_ATTRIBUTE = "storage_band";
+
+    private static final Map<String, String> ATTRIBUTES_TO_CONSUMER_FACTS;
+    static {
+        ATTRIBUTES_TO_CONSUMER_FACTS = new HashMap<String, String>();
+        ATTRIBUTES_TO_CONSUMER_FACTS.put(Product.Attributes.SOCKETS, SOCKET_FACT);
+        ATTRIBUTES_TO_CONSUMER_FACTS.put(Product.Attributes.CORES, CORES_FACT);
+        ATTRIBUTES_TO_CONSUMER_FACTS.put(Product.Attributes.ARCHITECTURE, ARCH_FACT);
+        ATTRIBUTES_TO_CONSUMER_FACTS.put(Product.Attributes.RAM, RAM_FACT);
+        ATTRIBUTES_TO_CONSUMER_FACTS.put(Product.Attributes.VCPU, CORES_FACT);
+        ATTRIBUTES_TO_CONSUMER_FACTS.put(STORAGE_BAND_ATTRIBUTE, STORAGE_BAND_USAGE);
+    }
+
+    /** Attributes considered when determining coverage of a physical consumer. */
+    private static final List<String> PHYSICAL_ATTRIBUTES = Arrays.asList(
+        Product.Attributes.SOCKETS,
+        Product.Attributes.CORES,
+        Product.Attributes.RAM,
+        Product.Attributes.ARCHITECTURE,
+        Product.Attributes.GUEST_LIMIT,
+        STORAGE_BAND_ATTRIBUTE);
+
+    /** Attributes considered when determining coverage of a virtual guest. */
+    private static final List<String> VIRT_ATTRIBUTES = Arrays.asList(
+        Product.Attributes.VCPU,
+        Product.Attributes.RAM,
+        Product.Attributes.ARCHITECTURE,
+        Product.Attributes.GUEST_LIMIT,
+        STORAGE_BAND_ATTRIBUTE);
+
+    /** Attributes which are not enforced for guests using host restricted pools. */
+    private static final List<String> UNCHECKED_WHEN_HOST_RESTRICTED = Arrays.asList(
+        Product.Attributes.RAM,
+        Product.Attributes.VCPU);
+
+    private static final Pattern JS_DECIMAL =
+        Pattern.compile("[+-]?(\\d+\\.?\\d*|\\.\\d+)([eE][+-]?\\d+)?");
+
+    private static final Pattern JS_HEX = Pattern.compile("0[xX][0-9a-fA-F]+");
+
+    /** Consumer facts the coverage of an entitlement depends on. */
+    private static final List<String> KEY_FACTS = Arrays.asList(
+        SOCKET_FACT,
+        CORES_FACT,
+        RAM_FACT,
+        ARCH_FACT,
+        STORAGE_BAND_USAGE);
+
+    /** Product attributes the coverage of an entitlement depends on. */
+    private static final Set<String> KEY_ATTRIBUTES = new LinkedHashSet<String>();
+    static {
+        KEY_ATTRIBUTES.addAll(PHYSICAL_ATTRIBUTES);
+        KEY_ATTRIBUTES.addAll(VIRT_ATTRIBUTES);
+        KEY_ATTRIBUTES.add(Product.Attributes.INSTANCE_MULTIPLIER);
+    }
+
+    private static final long ONE_SECOND = 1000L;
+
+    private ProductCurator productCurator;
+    private CandlepinCache candlepinCache;
+
+    @Inject
+    public JavaComplianceEngine(ProductCurator productCurator, CandlepinCache candlepinCache) {
+        this.productCurator = productCurator;
+        this.candlepinCache = candlepinCache;
+    }
+
+    @Override
+    public ComplianceStatus getStatus(Consumer consumer, List<Entitlement> entitlements, Date onDate,
+        boolean calculateCompliantUntil, boolean calculateProductComplianceDateRanges) {
+
+        return this.evaluate(new Evaluation(consumer, entitlements), onDate, calculateCompliantUntil,
+            calculateProductComplianceDateRanges);
+    }
+
+    /**
+     * Resolves the consumer and entitlement data on the calling thread. The evaluation itself
+     * only works on the resolved data, and can safely run on any thread.
+     */
+    @Override
+    public Callable<ComplianceStatus> prepareStatus(Consumer consumer, List<Entitlement> entitlements,
+        final Date onDate, final boolean calculateCompliantUntil,
+        final boolean calculateProductComplianceDateRanges) {
+
+        final Evaluation evaluation = new Evaluation(consumer, entitlements);
+
+        return new Callable<ComplianceStatus>() {
+            @Override
+            public ComplianceStatus call() {
+                return evaluate(evaluation, onDate, calculateCompliantUntil,
+                    calculateProductComplianceDateRanges);
+            }
+        };
+    }
+
+    private ComplianceStatus evaluate(Evaluation evaluation, Date onDate, boolean calculateCompliantUntil,
+        boolean calculateProductComplianceDateRanges) {
+
+        log.debug("Checking compliance status for consumer: {} on date: {}",
+            evaluation.consumer.getUuid(), onDate);
+
+        StatusOnDate onDateStatus = evaluation.getStatusOnDate(onDate.getTime());
+
+        ComplianceStatus status = new ComplianceStatus(new Date(onDate.getTime()));
+        onDateStatus.copyTo(status);
+
+        if (onDateStatus.isCompliant() && calculateCompliantUntil && !evaluation.entitlements.isEmpty()) {
+            status.setCompliantUntil(evaluation.determineCompliantUntilDate(onDate.getTime()));
+        }
+
+        if (onDateStatus.isPartiallyCompliant() && calculateProductComplianceDateRanges &&
+            !evaluation.entitlements.isEmpty()) {
+
+            status.getProductComplianceDateRanges().putAll(
+                evaluation.getProductComplianceDateRanges(onDate.getTime(), onDateStatus));
+        }
+
+        evaluation.storeCoverage();
+        return status;
+    }
+
+    @Override
+    public boolean isStackCompliant(Consumer consumer, String stackId, List<Entitlement> entitlements) {
+        Evaluation evaluation = new Evaluation(consumer, entitlements);
+        return evaluation.getStackCoverage(stackId, evaluation.entitlements).isCovered();
+    }
+
+    @Override
+    public boolean isEntitlementCompliant(Consumer consumer, Entitlement entitlement,
+        List<Entitlement> entitlements) {
+
+        Evaluation evaluation = new Evaluation(consumer, entitlements);
+        EntitlementInfo info = new EntitlementInfo(entitlement, this.productCurator,
+            evaluation.installedProductIds, null);
+
+        return evaluation.getEntitlementCoverage(info, evaluation.entitlements).isCovered();
+    }
+
+    /**
+     * The consumer data and entitlements for a single compliance calculation. Everything the
+     * rules would otherwise look up on every date being checked is resolved once up front.
+     */
+    private class Evaluation {
+        private final Consumer consumer;
+        private final String consumerType;
+        private final boolean guest;
+        private final List<String> complianceAttributes;
+        private final List<String> installedProductIds;
+        private final int activeGuestCount;
+        private final List<EntitlementInfo> entitlements;
+
+        // Coverage from the previous check of the consumer, and the coverage used by this one
+        private final Cache<String, ConsumerCoverage> coverageCache;
+        private final String consumerKey;
+        private final String version;
+        private final ConsumerCoverage previousCoverage;
+        private final Map<String, Coverage> coverages = new HashMap<String, Coverage>();
+        private int reused;
+
+        // The global guest limit of the last list of entitlements it was requested for
+        private List<EntitlementInfo> guestLimitInfos;
+        private Double guestLimit;
+
+        Evaluation(Consumer consumer, List<Entitlement> entitlements) {
+            this.consumer = consumer;
+            this.consumerType = consumer.getType() != null ? consumer.getType().getLabel() : null;
+            this.guest = "true".equalsIgnoreCase(consumer.getFact(IS_VIRT_GUEST_FACT));
+            this.complianceAttributes = this.guest ? VIRT_ATTRIBUTES : PHYSICAL_ATTRIBUTES;
+
+            this.installedProductIds = new ArrayList<String>();
+            if (consumer.getInstalledProducts() != null) {
+                for (ConsumerInstalledProduct installed : consumer.getInstalledProducts()) {
+                    this.installedProductIds.add(installed.getProductId());
+                }
+            }
+
+            int active = 0;
+            if (consumer.getGuestIds() != null) {
+                for (GuestId guestId : consumer.getGuestIds()) {
+                    if (isGuestActive(guestId)) {
+                        active++;
+                    }
+                }
+            }
+            this.activeGuestCount = active;
+
+            this.consumerKey = this.buildConsumerKey();
+            this.coverageCache = candlepinCache != null && consumer.getUuid() != null ?
+                candlepinCache.getComplianceCoverageCache() : null;
+            this.previousCoverage = this.coverageCache != null ?
+                this.coverageCache.get(consumer.getUuid()) : null;
+            this.version = this.coverageCache != null ? this.buildVersion(entitlements) : null;
+
+            this.entitlements = new ArrayList<EntitlementInfo>(entitlements.size());
+            for (Entitlement entitlement : entitlements) {
+                List<String> relevant = this.previousCoverage != null ?
+                    this.previousCoverage.getRelevantProductIds(this.version, entitlement.getId()) : null;
+
+                this.entitlements.add(new EntitlementInfo(entitlement, productCurator,
+                    this.installedProductIds, relevant));
+            }
+        }
+
+        /**
+         * Builds a version of the consumer's entitlements from data that is already loaded:
+         * the installed products, and the id, quantity and update time of each entitlement
+         * and its pool. A pool is updated whenever its products change.
+         */
+        private String buildVersion(List<Entitlement> entitlements) {
+            StringBuilder builder = new StringBuilder(this.consumerKey);
+
+            for (String productId : this.installedProductIds) {
+                builder.append('\0').append(productId);
+            }
+
+            for (Entitlement entitlement : entitlements) {
+                Pool pool = entitlement.getPool();
+
+                builder.append('\0').append(entitlement.getId())
+                    .append('\0').append(entitlement.getQuantity())
+                    .append('\0').append(getTime(entitlement.getUpdated()))
+                    .append('\0').append(pool.getId())
+                    .append('\0').append(getTime(pool.getUpdated()));
+            }
+
+            return DigestUtils.sha256Hex(builder.toString());
+        }
+
+        /**
+         * Builds a key from all consumer data the coverage of an entitlement depends on.
+         * Coverage calculated for a consumer with a different key is not reused.
+         */
+        private String buildConsumerKey() {
+            StringBuilder builder = new StringBuilder()
+                .append(this.consumerType).append('\0')
+                .append(this.guest).append('\0')
+                .append(this.activeGuestCount);
+
+            for (String fact : KEY_FACTS) {
+                builder.append('\0').append(this.consumer.getFact(fact));
+            }
+
+            return builder.toString();
+        }
+
+        /**
+         * Caches the coverage used by this evaluation for the next check of the consumer.
+         * Coverage which was not used is dropped, so the cached entry does not grow with
+         * every entitlement the consumer ever had.
+         */
+        void storeCoverage() {
+            if (this.coverageCache == null) {
+                return;
+            }
+
+            log.debug("Reused {} of {} coverage calculations for consumer: {}", this.reused,
+                this.coverages.size(), this.consumer.getUuid());
+
+            Map<String, List<String>> relevantProductIds = new HashMap<String, List<String>>();
+            for (EntitlementInfo info : this.entitlements) {
+                if (info.id != null) {
+                    relevantProductIds.put(info.id, info.relevantProductIds);
+                }
+            }
+
+            this.coverageCache.put(this.consumer.getUuid(), new ConsumerCoverage(this.consumerKey,
+                this.version, this.coverages, relevantProductIds));
+        }
+
+        /**
+         * Fetches a coverage calculated earlier for the given key, from this evaluation or
+         * from the previous check of the consumer.
+         */
+        private Coverage lookupCoverage(String key) {
+            Coverage coverage = this.coverages.get(key);
+
+            if (coverage == null && this.previousCoverage != null) {
+                coverage = this.previousCoverage.get(this.consumerKey, key);
+
+                if (coverage != null) {
+                    this.coverages.put(key, coverage);
+                    ++this.reused;
+                }
+            }
+
+            return coverage;
+        }
+
+        private List<EntitlementInfo> filterByDate(List<EntitlementInfo> infos, long date) {
+            List<EntitlementInfo> filtered = new ArrayList<EntitlementInfo>();
+            for (EntitlementInfo info : infos) {
+                if (info.startDate <= date && info.endDate >= date) {
+                    filtered.add(info);
+                }
+            }
+
+            return filtered;
+        }
+
+        /**
+         * Checks compliance status for the consumer on a given date.
+         */
+        StatusOnDate getStatusOnDate(long date) {
+            StatusOnDate status = new StatusOnDate();
+
+            // Track the stack IDs we've already checked to save some time:
+            List<String> compliantStackIds = new ArrayList<String>();
+            List<String> nonCompliantStackIds = new ArrayList<String>();
+
+            List<EntitlementInfo> entitlementsOnDate = this.filterByDate(this.entitlements, date);
+            for (EntitlementInfo info : entitlementsOnDate) {
+                boolean partiallyStacked = false;
+
+                // If the pool is stacked, check that the stack requirements are met:
+                if (info.stacked) {
+                    String stackId = info.stackId;
+
+                    if (nonCompliantStackIds.contains(stackId)) {
+                        partiallyStacked = true;
+                        status.addPartialStack(stackId, info);
+                    }
+                    else if (!compliantStackIds.contains(stackId)) {
+                        Coverage stackCoverage = this.getStackCoverage(stackId, entitlementsOnDate);
+                        if (!stackCoverage.isCovered()) {
+                            partiallyStacked = true;
+                            status.addPartialStack(stackId, info);
+                            nonCompliantStackIds.add(stackId);
+                            stackCoverage.copyReasonsTo(status.reasons);
+                        }
+                        else {
+                            compliantStackIds.add(stackId);
+                        }
+                    }
+                }
+
+                // If we have no installed products and the entitlement
+                // is partially covered, we want the system to be partial.
+                if (info.relevantProductIds.isEmpty() && !info.stacked) {
+                    Coverage coverage = this.getEntitlementCoverage(info, entitlementsOnDate);
+                    if (!coverage.isCovered()) {
+                        coverage.copyReasonsTo(status.reasons);
+                    }
+                }
+
+                // If the consumer has an entitlement from a pool marked
+                // unmapped_guests_only it can only hope to be yellow
+                if (info.unmappedGuestsOnly) {
+                    ComplianceReason reason = new ComplianceReason();
+                    reason.setKey(ComplianceReason.ReasonKeys.UNMAPPED_GUEST);
+                    reason.setMessage(reason.getKey());
+                    reason.getAttributes().put(ComplianceReason.Attributes.ENTITLEMENT_ID, info.id);
+                    status.reasons.add(reason);
+                }
+
+                for (String productId : info.relevantProductIds) {
+                    if (partiallyStacked) {
+                        status.addPartialProduct(productId, info);
+                        continue;
+                    }
+
+                    // Calculated per product, as the reasons are reported for each of them
+                    Coverage coverage = this.getEntitlementCoverage(info, entitlementsOnDate);
+                    if (!coverage.isCovered() && !info.stacked) {
+                        status.addPartialProduct(productId, info);
+                        coverage.copyReasonsTo(status.reasons);
+                    }
+                    else {
+                        status.addCompliantProduct(productId, info);
+                    }
+                }
+            }
+
+            // Products provided by a regular entitlement are not partially compliant, even
+            // if a partial stack also provides them. The stack itself is left in the partial
+            // stacks, as it should still be repaired.
+            status.partialProducts.keySet().removeAll(status.compliantProducts.keySet());
+
+            // Installed products we didn't find an entitlement for are not compliant:
+            for (String productId : this.installedProductIds) {
+                if (!status.compliantProducts.containsKey(productId) &&
+                    !status.partialProducts.containsKey(productId)) {
+
+                    status.nonCompliantProducts.add(productId);
+
+                    ComplianceReason reason = new ComplianceReason();
+                    reason.setKey(ComplianceReason.ReasonKeys.NOT_COVERED);
+                    reason.setMessage(reason.getKey());
+                    reason.getAttributes().put(ComplianceReason.Attributes.PRODUCT_ID, productId);
+                    status.reasons.add(reason);
+                }
+            }
+
+            return status;
+        }
+
+        /**
+         * Determines the date on which the consumer will no longer be compliant, or null if
+         * it remains compliant for as long as its entitlements providing installed products
+         * last.
+         */
+        Date determineCompliantUntilDate(long startDate) {
+            if (this.installedProductIds.isEmpty()) {
+                return null;
+            }
+
+            List<Long> dates = new ArrayList<Long>();
+            for (EntitlementInfo info : this.entitlements) {
+                if (!info.relevantProductIds.isEmpty()) {
+                    dates.add(info.endDate);
+                }
+            }
+
+            Collections.sort(dates);
+
+            long lastDate = startDate;
+            for (long date : dates) {
+                // Ignore past dates and duplicates
+                if (date <= lastDate) {
+                    continue;
+                }
+
+                // Need to check if we are still compliant after the end date, so we add one
+                // second. The rules move the last checked date along with it.
+                long dateToCheck = date + ONE_SECOND;
+                lastDate = dateToCheck;
+
+                if (!this.getStatusOnDate(dateToCheck).isCompliant()) {
+                    return new Date(dateToCheck);
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * Calculates the range of dates over which each installed product keeps its current
+         * (partial) compliance.
+         */
+        Map<String, DateRange> getProductComplianceDateRanges(long onDate, StatusOnDate current) {
+            Map<String, DateRange> ranges = new LinkedHashMap<String, DateRange>();
+
+            if (this.installedProductIds.isEmpty()) {
+                return ranges;
+            }
+
+            List<Long> dates = new ArrayList<Long>();
+            for (EntitlementInfo info : this.entitlements) {
+                dates.add(info.startDate);
+                dates.add(info.endDate);
+            }
+
+            Collections.sort(dates);
+            int dateCount = dates.size();
+
+            // Find our next date in the future...
+            int nextDate = 0;
+            for (int i = dateCount - 1; i >= 0; --i) {
+                if (dates.get(i) <= onDate) {
+                    nextDate = i + 1;
+                    break;
+                }
+            }
+
+            Map<String, Long> startDates = new LinkedHashMap<String, Long>();
+            Map<String, Long> endDates = new HashMap<String, Long>();
+            for (String productId : this.installedProductIds) {
+                if (!current.nonCompliantProducts.contains(productId)) {
+                    startDates.put(productId, null);
+                }
+            }
+
+            Set<String> productIds = startDates.keySet();
+            if (productIds.isEmpty()) {
+                return ranges;
+            }
+
+            // Find start dates
+            int complete = 0;
+            long lastValidDate = onDate;
+
+            for (int i = nextDate - 1; i >= 0; --i) {
+                // Adding a millisecond moves us just outside the range of the entitlement an
+                // end date came from, so gaps in coverage are not bridged.
+                StatusOnDate status = this.getStatusOnDate(dates.get(i) + 1);
+
+                for (String productId : productIds) {
+                    if (startDates.get(productId) == null && (
+                        status.nonCompliantProducts.contains(productId) ||
+                        (current.isCompliant(productId) && !status.isCompliant(productId)) ||
+                        (current.isPartial(productId) && !status.isPartial(productId)))) {
+
+                        startDates.put(productId, lastValidDate);
+                        ++complete;
+                    }
+                }
+
+                if (complete >= productIds.size()) {
+                    break;
+                }
+
+                lastValidDate = dates.get(i);
+            }
+
+            // Find end dates
+            complete = 0;
+            for (int i = nextDate; i < dateCount; ++i) {
+                StatusOnDate status = this.getStatusOnDate(dates.get(i) + 1);
+
+                for (String productId : productIds) {
+                    if (endDates.get(productId) == null && (
+                        status.nonCompliantProducts.contains(productId) ||
+                        (current.isCompliant(productId) && !status.isCompliant(productId)) ||
+                        (current.isPartial(productId) && !status.isPartial(productId) &&
+                        !status.isCompliant(productId)))) {
+
+                        endDates.put(productId, dates.get(i));
+                        ++complete;
+                    }
+                }
+
+                if (complete >= productIds.size()) {
+                    break;
+                }
+            }
+
+            // Products valid all the way to the ends of our date ranges get the extremes
+            for (String productId : productIds) {
+                Long start = startDates.get(productId);
+                Long end = endDates.get(productId);
+
+                ranges.put(productId, new DateRange(
+                    new Date(start != null ? start : dates.get(0)),
+                    new Date(end != null ? end : dates.get(dateCount - 1))));
+            }
+
+            return ranges;
+        }
+
+        Coverage getStackCoverage(String stackId, List<EntitlementInfo> infos) {
+            List<EntitlementInfo> members = new ArrayList<EntitlementInfo>();
+
+            // The order of the members matters, as it determines the reported architecture
+            StringBuilder key = new StringBuilder("S\0").append(stackId);
+            for (EntitlementInfo info : infos) {
+                if (info.stacked && equal(info.stackId, stackId)) {
+                    members.add(info);
+                    key.append('\0').append(info.key);
+                }
+            }
+
+            key.append('\0').append(this.getGlobalGuestLimit(infos));
+
+            Coverage coverage = this.lookupCoverage(key.toString());
+            if (coverage == null) {
+                Tracker tracker = new Tracker(stackId);
+                for (EntitlementInfo info : members) {
+                    tracker.updateAccumulatedFromEntitlement(info);
+                }
+
+                coverage = this.getCoverage(tracker, infos);
+                this.coverages.put(key.toString(), coverage);
+            }
+
+            return coverage;
+        }
+
+        Coverage getEntitlementCoverage(EntitlementInfo info, List<EntitlementInfo> infos) {
+            String key = "E\0" + info.key + '\0' + this.getGlobalGuestLimit(infos);
+
+            Coverage coverage = this.lookupCoverage(key);
+            if (coverage == null) {
+                Tracker tracker = new Tracker(null);
+                tracker.updateAccumulatedFromEntitlement(info);
+
+                coverage = this.getCoverage(tracker, infos);
+                this.coverages.put(key, coverage);
+            }
+
+            return coverage;
+        }
+
+        /**
+         * Determines whether the accumulated values of the tracker cover the consumer.
+         * Attributes the tracker does not enforce are considered covered.
+         */
+        private Coverage getCoverage(Tracker tracker, List<EntitlementInfo> infos) {
+            if (tracker.enforces(Product.Attributes.GUEST_LIMIT)) {
+                tracker.accumulated.put(Product.Attributes.GUEST_LIMIT, this.getGlobalGuestLimit(infos));
+            }
+
+            List<ComplianceReason> reasons = new ArrayList<ComplianceReason>();
+            int coveredCount = 0;
+
+            for (String attribute : this.complianceAttributes) {
+                if (!tracker.enforces(attribute)) {
+                    coveredCount++;
+                    continue;
+                }
+
+                ComplianceReason reason;
+                if (Product.Attributes.ARCHITECTURE.equals(attribute)) {
+                    reason = this.checkArchitecture(tracker);
+                }
+                else if (Product.Attributes.GUEST_LIMIT.equals(attribute)) {
+                    reason = this.checkGuestLimit(tracker);
+                }
+                else {
+                    reason = this.checkQuantity(tracker, attribute);
+                }
+
+                if (reason == null) {
+                    coveredCount++;
+                }
+                else {
+                    reasons.add(reason);
+                }
+            }
+
+            return new Coverage(coveredCount == this.complianceAttributes.size(), reasons);
+        }
+
+        private ComplianceReason checkArchitecture(Tracker tracker) {
+            String consumerArch = this.consumer.getFact(ARCH_FACT);
+
+            @SuppressWarnings("unchecked")
+            List<String> supportedArches = (List<String>)
+                tracker.accumulated.get(Product.Attributes.ARCHITECTURE);
+
+            for (String archString : supportedArches) {
+                if (!architectureMatches(archString, consumerArch, this.consumerType)) {
+                    return tracker.buildReason(Product.Attributes.ARCHITECTURE, consumerArch, archString);
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * Same as the quantity check, except that -1 is unlimited.
+         */
+        private ComplianceReason checkGuestLimit(Tracker tracker) {
+            double consumerQuantity = this.activeGuestCount;
+            Object sourceValue = tracker.accumulated.get(Product.Attributes.GUEST_LIMIT);
+
+            boolean covered = (sourceValue != null && ((Double) sourceValue) == -1) ||
+                parseInt(sourceValue) >= consumerQuantity;
+
+            return covered ? null : tracker.buildReason(Product.Attributes.GUEST_LIMIT,
+                format(consumerQuantity), format(sourceValue));
+        }
+
+        /**
+         * A simple integer comparison, making sure the accumulated value is at least the
+         * consumer's calculated value.
+         */
+        private ComplianceReason checkQuantity(Tracker tracker, String attribute) {
+            Object consumerQuantity = this.getFactValue(attribute);
+            Object sourceValue = tracker.accumulated.get(attribute);
+
+            boolean covered = parseInt(sourceValue) >= toNumber(consumerQuantity);
+
+            return covered ? null : tracker.buildReason(attribute, format(consumerQuantity),
+                format(sourceValue));
+        }
+
+        /**
+         * Calculates the consumer value to compare with the given product attribute. Like
+         * the rules, this is either the raw fact value or a number.
+         */
+        private Object getFactValue(String attribute) {
+            if (Product.Attributes.RAM.equals(attribute)) {
+                // RAM facts are in kB, while products specify GB
+                double ram = parseInt(this.getRawFactValue(attribute)) / 1024 / 1024;
+                return Double.isNaN(ram) ? ram : Math.floor(ram + 0.5);
+            }
+
+            if (Product.Attributes.CORES.equals(attribute)) {
+                return toNumber(this.getRawFactValue(attribute)) *
+                    toNumber(this.getFactValue(Product.Attributes.SOCKETS));
+            }
+
+            if (Product.Attributes.VCPU.equals(attribute)) {
+                return this.getFactValue(Product.Attributes.CORES);
+            }
+
+            if (Product.Attributes.GUEST_LIMIT.equals(attribute)) {
+                return (double) this.activeGuestCount;
+            }
+
+            return this.getRawFactValue(attribute);
+        }
+
+        private Object getRawFactValue(String attribute) {
+            String fact = ATTRIBUTES_TO_CONSUMER_FACTS.get(attribute);
+            String value = fact != null ? this.consumer.getFact(fact) : null;
+
+            return value != null && !value.isEmpty() ? value : (Object) Double.valueOf(1);
+        }
+
+        /**
+         * The guest limit is not stacked, but taken from all entitlements of the consumer:
+         * the highest limit applies, and -1 is unlimited.
+         */
+        private Double getGlobalGuestLimit(List<EntitlementInfo> infos) {
+            if (infos != this.guestLimitInfos) {
+                this.guestLimit = this.calculateGlobalGuestLimit(infos);
+                this.guestLimitInfos = infos;
+            }
+
+            return this.guestLimit;
+        }
+
+        private Double calculateGlobalGuestLimit(List<EntitlementInfo> infos) {
+            Double total = null;
+
+            for (EntitlementInfo info : infos) {
+                String value = info.getProductAttribute(Product.Attributes.GUEST_LIMIT);
+                if (value != null) {
+                    if (total == null) {
+                        total = 0D;
+                    }
+
+                    double poolValue = parseInt(value);
+                    if (poolValue == -1) {
+                        return poolValue;
+                    }
+
+                    if (poolValue > total) {
+                        total = poolValue;
+                    }
+                }
+            }
+
+            return total;
+        }
+
+        /**
+         * Tracks the values accumulated from an entitlement, or a set of stacked
+         * entitlements, for each compliance attribute.
+         */
+        private class Tracker {
+            private String id;
+            private final boolean stack;
+            private final Map<String, Object> accumulated = new HashMap<String, Object>();
+            private String hostRestricted;
+            private boolean empty = true;
+
+            Tracker(String stackId) {
+                this.id = stackId;
+                this.stack = stackId != null;
+            }
+
+            boolean enforces(String attribute) {
+                // Guests are not subjected to RAM/VCPU limitations if using a host
+                // restricted sub-pool.
+                if (this.hostRestricted != null && guest &&
+                    UNCHECKED_WHEN_HOST_RESTRICTED.contains(attribute)) {
+                    return false;
+                }
+
+                return this.accumulated.containsKey(attribute);
+            }
+
+            void updateAccumulatedFromEntitlement(EntitlementInfo info) {
+                if (!this.stack && this.empty) {
+                    this.id = info.id;
+                }
+
+                this.empty = false;
+
+                // If quantity is > 1 but the entitlement is not stacked
+                // only calculate compliance for quantity 1
+                int quantity = !info.stacked && info.quantity > 1 ? 1 : info.quantity;
+
+                String requiresHost = info.getAttribute(Pool.Attributes.REQUIRES_HOST);
+                if (requiresHost != null && !requiresHost.isEmpty()) {
+                    this.hostRestricted = requiresHost;
+                }
+
+                for (String attribute : complianceAttributes) {
+                    String poolValue = info.getProductAttribute(attribute);
+                    if (poolValue != null) {
+                        Object stackValue = this.enforces(attribute) ?
+                            this.accumulated.get(attribute) : null;
+
+                        this.accumulated.put(attribute,
+                            this.accumulate(attribute, stackValue, poolValue, info, quantity));
+                    }
+                }
+            }
+
+            @SuppressWarnings("unchecked")
+            private Object accumulate(String attribute, Object stackValue, String poolValue,
+                EntitlementInfo info, int quantity) {
+
+                if (Product.Attributes.ARCHITECTURE.equals(attribute)) {
+                    // Architectures are accumulated as a list of supported arch strings
+                    List<String> arches = stackValue != null ?
+                        (List<String>) stackValue : new ArrayList<String>();
+
+                    arches.add(poolValue);
+                    return arches;
+                }
+
+                if (Product.Attributes.GUEST_LIMIT.equals(attribute)) {
+                    // The value doesn't matter, it only needs to be enforced
+                    return -1D;
+                }
+
+                if (Product.Attributes.SOCKETS.equals(attribute)) {
+                    double increment = parseInt(
+                        info.getProductAttribute(Product.Attributes.INSTANCE_MULTIPLIER));
+                    int multiplier = Double.isNaN(increment) || increment == 0 ? 1 : (int) increment;
+
+                    // use lowest quantity evenly divisible by the instance multiplier
+                    int adjustedQuantity = quantity - (quantity % multiplier);
+                    return toInt32(stackValue) + (parseInt(poolValue) * adjustedQuantity) / multiplier;
+                }
+
+                return toInt32(stackValue) + parseInt(poolValue) * quantity;
+            }
+
+            ComplianceReason buildReason(String attribute, String has, String covered) {
+                ComplianceReason reason = new ComplianceReason();
+                reason.setKey(attribute.toUpperCase());
+                reason.setMessage(reason.getKey());
+                reason.getAttributes().put(ComplianceReason.Attributes.PRESENT, has);
+                reason.getAttributes().put(ComplianceReason.Attributes.COVERED, covered);
+                reason.getAttributes().put(this.stack ? ComplianceReason.Attributes.STACKING_ID :
+                    ComplianceReason.Attributes.ENTITLEMENT_ID, this.id);
+
+                return reason;
+            }
+        }
+    }
+
+    /**
+     * The entitlement data the compliance calculation needs, resolved once.
+     */
+    private static class EntitlementInfo {
+        private final Entitlement entitlement;
+        private final String id;
+        private final long startDate;
+        private final long endDate;
+        private final int quantity;
+        private final boolean stacked;
+        private final String stackId;
+        private final boolean unmappedGuestsOnly;
+        private final Map<String, String> attributes;
+        private final Map<String, String> productAttributes;
+        private final List<String> relevantProductIds;
+        private final String key;
+
+        /**
+         * @param relevantProductIds
+         *  the installed products the entitlement provides, as found by an earlier check of
+         *  the same entitlements, or null to look them up
+         */
+        EntitlementInfo(Entitlement entitlement, ProductCurator productCurator,
+            List<String> installedProductIds, List<String> relevantProductIds) {
+
+            Pool pool = entitlement.getPool();
+
+            this.entitlement = entitlement;
+            this.id = entitlement.getId();
+            this.startDate = entitlement.getStartDate() != null ? entitlement.getStartDate().getTime() : 0;
+            this.endDate = entitlement.getEndDate() != null ? entitlement.getEndDate().getTime() : 0;
+            this.quantity = entitlement.getQuantity() != null ? entitlement.getQuantity() : 0;
+            this.attributes = pool.getAttributes();
+            this.productAttributes = pool.getProductAttributes();
+
+            this.stacked = this.productAttributes.containsKey(Product.Attributes.STACKING_ID);
+            this.stackId = this.getProductAttribute(Product.Attributes.STACKING_ID);
+            this.unmappedGuestsOnly =
+                "true".equalsIgnoreCase(this.getAttribute(Pool.Attributes.UNMAPPED_GUESTS_ONLY));
+
+            this.relevantProductIds = relevantProductIds != null ? relevantProductIds :
+                findRelevantProductIds(pool, productCurator, installedProductIds);
+
+            this.key = this.buildKey();
+        }
+
+        /**
+         * Finds the installed products the pool provides.
+         */
+        private static List<String> findRelevantProductIds(Pool pool, ProductCurator productCurator,
+            List<String> installedProductIds) {
+
+            Set<String> productIds = new HashSet<String>();
+            productIds.add(pool.getProductId());
+
+            pool.populateAllTransientProvidedProducts(productCurator);
+            for (ProvidedProduct provided : pool.getProvidedProductDtos()) {
+                productIds.add(provided.getProductId());
+            }
+
+            List<String> relevant = new ArrayList<String>();
+            for (String productId : installedProductIds) {
+                if (productIds.contains(productId)) {
+                    relevant.add(productId);
+                }
+            }
+
+            return Collections.unmodifiableList(relevant);
+        }
+
+        /**
+         * Builds a key from all entitlement data the coverage of the entitlement, or of a
+         * stack it is part of, depends on.
+         */
+        private String buildKey() {
+            StringBuilder builder = new StringBuilder()
+                .append(this.id).append('\0')
+                .append(this.quantity).append('\0')
+                .append(this.stacked).append('\0')
+                .append(this.stackId).append('\0')
+                .append(this.getAttribute(Pool.Attributes.REQUIRES_HOST));
+
+            for (String attribute : KEY_ATTRIBUTES) {
+                builder.append('\0').append(this.getProductAttribute(attribute));
+            }
+
+            return builder.toString();
+        }
+
+        /**
+         * Looks up an attribute on the pool, then on its product. As in the rules, a value
+         * of 0 is considered not set.
+         */
+        String getAttribute(String name) {
+            String value = findAttribute(name, this.attributes);
+            return value != null ? value : findAttribute(name, this.productAttributes);
+        }
+
+        /**
+         * Looks up an attribute on the pool's product, then on the pool.
+         */
+        String getProductAttribute(String name) {
+            String value = findAttribute(name, this.productAttributes);
+            return value != null ? value : findAttribute(name, this.attributes);
+        }
+
+        private static String findAttribute(String name, Map<String, String> attributes) {
+            String value = attributes != null ? attributes.get(name) : null;
+            return "0".equals(value) ? null : value;
+        }
+    }
+
+    /**
+     * The compliance of the consumer on a single date, as tracked by the rules.
+     */
+    private static class StatusOnDate {
+        private final Map<String, List<EntitlementInfo>> partialStacks =
+            new LinkedHashMap<String, List<EntitlementInfo>>();
+        private final Map<String, List<EntitlementInfo>> partialProducts =
+            new LinkedHashMap<String, List<EntitlementInfo>>();
+        private final Map<String, List<EntitlementInfo>> compliantProducts =
+            new LinkedHashMap<String, List<EntitlementInfo>>();
+        private final List<String> nonCompliantProducts = new ArrayList<String>();
+        private final List<ComplianceReason> reasons = new ArrayList<ComplianceReason>();
+
+        void addPartialStack(String stackId, EntitlementInfo info) {
+            add(this.partialStacks, stackId, info);
+        }
+
+        void addPartialProduct(String productId, EntitlementInfo info) {
+            add(this.partialProducts, productId, info);
+        }
+
+        void addCompliantProduct(String productId, EntitlementInfo info) {
+            add(this.compliantProducts, productId, info);
+        }
+
+        private static void add(Map<String, List<EntitlementInfo>> map, String key,
+            EntitlementInfo info) {
+
+            List<EntitlementInfo> infos = map.get(key);
+            if (infos == null) {
+                infos = new ArrayList<EntitlementInfo>();
+                map.put(key, infos);
+            }
+
+            infos.add(info);
+        }
+
+        boolean isCompliant(String productId) {
+            return this.compliantProducts.containsKey(productId);
+        }
+
+        boolean isPartial(String productId) {
+            return this.partialProducts.containsKey(productId);
+        }
+
+        /**
+         * Whether there are no non-compliant or partially compliant products. Note this
+         * differs from {@link ComplianceStatus#isCompliant()}, which checks the reasons.
+         */
+        boolean isCompliant() {
+            return this.nonCompliantProducts.isEmpty() && this.partialProducts.isEmpty();
+        }
+
+        boolean isPartiallyCompliant() {
+            return !this.compliantProducts.isEmpty() || !this.partialProducts.isEmpty();
+        }
+
+        void copyTo(ComplianceStatus status) {
+            for (Map.Entry<String, List<EntitlementInfo>> entry : this.compliantProducts.entrySet()) {
+                for (EntitlementInfo info : entry.getValue()) {
+                    status.addCompliantProduct(entry.getKey(), info.entitlement);
+                }
+            }
+
+            for (Map.Entry<String, List<EntitlementInfo>> entry : this.partialProducts.entrySet()) {
+                for (EntitlementInfo info : entry.getValue()) {
+                    status.addPartiallyCompliantProduct(entry.getKey(), info.entitlement);
+                }
+            }
+
+            for (Map.Entry<String, List<EntitlementInfo>> entry : this.partialStacks.entrySet()) {
+                for (EntitlementInfo info : entry.getValue()) {
+                    status.addPartialStack(entry.getKey(), info.entitlement);
+                }
+            }
+
+            for (String productId : this.nonCompliantProducts) {
+                status.addNonCompliantProduct(productId);
+            }
+
+            status.getReasons().addAll(this.reasons);
+        }
+    }
+
+    private static long getTime(Date date) {
+        return date != null ? date.getTime() : 0;
+    }
+
+    private static boolean isGuestActive(GuestId guestId) {
+        Map<String, String> attributes = guestId.getAttributes();
+
+        return attributes != null && "libvirt".equals(attributes.get("virtWhoType")) &&
+            "1".equals(attributes.get("active"));
+    }
+
+    private static boolean architectureMatches(String productArchStr, String consumerArch,
+        String consumerType) {
+
+        // Non-system consumers without an architecture fact can pass this rule
+        // regardless what arch the product requires.
+        if ((consumerArch == null || consumerArch.isEmpty()) && !SYSTEM_TYPE.equals(consumerType)) {
+            return true;
+        }
+
+        if (productArchStr != null) {
+            List<String> supportedArches = new ArrayList<String>(
+                Arrays.asList(productArchStr.toUpperCase().split(",", -1)));
+
+            // If X86 is supported, add all variants to this list:
+            if (supportedArches.contains("X86")) {
+                supportedArches.add("I386");
+                supportedArches.add("I586");
+                supportedArches.add("I686");
+            }
+
+            if (!supportedArches.contains("ALL") && (consumerArch == null || consumerArch.isEmpty() ||
+                !supportedArches.contains(consumerArch.toUpperCase()))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * JavaScript's parseInt: the leading integer of the value, or NaN.
+     */
+    static double parseInt(Object value) {
+        if (value == null) {
+            return Double.NaN;
+        }
+
+        if (value instanceof Double) {
+            double number = (Double) value;
+            return Double.isNaN(number) || Double.isInfinite(number) ? Double.NaN :
+                (double) (long) number;
+        }
+
+        String str = value.toString().trim();
+        int idx = 0;
+        boolean negative = false;
+
+        if (idx < str.length() && (str.charAt(idx) == '-' || str.charAt(idx) == '+')) {
+            negative = str.charAt(idx) == '-';
+            idx++;
+        }
+
+        int radix = 10;
+        if (str.startsWith("0x", idx) || str.startsWith("0X", idx)) {
+            radix = 16;
+            idx += 2;
+        }
+
+        double result = 0;
+        int start = idx;
+        for (; idx < str.length(); idx++) {
+            int digit = Character.digit(str.charAt(idx), radix);
+            if (digit < 0) {
+                break;
+            }
+
+            result = result * radix + digit;
+        }
+
+        if (idx == start) {
+            return Double.NaN;
+        }
+
+        return negative ? -result : result;
+    }
+
+    /**
+     * JavaScript's conversion of a value to a number, as done when comparing it.
+     */
+    static double toNumber(Object value) {
+        if (value == null) {
+            return 0;
+        }
+
+        if (value instanceof Double) {
+            return (Double) value;
+        }
+
+        String str = value.toString().trim();
+        if (str.isEmpty()) {
+            return 0;
+        }
+
+        if (JS_DECIMAL.matcher(str).matches()) {
+            return Double.parseDouble(str);
+        }
+
+        if (JS_HEX.matcher(str).matches()) {
+            return Long.parseLong(str.substring(2), 16);
+        }
+
+        return Double.NaN;
+    }
+
+    /**
+     * JavaScript's "value | 0".
+     */
+    private static double toInt32(Object value) {
+        double number = value instanceof Double ? (Double) value : toNumber(value);
+        return Double.isNaN(number) || Double.isInfinite(number) ? 0 : (int) (long) number;
+    }
+
+    /**
+     * Formats a value as it ends up in reason attributes after passing through JSON.
+     */
+    static String format(Object value) {
+        if (value == null) {
+            return null;
+        }
+
+        if (value instanceof Double) {
+            double number = (Double) value;
+
+            if (Double.isNaN(number) || Double.isInfinite(number)) {
+                return null;
+            }
+
+            return number == Math.rint(number) && Math.abs(number) < 1e15 ?
+                String.valueOf((long) number) : String.valueOf(number);
+        }
+
+        return value.toString();
+    }
+}
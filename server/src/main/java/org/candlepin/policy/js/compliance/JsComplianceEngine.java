@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance;
+
+import org.candlepin.model.Consumer;
+import org.candlepin.model.Entitlement;
+import org.candlepin.policy.js.JsRunner;
+import org.candlepin.policy.js.JsonJsContext;
+import org.candlepin.policy.js.RuleExecutionException;
+import org.candlepin.policy.js.RulesObjectMapper;
+
+import com.google.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+
+
+/**
+ * JsComplianceEngine
+ *
+ * Calculates compliance by running the compliance functions of the rules. The consumer
+ * and its entitlements are serialized to JSON for every call, and the status returned by
+ * the rules is parsed back into a {@link ComplianceStatus}.
+ */
+public class JsComplianceEngine implements ComplianceEngine {
+    // The rules have always logged under the ComplianceRules category
+    private static Logger log = LoggerFactory.getLogger(ComplianceRules.class);
+
+    private JsRunner jsRules;
+    private RulesObjectMapper mapper;
+
+    @Inject
+    public JsComplianceEngine(JsRunner jsRules, RulesObjectMapper mapper) {
+        this.jsRules = jsRules;
+        this.mapper = mapper;
+
+        jsRules.init("compliance_name_space");
+    }
+
+    @Override
+    public ComplianceStatus getStatus(Consumer consumer, List<Entitlement> entitlements, Date onDate,
+        boolean calculateCompliantUntil, boolean calculateProductComplianceDateRanges) {
+
+        JsonJsContext args = new JsonJsContext(mapper);
+        args.put("consumer", consumer);
+        args.put("entitlements", entitlements);
+        args.put("ondate", onDate);
+        args.put("calculateCompliantUntil", calculateCompliantUntil);
+        args.put("calculateProductComplianceDateRanges", calculateProductComplianceDateRanges);
+        args.put("log", log, false);
+        args.put("guestIds", consumer.getGuestIds());
+
+        // Convert the JSON returned into a ComplianceStatus object:
+        String json = jsRules.runJsFunction(String.class, "get_status", args);
+        try {
+            return mapper.toObject(json, ComplianceStatus.class);
+        }
+        catch (Exception e) {
+            throw new RuleExecutionException(e);
+        }
+    }
+
+    /**
+     * The rules scope and the serialization of the consumer are bound to the calling thread,
+     * so the status is calculated right away rather than by the returned task.
+     */
+    @Override
+    public Callable<ComplianceStatus> prepareStatus(Consumer consumer, List<Entitlement> entitlements,
+        Date onDate, boolean calculateCompliantUntil, boolean calculateProductComplianceDateRanges) {
+
+        final ComplianceStatus status = this.getStatus(consumer, entitlements, onDate,
+            calculateCompliantUntil, calculateProductComplianceDateRanges);
+
+        return new Callable<ComplianceStatus>() {
+            @Override
+            public ComplianceStatus call() {
+                return status;
+            }
+        };
+    }
+
+    @Override
+    public boolean isStackCompliant(Consumer consumer, String stackId, List<Entitlement> entitlements) {
+        JsonJsContext args = new JsonJsContext(mapper);
+        args.put("stack_id", stackId);
+        args.put("consumer", consumer);
+        args.put("entitlements", entitlements);
+        args.put("log", log, false);
+        args.put("guestIds", consumer.getGuestIds());
+
+        return jsRules.runJsFunction(Boolean.class, "is_stack_compliant", args);
+    }
+
+    @Override
+    public boolean isEntitlementCompliant(Consumer consumer, Entitlement entitlement,
+        List<Entitlement> entitlements) {
+
+        JsonJsContext args = new JsonJsContext(mapper);
+        args.put("consumer", consumer);
+        args.put("entitlement", entitlement);
+        args.put("entitlements", entitlements);
+        args.put("log", log, false);
+        args.put("guestIds", consumer.getGuestIds());
+
+        return jsRules.runJsFunction(Boolean.class, "is_ent_compliant", args);
+    }
+}
@@ -138,6 +138,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -2341,7 +2342,8 @@ public class ConsumerResource {
     }
 
     @ApiOperation(notes = "Retrieves a Compliance Status list for a list of Consumers",
-        value = "getComplianceStatusList")
+        value = "getComplianceStatusList", response = ComplianceStatus.class, responseContainer = "Map")
+    @ApiResponses({ @ApiResponse(code = 400, message = "") })
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     @Path("/compliance")
@@ -2350,21 +2352,39 @@ public class ConsumerResource {
         @QueryParam("uuid") @Verify(value = Consumer.class, nullable = true) List<String> uuids) {
 
         Map<String, ComplianceStatus> results = new HashMap<String, ComplianceStatus>();
+        List<Consumer> consumers = new LinkedList<Consumer>();
 
         if (uuids != null && !uuids.isEmpty()) {
+            int max = config.getInt(ConfigProperties.COMPLIANCE_BULK_MAX_CONSUMERS);
+            if (uuids.size() > max) {
+                throw new BadRequestException(i18n.tr(
+                    "Compliance status can be requested for at most {0} consumers at a time.", max));
+            }
+
             for (Consumer consumer : consumerCurator.findByUuids(uuids)) {
-                ComplianceStatus status;
                 if (consumer.isShare()) {
                     logShareConsumerRequestWarning("fetch compliance", consumer);
-                    status = new ComplianceStatus(null);
+                    results.put(consumer.getUuid(), new ComplianceStatus(null));
                 }
                 else {
-                    status = complianceRules.getStatus(consumer, null);
+                    consumers.add(consumer);
                 }
-                results.put(consumer.getUuid(), status);
             }
         }
 
+        // All statuses are calculated (and persisted) within this transaction, before the
+        // response is written, so any failure is reported as an error rather than a partial list
+        long start = System.currentTimeMillis();
+        Iterator<Map.Entry<Consumer, ComplianceStatus>> statuses =
+            complianceRules.getStatuses(consumers, true);
+        while (statuses.hasNext()) {
+            Map.Entry<Consumer, ComplianceStatus> entry = statuses.next();
+            results.put(entry.getKey().getUuid(), entry.getValue());
+        }
+
+        log.info("Calculated compliance status of {} consumers in {}ms", consumers.size(),
+            System.currentTimeMillis() - start);
+
         return results;
     }
 
@@ -17,6 +17,7 @@ package org.candlepin.resource;
 import org.candlepin.auth.Principal;
 import org.candlepin.common.config.Configuration;
 import org.candlepin.common.exceptions.IseException;
+import org.candlepin.common.exceptions.NotFoundException;
 import org.candlepin.config.ConfigProperties;
 import org.candlepin.model.CertificateSerial;
 import org.candlepin.model.CertificateSerialCurator;
@@ -34,6 +35,7 @@ import java.math.BigInteger;
 import java.security.cert.CRLException;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
@@ -80,7 +82,15 @@ public class CrlResource {
         File crlFile = new File(filePath);
 
         try {
-            this.crlFileUtil.syncCRLWithDB(crlFile);
+            File deltaFile = this.getDeltaCrlFile();
+
+            if (deltaFile != null) {
+                // The full CRL is always brought up to date; the delta CRL then starts over from it
+                this.crlFileUtil.syncCRLWithDB(crlFile, deltaFile, 0);
+            }
+            else {
+                this.crlFileUtil.syncCRLWithDB(crlFile);
+            }
 
             // Create an empty CRL if we didn't have anything to write
             if (!crlFile.exists() || crlFile.length() < 1) {
@@ -97,6 +107,30 @@ public class CrlResource {
         }
     }
 
+    @ApiOperation(notes = "Retrieves the delta Certificate Revocation List, listing the " +
+        "certificates revoked since the base Certificate Revocation List was issued",
+        value = "getDeltaCrl", response = String.class)
+    @GET
+    @Path("delta")
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response getDeltaCrl(@Context Principal principal) throws CRLException {
+        File deltaFile = this.getDeltaCrlFile();
+
+        if (deltaFile == null) {
+            throw new NotFoundException("Delta CRLs are not enabled");
+        }
+
+        try {
+            this.crlFileUtil.syncCRLWithDB(new File(getCrlFilePath()), deltaFile,
+                this.getBaseRebuildInterval());
+
+            return Response.ok().entity(new FileInputStream(deltaFile)).build();
+        }
+        catch (IOException e) {
+            throw new IseException(e.getMessage(), e);
+        }
+    }
+
     @ApiOperation(notes = "Deletes a Certificate from the Revocation List", value = "unrevoke")
     @DELETE
     @Produces(MediaType.APPLICATION_JSON)
@@ -130,4 +164,13 @@ public class CrlResource {
 
         return filePath;
     }
+
+    private File getDeltaCrlFile() {
+        String filePath = config.getString(ConfigProperties.CRL_DELTA_FILE_PATH);
+        return filePath != null && !filePath.isEmpty() ? new File(filePath) : null;
+    }
+
+    private long getBaseRebuildInterval() {
+        return TimeUnit.HOURS.toMillis(config.getLong(ConfigProperties.CRL_BASE_REBUILD_INTERVAL));
+    }
 }
@@ -34,6 +34,7 @@ import org.candlepin.model.EnvironmentCurator;
 import org.candlepin.model.OwnerContentCurator;
 import org.candlepin.model.OwnerEnvContentAccessCurator;
 import org.candlepin.pinsetter.tasks.RegenEnvEntitlementCertsJob;
+import org.candlepin.util.ContentAccessPayloadCache;
 import org.candlepin.util.RdbmsExceptionTranslator;
 import org.candlepin.util.Util;
 
@@ -92,13 +93,15 @@ public class EnvironmentResource {
     private OwnerContentCurator ownerContentCurator;
     private OwnerEnvContentAccessCurator ownerEnvContentAccessCurator;
     private RdbmsExceptionTranslator rdbmsExceptionTranslator;
+    private ContentAccessPayloadCache contentAccessPayloadCache;
 
     @Inject
     public EnvironmentResource(EnvironmentCurator envCurator, I18n i18n,
         EnvironmentContentCurator envContentCurator, ConsumerResource consumerResource,
         PoolManager poolManager, ConsumerCurator consumerCurator, OwnerContentCurator ownerContentCurator,
         RdbmsExceptionTranslator rdbmsExceptionTranslator,
-        OwnerEnvContentAccessCurator ownerEnvContentAccessCurator) {
+        OwnerEnvContentAccessCurator ownerEnvContentAccessCurator,
+        ContentAccessPayloadCache contentAccessPayloadCache) {
 
         this.envCurator = envCurator;
         this.i18n = i18n;
@@ -109,6 +112,7 @@ public class EnvironmentResource {
         this.ownerContentCurator = ownerContentCurator;
         this.rdbmsExceptionTranslator = rdbmsExceptionTranslator;
         this.ownerEnvContentAccessCurator = ownerEnvContentAccessCurator;
+        this.contentAccessPayloadCache = contentAccessPayloadCache;
     }
 
     @ApiOperation(notes = "Retrieves a single Environment", value = "getEnv")
@@ -370,7 +374,19 @@ public class EnvironmentResource {
 
     @Transactional
     private void clearContentAccessCerts(Environment env) {
-        ownerEnvContentAccessCurator.removeAllForEnvironment(env.getId());
+        final String ownerId = env.getOwner().getId();
+        final String envId = env.getId();
+
+        ownerEnvContentAccessCurator.removeAllForEnvironment(envId);
+        contentAccessPayloadCache.invalidateEnvironment(ownerId, envId);
+
+        // Payloads read by other requests before this commits are stale; drop them once it has
+        ownerEnvContentAccessCurator.afterTransaction(new Runnable() {
+            @Override
+            public void run() {
+                contentAccessPayloadCache.invalidateEnvironment(ownerId, envId);
+            }
+        });
     }
 
     private Environment lookupEnvironment(String envId) {
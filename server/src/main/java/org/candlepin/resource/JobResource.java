@@ -281,7 +281,18 @@ public class JobResource {
         if (j.isDone()) {
             throw new BadRequestException(i18n.tr("cannot cancel a job that is in a finished state"));
         }
-        return curator.cancel(jobId);
+
+        JobStatus canceled = curator.cancel(jobId);
+
+        // Remove the job from the scheduler right away, rather than waiting on CancelJobJob
+        try {
+            pk.cancelJob(jobId, j.getGroup());
+        }
+        catch (PinsetterException e) {
+            log.warn("Unable to remove canceled job {} from the scheduler", jobId, e);
+        }
+
+        return canceled;
     }
 
     @ApiOperation(notes = "Retrieves a Job Status and Removes if finished",
@@ -754,7 +754,10 @@ public class OwnerResource {
     @Produces(MediaType.APPLICATION_JSON)
     @Path("{owner_key}/pools")
     @SuppressWarnings("checkstyle:indentation")
-    @ApiOperation(notes = "Retrieves a list of Pools for an Owner", value = "List Pools")
+    @ApiOperation(notes = "Retrieves a list of Pools for an Owner. When paging the pools available " +
+        "to a consumer or activation key, the total behind the last page link is an estimate " +
+        "until the last page is reached; the next link is always given while pools remain.",
+        value = "List Pools")
     @ApiResponses({
         @ApiResponse(code = 404, message = "Owner not found"),
         @ApiResponse(code = 400, message = "Invalid request")
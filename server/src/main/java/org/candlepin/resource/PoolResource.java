@@ -101,7 +101,9 @@ public class PoolResource {
      * @return List of pools
      */
     @ApiOperation(
-        notes = "Retrieves a list of Pools @deprecated Use the method on /owners",
+        notes = "Retrieves a list of Pools. When paging the pools available to a consumer, the " +
+        "total behind the last page link is an estimate until the last page is reached. " +
+        "@deprecated Use the method on /owners",
         value = "")
     @ApiResponses({
         @ApiResponse(code = 400,
@@ -14,7 +14,11 @@
  */
 package org.candlepin.resteasy.filter;
 
+import org.candlepin.common.exceptions.BadRequestException;
+import org.candlepin.common.exceptions.IseException;
+import org.candlepin.common.jackson.DynamicFilterData;
 import org.candlepin.common.paging.Page;
+import org.candlepin.common.paging.PageCursor;
 import org.candlepin.common.paging.PageRequest;
 import org.candlepin.model.AbstractHibernateObject;
 import org.candlepin.model.CandlepinQuery;
@@ -25,11 +29,19 @@ import com.google.inject.Inject;
 import com.google.inject.Provider;
 
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.BeanDescription;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.introspect.Annotated;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
 
+import org.hibernate.Hibernate;
+import org.hibernate.HibernateException;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Order;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.metadata.ClassMetadata;
 
 import org.jboss.resteasy.annotations.interception.ServerInterceptor;
 import org.jboss.resteasy.core.ServerResponse;
@@ -37,9 +49,12 @@ import org.jboss.resteasy.spi.ResteasyProviderFactory;
 import org.jboss.resteasy.spi.interception.PostProcessInterceptor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xnap.commons.i18n.I18n;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Set;
 
 import javax.persistence.EntityManager;
 import javax.ws.rs.WebApplicationException;
@@ -50,7 +65,8 @@ import javax.ws.rs.core.StreamingOutput;
 
 /**
  * The CandlepinQueryInterceptor handles the streaming of a query and applies any paging
- * configuration.
+ * configuration. Requests with a cursor are paged by keyset, which does not skip over or count
+ * the preceding results, rather than by page number.
  */
 @javax.ws.rs.ext.Provider
 @ServerInterceptor
@@ -59,11 +75,14 @@ public class CandlepinQueryInterceptor implements PostProcessInterceptor {
 
     protected JsonProvider jsonProvider;
     protected Provider<EntityManager> emProvider;
+    protected Provider<I18n> i18nProvider;
 
     @Inject
-    public CandlepinQueryInterceptor(JsonProvider jsonProvider, Provider<EntityManager> emProvider) {
+    public CandlepinQueryInterceptor(JsonProvider jsonProvider, Provider<EntityManager> emProvider,
+        Provider<I18n> i18nProvider) {
         this.jsonProvider = jsonProvider;
         this.emProvider = emProvider;
+        this.i18nProvider = i18nProvider;
     }
 
     /**
@@ -94,6 +113,12 @@ public class CandlepinQueryInterceptor implements PostProcessInterceptor {
             // our cursor mid-stream.
             query.useSession(session);
 
+            // Only fetch the columns the response will include, if the client filtered them
+            DynamicFilterData filterData = ResteasyProviderFactory.getContextData(DynamicFilterData.class);
+            if (filterData != null) {
+                this.applyProjection(query, mapper, filterData, pageRequest);
+            }
+
             // Apply any paging config we may have
             if (pageRequest != null) {
                 // Impl note:
@@ -107,22 +132,27 @@ public class CandlepinQueryInterceptor implements PostProcessInterceptor {
                     pageRequest.getOrder() :
                     PageRequest.DEFAULT_ORDER;
 
-                query.addOrder(order == PageRequest.Order.DESCENDING ?
-                    Order.desc(sortField) :
-                    Order.asc(sortField)
-                );
+                if (pageRequest.getCursor() != null) {
+                    this.applyCursor(query, session, pageRequest, sortField, order);
+                }
+                else {
+                    query.addOrder(order == PageRequest.Order.DESCENDING ?
+                        Order.desc(sortField) :
+                        Order.asc(sortField)
+                    );
 
-                if (pageRequest.isPaging()) {
-                    query.setFirstResult((pageRequest.getPage() - 1) * pageRequest.getPerPage());
-                    query.setMaxResults(pageRequest.getPerPage());
+                    if (pageRequest.isPaging()) {
+                        query.setFirstResult((pageRequest.getPage() - 1) * pageRequest.getPerPage());
+                        query.setMaxResults(pageRequest.getPerPage());
 
-                    // Create a page object for the link header response
-                    Page page = new Page();
-                    page.setMaxRecords(query.getRowCount()); // This is expensive :(
-                    page.setPageRequest(pageRequest);
-                    // Note: we don't need to store the page data in the page
+                        // Create a page object for the link header response
+                        Page page = new Page();
+                        page.setMaxRecords(query.getRowCount()); // This is expensive :(
+                        page.setPageRequest(pageRequest);
+                        // Note: we don't need to store the page data in the page
 
-                    ResteasyProviderFactory.pushContext(Page.class, page);
+                        ResteasyProviderFactory.pushContext(Page.class, page);
+                    }
                 }
             }
 
@@ -151,4 +181,137 @@ public class CandlepinQueryInterceptor implements PostProcessInterceptor {
         }
     }
 
+    /**
+     * Limits the query to fetching the properties of its entity which will be serialized under the
+     * given filter, along with the sort field. If the entity is not filtered at all, or any of the
+     * serialized properties is not a plain column of the entity, the query is left unchanged.
+     */
+    private void applyProjection(CandlepinQuery query, ObjectMapper mapper, DynamicFilterData filterData,
+        PageRequest pageRequest) {
+
+        Class<?> entityClass = query.getEntityClass();
+        if (entityClass == null) {
+            return;
+        }
+
+        SerializationConfig config = mapper.getSerializationConfig();
+        BeanDescription description = config.introspect(mapper.constructType(entityClass));
+
+        if (config.getAnnotationIntrospector().findFilterId((Annotated) description.getClassInfo()) == null) {
+            return;
+        }
+
+        Set<String> properties = new HashSet<String>();
+
+        for (BeanPropertyDefinition property : description.findProperties()) {
+            if (property.couldSerialize() && !filterData.isAttributeExcluded(property.getName())) {
+                properties.add(property.getInternalName());
+            }
+        }
+
+        if (pageRequest != null) {
+            properties.add(pageRequest.getSortBy() != null ?
+                pageRequest.getSortBy() :
+                AbstractHibernateObject.DEFAULT_SORT_FIELD);
+        }
+
+        query.setProjectedProperties(properties);
+    }
+
+    /**
+     * Limits the query to the page following the request's cursor, and works out the cursor of
+     * the page after that. Unlike paging by page number, neither skips over the preceding
+     * results, nor counts them all.
+     */
+    @SuppressWarnings("unchecked")
+    private void applyCursor(CandlepinQuery query, Session session, PageRequest pageRequest,
+        String sortField, PageRequest.Order order) {
+
+        Object value = null;
+        Object id = null;
+
+        if (!pageRequest.getCursor().isEmpty()) {
+            PageCursor cursor;
+
+            try {
+                cursor = PageCursor.decode(pageRequest.getCursor());
+            }
+            catch (IllegalArgumentException e) {
+                throw new BadRequestException(this.i18nProvider.get().tr("Invalid cursor: {0}",
+                    pageRequest.getCursor()), e);
+            }
+
+            if (!sortField.equals(cursor.getSortBy()) || order != cursor.getOrder()) {
+                throw new BadRequestException(this.i18nProvider.get().tr(
+                    "The cursor was issued for a different sort field or order"));
+            }
+
+            value = cursor.getValue();
+            id = cursor.getId();
+        }
+
+        int perPage = pageRequest.getPerPage();
+
+        // Refuse sort fields a cursor cannot hold, rather than ending the listing early
+        try {
+            query.addKeysetOrder(sortField, order == PageRequest.Order.ASCENDING, value, id);
+        }
+        catch (IllegalArgumentException e) {
+            throw new BadRequestException(this.i18nProvider.get().tr(
+                "Cannot page by cursor on the sort field: {0}", sortField), e);
+        }
+
+        // Fetch the last result of this page, and whether another one follows it
+        Object last = null;
+        boolean more = false;
+
+        query.setFirstResult(perPage - 1);
+        query.setMaxResults(2);
+        ResultIterator<Object[]> rows = query.iterateByRow();
+
+        try {
+            if (rows.hasNext()) {
+                last = rows.next()[0];
+                more = rows.hasNext();
+            }
+        }
+        finally {
+            rows.close();
+        }
+
+        query.setFirstResult(-1);
+        query.setMaxResults(perPage);
+
+        Page page = new Page();
+        page.setPageRequest(pageRequest);
+
+        if (more) {
+            page.setNextCursor(this.buildCursor(session, last, sortField, order));
+        }
+
+        ResteasyProviderFactory.pushContext(Page.class, page);
+    }
+
+    private String buildCursor(Session session, Object entity, String sortField, PageRequest.Order order) {
+        ClassMetadata metadata = session.getSessionFactory().getClassMetadata(Hibernate.getClass(entity));
+
+        if (metadata != null) {
+            try {
+                Object id = metadata.getIdentifier(entity, (SessionImplementor) session);
+                Object value = sortField.equals(metadata.getIdentifierPropertyName()) ?
+                    id : metadata.getPropertyValue(entity, sortField);
+
+                if ((value == null || PageCursor.isSupported(value)) && PageCursor.isSupported(id)) {
+                    return new PageCursor(sortField, order, value, id).encode();
+                }
+            }
+            catch (HibernateException e) {
+                log.debug("Unable to read the sort value of {}", entity, e);
+            }
+        }
+
+        // Sort fields are checked before the query runs, so this is a bug; failing beats handing
+        // out a listing which silently ends here
+        throw new IseException(this.i18nProvider.get().tr("Unable to build a cursor on {0}", sortField));
+    }
 }
@@ -17,7 +17,7 @@ package org.candlepin.resteasy.filter;
 import org.candlepin.auth.ConsumerPrincipal;
 import org.candlepin.auth.Principal;
 import org.candlepin.auth.UpdateConsumerCheckIn;
-import org.candlepin.model.ConsumerCurator;
+import org.candlepin.controller.ConsumerCheckInBuffer;
 
 import org.jboss.resteasy.spi.ResteasyProviderFactory;
 
@@ -34,16 +34,17 @@ import javax.ws.rs.ext.Provider;
 
 /** This filter is applied to resource methods annotated with @UpdateConsumerCheckIn.  It
  * will inspect the principal and if the principal is a ConsumerPrincipal, it will update
- * the consumer's check-in time.
+ * the consumer's check-in time.  The update is buffered and written along with the check-ins
+ * of other consumers; see ConsumerCheckInBuffer.
  */
 @Priority(Priorities.USER)
 @Provider
 public class ConsumerCheckInFilter implements ContainerRequestFilter {
-    private final ConsumerCurator consumerCurator;
+    private final ConsumerCheckInBuffer checkInBuffer;
 
     @Inject
-    public ConsumerCheckInFilter(ConsumerCurator consumerCurator) {
-        this.consumerCurator = consumerCurator;
+    public ConsumerCheckInFilter(ConsumerCheckInBuffer checkInBuffer) {
+        this.checkInBuffer = checkInBuffer;
     }
 
     @Override
@@ -55,7 +56,7 @@ public class ConsumerCheckInFilter implements ContainerRequestFilter {
         if (principal instanceof ConsumerPrincipal &&
             method.getAnnotation(UpdateConsumerCheckIn.class) != null) {
             ConsumerPrincipal p = (ConsumerPrincipal) principal;
-            consumerCurator.updateLastCheckin(p.getConsumer());
+            checkInBuffer.checkIn(p.getConsumer());
         }
     }
 }
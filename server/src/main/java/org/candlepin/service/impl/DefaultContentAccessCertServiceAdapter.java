@@ -36,6 +36,8 @@ import org.candlepin.pki.PKIUtility;
 import org.candlepin.pki.X509ByteExtensionWrapper;
 import org.candlepin.pki.X509ExtensionWrapper;
 import org.candlepin.service.ContentAccessCertServiceAdapter;
+import org.candlepin.util.ContentAccessPayloadCache;
+import org.candlepin.util.ContentAccessPayloadCache.Payload;
 import org.candlepin.util.OIDUtil;
 import org.candlepin.util.Util;
 import org.candlepin.util.X509V3ExtensionUtil;
@@ -74,6 +76,7 @@ public class DefaultContentAccessCertServiceAdapter implements ContentAccessCert
     private X509V3ExtensionUtil v3extensionUtil;
     private OwnerEnvContentAccessCurator ownerEnvContentAccessCurator;
     private ConsumerCurator consumerCurator;
+    private ContentAccessPayloadCache payloadCache;
 
     private static Logger log =
         LoggerFactory.getLogger(DefaultContentAccessCertServiceAdapter.class);
@@ -86,7 +89,8 @@ public class DefaultContentAccessCertServiceAdapter implements ContentAccessCert
         CertificateSerialCurator serialCurator,
         OwnerContentCurator ownerContentCurator,
         OwnerEnvContentAccessCurator ownerEnvContentAccessCurator,
-        ConsumerCurator consumerCurator) {
+        ConsumerCurator consumerCurator,
+        ContentAccessPayloadCache payloadCache) {
 
         this.pki = pki;
         this.contentAccessCertificateCurator = contentAccessCertificateCurator;
@@ -96,6 +100,7 @@ public class DefaultContentAccessCertServiceAdapter implements ContentAccessCert
         this.ownerContentCurator = ownerContentCurator;
         this.ownerEnvContentAccessCurator = ownerEnvContentAccessCurator;
         this.consumerCurator = consumerCurator;
+        this.payloadCache = payloadCache;
     }
 
     @Transactional
@@ -153,16 +158,19 @@ public class DefaultContentAccessCertServiceAdapter implements ContentAccessCert
         else {
             pem = existing.getCert();
         }
+        // The payload is shared by every consumer of the owner and environment
         Environment env = consumer.getEnvironment();
-        // we need to see if this is newer than the previous result
-        OwnerEnvContentAccess oeca = ownerEnvContentAccessCurator.getContentAccess(owner.getId(),
-            env == null ? null : env.getId());
-        if (oeca == null) {
+        Payload payload = findPayload(owner, env);
+        if (payload == null) {
+            long generation = payloadCache.getGeneration();
             String contentJson = createPayloadAndSignature(owner, env);
-            oeca = new OwnerEnvContentAccess(owner, env, contentJson);
+            OwnerEnvContentAccess oeca = new OwnerEnvContentAccess(owner, env, contentJson);
             ownerEnvContentAccessCurator.saveOrUpdate(oeca);
+
+            payload = payloadCache.put(owner.getId(), env == null ? null : env.getId(), generation,
+                contentJson, oeca.getUpdated());
         }
-        pem += oeca.getContentJson();
+        pem += payload.getContent();
 
         result.setCert(pem);
         result.setCreated(existing.getCreated());
@@ -175,15 +183,33 @@ public class DefaultContentAccessCertServiceAdapter implements ContentAccessCert
     }
 
     public boolean hasCertChangedSince(Consumer consumer, Date date) {
-        if (date == null) {
+        if (date == null || consumer.getContentAccessCert() == null) {
             return true;
         }
-        Environment env = consumer.getEnvironment();
-        Owner owner = consumer.getOwner();
-        OwnerEnvContentAccess oeca = ownerEnvContentAccessCurator.getContentAccess(
-            owner.getId(), env == null ? null : env.getId());
-        return oeca == null || consumer.getContentAccessCert() == null ||
-            oeca.getUpdated().getTime() > date.getTime();
+
+        Payload payload = findPayload(consumer.getOwner(), consumer.getEnvironment());
+        return payload == null || payload.hasChangedSince(date);
+    }
+
+    /**
+     * Fetches the signed content access payload of the given owner and environment from the
+     * cache, falling back to the database on a miss.
+     */
+    private Payload findPayload(Owner owner, Environment env) {
+        String envId = env == null ? null : env.getId();
+
+        Payload payload = payloadCache.get(owner.getId(), envId);
+        if (payload == null) {
+            long generation = payloadCache.getGeneration();
+            OwnerEnvContentAccess oeca = ownerEnvContentAccessCurator.getContentAccess(owner.getId(), envId);
+
+            if (oeca != null) {
+                payload = payloadCache.put(owner.getId(), envId, generation, oeca.getContentJson(),
+                    oeca.getUpdated());
+            }
+        }
+
+        return payload;
     }
 
     public String createPayloadAndSignature(Owner owner, Environment environment)
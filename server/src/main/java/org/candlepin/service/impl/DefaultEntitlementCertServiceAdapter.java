@@ -32,6 +32,7 @@ import org.candlepin.model.PoolQuantity;
 import org.candlepin.model.Product;
 import org.candlepin.model.ProductContent;
 import org.candlepin.model.ProductCurator;
+import org.candlepin.model.dto.EntitlementBody;
 import org.candlepin.pki.PKIUtility;
 import org.candlepin.pki.X509ByteExtensionWrapper;
 import org.candlepin.pki.X509ExtensionWrapper;
@@ -45,6 +46,7 @@ import org.candlepin.util.X509V3ExtensionUtil;
 
 import com.google.common.collect.Collections2;
 import com.google.inject.Inject;
+import com.google.inject.name.Named;
 
 import org.apache.commons.lang.BooleanUtils;
 import org.slf4j.Logger;
@@ -67,6 +69,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * DefaultEntitlementCertServiceAdapter
@@ -82,6 +88,7 @@ public class DefaultEntitlementCertServiceAdapter extends BaseEntitlementCertSer
     private I18n i18n;
     private Configuration config;
     private ProductCurator productCurator;
+    private ExecutorService signingExecutor;
     private static Logger log =
         LoggerFactory.getLogger(DefaultEntitlementCertServiceAdapter.class);
 
@@ -94,7 +101,8 @@ public class DefaultEntitlementCertServiceAdapter extends BaseEntitlementCertSer
         CertificateSerialCurator serialCurator,
         EntitlementCurator entCurator, I18n i18n,
         Configuration config,
-        ProductCurator productCurator) {
+        ProductCurator productCurator,
+        @Named("CertificateSigningExecutor") ExecutorService signingExecutor) {
 
         this.pki = pki;
         this.extensionUtil = extensionUtil;
@@ -106,6 +114,7 @@ public class DefaultEntitlementCertServiceAdapter extends BaseEntitlementCertSer
         this.i18n = i18n;
         this.config = config;
         this.productCurator = productCurator;
+        this.signingExecutor = signingExecutor;
     }
 
 
@@ -158,18 +167,36 @@ public class DefaultEntitlementCertServiceAdapter extends BaseEntitlementCertSer
         KeyPair keyPair, boolean useContentPrefix)
         throws GeneralSecurityException, IOException {
 
+        return this.prepareX509Certificate(consumer, pool, ent, product, products, productModels,
+            serialNumber, keyPair, useContentPrefix).sign();
+    }
+
+    /**
+     * Gathers everything needed to build the certificate of the given entitlement. This reads
+     * from the database and from lazily loaded entities, so it must be done on the thread
+     * owning the session; the returned signer can then be run on any thread.
+     */
+    private CertificateSigner prepareX509Certificate(Consumer consumer, Pool pool,
+        Entitlement ent, Product product, Set<Product> products,
+        List<org.candlepin.model.dto.Product> productModels, BigInteger serialNumber,
+        KeyPair keyPair, boolean useContentPrefix)
+        throws IOException {
+
         // oidutil is busted at the moment, so do this manually
         Set<X509ExtensionWrapper> extensions;
-        Set<X509ByteExtensionWrapper> byteExtensions = new LinkedHashSet<X509ByteExtensionWrapper>();
         products.add(product);
 
         Map<String, EnvironmentContent> promotedContent = getPromotedContent(consumer);
         String contentPrefix = getContentPrefix(consumer, useContentPrefix);
 
+        CertificateSigner signer = new CertificateSigner();
+
         if (shouldGenerateV3(consumer)) {
             extensions = prepareV3Extensions();
-            byteExtensions = prepareV3ByteExtensions(product, productModels,
-                contentPrefix, promotedContent);
+            signer.product = product;
+            signer.productModels = productModels;
+            signer.contentPrefix = contentPrefix;
+            signer.promotedContent = promotedContent;
         }
         else {
             extensions = prepareV1Extensions(products, pool, consumer, ent.getQuantity(), contentPrefix,
@@ -186,10 +213,13 @@ public class DefaultEntitlementCertServiceAdapter extends BaseEntitlementCertSer
             startDate = calMinusHour.getTime();
         }
 
-        X509Certificate x509Cert =  this.pki.createX509Certificate(
-            createDN(ent, consumer.getOwner()), extensions, byteExtensions, startDate,
-            endDate, keyPair, serialNumber, null);
-        return x509Cert;
+        signer.dn = createDN(ent, consumer.getOwner());
+        signer.extensions = extensions;
+        signer.startDate = startDate;
+        signer.endDate = endDate;
+        signer.keyPair = keyPair;
+        signer.serialNumber = serialNumber;
+        return signer;
     }
 
     /**
@@ -377,7 +407,9 @@ public class DefaultEntitlementCertServiceAdapter extends BaseEntitlementCertSer
             serialMap.put(entry.getKey(), new CertificateSerial(entry.getValue().getPool().getEndDate()));
         }
 
-        Map<String, EntitlementCertificate> entitlementCerts = new HashMap<String, EntitlementCertificate>();
+        // Building and signing the certificates is CPU bound, so it is fanned out to the
+        // signing executor once everything it needs has been read on this thread.
+        Map<String, Future<String>> pems = new HashMap<String, Future<String>>();
         for (Entry<String, PoolQuantity> entry : poolQuantities.entrySet()) {
             Pool pool = entry.getValue().getPool();
             Entitlement ent = entitlements.get(entry.getKey());
@@ -406,30 +438,23 @@ public class DefaultEntitlementCertServiceAdapter extends BaseEntitlementCertSer
             List<org.candlepin.model.dto.Product> productModels = v3extensionUtil.createProducts(product,
                 products, contentPrefix, promotedContent, consumer, pool);
 
-            X509Certificate x509Cert = createX509Certificate(consumer, pool, ent,
+            CertificateSigner signer = prepareX509Certificate(consumer, pool, ent,
                 product, products, productModels,
                 BigInteger.valueOf(serial.getId()), keyPair, true);
 
-            log.debug("Getting PEM encoded cert.");
-            String pem = new String(this.pki.getPemEncoded(x509Cert));
-
             if (shouldGenerateV3(consumer)) {
-                log.debug("Generating v3 entitlement data");
-
-                byte[] payloadBytes = v3extensionUtil.createEntitlementDataPayload(productModels,
-                        consumer, pool, ent.getQuantity());
-
-                String payload = "-----BEGIN ENTITLEMENT DATA-----\n";
-                payload += Util.toBase64(payloadBytes);
-                payload += "-----END ENTITLEMENT DATA-----\n";
+                signer.entitlementBody = v3extensionUtil.createEntitlementBody(productModels,
+                    consumer, pool, ent.getQuantity());
+            }
 
-                byte[] bytes = pki.getSHA256WithRSAHash(new ByteArrayInputStream(payloadBytes));
-                String signature = "-----BEGIN RSA SIGNATURE-----\n";
-                signature += Util.toBase64(bytes);
-                signature += "-----END RSA SIGNATURE-----\n";
+            pems.put(entry.getKey(), this.signingExecutor.submit(signer));
+        }
 
-                pem += payload + signature;
-            }
+        Map<String, EntitlementCertificate> entitlementCerts = new HashMap<String, EntitlementCertificate>();
+        for (Entry<String, PoolQuantity> entry : poolQuantities.entrySet()) {
+            Entitlement ent = entitlements.get(entry.getKey());
+            CertificateSerial serial = serialMap.get(entry.getKey());
+            String pem = awaitSigning(pems, entry.getKey());
 
             // Build a skeleton cert as part of the entitlement processing.
             EntitlementCertificate cert = new EntitlementCertificate();
@@ -483,6 +508,44 @@ public class DefaultEntitlementCertServiceAdapter extends BaseEntitlementCertSer
         return entitlementCerts;
     }
 
+    private String awaitSigning(Map<String, Future<String>> pems, String key)
+        throws GeneralSecurityException, IOException {
+
+        try {
+            return pems.get(key).get();
+        }
+        catch (InterruptedException e) {
+            cancel(pems);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while signing entitlement certificates", e);
+        }
+        catch (ExecutionException e) {
+            cancel(pems);
+            Throwable cause = e.getCause();
+
+            if (cause instanceof GeneralSecurityException) {
+                throw (GeneralSecurityException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private void cancel(Map<String, Future<String>> pems) {
+        for (Future<String> pem : pems.values()) {
+            pem.cancel(false);
+        }
+    }
+
     private String createDN(Entitlement ent, Owner owner) {
         StringBuilder sb = new StringBuilder("CN=");
         sb.append(ent.getId());
@@ -494,4 +557,65 @@ public class DefaultEntitlementCertServiceAdapter extends BaseEntitlementCertSer
     public List<Long> listEntitlementSerialIds(Consumer consumer) {
         return serialCurator.listEntitlementSerialIds(consumer);
     }
+
+    /**
+     * Builds, signs and PEM encodes a single entitlement certificate from values gathered
+     * beforehand, appending the signed entitlement data for v3 certificates. It does not
+     * touch the database or any lazily loaded entity, so it is safe to run off the request
+     * thread.
+     */
+    private class CertificateSigner implements Callable<String> {
+        private String dn;
+        private Set<X509ExtensionWrapper> extensions;
+        private Date startDate;
+        private Date endDate;
+        private KeyPair keyPair;
+        private BigInteger serialNumber;
+
+        // Only set for v3 certificates
+        private Product product;
+        private List<org.candlepin.model.dto.Product> productModels;
+        private String contentPrefix;
+        private Map<String, EnvironmentContent> promotedContent;
+        private EntitlementBody entitlementBody;
+
+        public X509Certificate sign() throws GeneralSecurityException, IOException {
+            Set<X509ByteExtensionWrapper> byteExtensions = new LinkedHashSet<X509ByteExtensionWrapper>();
+
+            if (this.productModels != null) {
+                byteExtensions = prepareV3ByteExtensions(this.product, this.productModels,
+                    this.contentPrefix, this.promotedContent);
+            }
+
+            return pki.createX509Certificate(this.dn, this.extensions, byteExtensions,
+                this.startDate, this.endDate, this.keyPair, this.serialNumber, null);
+        }
+
+        @Override
+        public String call() throws GeneralSecurityException, IOException {
+            X509Certificate x509Cert = this.sign();
+
+            log.debug("Getting PEM encoded cert.");
+            String pem = new String(pki.getPemEncoded(x509Cert));
+
+            if (this.entitlementBody != null) {
+                log.debug("Generating v3 entitlement data");
+
+                byte[] payloadBytes = v3extensionUtil.createEntitlementDataPayload(this.entitlementBody);
+
+                String payload = "-----BEGIN ENTITLEMENT DATA-----\n";
+                payload += Util.toBase64(payloadBytes);
+                payload += "-----END ENTITLEMENT DATA-----\n";
+
+                byte[] bytes = pki.getSHA256WithRSAHash(new ByteArrayInputStream(payloadBytes));
+                String signature = "-----BEGIN RSA SIGNATURE-----\n";
+                signature += Util.toBase64(bytes);
+                signature += "-----END RSA SIGNATURE-----\n";
+
+                pem += payload + signature;
+            }
+
+            return pem;
+        }
+    }
 }
@@ -0,0 +1,287 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+
+/**
+ * ContentAccessPayloadCache
+ *
+ * A bounded, least recently used cache of the signed content access payloads which are appended
+ * to the content access certificates of consumers in org_environment mode. The payload is shared
+ * by every consumer of an owner and environment, so it is kept per owner/environment pair.
+ *
+ * Invalidating an owner or environment drops its entries and bumps the generation of the cache.
+ * A payload read before an invalidation is not cached afterwards, as it may already be stale.
+ * Entries are also dropped once older than a configurable age, so that invalidations made on
+ * other nodes are picked up eventually.
+ */
+@Singleton
+public class ContentAccessPayloadCache implements ContentAccessPayloadCacheMBean {
+
+    private final int capacity;
+    private final long maxAge;
+    private final Map<String, Payload> payloads;
+
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    @Inject
+    public ContentAccessPayloadCache(Configuration config) {
+        this.capacity = Math.max(config.getInt(ConfigProperties.CONTENT_ACCESS_CACHE_SIZE), 0);
+        this.maxAge = config.getLong(ConfigProperties.CONTENT_ACCESS_CACHE_MAX_AGE) * 1000L;
+        this.payloads = new LinkedHashMap<String, Payload>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Payload> eldest) {
+                if (this.size() > capacity) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Fetches the cached payload of the given owner and environment.
+     *
+     * @param ownerId
+     *  the ID of the owner
+     *
+     * @param environmentId
+     *  the ID of the environment, or null for consumers without an environment
+     *
+     * @return
+     *  the cached payload, or null if it is not cached or has expired
+     */
+    public Payload get(String ownerId, String environmentId) {
+        String key = createKey(ownerId, environmentId);
+        Payload payload;
+
+        synchronized (this.payloads) {
+            payload = this.payloads.get(key);
+
+            if (payload != null && payload.isExpired(this.maxAge)) {
+                this.payloads.remove(key);
+                payload = null;
+            }
+        }
+
+        if (payload != null) {
+            this.hits.incrementAndGet();
+        }
+        else {
+            this.misses.incrementAndGet();
+        }
+
+        return payload;
+    }
+
+    /**
+     * Fetches the current generation of the cache. Callers loading a payload on a miss should
+     * fetch the generation before reading the database, and pass it on to put.
+     *
+     * @return
+     *  the current generation of the cache
+     */
+    public long getGeneration() {
+        return this.generation.get();
+    }
+
+    /**
+     * Caches the payload of the given owner and environment, unless the cache has been invalidated
+     * since the given generation.
+     *
+     * @param ownerId
+     *  the ID of the owner
+     *
+     * @param environmentId
+     *  the ID of the environment, or null for consumers without an environment
+     *
+     * @param generation
+     *  the generation of the cache at the time the payload was read
+     *
+     * @param content
+     *  the signed payload
+     *
+     * @param updated
+     *  the time the payload was last changed
+     *
+     * @return
+     *  the payload
+     */
+    public Payload put(String ownerId, String environmentId, long generation, String content,
+        Date updated) {
+
+        Payload payload = new Payload(content, updated);
+
+        if (this.capacity > 0 && updated != null) {
+            synchronized (this.payloads) {
+                if (this.generation.get() == generation) {
+                    this.payloads.put(createKey(ownerId, environmentId), payload);
+                }
+            }
+        }
+
+        return payload;
+    }
+
+    /**
+     * Drops the cached payloads of all environments of the given owner.
+     *
+     * @param ownerId
+     *  the ID of the owner
+     */
+    public void invalidateOwner(String ownerId) {
+        this.invalidate(ownerId + "/");
+    }
+
+    /**
+     * Drops the cached payload of the given environment.
+     *
+     * @param ownerId
+     *  the ID of the owner of the environment
+     *
+     * @param environmentId
+     *  the ID of the environment
+     */
+    public void invalidateEnvironment(String ownerId, String environmentId) {
+        this.invalidate(createKey(ownerId, environmentId));
+    }
+
+    /**
+     * Drops all cached payloads.
+     */
+    public void clear() {
+        synchronized (this.payloads) {
+            this.generation.incrementAndGet();
+            this.payloads.clear();
+        }
+    }
+
+    private void invalidate(String prefix) {
+        synchronized (this.payloads) {
+            this.generation.incrementAndGet();
+
+            Iterator<String> keys = this.payloads.keySet().iterator();
+            while (keys.hasNext()) {
+                if (keys.next().startsWith(prefix)) {
+                    keys.remove();
+                }
+            }
+        }
+    }
+
+    private static String createKey(String ownerId, String environmentId) {
+        return ownerId + "/" + (environmentId != null ? environmentId : "");
+    }
+
+    @Override
+    public int getSize() {
+        synchronized (this.payloads) {
+            return this.payloads.size();
+        }
+    }
+
+    @Override
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    @Override
+    public long getGenerationCount() {
+        return this.generation.get();
+    }
+
+    @Override
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    @Override
+    public long getEvictions() {
+        return this.evictions.get();
+    }
+
+    @Override
+    public double getHitRate() {
+        long hits = this.getHits();
+        long lookups = hits + this.getMisses();
+
+        return lookups > 0 ? hits * 100.0 / lookups : 0.0;
+    }
+
+    /**
+     * A signed content access payload, along with the time it was last changed.
+     */
+    public static class Payload {
+        private final String content;
+        private final Date updated;
+        private final long cached;
+
+        Payload(String content, Date updated) {
+            this.content = content;
+            this.updated = updated;
+            this.cached = System.currentTimeMillis();
+        }
+
+        public String getContent() {
+            return this.content;
+        }
+
+        public Date getUpdated() {
+            return this.updated;
+        }
+
+        /**
+         * Checks whether the given time is before the last change of this payload.
+         *
+         * @param date
+         *  the time to check
+         *
+         * @return
+         *  true if the payload has changed since the given time, or its last change is not known
+         */
+        public boolean hasChangedSince(Date date) {
+            return this.updated == null || this.updated.getTime() > date.getTime();
+        }
+
+        private boolean isExpired(long maxAge) {
+            return maxAge > 0 && System.currentTimeMillis() - this.cached > maxAge;
+        }
+    }
+}
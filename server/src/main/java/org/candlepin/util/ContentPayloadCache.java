@@ -0,0 +1,197 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.dto.Content;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.apache.commons.codec.binary.Hex;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+
+/**
+ * ContentPayloadCache
+ *
+ * A bounded, least recently used cache of the compressed content set payloads written into v3
+ * entitlement certificates. The payload only depends on the content paths of the certificate,
+ * which already reflect the product and content versions, the content prefix and the content
+ * promoted to the consumer's environment, so the paths themselves serve as the cache key:
+ * any change to those yields different paths and thus a new entry, while the stale one ages
+ * out of the cache.
+ */
+@Singleton
+public class ContentPayloadCache implements ContentPayloadCacheMBean {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final int capacity;
+    private final Map<String, byte[]> payloads;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    @Inject
+    public ContentPayloadCache(Configuration config) {
+        this.capacity = Math.max(config.getInt(ConfigProperties.CONTENT_PAYLOAD_CACHE_SIZE), 0);
+        this.payloads = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                if (this.size() > capacity) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Fetches the payload of the given content, building it with the given builder if it has
+     * not been cached yet. Concurrent misses on the same content may each build the payload;
+     * the payloads are identical, so whichever is cached last wins.
+     *
+     * @param contents
+     *  the content the payload is built from, in the order it is written
+     *
+     * @param builder
+     *  builds the payload on a cache miss
+     *
+     * @throws IOException
+     *  if the payload could not be built
+     *
+     * @return
+     *  the payload of the given content; callers must not modify it
+     */
+    public byte[] get(List<Content> contents, Callable<byte[]> builder) throws IOException {
+        if (this.capacity == 0) {
+            return this.build(builder);
+        }
+
+        String key = this.createKey(contents);
+        byte[] payload;
+
+        synchronized (this.payloads) {
+            payload = this.payloads.get(key);
+        }
+
+        if (payload != null) {
+            this.hits.incrementAndGet();
+            return payload;
+        }
+
+        this.misses.incrementAndGet();
+        payload = this.build(builder);
+
+        synchronized (this.payloads) {
+            this.payloads.put(key, payload);
+        }
+
+        return payload;
+    }
+
+    /**
+     * Drops all cached payloads.
+     */
+    public void clear() {
+        synchronized (this.payloads) {
+            this.payloads.clear();
+        }
+    }
+
+    private byte[] build(Callable<byte[]> builder) throws IOException {
+        try {
+            return builder.call();
+        }
+        catch (IOException e) {
+            throw e;
+        }
+        catch (RuntimeException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private String createKey(List<Content> contents) {
+        // Digest the paths rather than keeping them, as products can carry hundreds of them
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+            for (Content content : contents) {
+                String path = content.getPath();
+                digest.update((path != null ? path : "").getBytes(UTF8));
+                digest.update((byte) '\n');
+            }
+
+            return new String(Hex.encodeHex(digest.digest()));
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public int getSize() {
+        synchronized (this.payloads) {
+            return this.payloads.size();
+        }
+    }
+
+    @Override
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    @Override
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    @Override
+    public long getEvictions() {
+        return this.evictions.get();
+    }
+
+    @Override
+    public double getHitRate() {
+        long hits = this.getHits();
+        long lookups = hits + this.getMisses();
+
+        return lookups > 0 ? hits * 100.0 / lookups : 0.0;
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+
+
+/**
+ * ContentPayloadCacheMBean
+ *
+ * The statistics of the content payload cache, as published over JMX.
+ */
+public interface ContentPayloadCacheMBean {
+
+    /**
+     * @return the number of content payloads currently cached
+     */
+    int getSize();
+
+    /**
+     * @return the maximum number of content payloads cached
+     */
+    int getCapacity();
+
+    /**
+     * @return the number of content payloads served from the cache
+     */
+    long getHits();
+
+    /**
+     * @return the number of content payloads built because they were not cached
+     */
+    long getMisses();
+
+    /**
+     * @return the number of content payloads dropped to make room for newer ones
+     */
+    long getEvictions();
+
+    /**
+     * @return the percentage of lookups served from the cache
+     */
+    double getHitRate();
+}
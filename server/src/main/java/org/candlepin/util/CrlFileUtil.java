@@ -22,17 +22,28 @@ import org.candlepin.pki.X509CRLEntryWrapper;
 
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import com.google.inject.name.Named;
 import com.google.inject.persist.Transactional;
 
 import org.apache.commons.codec.binary.Base64InputStream;
 import org.apache.commons.codec.binary.Base64OutputStream;
 import org.apache.commons.io.IOUtils;
+import org.bouncycastle.asn1.ASN1InputStream;
+import org.bouncycastle.asn1.ASN1Sequence;
+import org.bouncycastle.asn1.DERInteger;
+import org.bouncycastle.asn1.DERObject;
+import org.bouncycastle.asn1.DERObjectIdentifier;
+import org.bouncycastle.asn1.DERTaggedObject;
 import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.X509Extension;
+import org.bouncycastle.asn1.x509.X509Extensions;
 import org.bouncycastle.crypto.CryptoException;
 import org.bouncycastle.jce.provider.X509CRLEntryObject;
+import org.bouncycastle.x509.extension.X509ExtensionUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
@@ -49,13 +60,17 @@ import java.io.OutputStream;
 import java.math.BigInteger;
 import java.security.GeneralSecurityException;
 import java.security.PrivateKey;
+import java.security.cert.CertificateFactory;
 import java.security.cert.X509CRL;
 import java.security.interfaces.RSAPrivateKey;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Pattern;
@@ -76,14 +91,17 @@ public class CrlFileUtil {
     private final PKIReader pkiReader;
     private final PKIUtility pkiUtility;
     private CertificateSerialCurator certificateSerialCurator;
+    private final ExecutorService scanExecutor;
 
     private final ReadWriteLock lock = new ReentrantReadWriteLock(true);
 
     @Inject
-    public CrlFileUtil(PKIReader pkiReader, PKIUtility pkiUtility, CertificateSerialCurator curator) {
+    public CrlFileUtil(PKIReader pkiReader, PKIUtility pkiUtility, CertificateSerialCurator curator,
+        @Named("CrlScanExecutor") ExecutorService scanExecutor) {
         this.pkiReader = pkiReader;
         this.pkiUtility = pkiUtility;
         this.certificateSerialCurator = curator;
+        this.scanExecutor = scanExecutor;
     }
 
     /**
@@ -96,6 +114,12 @@ public class CrlFileUtil {
      *  If an IO error occurs while initializing the CRL file
      */
     public void initializeCRLFile(File file, Collection<BigInteger> revoke) throws IOException {
+        this.initializeCRLFile(file, revoke, BigInteger.ONE);
+    }
+
+    private void initializeCRLFile(File file, Collection<BigInteger> revoke, BigInteger crlNumber)
+        throws IOException {
+
         FileOutputStream output = null;
 
         List<X509CRLEntryWrapper> entries = new LinkedList<X509CRLEntryWrapper>();
@@ -104,7 +128,7 @@ public class CrlFileUtil {
             entries.add(new X509CRLEntryWrapper(serial, new Date()));
         }
 
-        X509CRL crl = this.pkiUtility.createX509CRL(entries, BigInteger.ONE);
+        X509CRL crl = this.pkiUtility.createX509CRL(entries, crlNumber);
 
         try {
             output = new FileOutputStream(file);
@@ -183,15 +207,36 @@ public class CrlFileUtil {
     public void updateCRLFile(File file, final Collection<BigInteger> revoke,
         final Collection<BigInteger> unrevoke) throws IOException {
 
+        this.lock.writeLock().lock();
+        try {
+            this.updateCRLFile(file, revoke, unrevoke, null);
+        }
+        finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Updates the specified CRL file, giving the updated CRL the specified CRL number.
+     *
+     * @return
+     *  the CRL number of the updated CRL, or null if the CRL file was not modified
+     */
+    private BigInteger updateCRLFile(File file, final Collection<BigInteger> revoke,
+        final Collection<BigInteger> unrevoke, BigInteger crlNumber) throws IOException {
+
         if (!file.exists() || file.length() == 0) {
-            this.initializeCRLFile(file, revoke);
-            return;
+            crlNumber = crlNumber != null ? crlNumber : BigInteger.ONE;
+            this.initializeCRLFile(file, revoke != null ? revoke : new LinkedList<BigInteger>(),
+                crlNumber);
+
+            return crlNumber;
         }
 
         File strippedFile = stripCRLFile(file);
+        File derFile = null;
 
         InputStream input = null;
-        InputStream reaper = null;
 
         BufferedOutputStream output = null;
         OutputStream filter = null;
@@ -200,15 +245,20 @@ public class CrlFileUtil {
         try {
             // Impl note:
             // Due to the way the X509CRLStreamWriter works (and the DER format in general), we have
-            // to make two passes through the file.
-            input = new Base64InputStream(new FileInputStream(strippedFile));
-            reaper = new Base64InputStream(new FileInputStream(strippedFile));
+            // to make two passes through the file. Decoding it once lets the pre-scan map the DER
+            // file into memory, rather than decoding the Base64 a second time.
+            derFile = this.decodeCRLFile(strippedFile);
+            input = new BufferedInputStream(new FileInputStream(derFile));
 
             // Note: This will break if we ever stop using RSA keys
             PrivateKey key = this.pkiReader.getCaKey();
             X509CRLStreamWriter writer = new X509CRLStreamWriter(
                 input, (RSAPrivateKey) key, this.pkiReader.getCACert());
 
+            if (crlNumber != null) {
+                writer.setCrlNumber(crlNumber);
+            }
+
             // Add new entries
             if (revoke != null) {
                 Date now = new Date();
@@ -219,16 +269,7 @@ public class CrlFileUtil {
 
             // Unfortunately, we need to do the prescan before checking if we have changes queued,
             // or we could miss cases where we have entries to remove, but nothing to add.
-            if (unrevoke != null && !unrevoke.isEmpty()) {
-                writer.preScan(reaper, new CRLEntryValidator() {
-                    public boolean shouldDelete(X509CRLEntryObject entry) {
-                        return unrevoke.contains(entry.getSerialNumber());
-                    }
-                });
-            }
-            else {
-                writer.preScan(reaper);
-            }
+            this.preScanCRLFile(writer, derFile, unrevoke);
 
             // Verify we actually have work to do now
             if (writer.hasChangesQueued()) {
@@ -272,6 +313,8 @@ public class CrlFileUtil {
 
                 output.write("-----END X509 CRL-----\n".getBytes());
                 output.close();
+
+                return writer.getCrlNumber();
             }
         }
         catch (GeneralSecurityException e) {
@@ -283,7 +326,7 @@ public class CrlFileUtil {
             log.error("Unexpected error occurred while writing new CRL file", e);
         }
         finally {
-            for (Closeable stream : Arrays.asList(encoder, output, reaper, input)) {
+            for (Closeable stream : Arrays.asList(encoder, output, input)) {
                 if (stream != null) {
                     try {
                         stream.close();
@@ -297,11 +340,310 @@ public class CrlFileUtil {
             if (!strippedFile.delete()) {
                 log.error("Unable to delete temporary CRL file: {}", strippedFile);
             }
+
+            if (derFile != null && !derFile.delete()) {
+                log.error("Unable to delete temporary CRL file: {}", derFile);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Pre-scans the DER encoded CRL file for the given writer, queueing the serials to unrevoke
+     * for deletion. The file is memory-mapped, and its entries checked on the shared scan pool.
+     */
+    private void preScanCRLFile(X509CRLStreamWriter writer, File derFile,
+        Collection<BigInteger> unrevoke) throws IOException {
+
+        CRLEntryValidator validator = null;
+        if (unrevoke != null && !unrevoke.isEmpty()) {
+            final Set<BigInteger> unrevoked = new HashSet<BigInteger>(unrevoke);
+            validator = new CRLEntryValidator() {
+                public boolean shouldDelete(X509CRLEntryObject entry) {
+                    return unrevoked.contains(entry.getSerialNumber());
+                }
+            };
+        }
+
+        if (derFile.length() > Integer.MAX_VALUE) {
+            // Too large to be mapped in one piece
+            writer.preScan(derFile, validator);
+            return;
+        }
+
+        writer.preScan(derFile, validator, this.scanExecutor);
+    }
+
+    /**
+     * Decodes a CRL file stripped by stripCRLFile into a temporary DER encoded file.
+     *
+     * @param strippedFile
+     *  The stripped CRL file
+     *
+     * @throws IOException
+     *  If an IO error occurs while decoding the CRL file
+     *
+     * @return
+     *  the DER encoded CRL file, which the caller is responsible for deleting
+     */
+    private File decodeCRLFile(File strippedFile) throws IOException {
+        File derFile = File.createTempFile("candlepin_crl_", ".der");
+        InputStream input = null;
+        OutputStream output = null;
+
+        try {
+            input = new Base64InputStream(new BufferedInputStream(new FileInputStream(strippedFile)));
+            output = new BufferedOutputStream(new FileOutputStream(derFile));
+            IOUtils.copy(input, output);
+            output.close();
         }
+        catch (IOException e) {
+            derFile.delete();
+            throw e;
+        }
+        finally {
+            IOUtils.closeQuietly(input);
+            IOUtils.closeQuietly(output);
+        }
+
+        return derFile;
     }
 
     @Transactional
     public boolean syncCRLWithDB(File file) throws IOException {
+        this.lock.writeLock().lock();
+        try {
+            this.syncBaseCRLWithDB(file, null);
+            return true;
+        }
+        finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Synchronizes the base and delta CRLs with the DB. The base CRL is only rebuilt once it is
+     * older than the given interval. In between, the certificates revoked since the last rebuild
+     * are written to the delta CRL, which refers to the base CRL by its CRL number, as described in
+     * RFC 5280, section 5.2.4. Base and delta CRLs share one sequence of CRL numbers.
+     * <p></p>
+     * The delta CRL is written to a temporary file and then renamed over the delta CRL file, so
+     * readers streaming the file always see a complete CRL. Updates of either file are serialized.
+     *
+     * @param baseFile
+     *  The base CRL file
+     *
+     * @param deltaFile
+     *  The delta CRL file
+     *
+     * @param baseRebuildInterval
+     *  The time, in milliseconds, after which the base CRL is rebuilt
+     *
+     * @throws IOException
+     *  if an IO error occurs while updating either CRL file
+     *
+     * @return
+     *  true if the CRL files have been synchronized
+     */
+    @Transactional
+    public boolean syncCRLWithDB(File baseFile, File deltaFile, long baseRebuildInterval)
+        throws IOException {
+
+        this.lock.writeLock().lock();
+        try {
+            this.syncDeltaCRLWithDB(baseFile, deltaFile, baseRebuildInterval);
+            return true;
+        }
+        finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private void syncDeltaCRLWithDB(File baseFile, File deltaFile, long baseRebuildInterval)
+        throws IOException {
+
+        X509CRL delta = this.readDeltaCRL(deltaFile);
+        BigInteger deltaNumber = null;
+        BigInteger baseNumber = null;
+
+        if (delta != null) {
+            deltaNumber = getExtensionNumber(delta, X509Extensions.CRLNumber);
+            baseNumber = getExtensionNumber(delta, X509Extensions.DeltaCRLIndicator);
+        }
+
+        if (!baseFile.exists() || baseFile.length() == 0 ||
+            System.currentTimeMillis() - baseFile.lastModified() >= baseRebuildInterval) {
+
+            BigInteger rebuiltNumber = this.syncBaseCRLWithDB(baseFile,
+                deltaNumber != null ? deltaNumber.add(BigInteger.ONE) : null);
+
+            if (rebuiltNumber != null) {
+                baseNumber = rebuiltNumber;
+            }
+            else if (!baseFile.exists() || baseFile.length() == 0) {
+                // Nothing to revoke yet, but the delta CRL still needs a base to refer to
+                baseNumber = deltaNumber != null ? deltaNumber.add(BigInteger.ONE) : BigInteger.ONE;
+                this.initializeCRLFile(baseFile, new LinkedList<BigInteger>(), baseNumber);
+            }
+        }
+
+        if (baseNumber == null) {
+            baseNumber = this.readCRLNumber(baseFile);
+        }
+
+        List<X509CRLEntryWrapper> entries = new LinkedList<X509CRLEntryWrapper>();
+        for (CertificateSerial serial : this.certificateSerialCurator.retrieveTobeCollectedSerials()) {
+            Date revoked = serial.getUpdated() != null ? serial.getUpdated() : new Date();
+            entries.add(new X509CRLEntryWrapper(serial.getSerial(), revoked));
+        }
+
+        BigInteger number = (deltaNumber != null ? deltaNumber.max(baseNumber) : baseNumber)
+            .add(BigInteger.ONE);
+
+        X509CRL crl = this.pkiUtility.createX509DeltaCRL(entries, number, baseNumber);
+        File tmp = File.createTempFile("candlepin_crl_", ".tmp",
+            deltaFile.getAbsoluteFile().getParentFile());
+
+        FileOutputStream output = null;
+        boolean written = false;
+
+        try {
+            output = new FileOutputStream(tmp);
+            this.pkiUtility.writePemEncoded(crl, output);
+            output.close();
+            written = true;
+        }
+        finally {
+            IOUtils.closeQuietly(output);
+
+            if (!written) {
+                tmp.delete();
+            }
+        }
+
+        if (!tmp.renameTo(deltaFile)) {
+            tmp.delete();
+            throw new IOException("Unable to move delta CRL into place: " + deltaFile);
+        }
+
+        log.debug("Wrote delta CRL {} with {} entries against base CRL {}", number, entries.size(),
+            baseNumber);
+    }
+
+    /**
+     * Reads the delta CRL file, if present.
+     *
+     * @return
+     *  the delta CRL, or null if the file does not exist or cannot be read
+     */
+    private X509CRL readDeltaCRL(File file) {
+        if (!file.exists() || file.length() == 0) {
+            return null;
+        }
+
+        InputStream input = null;
+
+        try {
+            input = new BufferedInputStream(new FileInputStream(file));
+            X509CRL crl = (X509CRL) CertificateFactory.getInstance("X.509").generateCRL(input);
+
+            if (crl.getExtensionValue(X509Extensions.DeltaCRLIndicator.getId()) == null) {
+                log.warn("Ignoring CRL without a delta CRL indicator: {}", file);
+                return null;
+            }
+
+            return crl;
+        }
+        catch (IOException e) {
+            log.warn("Unable to read delta CRL file: {}", file, e);
+        }
+        catch (GeneralSecurityException e) {
+            log.warn("Unable to read delta CRL file: {}", file, e);
+        }
+        finally {
+            IOUtils.closeQuietly(input);
+        }
+
+        return null;
+    }
+
+    private static BigInteger getExtensionNumber(X509CRL crl, DERObjectIdentifier oid) throws IOException {
+        byte[] value = crl.getExtensionValue(oid.getId());
+        return value != null ?
+            DERInteger.getInstance(X509ExtensionUtil.fromExtensionValue(value)).getValue() :
+            null;
+    }
+
+    /**
+     * Reads the CRL number of the specified CRL file. The entries of the CRL are streamed over
+     * rather than loaded, as the CRL number follows them.
+     *
+     * @throws IOException
+     *  if an IO error occurs while reading the file, or the CRL does not have a CRL number
+     */
+    private BigInteger readCRLNumber(File file) throws IOException {
+        File strippedFile = stripCRLFile(file);
+
+        X509CRLEntryStream entries = null;
+        ASN1InputStream asn1In = null;
+
+        try {
+            InputStream input = new Base64InputStream(
+                new BufferedInputStream(new FileInputStream(strippedFile)));
+
+            entries = new X509CRLEntryStream(input);
+            while (entries.hasNext()) {
+                entries.next();
+            }
+
+            // The stream is now either at the tagged crlExtensions or, for a CRL without entries,
+            // already within them
+            asn1In = new ASN1InputStream(input);
+            DERObject o;
+            while ((o = asn1In.readObject()) != null) {
+                ASN1Sequence extensions = null;
+
+                if (o instanceof DERTaggedObject) {
+                    extensions = ASN1Sequence.getInstance(((DERTaggedObject) o).getObject());
+                }
+                else if (o instanceof ASN1Sequence && ((ASN1Sequence) o).size() > 0 &&
+                    ((ASN1Sequence) o).getObjectAt(0) instanceof ASN1Sequence) {
+                    extensions = (ASN1Sequence) o;
+                }
+
+                if (extensions != null) {
+                    X509Extension ext = new X509Extensions(extensions)
+                        .getExtension(X509Extensions.CRLNumber);
+
+                    if (ext != null) {
+                        return DERInteger.getInstance(ext.getParsedValue()).getValue();
+                    }
+                }
+            }
+
+            throw new IOException("CRL file does not have a CRL number: " + file);
+        }
+        finally {
+            IOUtils.closeQuietly(asn1In);
+
+            if (entries != null) {
+                entries.close();
+            }
+
+            if (!strippedFile.delete()) {
+                log.error("Unable to delete temporary CRL file: {}", strippedFile);
+            }
+        }
+    }
+
+    /**
+     * Adds the newly revoked serials to the base CRL, and removes the expired ones.
+     *
+     * @return
+     *  the CRL number of the updated CRL, or null if the CRL file was not modified
+     */
+    private BigInteger syncBaseCRLWithDB(File file, BigInteger crlNumber) throws IOException {
         List<BigInteger> revoke = new LinkedList<BigInteger>();
         List<CertificateSerial> serials = this.certificateSerialCurator
             .retrieveTobeCollectedSerials()
@@ -317,13 +659,15 @@ public class CrlFileUtil {
             unrevoke.add(serial.getSerial());
         }
 
+        BigInteger written = null;
+
         if (revoke.size() > 0 || unrevoke.size() > 0) {
-            this.updateCRLFile(file, revoke, unrevoke);
+            written = this.updateCRLFile(file, revoke, unrevoke, crlNumber);
 
             // Store the state of the newly-revoked serials as "collected"
             this.certificateSerialCurator.saveOrUpdateAll(serials, true, true);
         }
 
-        return true;
+        return written;
     }
 }
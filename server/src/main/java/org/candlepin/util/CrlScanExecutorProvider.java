@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+
+/**
+ * CrlScanExecutorProvider
+ *
+ * Provides the thread pool on which the entries of a CRL file are checked while the CRL is
+ * updated. The pool has one thread per core and is shared by all CRL updates of the node,
+ * rather than created for each. It is shut down along with the servlet context.
+ */
+@Singleton
+public class CrlScanExecutorProvider implements Provider<ExecutorService> {
+
+    private ExecutorService executor;
+
+    @Override
+    public synchronized ExecutorService get() {
+        if (this.executor == null) {
+            this.executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                new ThreadFactoryBuilder()
+                .setNameFormat("crl-scan-%d")
+                .setDaemon(true)
+                .build());
+        }
+
+        return this.executor;
+    }
+
+    /**
+     * Shuts down the pool, if one was created.
+     */
+    public synchronized void shutdown() {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+        }
+    }
+}
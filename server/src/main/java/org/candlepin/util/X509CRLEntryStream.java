@@ -231,6 +231,13 @@ public class X509CRLEntryStream implements Closeable, Iterator<X509CRLEntryObjec
         return revokedSeqBytes > count.get();
     }
 
+    /**
+     * @return the length in bytes of the revokedCertificates sequence
+     */
+    int getRevokedSequenceLength() {
+        return revokedSeqBytes;
+    }
+
     @Override
     public void close() throws IOException {
         crlStream.close();
@@ -38,6 +38,7 @@ import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
 import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
 import org.bouncycastle.asn1.x509.CRLReason;
 import org.bouncycastle.asn1.x509.CertificateList;
+import org.bouncycastle.asn1.x509.TBSCertList.CRLEntry;
 import org.bouncycastle.asn1.x509.Time;
 import org.bouncycastle.asn1.x509.X509Extension;
 import org.bouncycastle.asn1.x509.X509Extensions;
@@ -71,7 +72,11 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.InvalidKeyException;
 import java.security.cert.CRLException;
 import java.security.cert.CertificateParsingException;
@@ -86,6 +91,10 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -130,6 +139,10 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class X509CRLStreamWriter {
     public static final Logger log = LoggerFactory.getLogger(X509CRLStreamWriter.class);
 
+    /** The number of entries a validator is run over in a single task */
+    private static final int SCAN_CHUNK_SIZE = 50000;
+    private static final int COPY_BLOCK_SIZE = 64 * 1024;
+
     private boolean locked = false;
     private boolean preScanned = false;
 
@@ -157,6 +170,12 @@ public class X509CRLStreamWriter {
     private int extensionsDelta;
     private byte[] newExtensions;
 
+    private BigInteger crlNumber;
+
+    private ByteBuffer mappedCrl;
+    private int mappedEntriesStart;
+    private int mappedEntriesEnd;
+
     public X509CRLStreamWriter(File crlToChange, RSAPrivateKey key, X509Certificate ca)
         throws CryptoException, IOException, CertificateParsingException {
         this(new BufferedInputStream(new FileInputStream(crlToChange)), key, ca);
@@ -232,7 +251,6 @@ public class X509CRLStreamWriter {
         }
 
         X509CRLEntryStream reaperStream = null;
-        ASN1InputStream asn1In = null;
 
         try {
             reaperStream = new X509CRLEntryStream(crlToChange);
@@ -256,72 +274,293 @@ public class X509CRLStreamWriter {
             }
 
             /* At this point, crlToChange is at the point where the crlExtensions would
-             * be.  RFC 5280 says that "Conforming CRL issuers are REQUIRED to include
-             * the authority key identifier (Section 5.2.1) and the CRL number (Section 5.2.3)
-             * extensions in all CRLs issued.
-             */
-            byte[] oldExtensions = null;
-            DERObject o;
-            asn1In = new ASN1InputStream(crlToChange);
-            while ((o = asn1In.readObject()) != null) {
-                if (o instanceof DERSequence) {
-                    // Now we are at the signatureAlgorithm
-                    DERSequence seq = (DERSequence) o;
-                    if (seq.getObjectAt(0) instanceof DERObjectIdentifier) {
-                        signingAlg = new AlgorithmIdentifier(seq);
-                        digestAlg = new DefaultDigestAlgorithmIdentifierFinder().find(signingAlg);
-
-                        try {
-                            // Build the signer
-                            this.signer = new RSADigestSigner(createDigest(digestAlg));
-                            signer.init(true, new RSAKeyParameters(
-                                true, key.getModulus(), key.getPrivateExponent()));
-                        }
-                        catch (CryptoException e) {
-                            throw new IOException(
-                                "Could not create RSADigest signer for " + digestAlg.getAlgorithm());
-                        }
-                    }
+             * be. */
+            scanTrailer(crlToChange);
+        }
+        finally {
+            if (reaperStream != null) {
+                reaperStream.close();
+            }
+        }
+        preScanned = true;
+        return this;
+    }
+
+    /**
+     * Pre-scans a CRL file by memory-mapping it. Entry boundaries are found in the mapped
+     * file without copying the entries, and the validator is run over chunks of entries
+     * on the given executor, so it must be safe to call from several threads at once. When
+     * writing, the retained entries are copied straight from the mapped file rather than
+     * being read back through the stream given to the constructor.
+     *
+     * The file must be the DER encoded form of the CRL being changed.
+     *
+     * @param crlToChange the DER encoded CRL file
+     * @param validator the validator deciding which entries to delete, or null to keep them all
+     * @param executor the executor to run the validator on
+     * @return itself
+     * @throws IOException if the CRL cannot be read, or the validator fails
+     */
+    public synchronized X509CRLStreamWriter preScan(File crlToChange, final CRLEntryValidator validator,
+        ExecutorService executor) throws IOException {
+        if (locked) {
+            throw new IllegalStateException("Cannot modify a locked stream.");
+        }
+
+        if (preScanned) {
+            throw new IllegalStateException("preScan has already been run.");
+        }
+
+        MappedByteBuffer mapped;
+        RandomAccessFile file = new RandomAccessFile(crlToChange, "r");
+        try {
+            // The mapping stays valid once the file is closed
+            FileChannel channel = file.getChannel();
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        finally {
+            file.close();
+        }
+
+        ByteBufferInputStream in = new ByteBufferInputStream(mapped.duplicate());
+        int entriesLength = new X509CRLEntryStream(in).getRevokedSequenceLength();
+
+        if (entriesLength == 0) {
+            emptyCrl = true;
+            preScanned = true;
+            return this;
+        }
+
+        int entriesStart = in.position();
+        int entriesEnd = entriesStart + entriesLength;
+
+        if (validator != null) {
+            List<Future<EntryScan>> scans = new LinkedList<Future<EntryScan>>();
+            int chunkStart = entriesStart;
+            int entries = 0;
+
+            in.position(entriesStart);
+            while (in.position() < entriesEnd) {
+                skipEntry(in);
+
+                if (++entries % SCAN_CHUNK_SIZE == 0 || in.position() >= entriesEnd) {
+                    scans.add(executor.submit(new EntryScan(mapped, chunkStart, in.position(), validator)));
+                    chunkStart = in.position();
                 }
-                else if (o instanceof DERBitString) {
-                    oldSigLength = o.getDEREncoded().length;
+            }
+
+            try {
+                for (Future<EntryScan> scan : scans) {
+                    EntryScan result = scan.get();
+                    deletedEntries.addAll(result.deleted);
+                    deletedEntriesLength += result.deletedLength;
                 }
-                else {
-                    if (oldExtensions != null) {
-                        throw new IllegalStateException("Already read in CRL extensions.");
-                    }
-                    oldExtensions = ((DERTaggedObject) o).getDEREncoded();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while scanning CRL entries", e);
+            }
+            catch (ExecutionException e) {
+                throw new IOException("Could not read CRL entry", e.getCause());
+            }
+            finally {
+                for (Future<EntryScan> scan : scans) {
+                    scan.cancel(true);
                 }
             }
+        }
+
+        in.position(entriesEnd);
+        scanTrailer(in);
 
-            if (oldExtensions == null) {
-                /* v1 CRLs (defined in RFC 1422) don't require extensions but all new
-                 * CRLs should be v2 (defined in RFC 5280).  In the extremely unlikely
-                 * event that someone is working with a v1 CRL, we handle it here although
-                 * we print a warning.
-                 */
-                preScanned = true;
-                newExtensions = null;
-                extensionsDelta = 0;
-                log.warn("The CRL you are modifying is a version 1 CRL." +
-                    " Please investigate moving to a version 2 CRL by adding the CRL Number" +
-                    " and Authority Key Identifier extensions.");
-                return this;
+        this.mappedCrl = mapped;
+        this.mappedEntriesStart = entriesStart;
+        this.mappedEntriesEnd = entriesEnd;
+
+        preScanned = true;
+        return this;
+    }
+
+    /**
+     * Moves the stream past the CRL entry it is positioned on.
+     *
+     * @return the serial number of the entry, if requested
+     */
+    private static BigInteger skipEntry(ByteBufferInputStream in, boolean readSerial)
+        throws IOException {
+        int entryTag = readTag(in, null);
+        readTagNumber(in, entryTag, null);
+        int length = readLength(in, null);
+        int end = in.position() + length;
+
+        BigInteger serial = null;
+        if (readSerial) {
+            // The userCertificate serial is the first item of the entry
+            int tag = readTag(in, null);
+            readTagNumber(in, tag, null);
+            byte[] serialBytes = new byte[readLength(in, null)];
+            readFullyAndTrack(in, serialBytes, null);
+            serial = new BigInteger(serialBytes);
+        }
+
+        in.position(end);
+        return serial;
+    }
+
+    private static void skipEntry(ByteBufferInputStream in) throws IOException {
+        skipEntry(in, false);
+    }
+
+    /**
+     * Runs a validator over a range of entries of a memory-mapped CRL.
+     */
+    private static class EntryScan implements Callable<EntryScan> {
+        private final ByteBuffer crl;
+        private final int start;
+        private final int end;
+        private final CRLEntryValidator validator;
+
+        private final Set<BigInteger> deleted = new HashSet<BigInteger>();
+        private int deletedLength;
+
+        EntryScan(ByteBuffer crl, int start, int end, CRLEntryValidator validator) {
+            this.crl = crl;
+            this.start = start;
+            this.end = end;
+            this.validator = validator;
+        }
+
+        @Override
+        public EntryScan call() throws IOException, CRLException {
+            ByteBuffer entries = this.crl.duplicate();
+            entries.position(this.start);
+
+            ByteBufferInputStream in = new ByteBufferInputStream(entries);
+            while (in.position() < this.end) {
+                int entryStart = in.position();
+                skipEntry(in);
+
+                byte[] encoded = new byte[in.position() - entryStart];
+                entries.position(entryStart);
+                entries.get(encoded);
+
+                CRLEntry entry = new CRLEntry((DERSequence) DERSequence.fromByteArray(encoded));
+                X509CRLEntryObject entryObject = new X509CRLEntryObject(entry);
+
+                if (this.validator.shouldDelete(entryObject)) {
+                    this.deleted.add(entryObject.getSerialNumber());
+                    this.deletedLength += encoded.length;
+                }
             }
-            newExtensions = updateExtensions(oldExtensions);
-            // newExtension and oldExtensions have already been converted to DER so any difference
-            // in the length of the L bytes will be accounted for in the overall difference between
-            // the length of the two byte arrays.
-            extensionsDelta = newExtensions.length - oldExtensions.length;
+
+            return this;
         }
-        finally {
-            if (reaperStream != null) {
-                reaperStream.close();
+    }
+
+    /**
+     * An input stream reading from a byte buffer, which can be repositioned freely.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        public int position() {
+            return this.buffer.position();
+        }
+
+        public void position(int position) {
+            this.buffer.position(position);
+        }
+
+        @Override
+        public int read() {
+            return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!this.buffer.hasRemaining()) {
+                return -1;
             }
-            IOUtils.closeQuietly(asn1In);
+
+            length = Math.min(length, this.buffer.remaining());
+            this.buffer.get(bytes, offset, length);
+            return length;
         }
-        preScanned = true;
-        return this;
+
+        @Override
+        public int available() {
+            return this.buffer.remaining();
+        }
+    }
+
+    /**
+     * Reads the crlExtensions, signatureAlgorithm and signatureValue following the
+     * revokedCertificates, and prepares the updated extensions and the signer.
+     *
+     * @param crlToChange the CRL, positioned after the revokedCertificates
+     * @throws IOException if the CRL cannot be read
+     */
+    private void scanTrailer(InputStream crlToChange) throws IOException {
+        /* RFC 5280 says that "Conforming CRL issuers are REQUIRED to include
+         * the authority key identifier (Section 5.2.1) and the CRL number (Section 5.2.3)
+         * extensions in all CRLs issued.
+         */
+        byte[] oldExtensions = null;
+        DERObject o;
+        ASN1InputStream asn1In = new ASN1InputStream(crlToChange);
+        while ((o = asn1In.readObject()) != null) {
+            if (o instanceof DERSequence) {
+                // Now we are at the signatureAlgorithm
+                DERSequence seq = (DERSequence) o;
+                if (seq.getObjectAt(0) instanceof DERObjectIdentifier) {
+                    signingAlg = new AlgorithmIdentifier(seq);
+                    digestAlg = new DefaultDigestAlgorithmIdentifierFinder().find(signingAlg);
+
+                    try {
+                        // Build the signer
+                        this.signer = new RSADigestSigner(createDigest(digestAlg));
+                        signer.init(true, new RSAKeyParameters(
+                            true, key.getModulus(), key.getPrivateExponent()));
+                    }
+                    catch (CryptoException e) {
+                        throw new IOException(
+                            "Could not create RSADigest signer for " + digestAlg.getAlgorithm());
+                    }
+                }
+            }
+            else if (o instanceof DERBitString) {
+                oldSigLength = o.getDEREncoded().length;
+            }
+            else {
+                if (oldExtensions != null) {
+                    throw new IllegalStateException("Already read in CRL extensions.");
+                }
+                oldExtensions = ((DERTaggedObject) o).getDEREncoded();
+            }
+        }
+
+        if (oldExtensions == null) {
+            /* v1 CRLs (defined in RFC 1422) don't require extensions but all new
+             * CRLs should be v2 (defined in RFC 5280).  In the extremely unlikely
+             * event that someone is working with a v1 CRL, we handle it here although
+             * we print a warning.
+             */
+            newExtensions = null;
+            extensionsDelta = 0;
+            log.warn("The CRL you are modifying is a version 1 CRL." +
+                " Please investigate moving to a version 2 CRL by adding the CRL Number" +
+                " and Authority Key Identifier extensions.");
+            return;
+        }
+        newExtensions = updateExtensions(oldExtensions);
+        // newExtension and oldExtensions have already been converted to DER so any difference
+        // in the length of the L bytes will be accounted for in the overall difference between
+        // the length of the two byte arrays.
+        extensionsDelta = newExtensions.length - oldExtensions.length;
     }
 
     /**
@@ -366,6 +605,41 @@ public class X509CRLStreamWriter {
         return this;
     }
 
+    /**
+     * Sets the CRL number of the CRL to write. By default, the CRL number of the CRL being
+     * changed is incremented by one. This must be called before the stream is pre-scanned.
+     *
+     * @param crlNumber
+     *  the CRL number to use
+     *
+     * @return itself
+     */
+    public synchronized X509CRLStreamWriter setCrlNumber(BigInteger crlNumber) {
+        if (locked || preScanned) {
+            throw new IllegalStateException("Cannot change the CRL number after the preScan.");
+        }
+
+        this.crlNumber = crlNumber;
+        return this;
+    }
+
+    /**
+     * @return
+     *  the CRL number of the CRL to write, or null if the CRL has no CRL number or has not been
+     *  pre-scanned yet
+     */
+    public BigInteger getCrlNumber() {
+        return this.crlNumber;
+    }
+
+    private BigInteger nextCrlNumber(BigInteger current) {
+        if (this.crlNumber == null) {
+            this.crlNumber = current.add(BigInteger.ONE);
+        }
+
+        return this.crlNumber;
+    }
+
     public boolean hasChangesQueued() {
         return this.newEntries.size() > 0 || this.deletedEntries.size() > 0;
     }
@@ -395,7 +669,7 @@ public class X509CRLStreamWriter {
                 if (oid.equals(X509Extension.cRLNumber)) {
                     DEROctetString octet = (DEROctetString) ext.getValue().getDERObject();
                     DERInteger currentNumber = (DERInteger) DERTaggedObject.fromByteArray(octet.getOctets());
-                    DERInteger nextNumber = new DERInteger(currentNumber.getValue().add(BigInteger.ONE));
+                    DERInteger nextNumber = new DERInteger(nextCrlNumber(currentNumber.getValue()));
 
                     crlBuilder.addExtension(oid, ext.isCritical(), nextNumber);
                 }
@@ -469,24 +743,11 @@ public class X509CRLStreamWriter {
 
         originalLength = handleHeader(out);
 
-        int tag;
-        int tagNo;
-        int length;
-
-        while (originalLength > count.get()) {
-            tag = readTag(crlIn, count);
-            tagNo = readTagNumber(crlIn, tag, count);
-            length = readLength(crlIn, count);
-            byte[] entryBytes = new byte[length];
-            readFullyAndTrack(crlIn, entryBytes, count);
-
-            DERInteger serial = (DERInteger) DERInteger.fromByteArray(entryBytes);
-
-            if (deletedEntriesLength == 0 || !deletedEntries.contains(serial.getValue())) {
-                writeTag(out, tag, tagNo, signer);
-                writeLength(out, length, signer);
-                writeValue(out, entryBytes, signer);
-            }
+        if (mappedCrl != null) {
+            writeMappedEntries(out);
+        }
+        else {
+            writeStreamedEntries(out);
         }
 
         // Write the new entries into the new CRL
@@ -514,6 +775,72 @@ public class X509CRLStreamWriter {
         }
     }
 
+    private void writeStreamedEntries(OutputStream out) throws IOException {
+        int tag;
+        int tagNo;
+        int length;
+
+        while (originalLength > count.get()) {
+            tag = readTag(crlIn, count);
+            tagNo = readTagNumber(crlIn, tag, count);
+            length = readLength(crlIn, count);
+            byte[] entryBytes = new byte[length];
+            readFullyAndTrack(crlIn, entryBytes, count);
+
+            DERInteger serial = (DERInteger) DERInteger.fromByteArray(entryBytes);
+
+            if (deletedEntriesLength == 0 || !deletedEntries.contains(serial.getValue())) {
+                writeTag(out, tag, tagNo, signer);
+                writeLength(out, length, signer);
+                writeValue(out, entryBytes, signer);
+            }
+        }
+    }
+
+    /**
+     * Copies the retained entries from the memory-mapped CRL. Runs of retained entries are
+     * copied in large blocks, and entries are only parsed when some are to be deleted.
+     */
+    private void writeMappedEntries(OutputStream out) throws IOException {
+        ByteBuffer entries = mappedCrl.duplicate();
+        byte[] block = new byte[COPY_BLOCK_SIZE];
+
+        if (deletedEntriesLength == 0) {
+            copyMapped(out, entries, mappedEntriesStart, mappedEntriesEnd, block);
+            return;
+        }
+
+        ByteBufferInputStream in = new ByteBufferInputStream(mappedCrl.duplicate());
+        in.position(mappedEntriesStart);
+
+        int runStart = mappedEntriesStart;
+        while (in.position() < mappedEntriesEnd) {
+            int entryStart = in.position();
+            BigInteger serial = skipEntry(in, true);
+
+            if (deletedEntries.contains(serial)) {
+                copyMapped(out, entries, runStart, entryStart, block);
+                runStart = in.position();
+            }
+        }
+
+        copyMapped(out, entries, runStart, mappedEntriesEnd, block);
+    }
+
+    private void copyMapped(OutputStream out, ByteBuffer source, int start, int end, byte[] block)
+        throws IOException {
+        source.position(start);
+
+        int remaining = end - start;
+        while (remaining > 0) {
+            int length = Math.min(remaining, block.length);
+            source.get(block, 0, length);
+            out.write(block, 0, length);
+            signer.update(block, 0, length);
+            remaining -= length;
+        }
+    }
+
     /**
      * This method updates the crlNumber and authorityKeyIdentifier extensions.  Any
      * other extensions are copied over unchanged.
@@ -536,7 +863,7 @@ public class X509CRLStreamWriter {
             if (X509Extension.cRLNumber.equals(oid)) {
                 DEROctetString s = (DEROctetString) ext.getObjectAt(1);
                 DERInteger i = (DERInteger) DERTaggedObject.fromByteArray(s.getOctets());
-                DERInteger newCrlNumber = new DERInteger(i.getValue().add(BigInteger.ONE));
+                DERInteger newCrlNumber = new DERInteger(nextCrlNumber(i.getValue()));
 
                 X509Extension newNumberExt =
                     new X509Extension(false, new DEROctetString(newCrlNumber.getDEREncoded()));
@@ -56,6 +56,8 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.Inflater;
@@ -69,18 +71,22 @@ public class X509V3ExtensionUtil extends X509Util {
     private static Logger log = LoggerFactory.getLogger(X509V3ExtensionUtil.class);
     private Configuration config;
     private EntitlementCurator entCurator;
+    private ContentPayloadCache payloadCache;
     private String thisVersion = "3.3";
 
-    private long pathNodeId = 0;
-    private long huffNodeId = 0;
+    // Certificates can be built concurrently, so node ids must stay unique across threads
+    private final AtomicLong pathNodeId = new AtomicLong();
+    private final AtomicLong huffNodeId = new AtomicLong();
     private static final Object END_NODE = new Object();
     private static boolean treeDebug = false;
 
     @Inject
-    public X509V3ExtensionUtil(Configuration config, EntitlementCurator entCurator) {
+    public X509V3ExtensionUtil(Configuration config, EntitlementCurator entCurator,
+        ContentPayloadCache payloadCache) {
         // Output everything in UTC
         this.config = config;
         this.entCurator = entCurator;
+        this.payloadCache = payloadCache;
     }
 
     public Set<X509ExtensionWrapper> getExtensions() {
@@ -116,12 +122,32 @@ public class X509V3ExtensionUtil extends X509Util {
         EntitlementBody map = createEntitlementBody(productModels,
             consumer, pool, quantity);
 
-        String json = toJson(map);
+        return createEntitlementDataPayload(map);
+    }
+
+    // The body only holds plain values, so unlike building it, serializing and compressing it
+    // can be done off the request thread.
+    public byte[] createEntitlementDataPayload(EntitlementBody body)
+        throws UnsupportedEncodingException, IOException {
+
+        String json = toJson(body);
         return processPayload(json);
     }
 
     private byte[] retreiveContentValue(EntitlementBody eb) throws IOException {
-        List<Content> contentList = getContentList(eb);
+        final List<Content> contentList = getContentList(eb);
+
+        // Consumers of the same products end up with the same content, so the payload is
+        // only built once for each set of content paths
+        return this.payloadCache.get(contentList, new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                return buildContentValue(contentList);
+            }
+        });
+    }
+
+    private byte[] buildContentValue(List<Content> contentList) throws IOException {
         PathNode treeRoot = makePathTree(contentList, new PathNode());
         List<String> nodeStrings = orderStrings(treeRoot);
         if (nodeStrings.size() == 0) {
@@ -1134,12 +1160,12 @@ public class X509V3ExtensionUtil extends X509Util {
             this.weight = weight;
             this.left = left;
             this.right = right;
-            this.id = huffNodeId++;
+            this.id = huffNodeId.getAndIncrement();
         }
         public HuffNode(Object value, int weight) {
             this.value = value;
             this.weight = weight;
-            this.id = huffNodeId++;
+            this.id = huffNodeId.getAndIncrement();
         }
 
         public Object getValue() {
@@ -1182,7 +1208,7 @@ public class X509V3ExtensionUtil extends X509Util {
         private List<PathNode> parents = new ArrayList<PathNode>();
 
         public PathNode() {
-            this.id = pathNodeId++;
+            this.id = pathNodeId.getAndIncrement();
         }
 
         public long getId() {
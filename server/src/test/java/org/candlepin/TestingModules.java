@@ -31,6 +31,7 @@ import org.candlepin.common.guice.HttpMethodMatcher;
 import org.candlepin.common.guice.JPAInitializer;
 import org.candlepin.common.validation.CandlepinMessageInterpolator;
 import org.candlepin.config.CandlepinCommonTestConfig;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.controller.CandlepinPoolManager;
 import org.candlepin.controller.ModeManager;
 import org.candlepin.controller.ModeManagerImpl;
@@ -50,6 +51,8 @@ import org.candlepin.pinsetter.core.GuiceJobFactory;
 import org.candlepin.pinsetter.core.PinsetterJobListener;
 import org.candlepin.pinsetter.core.PinsetterTriggerListener;
 import org.candlepin.pinsetter.tasks.CertificateRevocationListTask;
+import org.candlepin.pinsetter.tasks.HealEntireOrgExecutorProvider;
+import org.candlepin.pki.CertificateSigningExecutorProvider;
 import org.candlepin.pki.PKIReader;
 import org.candlepin.pki.PKIUtility;
 import org.candlepin.pki.SubjectKeyIdentifierWriter;
@@ -58,6 +61,10 @@ import org.candlepin.pki.impl.DefaultSubjectKeyIdentifierWriter;
 import org.candlepin.policy.criteria.CriteriaRules;
 import org.candlepin.policy.js.JsRunner;
 import org.candlepin.policy.js.JsRunnerProvider;
+import org.candlepin.policy.js.compliance.ComplianceEngine;
+import org.candlepin.policy.js.compliance.ComplianceExecutorProvider;
+import org.candlepin.policy.js.compliance.JavaComplianceEngine;
+import org.candlepin.policy.js.compliance.JsComplianceEngine;
 import org.candlepin.policy.js.entitlement.Enforcer;
 import org.candlepin.policy.js.pool.PoolRules;
 import org.candlepin.resource.ActivationKeyResource;
@@ -94,6 +101,7 @@ import org.candlepin.test.VerifyAuthorizationFilterFactory;
 import org.candlepin.test.DateSourceForTesting;
 import org.candlepin.test.EnforcerForTesting;
 import org.candlepin.test.PKIReaderForTesting;
+import org.candlepin.util.CrlScanExecutorProvider;
 import org.candlepin.util.DateSource;
 import org.candlepin.util.ExpiryDateFunction;
 import org.candlepin.util.Util;
@@ -128,6 +136,7 @@ import org.xnap.commons.i18n.I18n;
 import java.io.InputStream;
 import java.util.Date;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
 
 import javax.cache.Cache;
 import javax.inject.Provider;
@@ -256,6 +265,7 @@ public class TestingModules {
             bindScope(TestSingleton.class, TestScope.SINGLETON);
             CandlepinCache mockedCandlepinCache = mock(CandlepinCache.class);
             when(mockedCandlepinCache.getProductCache()).thenReturn(mock(Cache.class));
+            when(mockedCandlepinCache.getComplianceCoverageCache()).thenReturn(mock(Cache.class));
             when(mockedCandlepinCache.getStatusCache()).thenReturn(mock(StatusCache.class));
             // This is not necessary in the normal module because the config is bound in the
             // context listener
@@ -285,6 +295,12 @@ public class TestingModules {
             bind(Enforcer.class).to(EnforcerForTesting.class); // .to(JavascriptEnforcer.class);
             bind(SubjectKeyIdentifierWriter.class).to(DefaultSubjectKeyIdentifierWriter.class);
             bind(PKIUtility.class).to(BouncyCastlePKIUtility.class);
+            bind(ExecutorService.class).annotatedWith(Names.named("CertificateSigningExecutor"))
+                .toProvider(CertificateSigningExecutorProvider.class).in(Singleton.class);
+            bind(ExecutorService.class).annotatedWith(Names.named("HealEntireOrgExecutor"))
+                .toProvider(HealEntireOrgExecutorProvider.class).in(Singleton.class);
+            bind(ExecutorService.class).annotatedWith(Names.named("CrlScanExecutor"))
+                .toProvider(CrlScanExecutorProvider.class).in(Singleton.class);
             bind(PKIReader.class).to(PKIReaderForTesting.class).asEagerSingleton();
             bind(SubscriptionServiceAdapter.class).to(ImportSubscriptionServiceAdapter.class);
             bind(OwnerServiceAdapter.class).to(DefaultOwnerServiceAdapter.class);
@@ -301,6 +317,16 @@ public class TestingModules {
             bind(JsRunnerProvider.class).asEagerSingleton();
             bind(JsRunner.class).toProvider(JsRunnerProvider.class);
 
+            if ("java".equalsIgnoreCase(config.getString(ConfigProperties.COMPLIANCE_ENGINE))) {
+                bind(ComplianceEngine.class).to(JavaComplianceEngine.class);
+            }
+            else {
+                bind(ComplianceEngine.class).to(JsComplianceEngine.class);
+            }
+
+            bind(ExecutorService.class).annotatedWith(Names.named("ComplianceExecutor"))
+                .toProvider(ComplianceExecutorProvider.class).in(Singleton.class);
+
             bind(PrincipalProvider.class).to(TestPrincipalProvider.class);
             bind(Principal.class).toProvider(TestPrincipalProvider.class);
             bind(EventSink.class).to(NoopEventSinkImpl.class);
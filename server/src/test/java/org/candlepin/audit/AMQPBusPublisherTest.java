@@ -89,4 +89,24 @@ public class AMQPBusPublisherTest {
             Mockito.contains("TestConsumer"));
 
     }
+
+    @Test
+    public void onEventUsesPublishQueue() {
+        PrincipalProvider pp = mock(PrincipalProvider.class);
+        when(pp.get()).thenReturn(TestUtil.createPrincipal("admin", null, null));
+
+        EventFactory factory = new EventFactory(pp);
+        Event e = factory.consumerCreated(TestUtil.createConsumer());
+        AMQPPublishQueue publishQueue = mock(AMQPPublishQueue.class);
+
+        publisher = new AMQPBusPublisher(mapper, qpid, publishQueue);
+        publisher.onEvent(e);
+        publisher.close();
+
+        verify(publishQueue).publish(Mockito.eq(Target.CONSUMER), Mockito.eq(Type.CREATED),
+            Mockito.contains("TestConsumer"));
+        verify(publishQueue).shutdown();
+        verify(qpid, Mockito.never()).sendTextMessage(Mockito.any(Target.class),
+            Mockito.any(Type.class), Mockito.anyString());
+    }
 }
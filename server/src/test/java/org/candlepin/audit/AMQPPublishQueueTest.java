@@ -0,0 +1,290 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.audit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.audit.Event.Target;
+import org.candlepin.audit.Event.Type;
+import org.candlepin.common.config.MapConfiguration;
+import org.candlepin.config.ConfigProperties;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+
+
+/**
+ * AMQPPublishQueueTest
+ */
+public class AMQPPublishQueueTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private QpidConnection qpid;
+    private StubBroker broker;
+    private AMQPPublishQueue queue;
+    private File spillDir;
+
+    @Before
+    public void setUp() throws Exception {
+        this.spillDir = this.folder.newFolder("spill");
+        this.broker = new StubBroker();
+        this.qpid = mock(QpidConnection.class);
+        doAnswer(this.broker).when(this.qpid)
+            .sendTextMessages(any(Target.class), any(Type.class), anyListOf(String.class));
+    }
+
+    @After
+    public void tearDown() {
+        this.broker.release();
+
+        if (this.queue != null) {
+            this.queue.shutdown();
+        }
+    }
+
+    private AMQPPublishQueue createQueue(int size, File spillDir) {
+        Map<String, String> settings = new HashMap<String, String>();
+        settings.put(ConfigProperties.AMQP_ASYNC_ENABLED, "true");
+        settings.put(ConfigProperties.AMQP_ASYNC_QUEUE_SIZE, String.valueOf(size));
+        settings.put(ConfigProperties.AMQP_ASYNC_BATCH_SIZE, "100");
+        settings.put(ConfigProperties.AMQP_ASYNC_OFFER_TIMEOUT, "10");
+        settings.put(ConfigProperties.AMQP_ASYNC_RETRY_INTERVAL, "10");
+        settings.put(ConfigProperties.AMQP_ASYNC_SPILL_DIR,
+            spillDir != null ? spillDir.getAbsolutePath() : "");
+
+        this.queue = new AMQPPublishQueue(this.qpid, new MapConfiguration(settings));
+        return this.queue;
+    }
+
+    private void waitForPublished(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+
+        while (this.queue.getPublished() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(count, this.queue.getPublished());
+    }
+
+    private void awaitEmpty(File dir) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+
+        while (dir.list().length > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(Collections.emptyList(), Arrays.asList(dir.list()));
+    }
+
+    @Test
+    public void sendsRightAwayUntilStarted() {
+        createQueue(10, this.spillDir);
+
+        this.queue.publish(Target.CONSUMER, Type.CREATED, "{}");
+
+        verify(this.qpid).sendTextMessage(eq(Target.CONSUMER), eq(Type.CREATED), eq("{}"));
+        verify(this.qpid, never())
+            .sendTextMessages(any(Target.class), any(Type.class), anyListOf(String.class));
+    }
+
+    @Test
+    public void batchesEventsPerDestination() throws Exception {
+        createQueue(10, this.spillDir).start();
+        this.broker.hold();
+
+        this.queue.publish(Target.CONSUMER, Type.CREATED, "1");
+        assertTrue(this.broker.awaitSend());
+
+        // These pile up while the broker works on the first batch
+        this.queue.publish(Target.CONSUMER, Type.CREATED, "2");
+        this.queue.publish(Target.POOL, Type.DELETED, "3");
+        this.queue.publish(Target.CONSUMER, Type.CREATED, "4");
+        this.broker.release();
+
+        waitForPublished(4);
+        assertEquals(Arrays.asList(Arrays.asList("1"), Arrays.asList("2", "4"), Arrays.asList("3")),
+            this.broker.getBatches());
+        assertEquals(2, this.queue.getBatches());
+        verify(this.qpid, never()).sendTextMessage(any(Target.class), any(Type.class), anyString());
+    }
+
+    @Test
+    public void retriesBatchesTheBrokerFails() throws Exception {
+        createQueue(10, this.spillDir).start();
+        this.broker.failNext(2);
+
+        this.queue.publish(Target.CONSUMER, Type.CREATED, "1");
+
+        waitForPublished(1);
+        assertEquals(2, this.queue.getFailedSends());
+        assertEquals(Arrays.asList(Arrays.asList("1")), this.broker.getBatches());
+    }
+
+    @Test
+    public void sendsRightAwayWithoutSpillDir() {
+        createQueue(10, null).start();
+
+        this.queue.publish(Target.CONSUMER, Type.CREATED, "{}");
+
+        verify(this.qpid).sendTextMessage(eq(Target.CONSUMER), eq(Type.CREATED), eq("{}"));
+        assertEquals(0, this.spillDir.list().length);
+    }
+
+    @Test
+    public void journalsEventsUntilTheBrokerHasThem() throws Exception {
+        createQueue(10, this.spillDir).start();
+        this.broker.hold();
+
+        this.queue.publish(Target.CONSUMER, Type.CREATED, "1");
+        assertTrue(this.broker.awaitSend());
+        this.queue.publish(Target.POOL, Type.DELETED, "2");
+
+        File[] journal = this.spillDir.listFiles();
+        assertEquals(1, journal.length);
+        assertTrue(journal[0].getName().endsWith(".journal"));
+        assertEquals(Arrays.asList("CONSUMER\tCREATED\t1", "POOL\tDELETED\t2"),
+            FileUtils.readLines(journal[0], "UTF-8"));
+
+        this.broker.release();
+        waitForPublished(2);
+        awaitEmpty(this.spillDir);
+    }
+
+    @Test
+    public void sendsEventsLeftInTheJournal() throws Exception {
+        // A crash while writing the third event leaves half a line behind
+        File journal = new File(this.spillDir, "amqp-events.1.journal");
+        FileUtils.writeStringToFile(journal,
+            "CONSUMER\tCREATED\t1\nPOOL\tDELETED\t2\nCONSUMER\tCREA", "UTF-8");
+
+        createQueue(10, this.spillDir).start();
+
+        waitForPublished(2);
+        assertEquals(Arrays.asList(Arrays.asList("1"), Arrays.asList("2")), this.broker.getBatches());
+        awaitEmpty(this.spillDir);
+    }
+
+    @Test
+    public void spillsEventsWhenFullAndSendsThemLater() throws Exception {
+        File spillDir = this.spillDir;
+        createQueue(1, spillDir).start();
+        this.broker.hold();
+
+        this.queue.publish(Target.CONSUMER, Type.CREATED, "1");
+        assertTrue(this.broker.awaitSend());
+        this.queue.publish(Target.CONSUMER, Type.CREATED, "2");
+        this.queue.publish(Target.POOL, Type.MODIFIED, "{\"a\":\"b\\tc\"}");
+
+        assertEquals(1, this.queue.getSpilled());
+        assertTrue(new File(spillDir, "amqp-events.spill").exists());
+        this.broker.release();
+
+        waitForPublished(3);
+        assertEquals(Arrays.asList(Arrays.asList("1"), Arrays.asList("2"),
+            Arrays.asList("{\"a\":\"b\\tc\"}")), this.broker.getBatches());
+
+        // The replay file and the journal are removed once sent
+        awaitEmpty(spillDir);
+    }
+
+    @Test
+    public void spillsUnsentEventsOnShutdown() throws Exception {
+        File spillDir = this.spillDir;
+        createQueue(10, spillDir).start();
+        this.broker.failNext(Integer.MAX_VALUE);
+
+        this.queue.publish(Target.CONSUMER, Type.CREATED, "1");
+        this.queue.publish(Target.POOL, Type.CREATED, "2");
+        this.queue.shutdown();
+        this.queue = null;
+
+        assertEquals(Collections.singletonList("amqp-events.spill"), Arrays.asList(spillDir.list()));
+
+        // A new queue picks the spilled events up once the broker is back
+        this.broker.failNext(0);
+        createQueue(10, spillDir).start();
+        waitForPublished(2);
+    }
+
+    /**
+     * Stands in for the Qpid broker: records the batches it confirms, and can be told to hold
+     * on to a batch or to fail.
+     */
+    private static class StubBroker implements Answer<Void> {
+        private final List<List<String>> batches = new ArrayList<List<String>>();
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+        private final CountDownLatch sent = new CountDownLatch(1);
+        private volatile int failures;
+
+        public void hold() {
+            this.gate = new CountDownLatch(1);
+        }
+
+        public void release() {
+            this.gate.countDown();
+        }
+
+        public void failNext(int count) {
+            this.failures = count;
+        }
+
+        public boolean awaitSend() throws InterruptedException {
+            return this.sent.await(5, TimeUnit.SECONDS);
+        }
+
+        public synchronized List<List<String>> getBatches() {
+            return new ArrayList<List<String>>(this.batches);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Void answer(InvocationOnMock invocation) throws Throwable {
+            this.sent.countDown();
+            this.gate.await(5, TimeUnit.SECONDS);
+
+            if (this.failures > 0) {
+                this.failures--;
+                throw new RuntimeException("Broker unavailable");
+            }
+
+            synchronized (this) {
+                this.batches.add(new ArrayList<String>((List<String>) invocation.getArguments()[2]));
+            }
+
+            return null;
+        }
+    }
+}
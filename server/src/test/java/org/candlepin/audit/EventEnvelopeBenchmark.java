@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.audit;
+
+import static org.junit.Assert.*;
+
+import org.candlepin.auth.PrincipalData;
+import org.candlepin.test.BenchmarkReport;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+
+import org.hornetq.api.core.TransportConfiguration;
+import org.hornetq.api.core.client.ClientConsumer;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.ClientSessionFactory;
+import org.hornetq.api.core.client.HornetQClient;
+import org.hornetq.api.core.client.ServerLocator;
+import org.hornetq.core.config.Configuration;
+import org.hornetq.core.config.impl.ConfigurationImpl;
+import org.hornetq.core.remoting.impl.invm.InVMAcceptorFactory;
+import org.hornetq.core.remoting.impl.invm.InVMConnectorFactory;
+import org.hornetq.core.server.embedded.EmbeddedHornetQ;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+
+/**
+ * Measures the throughput of the event envelopes through an in-VM HornetQ broker, sending and
+ * receiving twenty thousand events one per message and in batches with either codec. Timings
+ * vary too much between machines to assert on, so this is only run by hand:
+ *
+ *   mvn test -Dtest=EventEnvelopeBenchmark
+ *
+ * The elapsed time, peak heap usage and message body size of each run are written to
+ * target/benchmarks/EventEnvelopeBenchmark.properties.
+ */
+public class EventEnvelopeBenchmark {
+    private static final int EVENTS = 20000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<String> createEvents() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        List<String> events = new ArrayList<String>();
+
+        for (int i = 0; i < EVENTS; i++) {
+            Event event = new Event();
+            event.setId("event-" + i);
+            event.setType(Event.Type.MODIFIED);
+            event.setTarget(Event.Target.COMPLIANCE);
+            event.setConsumerId("consumer-" + i);
+            event.setOwnerId("owner");
+            event.setEntityId("consumer-" + i);
+            event.setPrincipal(new PrincipalData("consumer", "uuid-" + i));
+            events.add(mapper.writeValueAsString(event));
+        }
+
+        return events;
+    }
+
+    private EmbeddedHornetQ startServer() throws Exception {
+        Configuration config = new ConfigurationImpl();
+        config.setAcceptorConfigurations(Collections.singleton(
+            new TransportConfiguration(InVMAcceptorFactory.class.getName())));
+        config.setPersistenceEnabled(false);
+        config.setSecurityEnabled(false);
+
+        // Keep whatever the broker writes out of the working tree
+        File baseDir = folder.newFolder();
+        config.setBindingsDirectory(new File(baseDir, "bindings").toString());
+        config.setJournalDirectory(new File(baseDir, "journal").toString());
+        config.setLargeMessagesDirectory(new File(baseDir, "largemsgs").toString());
+        config.setPagingDirectory(new File(baseDir, "paging").toString());
+
+        EmbeddedHornetQ server = new EmbeddedHornetQ();
+        server.setConfiguration(config);
+        server.start();
+        return server;
+    }
+
+    @Test
+    public void benchmarkInVmBroker() throws Exception {
+        List<String> events = this.createEvents();
+        BenchmarkReport report = new BenchmarkReport(this.getClass());
+        report.record("events", EVENTS);
+
+        EmbeddedHornetQ server = this.startServer();
+
+        try {
+            ServerLocator locator = HornetQClient.createServerLocatorWithoutHA(
+                new TransportConfiguration(InVMConnectorFactory.class.getName()));
+            ClientSessionFactory factory = locator.createSessionFactory();
+            ClientSession session = factory.createTransactedSession();
+            session.createQueue("benchmark", "benchmark");
+            ClientProducer producer = session.createProducer("benchmark");
+            ClientConsumer consumer = session.createConsumer("benchmark");
+            session.start();
+
+            Object[][] runs = new Object[][] {
+                { 1, EventEnvelope.CODEC_JSON },
+                { 100, EventEnvelope.CODEC_JSON },
+                { 100, EventEnvelope.CODEC_DEFLATE },
+                { 1000, EventEnvelope.CODEC_DEFLATE },
+            };
+
+            for (Object[] run : runs) {
+                int batchSize = (Integer) run[0];
+                String codec = (String) run[1];
+                String phase = "batch_" + batchSize + "_" + codec;
+
+                report.start(phase);
+                long bytes = 0;
+                for (List<String> batch : Lists.partition(events, batchSize)) {
+                    ClientMessage message = session.createMessage(true);
+                    EventEnvelope.write(message, batch, codec);
+                    bytes += message.getBodySize();
+                    producer.send(message);
+                }
+                session.commit();
+
+                int received = 0;
+                while (received < events.size()) {
+                    ClientMessage message = consumer.receive(10000);
+                    assertNotNull(message);
+                    message.acknowledge();
+                    received += EventEnvelope.read(message).size();
+                }
+                session.commit();
+                report.stop();
+
+                report.record(phase + ".body_bytes", bytes);
+                assertEquals(events.size(), received);
+            }
+
+            session.close();
+            factory.close();
+            locator.close();
+        }
+        finally {
+            server.stop();
+        }
+
+        report.write();
+    }
+}
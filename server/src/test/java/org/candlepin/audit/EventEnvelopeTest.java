@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.audit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import org.hornetq.api.core.HornetQBuffers;
+import org.hornetq.api.core.client.ClientMessage;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+
+/**
+ * EventEnvelopeTest
+ */
+public class EventEnvelopeTest {
+
+    private static final List<String> EVENTS = Arrays.asList(
+        "{\"id\":\"1\",\"type\":\"CREATED\"}",
+        "{\"id\":\"2\",\"type\":\"MODIFIED\",\"messageText\":\"ünicode\"}",
+        "{\"id\":\"3\",\"type\":\"DELETED\"}");
+
+    /*
+     * A message backed by a plain buffer, keeping whatever properties are put on it.
+     */
+    private ClientMessage mockMessage() {
+        final Map<String, Object> properties = new HashMap<String, Object>();
+        ClientMessage message = mock(ClientMessage.class);
+
+        when(message.getBodyBuffer()).thenReturn(HornetQBuffers.dynamicBuffer(256));
+        Answer<Object> put = new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                Object[] args = invocation.getArguments();
+                properties.put((String) args[0], args[1]);
+                return null;
+            }
+        };
+        Answer<Object> get = new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return properties.get((String) invocation.getArguments()[0]);
+            }
+        };
+        when(message.putIntProperty(anyString(), anyInt())).thenAnswer(put);
+        when(message.putStringProperty(anyString(), anyString())).thenAnswer(put);
+        when(message.getIntProperty(anyString())).thenAnswer(get);
+        when(message.getStringProperty(anyString())).thenAnswer(get);
+        when(message.containsProperty(anyString())).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) {
+                return properties.containsKey((String) invocation.getArguments()[0]);
+            }
+        });
+
+        return message;
+    }
+
+    @Test
+    public void singleJsonEventKeepsPlainBody() throws Exception {
+        ClientMessage message = mockMessage();
+        EventEnvelope.write(message, EVENTS.subList(0, 1), EventEnvelope.CODEC_JSON);
+
+        assertFalse(message.containsProperty(EventEnvelope.COUNT_PROPERTY));
+        assertEquals(EVENTS.get(0), message.getBodyBuffer().readString());
+    }
+
+    @Test
+    public void readsPlainMessages() throws Exception {
+        ClientMessage message = mockMessage();
+        message.getBodyBuffer().writeString(EVENTS.get(0));
+
+        assertEquals(EVENTS.subList(0, 1), EventEnvelope.read(message));
+    }
+
+    @Test
+    public void jsonBatchRoundTrip() throws Exception {
+        ClientMessage message = mockMessage();
+        EventEnvelope.write(message, EVENTS, EventEnvelope.CODEC_JSON);
+
+        assertEquals(3, message.getIntProperty(EventEnvelope.COUNT_PROPERTY).intValue());
+        assertEquals(EVENTS, EventEnvelope.read(message));
+    }
+
+    @Test
+    public void deflateBatchRoundTrip() throws Exception {
+        ClientMessage message = mockMessage();
+        EventEnvelope.write(message, EVENTS, EventEnvelope.CODEC_DEFLATE);
+
+        assertEquals(EventEnvelope.CODEC_DEFLATE, message.getStringProperty(EventEnvelope.CODEC_PROPERTY));
+        assertEquals(EVENTS, EventEnvelope.read(message));
+    }
+
+    @Test
+    public void deflateSingleEventRoundTrip() throws Exception {
+        ClientMessage message = mockMessage();
+        EventEnvelope.write(message, EVENTS.subList(1, 2), EventEnvelope.CODEC_DEFLATE);
+
+        assertEquals(EVENTS.subList(1, 2), EventEnvelope.read(message));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownCodec() throws Exception {
+        EventEnvelope.write(mockMessage(), EVENTS, "smoke-signals");
+    }
+}
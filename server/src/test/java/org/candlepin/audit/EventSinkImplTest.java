@@ -20,16 +20,20 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.candlepin.auth.Principal;
+import org.candlepin.common.config.Configuration;
 import org.candlepin.config.CandlepinCommonTestConfig;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.controller.ModeManager;
 import org.candlepin.guice.PrincipalProvider;
 import org.candlepin.model.Consumer;
@@ -103,8 +107,14 @@ public class EventSinkImplTest {
      * @throws Exception
      */
     private EventSinkImpl createEventSink(final ClientSessionFactory sessionFactory) throws Exception {
+        return createEventSink(sessionFactory, new CandlepinCommonTestConfig());
+    }
+
+    private EventSinkImpl createEventSink(final ClientSessionFactory sessionFactory,
+        Configuration config) throws Exception {
+
         EventSinkImpl sink = new EventSinkImpl(eventFilter, factory, mapper,
-            new CandlepinCommonTestConfig(), mockModeManager) {
+            config, mockModeManager) {
 
             @Override
             protected ClientSessionFactory createClientSessionFactory() {
@@ -252,4 +262,41 @@ public class EventSinkImplTest {
         verify(mockClientProducer).send(any(ClientMessage.class));
     }
 
+    @Test
+    public void eventsOfTransactionAreSentInOneMessage() throws Exception {
+        eventSinkImpl.emitOwnerCreated(o);
+        eventSinkImpl.emitOwnerMigrated(o);
+        eventSinkImpl.emitOwnerCreated(new Owner("other owner"));
+        verify(mockClientProducer, never()).send(any(ClientMessage.class));
+
+        eventSinkImpl.sendEvents();
+        verify(mockClientProducer).send(any(ClientMessage.class));
+        verify(mockClientMessage).putIntProperty(eq(EventEnvelope.COUNT_PROPERTY), eq(3));
+        verify(mockClientSession).commit();
+    }
+
+    @Test
+    public void eventsAreSplitIntoMessagesOfBatchSize() throws Exception {
+        CandlepinCommonTestConfig config = new CandlepinCommonTestConfig();
+        config.setProperty(ConfigProperties.HORNETQ_EVENT_BATCH_SIZE, "2");
+        EventSinkImpl sink = createEventSink(mockSessionFactory, config);
+
+        sink.emitOwnerCreated(o);
+        sink.emitOwnerMigrated(o);
+        verify(mockClientProducer).send(any(ClientMessage.class));
+
+        sink.emitOwnerCreated(new Owner("other owner"));
+        sink.sendEvents();
+        verify(mockClientProducer, times(2)).send(any(ClientMessage.class));
+    }
+
+    @Test
+    public void rollbackDropsPendingEvents() throws Exception {
+        eventSinkImpl.emitOwnerCreated(o);
+        eventSinkImpl.rollback();
+        eventSinkImpl.sendEvents();
+
+        verify(mockClientSession).rollback();
+        verify(mockClientProducer, never()).send(any(ClientMessage.class));
+    }
 }
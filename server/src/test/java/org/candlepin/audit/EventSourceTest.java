@@ -92,9 +92,11 @@ public class EventSourceTest {
         EventListener eventListener = mock(EventListener.class);
         eventSource.registerListener(eventListener);
 
-        //make sure queue is created.
-        verify(clientSession).createQueue(anyString(), anyString(), eq(true));
-        verify(mockCC).setMessageHandler(any(ListenerWrapper.class));
+        //make sure the queue and the parking queue are created.
+        verify(clientSession).createQueue(eq(EventSource.QUEUE_ADDRESS), anyString(), eq(true));
+        verify(clientSession).createQueue(endsWith(EventSource.PARKED_SUFFIX),
+            endsWith(EventSource.PARKED_SUFFIX), eq(true));
+        verify(mockCC, times(2)).setMessageHandler(any(ListenerWrapper.class));
     }
 
     @Test
@@ -111,7 +113,7 @@ public class EventSourceTest {
         eventSource.registerListener(eventListener);
 
         //verify listener is still added.
-        verify(mockCC).setMessageHandler(any(ListenerWrapper.class));
+        verify(mockCC, times(2)).setMessageHandler(any(ListenerWrapper.class));
     }
 
     @Test
@@ -13,6 +13,8 @@
  * in this software or its documentation.
  */
 package org.candlepin.audit;
+
+import static org.junit.Assert.*;
 import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 
@@ -26,14 +28,18 @@ import org.hornetq.api.core.HornetQBuffers;
 import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.HornetQExceptionType;
 import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.ClientSession;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import java.io.StringWriter;
+import java.util.Arrays;
 
 
 /**
@@ -43,13 +49,16 @@ import java.io.StringWriter;
 public class ListenerWrapperTest {
     @Mock private EventListener mockEventListener;
     @Mock private ClientMessage mockClientMessage;
+    @Mock private ClientSession mockSession;
+    @Mock private ClientProducer mockParkingProducer;
     @Spy private ObjectMapper mapper = new ObjectMapper();
     @Spy private HornetQBuffer hornetQBuffer = HornetQBuffers.fixedBuffer(1000);
     private ListenerWrapper listenerWrapper;
 
     @Before
     public void init() {
-        this.listenerWrapper = new ListenerWrapper(mockEventListener, mapper);
+        this.listenerWrapper = new ListenerWrapper(mockEventListener, mapper, mockSession,
+            mockParkingProducer);
         when(mockClientMessage.getBodyBuffer())
             .thenReturn(hornetQBuffer);
     }
@@ -82,15 +91,125 @@ public class ListenerWrapperTest {
         verify(this.mockClientMessage).acknowledge();
     }
 
+    @Test
+    public void onMessageDeliversEveryEventOfBatch() throws Exception {
+        when(mockClientMessage.containsProperty(EventEnvelope.COUNT_PROPERTY)).thenReturn(true);
+        when(mockClientMessage.getIntProperty(EventEnvelope.COUNT_PROPERTY)).thenReturn(2);
+        when(mockClientMessage.getStringProperty(EventEnvelope.CODEC_PROPERTY))
+            .thenReturn(EventEnvelope.CODEC_JSON);
+        hornetQBuffer.writeString(eventJson());
+        hornetQBuffer.writeString(eventJson());
+
+        this.listenerWrapper.onMessage(mockClientMessage);
+        verify(this.mockEventListener, times(2)).onEvent(any(Event.class));
+        verify(this.mockClientMessage).acknowledge();
+    }
+
+    @Test
+    public void onMessageDeliversNothingWhenAnyEventOfBatchIsBroken() throws Exception {
+        when(mockClientMessage.containsProperty(EventEnvelope.COUNT_PROPERTY)).thenReturn(true);
+        when(mockClientMessage.getIntProperty(EventEnvelope.COUNT_PROPERTY)).thenReturn(2);
+        when(mockClientMessage.getStringProperty(EventEnvelope.CODEC_PROPERTY))
+            .thenReturn(EventEnvelope.CODEC_JSON);
+        hornetQBuffer.writeString(eventJson());
+        hornetQBuffer.writeString("{broken");
+
+        try {
+            this.listenerWrapper.onMessage(mockClientMessage);
+            fail("Expected the broken event to fail the message");
+        }
+        catch (RuntimeException e) {
+            // expected
+        }
+
+        verify(this.mockEventListener, never()).onEvent(any(Event.class));
+        verify(this.mockClientMessage, never()).acknowledge();
+    }
+
+    @Test
+    public void onMessageParksOnlyTheEventsOfBatchTheListenerFailsOn() throws Exception {
+        when(mockClientMessage.containsProperty(EventEnvelope.COUNT_PROPERTY)).thenReturn(true);
+        when(mockClientMessage.getIntProperty(EventEnvelope.COUNT_PROPERTY)).thenReturn(3);
+        when(mockClientMessage.getStringProperty(EventEnvelope.CODEC_PROPERTY))
+            .thenReturn(EventEnvelope.CODEC_JSON);
+        hornetQBuffer.writeString(eventJson("1"));
+        hornetQBuffer.writeString(eventJson("2"));
+        hornetQBuffer.writeString(eventJson("3"));
+
+        ClientMessage parked = mock(ClientMessage.class);
+        when(parked.getBodyBuffer()).thenReturn(HornetQBuffers.dynamicBuffer(100));
+        when(mockSession.createMessage(eq(true))).thenReturn(parked);
+
+        ArgumentCaptor<Event> delivered = ArgumentCaptor.forClass(Event.class);
+        doNothing().doThrow(new RuntimeException("induced")).doNothing()
+            .when(mockEventListener).onEvent(delivered.capture());
+
+        this.listenerWrapper.onMessage(mockClientMessage);
+
+        // Every event is delivered once, only the failed one is parked, and the batch is done
+        assertEquals(3, delivered.getAllValues().size());
+        verify(this.mockParkingProducer, times(1)).send(eq(parked));
+        assertEquals(Arrays.asList(eventJson("2")), EventEnvelope.read(parked));
+        verify(this.mockClientMessage).acknowledge();
+    }
+
+    @Test
+    public void onMessageLeavesBatchWhenParkingFails() throws Exception {
+        when(mockClientMessage.containsProperty(EventEnvelope.COUNT_PROPERTY)).thenReturn(true);
+        when(mockClientMessage.getIntProperty(EventEnvelope.COUNT_PROPERTY)).thenReturn(2);
+        when(mockClientMessage.getStringProperty(EventEnvelope.CODEC_PROPERTY))
+            .thenReturn(EventEnvelope.CODEC_JSON);
+        hornetQBuffer.writeString(eventJson("1"));
+        hornetQBuffer.writeString(eventJson("2"));
+
+        ClientMessage parked = mock(ClientMessage.class);
+        when(parked.getBodyBuffer()).thenReturn(HornetQBuffers.dynamicBuffer(100));
+        when(mockSession.createMessage(eq(true))).thenReturn(parked);
+        doThrow(new HornetQException(HornetQExceptionType.DISCONNECTED, "induced"))
+            .when(mockParkingProducer).send(any(ClientMessage.class));
+        doThrow(new RuntimeException("induced")).when(mockEventListener).onEvent(any(Event.class));
+
+        try {
+            this.listenerWrapper.onMessage(mockClientMessage);
+            fail("Expected the batch to fail when its failed events cannot be parked");
+        }
+        catch (RuntimeException e) {
+            // expected
+        }
+
+        verify(this.mockClientMessage, never()).acknowledge();
+    }
+
+    @Test
+    public void onMessageLeavesSingleEventTheListenerFailsOn() throws Exception {
+        doReturn(eventJson()).when(hornetQBuffer).readString();
+        doThrow(new RuntimeException("induced")).when(mockEventListener).onEvent(any(Event.class));
+
+        try {
+            this.listenerWrapper.onMessage(mockClientMessage);
+            fail("Expected the failing event to fail the message");
+        }
+        catch (RuntimeException e) {
+            // expected
+        }
+
+        verify(this.mockParkingProducer, never()).send(any(ClientMessage.class));
+        verify(this.mockClientMessage, never()).acknowledge();
+    }
+
     @Test(expected = NullPointerException.class)
     public void onMessageNull() {
         this.listenerWrapper.onMessage(null);
     }
 
     private String eventJson() throws Exception {
+        return eventJson("10");
+    }
+
+    private String eventJson(String id) throws Exception {
         StringWriter sw = new StringWriter();
         Event e = new Event();
-        e.setId("10");
+        e.setId(id);
         e.setConsumerId("20");
         e.setPrincipal(new PrincipalData("5678", "910112"));
         mapper.writeValue(sw, e);
@@ -0,0 +1,177 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.common.config.MapConfiguration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerCurator;
+
+import com.google.inject.persist.UnitOfWork;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+
+
+/**
+ * ConsumerCheckInBufferTest
+ */
+public class ConsumerCheckInBufferTest {
+
+    private ConsumerCurator consumerCurator;
+    private UnitOfWork unitOfWork;
+    private ConsumerCheckInBuffer buffer;
+
+    private Consumer consumer1;
+    private Consumer consumer2;
+
+    @Before
+    public void setUp() {
+        this.consumerCurator = mock(ConsumerCurator.class);
+        this.unitOfWork = mock(UnitOfWork.class);
+
+        this.consumer1 = new Consumer();
+        this.consumer1.setId("consumer1");
+        this.consumer2 = new Consumer();
+        this.consumer2.setId("consumer2");
+    }
+
+    @After
+    public void tearDown() {
+        if (this.buffer != null) {
+            this.buffer.shutdown();
+        }
+    }
+
+    private ConsumerCheckInBuffer createBuffer(int interval, int size) {
+        Map<String, String> settings = new HashMap<String, String>();
+        settings.put(ConfigProperties.CONSUMER_CHECKIN_FLUSH_INTERVAL, String.valueOf(interval));
+        settings.put(ConfigProperties.CONSUMER_CHECKIN_FLUSH_SIZE, String.valueOf(size));
+
+        this.buffer = new ConsumerCheckInBuffer(this.consumerCurator, this.unitOfWork,
+            new MapConfiguration(settings));
+
+        return this.buffer;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Date> captureFlush() {
+        ArgumentCaptor<Map> captor = ArgumentCaptor.forClass(Map.class);
+        verify(this.consumerCurator).updateLastCheckins(captor.capture());
+        return captor.getValue();
+    }
+
+    @Test
+    public void writesCheckInsRightAwayUntilStarted() {
+        createBuffer(3600, 1000);
+        Date date = new Date();
+
+        this.buffer.checkIn(this.consumer1, date);
+
+        verify(this.consumerCurator).updateLastCheckin(eq(this.consumer1), eq(date));
+        assertEquals(0, this.buffer.getDepth());
+    }
+
+    @Test
+    public void writesCheckInsRightAwayWithoutInterval() {
+        createBuffer(0, 1000).start();
+        Date date = new Date();
+
+        this.buffer.checkIn(this.consumer1, date);
+
+        verify(this.consumerCurator).updateLastCheckin(eq(this.consumer1), eq(date));
+    }
+
+    @Test
+    public void coalescesCheckInsPerConsumer() {
+        createBuffer(3600, 1000).start();
+        Date early = new Date(1000000L);
+        Date late = new Date(2000000L);
+
+        this.buffer.checkIn(this.consumer1, early);
+        this.buffer.checkIn(this.consumer1, late);
+        this.buffer.checkIn(this.consumer2, late);
+        this.buffer.checkIn(this.consumer2, early);
+
+        assertEquals(2, this.buffer.getDepth());
+        verify(this.consumerCurator, never()).updateLastCheckin(any(Consumer.class), any(Date.class));
+
+        assertEquals(2, this.buffer.flush());
+
+        Map<String, Date> flushed = captureFlush();
+        assertEquals(2, flushed.size());
+        assertEquals(late, flushed.get("consumer1"));
+        assertEquals(late, flushed.get("consumer2"));
+
+        assertEquals(0, this.buffer.getDepth());
+        assertEquals(1, this.buffer.getFlushCount());
+        assertEquals(2, this.buffer.getFlushedCheckIns());
+    }
+
+    @Test
+    public void flushesWhenFull() {
+        createBuffer(3600, 2).start();
+
+        this.buffer.checkIn(this.consumer1);
+        verify(this.consumerCurator, never()).updateLastCheckins(anyMap());
+
+        this.buffer.checkIn(this.consumer2);
+        verify(this.consumerCurator, timeout(5000)).updateLastCheckins(anyMap());
+        verify(this.unitOfWork, timeout(5000)).end();
+    }
+
+    @Test
+    public void flushesOnShutdown() {
+        createBuffer(3600, 1000).start();
+
+        this.buffer.checkIn(this.consumer1);
+        this.buffer.shutdown();
+
+        assertEquals(1, captureFlush().size());
+        verify(this.unitOfWork).begin();
+        verify(this.unitOfWork).end();
+    }
+
+    @Test
+    public void keepsCheckInsWhenFlushFails() {
+        createBuffer(3600, 1000).start();
+        doThrow(new RuntimeException("db down")).when(this.consumerCurator)
+            .updateLastCheckins(anyMap());
+
+        this.buffer.checkIn(this.consumer1);
+
+        try {
+            this.buffer.flush();
+            fail("Expected the failure to be rethrown");
+        }
+        catch (RuntimeException e) {
+            // expected
+        }
+
+        assertEquals(1, this.buffer.getDepth());
+        assertEquals(0, this.buffer.getFlushCount());
+    }
+}
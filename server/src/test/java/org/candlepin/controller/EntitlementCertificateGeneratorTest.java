@@ -21,6 +21,7 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyMapOf;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
@@ -317,6 +318,48 @@ public class EntitlementCertificateGeneratorTest {
         verify(this.mockEventSink, times(1)).queueEvent(any(Event.class));
     }
 
+    @Test
+    public void testNonLazyRegenerationForProductsOfOwners() throws Exception {
+        Owner owner1 = TestUtil.createOwner("test-owner-1", "Test Owner 1");
+        Owner owner2 = TestUtil.createOwner("test-owner-2", "Test Owner 2");
+        Product product = TestUtil.createProduct();
+        Pool pool1 = TestUtil.createPool(owner1, product);
+        Pool pool2 = TestUtil.createPool(owner2, product);
+        Entitlement entitlement1 = TestUtil.createEntitlement(owner1, TestUtil.createConsumer(owner1),
+            pool1, null);
+        entitlement1.setId("test-ent-1");
+        Entitlement entitlement2 = TestUtil.createEntitlement(owner2, TestUtil.createConsumer(owner2),
+            pool2, null);
+        entitlement2.setId("test-ent-2");
+        List<Owner> owners = Arrays.asList(owner1, owner2);
+        List<Entitlement> entitlements = Arrays.asList(entitlement1, entitlement2);
+
+        HashMap<String, EntitlementCertificate> ecMap = new HashMap<String, EntitlementCertificate>();
+        ecMap.put(pool1.getId(), new EntitlementCertificate());
+        ecMap.put(pool2.getId(), new EntitlementCertificate());
+
+        CandlepinQuery<Entitlement> cqmock = mock(CandlepinQuery.class);
+        when(cqmock.list()).thenReturn(entitlements);
+        when(this.mockPoolCurator.getEntitlementIdsForPoolsWithProducts(eq(owners),
+            eq(Collections.singleton(product.getId())), any(Date.class)))
+            .thenReturn(new HashSet<String>(Arrays.asList("test-ent-1", "test-ent-2")));
+        when(this.mockEntitlementCurator.listAllByIds(any(Collection.class))).thenReturn(cqmock);
+        when(this.mockEntCertAdapter.generateEntitlementCerts(any(Consumer.class), any(Map.class),
+            any(Map.class), any(Map.class), eq(true))).thenReturn(ecMap);
+
+        this.ecGenerator.regenerateCertificatesOf(owners, Arrays.asList(product), false);
+
+        assertFalse(entitlement1.isDirty());
+        assertFalse(entitlement2.isDirty());
+
+        verify(this.mockPoolCurator, never()).listAvailableEntitlementPools(any(Consumer.class),
+            any(Owner.class), any(Collection.class), any(Date.class));
+        verify(this.mockEntCertAdapter, times(2)).generateEntitlementCerts(any(Consumer.class),
+            any(Map.class), any(Map.class), any(Map.class), eq(true));
+        verify(this.mockEntitlementCurator, times(1)).evictAll(eq(entitlements));
+        verify(this.mockEventSink, times(2)).queueEvent(any(Event.class));
+    }
+
     @Test
     public void testLazyRegenerateForConsumer() {
         Entitlement entitlement = new Entitlement();
@@ -33,11 +33,13 @@ import org.candlepin.model.activationkeys.ActivationKeyCurator;
 
 import org.candlepin.service.ContentAccessCertServiceAdapter;
 import org.candlepin.service.OwnerServiceAdapter;
+import org.candlepin.util.ContentAccessPayloadCache;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.Assert;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
@@ -80,6 +82,8 @@ public class OwnerManagerTest {
     private UeberCertificateCurator uberCertificateCurator;
     @Mock
     private OwnerServiceAdapter ownerServiceAdapter;
+    @Mock
+    private ContentAccessPayloadCache contentAccessPayloadCache;
 
     @Before
     public void setUp() {
@@ -87,7 +91,7 @@ public class OwnerManagerTest {
             exportCurator, importRecordCurator, permissionCurator, ownerProductCurator, productManager,
             ownerContentCurator, contentManager, ownerCurator, contentAccessCertService,
             contentAccessCertCurator, ownerEnvContentAccessCurator, uberCertificateCurator,
-            ownerServiceAdapter);
+            ownerServiceAdapter, contentAccessPayloadCache);
     }
 
     @Test
@@ -155,4 +159,20 @@ public class OwnerManagerTest {
         Assert.assertEquals(owner.getContentAccessMode(),
             ContentAccessCertServiceAdapter.DEFAULT_CONTENT_ACCESS_MODE);
     }
+
+    @Test
+    public void testRefreshForContentAccessInvalidatesCachedPayloads() {
+        Owner owner = new Owner();
+        owner.setId("owner-id");
+        when(ownerCurator.lockAndLoad(eq(owner))).thenReturn(owner);
+        ownerManager.refreshOwnerForContentAccess(owner);
+        verify(ownerEnvContentAccessCurator).removeAllForOwner(eq("owner-id"));
+        verify(contentAccessPayloadCache).invalidateOwner(eq("owner-id"));
+
+        // And again once the transaction has completed
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(ownerEnvContentAccessCurator).afterTransaction(captor.capture());
+        captor.getValue().run();
+        verify(contentAccessPayloadCache, times(2)).invalidateOwner(eq("owner-id"));
+    }
 }
@@ -61,6 +61,7 @@ import org.mockito.Mockito;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -456,6 +457,48 @@ public class PoolManagerFunctionalTest extends DatabaseTestFixture {
         assertEquals(4, results.getPageData().size());
     }
 
+    @Test
+    public void testListForConsumerPagesThroughFilteredPools() {
+        PageRequest sorted = new PageRequest();
+        sorted.setSortBy("id");
+        sorted.setOrder(PageRequest.Order.ASCENDING);
+
+        List<Pool> all = poolManager.listAvailableEntitlementPools(
+            parentSystem, null, parentSystem.getOwner(), null, null, null, true,
+            new PoolFilterBuilder(), sorted, false, false, null).getPageData();
+        assertEquals(4, all.size());
+
+        List<Pool> paged = new ArrayList<Pool>();
+        for (int i = 1; i <= 3; i++) {
+            PageRequest pageRequest = new PageRequest();
+            pageRequest.setSortBy("id");
+            pageRequest.setOrder(PageRequest.Order.ASCENDING);
+            pageRequest.setPage(i);
+            pageRequest.setPerPage(3);
+
+            Page<List<Pool>> results = poolManager.listAvailableEntitlementPools(
+                parentSystem, null, parentSystem.getOwner(), null, null, null, true,
+                new PoolFilterBuilder(), pageRequest, false, false, null);
+
+            assertEquals(Integer.valueOf(4), results.getMaxRecords());
+            paged.addAll(results.getPageData());
+        }
+
+        List<String> expected = new ArrayList<String>();
+        for (Pool pool : all) {
+            expected.add(pool.getId());
+        }
+
+        Collections.sort(expected);
+
+        List<String> actual = new ArrayList<String>();
+        for (Pool pool : paged) {
+            actual.add(pool.getId());
+        }
+
+        assertEquals(expected, actual);
+    }
+
     @Test
     public void testListAllForActKeyExcludesErrors() {
         Product p = TestUtil.createProduct("test-product", "Test Product");
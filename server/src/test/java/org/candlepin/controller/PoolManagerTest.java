@@ -154,6 +154,7 @@ public class PoolManagerTest {
     @Mock private OwnerManager mockOwnerManager;
     @Mock private PinsetterKernel pinsetterKernel;
     @Mock private BindChainFactory mockBindChainFactory;
+    @Mock private PoolProductIndex mockPoolProductIndex;
     @Mock private BindContextFactory mockBindContextFactory;
     @Mock private PreEntitlementRulesCheckOpFactory mockPreEntitlementRulesCheckFactory;
 
@@ -191,7 +192,8 @@ public class PoolManagerTest {
             entitlementCurator, consumerCuratorMock, certCuratorMock, mockECGenerator,
             complianceRules, autobindRules, activationKeyRules, mockProductCurator, mockProductManager,
             mockContentManager, mockOwnerContentCurator, mockOwnerCurator, mockOwnerProductCurator,
-            mockOwnerManager, pinsetterKernel, i18n, mockBindChainFactory
+            mockOwnerManager, pinsetterKernel, i18n, mockBindChainFactory,
+            mockPoolProductIndex
         ));
 
         setupBindChain();
@@ -203,6 +205,17 @@ public class PoolManagerTest {
         dummyComplianceStatus = new ComplianceStatus(new Date());
         when(complianceRules.getStatus(any(Consumer.class), any(Date.class))).thenReturn(
             dummyComplianceStatus);
+        when(complianceRules.getStatus(any(Consumer.class), any(Date.class), anyBoolean())).thenReturn(
+            dummyComplianceStatus);
+
+        // Available pools are stubbed on the pool curator, so any pool is a candidate for autobind
+        when(mockPoolProductIndex.getPoolIds(any(Owner.class), anyCollectionOf(String.class),
+            anyCollectionOf(String.class))).thenAnswer(new Answer<Set<String>>() {
+                @Override
+                public Set<String> answer(InvocationOnMock invocation) throws Throwable {
+                    return new HashSet<String>(Arrays.asList("candidate"));
+                }
+            });
 
         when(consumerCuratorMock.lockAndLoad(any(Consumer.class))).thenAnswer(new Answer<Consumer>() {
             @Override
@@ -213,6 +226,21 @@ public class PoolManagerTest {
         });
     }
 
+    private void mockBatchPreEntitlement(final ValidationResult result) {
+        when(enforcerMock.preEntitlement(any(Consumer.class), anyCollectionOf(PoolQuantity.class),
+            any(CallerType.class))).thenAnswer(new Answer<Map<String, ValidationResult>>() {
+                @Override
+                public Map<String, ValidationResult> answer(InvocationOnMock invocation) throws Throwable {
+                    Map<String, ValidationResult> results = new HashMap<String, ValidationResult>();
+                    for (PoolQuantity pq : (Collection<PoolQuantity>) invocation.getArguments()[1]) {
+                        results.put(pq.getPool().getId(), result);
+                    }
+
+                    return results;
+                }
+            });
+    }
+
     private void setupBindChain() {
         final HandleEntitlementsOp entitlementsOp =
             new HandleEntitlementsOp(mockPoolCurator, entitlementCurator);
@@ -1073,8 +1101,7 @@ public class PoolManagerTest {
         CandlepinQuery mockQuery = mock(CandlepinQuery.class);
         when(mockPoolCurator.listAllByIds(any(List.class))).thenReturn(mockQuery);
         when(mockQuery.iterator()).thenReturn(Arrays.asList(pool1).listIterator());
-        when(enforcerMock.preEntitlement(any(Consumer.class), any(Pool.class), anyInt(),
-            any(CallerType.class))).thenReturn(result);
+        mockBatchPreEntitlement(result);
 
         when(result.isSuccessful()).thenReturn(true);
 
@@ -1352,8 +1379,7 @@ public class PoolManagerTest {
         when(mockPoolCurator.listAllByIds(any(List.class))).thenReturn(mockQuery);
         when(mockQuery.iterator()).thenReturn(Arrays.asList(pool1).listIterator());
 
-        when(enforcerMock.preEntitlement(any(Consumer.class), any(Pool.class), anyInt(),
-            any(CallerType.class))).thenReturn(result);
+        mockBatchPreEntitlement(result);
 
         when(result.isSuccessful()).thenReturn(true);
 
@@ -2078,6 +2104,130 @@ public class PoolManagerTest {
         };
     }
 
+    @SuppressWarnings("unchecked")
+    private List<String> mockAvailablePoolIds(int count) {
+        final Map<String, Pool> pools = new HashMap<String, Pool>();
+        List<String> poolIds = new ArrayList<String>();
+
+        for (int i = 0; i < count; i++) {
+            Pool pool = TestUtil.createPool(owner, product);
+            pool.setId(String.format("pool-%03d", i));
+            pools.put(pool.getId(), pool);
+            poolIds.add(pool.getId());
+        }
+
+        when(mockPoolCurator.listAvailableEntitlementPoolIds(any(Consumer.class), any(Owner.class),
+            anyCollection(), anyString(), any(Date.class), any(PoolFilterBuilder.class),
+            any(PageRequest.class), anyBoolean(), anyBoolean(), any(Date.class))).thenReturn(poolIds);
+
+        when(mockPoolCurator.listAllByIds(anyCollection())).thenAnswer(new Answer<CandlepinQuery<Pool>>() {
+            @Override
+            public CandlepinQuery<Pool> answer(InvocationOnMock invocation) throws Throwable {
+                // Hand the pools back in reverse, as the database may not keep the order
+                List<Pool> loaded = new LinkedList<Pool>();
+                for (String poolId : (Collection<String>) invocation.getArguments()[0]) {
+                    loaded.add(0, pools.get(poolId));
+                }
+
+                CandlepinQuery<Pool> query = mock(CandlepinQuery.class);
+                when(query.iterator()).thenReturn(loaded.iterator());
+                return query;
+            }
+        });
+
+        // Every other pool passes the rules
+        when(enforcerMock.filterPools(any(Consumer.class), anyList(), anyBoolean())).thenAnswer(
+            new Answer<List<Pool>>() {
+                @Override
+                public List<Pool> answer(InvocationOnMock invocation) throws Throwable {
+                    List<Pool> passed = new ArrayList<Pool>();
+                    for (Pool pool : (List<Pool>) invocation.getArguments()[1]) {
+                        if (Integer.parseInt(pool.getId().substring(5)) % 2 == 0) {
+                            passed.add(pool);
+                        }
+                    }
+
+                    return passed;
+                }
+            });
+
+        return poolIds;
+    }
+
+    @Test
+    public void testListAvailablePoolsForConsumerFiltersOnlyAsFarAsThePage() {
+        List<String> poolIds = mockAvailablePoolIds(250);
+        Consumer consumer = TestUtil.createConsumer(owner);
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setPage(2);
+        pageRequest.setPerPage(10);
+
+        Page<List<Pool>> page = manager.listAvailableEntitlementPools(consumer, null, owner, null, null,
+            null, false, new PoolFilterBuilder(), pageRequest, false, false, null);
+
+        List<Pool> pageData = page.getPageData();
+        assertEquals(10, pageData.size());
+        assertEquals(poolIds.get(20), pageData.get(0).getId());
+        assertEquals(poolIds.get(38), pageData.get(9).getId());
+
+        // One chunk of 100 pools fills the page; half of the other 150 are estimated to pass
+        verify(mockPoolCurator, times(1)).listAllByIds(anyCollection());
+        verify(mockPoolCurator, never()).listAvailableEntitlementPools(any(Consumer.class),
+            any(Owner.class), anyString(), anyString(), any(Date.class), any(PoolFilterBuilder.class),
+            any(PageRequest.class), anyBoolean(), anyBoolean(), anyBoolean(), any(Date.class));
+        assertEquals(Integer.valueOf(125), page.getMaxRecords());
+        assertEquals(pageRequest, page.getPageRequest());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testListAvailablePoolsForConsumerNeverEstimatesBelowAnotherPage() {
+        mockAvailablePoolIds(105);
+        Consumer consumer = TestUtil.createConsumer(owner);
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setPage(1);
+        pageRequest.setPerPage(10);
+
+        // Only the first 11 pools pass; extrapolating those would put the total at 12
+        when(enforcerMock.filterPools(any(Consumer.class), anyList(), anyBoolean())).thenAnswer(
+            new Answer<List<Pool>>() {
+                @Override
+                public List<Pool> answer(InvocationOnMock invocation) throws Throwable {
+                    List<Pool> passed = new ArrayList<Pool>();
+                    for (Pool pool : (List<Pool>) invocation.getArguments()[1]) {
+                        if (Integer.parseInt(pool.getId().substring(5)) < 11) {
+                            passed.add(pool);
+                        }
+                    }
+
+                    return passed;
+                }
+            });
+
+        Page<List<Pool>> page = manager.listAvailableEntitlementPools(consumer, null, owner, null, null,
+            null, false, new PoolFilterBuilder(), pageRequest, false, false, null);
+
+        assertEquals(10, page.getPageData().size());
+        assertEquals(Integer.valueOf(21), page.getMaxRecords());
+    }
+
+    @Test
+    public void testListAvailablePoolsForConsumerCountsExactlyOnLastPage() {
+        List<String> poolIds = mockAvailablePoolIds(250);
+        Consumer consumer = TestUtil.createConsumer(owner);
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setPage(13);
+        pageRequest.setPerPage(10);
+
+        Page<List<Pool>> page = manager.listAvailableEntitlementPools(consumer, null, owner, null, null,
+            null, false, new PoolFilterBuilder(), pageRequest, false, false, null);
+
+        assertEquals(5, page.getPageData().size());
+        assertEquals(poolIds.get(240), page.getPageData().get(0).getId());
+        verify(mockPoolCurator, times(3)).listAllByIds(anyCollection());
+        assertEquals(Integer.valueOf(125), page.getMaxRecords());
+    }
+
     @Test
     public void testIsManagedWithNullPool() {
         assertFalse(manager.isManaged(null));
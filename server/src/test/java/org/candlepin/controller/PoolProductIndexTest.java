@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.model.Owner;
+import org.candlepin.model.Pool;
+import org.candlepin.model.PoolCurator;
+import org.candlepin.model.Product;
+import org.candlepin.test.DatabaseTestFixture;
+import org.candlepin.test.TestUtil;
+import org.candlepin.util.Util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+
+
+/**
+ * PoolProductIndexTest
+ */
+public class PoolProductIndexTest extends DatabaseTestFixture {
+
+    private PoolCurator spiedPoolCurator;
+    private PoolProductIndex index;
+
+    private Owner owner;
+    private Product product;
+    private Product provided;
+    private Product stacked;
+
+    @Before
+    public void setUp() {
+        this.spiedPoolCurator = spy(this.poolCurator);
+        this.index = new PoolProductIndex(this.spiedPoolCurator);
+
+        this.owner = this.createOwner();
+        this.product = this.createProduct(this.owner);
+        this.provided = this.createProduct(this.owner);
+
+        this.stacked = TestUtil.createProduct("stacked", "stacked");
+        this.stacked.setAttribute(Product.Attributes.STACKING_ID, "stack1");
+        this.stacked = this.createProduct(this.stacked, this.owner);
+    }
+
+    private Pool createPool(Product product, Product... provided) {
+        return this.createPool(this.owner, product, Arrays.asList(provided), 10L,
+            TestUtil.createDate(2000, 1, 1), TestUtil.createDate(2100, 1, 1));
+    }
+
+    private Set<String> ids(Pool... pools) {
+        Set<String> ids = new HashSet<String>();
+        for (Pool pool : pools) {
+            ids.add(pool.getId());
+        }
+
+        return ids;
+    }
+
+    private Set<String> lookup(String... productIds) {
+        return this.index.getPoolIds(this.owner, Arrays.asList(productIds), null);
+    }
+
+    @Test
+    public void indexesPoolsByProductAndProvidedProducts() {
+        Pool pool1 = this.createPool(this.product, this.provided);
+        Pool pool2 = this.createPool(this.provided);
+        this.createPool(this.stacked);
+
+        assertEquals(ids(pool1), lookup(this.product.getId()));
+        assertEquals(ids(pool1, pool2), lookup(this.provided.getId()));
+        assertEquals(ids(pool1, pool2), lookup(this.product.getId(), this.provided.getId()));
+        assertEquals(ids(), lookup("unknown"));
+    }
+
+    @Test
+    public void indexesPoolsByStackingId() {
+        Pool pool1 = this.createPool(this.stacked);
+        Pool pool2 = this.createPool(this.product);
+
+        assertEquals(ids(pool1), this.index.getPoolIds(this.owner, Collections.<String>emptyList(),
+            Arrays.asList("stack1")));
+        assertEquals(ids(pool1, pool2), this.index.getPoolIds(this.owner,
+            Arrays.asList(this.product.getId()), Arrays.asList("stack1", "stack2")));
+    }
+
+    @Test
+    public void onlyIndexesPoolsOfTheOwner() {
+        Owner other = this.createOwner();
+        this.ownerProductCurator.mapProductToOwners(this.product, other);
+        this.createPool(other, this.product);
+
+        Pool pool = this.createPool(this.product);
+        assertEquals(ids(pool), lookup(this.product.getId()));
+    }
+
+    @Test
+    public void reusesIndexWhilePoolsAreUnchanged() {
+        this.createPool(this.product);
+
+        lookup(this.product.getId());
+        lookup(this.provided.getId());
+        lookup(this.product.getId());
+
+        verify(this.spiedPoolCurator, times(1)).getPoolIdsByProvidedProductId(eq(this.owner));
+        verify(this.spiedPoolCurator, times(3)).getPoolsVersion(eq(this.owner));
+    }
+
+    @Test
+    public void reusesIndexWhenPoolsAreConsumed() {
+        Pool pool = this.createPool(this.product);
+        lookup(this.product.getId());
+
+        pool.setConsumed(5L);
+        this.poolCurator.merge(pool);
+        this.poolCurator.flush();
+        lookup(this.product.getId());
+
+        verify(this.spiedPoolCurator, times(1)).getPoolIdsByProvidedProductId(eq(this.owner));
+    }
+
+    @Test
+    public void rebuildsIndexWhenPoolsChangeWithoutInvalidation() {
+        Pool pool1 = this.createPool(this.product);
+        assertEquals(ids(pool1), lookup(this.product.getId()));
+
+        Pool pool2 = this.createPool(this.product, this.provided);
+        assertEquals(ids(pool1, pool2), lookup(this.product.getId()));
+        assertEquals(ids(pool2), lookup(this.provided.getId()));
+
+        this.poolCurator.delete(pool1);
+        this.poolCurator.flush();
+        assertEquals(ids(pool2), lookup(this.product.getId()));
+    }
+
+    @Test
+    public void rebuildsIndexWhenInvalidated() {
+        this.createPool(this.product);
+
+        lookup(this.product.getId());
+        this.index.invalidate(this.owner);
+        lookup(this.product.getId());
+
+        verify(this.spiedPoolCurator, times(2)).getPoolIdsByProvidedProductId(eq(this.owner));
+    }
+
+    @Test
+    public void returnedIdsCanBeModified() {
+        Pool pool = this.createPool(this.product);
+
+        Set<String> ids = lookup(this.product.getId());
+        ids.add(Util.generateDbUUID());
+        ids.remove(pool.getId());
+
+        assertEquals(ids(pool), lookup(this.product.getId()));
+    }
+}
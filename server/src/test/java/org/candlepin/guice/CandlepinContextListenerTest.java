@@ -21,6 +21,7 @@ import static org.mockito.Mockito.*;
 
 import org.candlepin.TestingModules;
 import org.candlepin.audit.AMQPBusPublisher;
+import org.candlepin.audit.AMQPPublishQueue;
 import org.candlepin.audit.HornetqContextListener;
 import org.candlepin.common.config.Configuration;
 import org.candlepin.common.config.ConfigurationException;
@@ -43,6 +44,7 @@ import org.junit.ClassRule;
 import org.junit.Rule;
 import org.junit.Test;
 
+import java.lang.management.ManagementFactory;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -50,6 +52,8 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ScheduledExecutorService;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 
@@ -62,6 +66,7 @@ public class CandlepinContextListenerTest {
     private HornetqContextListener hqlistener;
     private PinsetterContextListener pinlistener;
     private AMQPBusPublisher buspublisher;
+    private AMQPPublishQueue publishQueue;
     private ScheduledExecutorService executorService;
     private ServletContextEvent evt;
     private ServletContext ctx;
@@ -83,6 +88,7 @@ public class CandlepinContextListenerTest {
         hqlistener = mock(HornetqContextListener.class);
         pinlistener = mock(PinsetterContextListener.class);
         buspublisher = mock(AMQPBusPublisher.class);
+        publishQueue = mock(AMQPPublishQueue.class);
         executorService = mock(ScheduledExecutorService.class);
         configRead = mock(VerifyConfigRead.class);
 
@@ -179,6 +185,20 @@ public class CandlepinContextListenerTest {
         verifyZeroInteractions(buspublisher);
     }
 
+    @Test
+    public void contextDestroyedUnregistersMBeans() throws Exception {
+        prepareForInitialization();
+        listener.contextInitialized(evt);
+
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("org.candlepin:type=KeyPairPool");
+        assertTrue(mBeanServer.isRegistered(name));
+
+        listener.contextDestroyed(evt);
+        assertFalse(mBeanServer.isRegistered(name));
+        assertFalse(mBeanServer.isRegistered(new ObjectName("org.candlepin:type=RulesScopePool")));
+    }
+
     @Test
     public void ensureAMQPClosedProperly() {
         when(config.getBoolean(
@@ -194,6 +214,7 @@ public class CandlepinContextListenerTest {
 
         // test & verify
         listener.contextDestroyed(evt);
+        verify(publishQueue).start();
         verify(buspublisher).close();
     }
 
@@ -237,6 +258,7 @@ public class CandlepinContextListenerTest {
             bind(PinsetterContextListener.class).toInstance(pinlistener);
             bind(HornetqContextListener.class).toInstance(hqlistener);
             bind(AMQPBusPublisher.class).toInstance(buspublisher);
+            bind(AMQPPublishQueue.class).toInstance(publishQueue);
             bind(ScheduledExecutorService.class).toInstance(executorService);
         }
     }
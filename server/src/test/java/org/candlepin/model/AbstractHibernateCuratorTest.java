@@ -34,6 +34,7 @@ import java.util.LinkedList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 /**
@@ -75,6 +76,37 @@ public class AbstractHibernateCuratorTest extends DatabaseTestFixture {
         this.injectMembers(this.testContentCurator);
     }
 
+    @Test
+    public void testAfterTransactionRunsOnceCommitted() {
+        final AtomicBoolean ran = new AtomicBoolean();
+
+        this.testContentCurator.afterTransaction(new Runnable() {
+            @Override
+            public void run() {
+                ran.set(true);
+            }
+        });
+
+        assertFalse(ran.get());
+        this.commitTransaction();
+        assertTrue(ran.get());
+    }
+
+    @Test
+    public void testAfterTransactionRunsRightAwayWithoutTransaction() {
+        final AtomicBoolean ran = new AtomicBoolean();
+        this.commitTransaction();
+
+        this.testContentCurator.afterTransaction(new Runnable() {
+            @Override
+            public void run() {
+                ran.set(true);
+            }
+        });
+
+        assertTrue(ran.get());
+    }
+
     @Test
     public void testBulkSQLUpdate() throws Exception {
         Owner owner = this.createOwner();
@@ -43,6 +43,7 @@ import java.lang.reflect.Field;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -525,6 +526,45 @@ public class ConsumerCuratorTest extends DatabaseTestFixture {
 
         assertEquals(consumer.getLastCheckin().getTime(), dt.getTime());
     }
+
+    @Test
+    public void updateCheckinTimes() {
+        Consumer consumer1 = consumerCurator.create(new Consumer("c1", "testUser", owner, ct));
+        Consumer consumer2 = consumerCurator.create(new Consumer("c2", "testUser", owner, ct));
+        Consumer consumer3 = consumerCurator.create(new Consumer("c3", "testUser", owner, ct));
+        Date dt1 = ResourceDateParser.parseDateString("2011-09-26T18:10:50.000+00:00");
+        Date dt2 = ResourceDateParser.parseDateString("2011-09-26T18:10:51.000+00:00");
+
+        Map<String, Date> checkIns = new HashMap<String, Date>();
+        checkIns.put(consumer1.getId(), dt1);
+        checkIns.put(consumer2.getId(), dt1);
+        checkIns.put(consumer3.getId(), dt2);
+
+        consumerCurator.updateLastCheckins(checkIns);
+
+        for (Consumer consumer : Arrays.asList(consumer1, consumer2, consumer3)) {
+            consumerCurator.refresh(consumer);
+            assertEquals(checkIns.get(consumer.getId()).getTime(), consumer.getLastCheckin().getTime());
+        }
+    }
+
+    @Test
+    public void updateCheckinTimesKeepsLaterUpdateTime() {
+        Consumer consumer = consumerCurator.create(new Consumer("c1", "testUser", owner, ct));
+        Date updated = consumer.getUpdated();
+        Date earlier = new Date(updated.getTime() - 1500);
+        Date later = new Date(updated.getTime() + 1234);
+
+        consumerCurator.updateLastCheckins(Collections.singletonMap(consumer.getId(), earlier));
+        consumerCurator.refresh(consumer);
+        assertEquals(earlier.getTime(), consumer.getLastCheckin().getTime());
+        assertEquals(updated.getTime(), consumer.getUpdated().getTime());
+
+        consumerCurator.updateLastCheckins(Collections.singletonMap(consumer.getId(), later));
+        consumerCurator.refresh(consumer);
+        assertEquals(later.getTime(), consumer.getLastCheckin().getTime());
+        assertEquals(later.getTime(), consumer.getUpdated().getTime());
+    }
     @Test
     public void updatelastCheckin() throws Exception {
         Date date = new Date();
@@ -930,6 +970,32 @@ public class ConsumerCuratorTest extends DatabaseTestFixture {
         assertTrue(results.isEmpty());
     }
 
+    @Test
+    public void testGetConsumerIdsWithStartedEntsPaged() {
+        Product prod = this.createProduct("1", "2", owner);
+        Pool p = createPool(owner, prod, 5L, Util.yesterday(), Util.tomorrow());
+        List<String> expected = new ArrayList<String>();
+
+        for (int i = 0; i < 3; i++) {
+            Consumer consumer = new Consumer("testConsumer" + i, "testUser", owner, ct);
+            consumerCurator.create(consumer);
+            Entitlement ent = this.createEntitlement(owner, consumer, p, null);
+            ent.setUpdatedOnStart(false);
+            entitlementCurator.merge(ent);
+            expected.add(consumer.getId());
+        }
+
+        Collections.sort(expected);
+
+        List<String> first = consumerCurator.getConsumerIdsWithStartedEnts(null, 2);
+        assertEquals(expected.subList(0, 2), first);
+
+        List<String> second = consumerCurator.getConsumerIdsWithStartedEnts(first.get(1), 2);
+        assertEquals(expected.subList(2, 3), second);
+
+        assertTrue(consumerCurator.getConsumerIdsWithStartedEnts(expected.get(2), 2).isEmpty());
+    }
+
     @Test
     public void testConsumerDeleteCascadesToContentTag() {
         Consumer c = new Consumer("testConsumer", "testUser", owner, ct);
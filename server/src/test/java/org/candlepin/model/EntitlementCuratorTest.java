@@ -738,6 +738,31 @@ public class EntitlementCuratorTest extends DatabaseTestFixture {
         assertEquals(ent.getId(), ents.get(0).getId());
     }
 
+    private Entitlement createDirtyEntitlement(Date lastCheckin, Pool pool) {
+        Consumer checkedIn = createConsumer(owner);
+        checkedIn.setLastCheckin(lastCheckin);
+        consumerCurator.merge(checkedIn);
+
+        Entitlement ent = createEntitlement(owner, checkedIn, pool,
+            createEntitlementCertificate("key", "certificate"));
+        ent.setDirty(true);
+        return entitlementCurator.create(ent);
+    }
+
+    @Test
+    public void testListDirtyIdsByLastCheckin() {
+        Pool pool = createPool(owner, testProduct, 10L, pastDate, futureDate);
+        Entitlement never = createDirtyEntitlement(null, pool);
+        Entitlement older = createDirtyEntitlement(pastDate, pool);
+        Entitlement recent = createDirtyEntitlement(new Date(), pool);
+
+        assertEquals(Arrays.asList(recent.getId(), older.getId(), never.getId()),
+            entitlementCurator.listDirtyIdsByLastCheckin(10));
+        assertEquals(Arrays.asList(recent.getId(), older.getId()),
+            entitlementCurator.listDirtyIdsByLastCheckin(2));
+        assertEquals(3L, entitlementCurator.countDirty());
+    }
+
     protected List<Product> createProducts(Owner owner, int count, String prefix) {
         List<Product> products = new LinkedList<Product>();
 
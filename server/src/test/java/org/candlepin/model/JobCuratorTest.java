@@ -27,6 +27,7 @@ import org.candlepin.pinsetter.core.PinsetterKernel;
 import org.candlepin.pinsetter.core.model.JobStatus;
 import org.candlepin.pinsetter.core.model.JobStatus.JobState;
 import org.candlepin.pinsetter.tasks.HealEntireOrgJob;
+import org.candlepin.pinsetter.tasks.HypervisorUpdateJob;
 import org.candlepin.pinsetter.tasks.RefreshPoolsJob;
 import org.candlepin.test.DatabaseTestFixture;
 import org.candlepin.test.TestUtil;
@@ -112,6 +113,51 @@ public class JobCuratorTest extends DatabaseTestFixture {
         assertEquals(0, this.curator.listAll().list().size());
     }
 
+    @Test
+    public void cancelWaitingJob() {
+        JobStatus waiting = newJobStatus().state(JobState.WAITING).create();
+        JobStatus running = newJobStatus().state(JobState.RUNNING).create();
+
+        assertTrue(this.curator.cancelWaitingJob(waiting.getId(), "superseded"));
+        assertFalse(this.curator.cancelWaitingJob(running.getId(), "superseded"));
+
+        this.curator.refresh(waiting);
+        this.curator.refresh(running);
+        assertEquals(JobState.CANCELED, waiting.getState());
+        assertEquals("superseded", waiting.getResult());
+        assertEquals(JobState.RUNNING, running.getState());
+    }
+
+    @Test
+    public void claimWaitingJob() {
+        JobStatus waiting = newJobStatus().state(JobState.WAITING).create();
+        JobStatus running = newJobStatus().state(JobState.RUNNING).create();
+
+        assertTrue(this.curator.claimWaitingJob(waiting.getId()));
+        assertFalse(this.curator.claimWaitingJob(waiting.getId()));
+        assertFalse(this.curator.claimWaitingJob(running.getId()));
+
+        this.curator.refresh(waiting);
+        this.curator.refresh(running);
+        assertEquals(JobState.CREATED, waiting.getState());
+        assertEquals(JobState.RUNNING, running.getState());
+    }
+
+    @Test
+    public void findWaitingJobsByClassAndTarget() {
+        JobStatus waiting = newJobStatus().state(JobState.WAITING).jobClass(HypervisorUpdateJob.class)
+            .owner("ducks").create();
+        newJobStatus().state(JobState.WAITING).jobClass(HypervisorUpdateJob.class).owner("geese").create();
+        newJobStatus().state(JobState.CREATED).jobClass(HypervisorUpdateJob.class).owner("ducks").create();
+
+        List<JobStatus> jobs = this.curator
+            .findWaitingJobs(HypervisorUpdateJob.class.getCanonicalName(), "ducks")
+            .list();
+
+        assertEquals(1, jobs.size());
+        assertEquals(waiting, jobs.get(0));
+    }
+
     @Test
     public void findByPrincipalName() {
         JobStatus job = newJobStatus().principalName("donald").owner("ducks").create();
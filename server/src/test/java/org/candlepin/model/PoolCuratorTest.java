@@ -200,6 +200,42 @@ public class PoolCuratorTest extends DatabaseTestFixture {
         assertEquals(pool2.getId(), results.get(0).getId());
     }
 
+    @Test
+    public void availablePoolIdsAreSortedByPageRequest() throws Exception {
+        Date activeDate = TestUtil.createDate(2000, 3, 2);
+        List<String> expected = new ArrayList<String>();
+
+        for (int i = 0; i < 3; i++) {
+            Pool pool = createPool(owner, product, 100L, activeDate, TestUtil.createDate(2005, 3, 2));
+            pool.setContractNumber("contract-" + (3 - i));
+            poolCurator.create(pool);
+            expected.add(0, pool.getId());
+        }
+
+        Pool expired = createPool(owner, product, 100L, TestUtil.createDate(1990, 3, 2),
+            TestUtil.createDate(1995, 3, 2));
+        poolCurator.create(expired);
+
+        PageRequest req = new PageRequest();
+        req.setPage(1);
+        req.setPerPage(1);
+        req.setOrder(PageRequest.Order.ASCENDING);
+        req.setSortBy("contractNumber");
+
+        // The page and page size are left to the caller
+        List<String> poolIds = poolCurator.listAvailableEntitlementPoolIds(
+            null, owner, (Collection<String>) null, null, activeDate, new PoolFilterBuilder(),
+            req, false, false, null);
+        assertEquals(expected, poolIds);
+
+        req.setOrder(PageRequest.Order.DESCENDING);
+        poolIds = poolCurator.listAvailableEntitlementPoolIds(
+            null, owner, (Collection<String>) null, null, activeDate, new PoolFilterBuilder(),
+            req, false, false, null);
+        Collections.reverse(expected);
+        assertEquals(expected, poolIds);
+    }
+
     @Test
     public void availablePoolsCanBeFilteredByPoolAttribute() throws Exception {
         Date activeDate = TestUtil.createDate(2000, 3, 2);
@@ -1866,6 +1902,34 @@ public class PoolCuratorTest extends DatabaseTestFixture {
         assertTrue("entitlement should be marked dirty", entitlement.isDirty());
     }
 
+    @Test
+    public void testGetEntitlementIdsForPoolsWithProducts() {
+        Owner owner2 = this.createOwner();
+        Owner owner3 = this.createOwner();
+        Product other = this.createProduct(owner);
+        Product target = this.createProduct(owner, owner2, owner3);
+        Date past = TestUtil.createDate(2000, 1, 1);
+        Date future = TestUtil.createDate(2100, 1, 1);
+
+        Pool normal = this.createPool(owner, target, 5L, past, future);
+        Pool provided = this.createPool(owner2, other, Arrays.asList(target), 5L, past, future);
+        Pool expired = this.createPool(owner, target, 5L, past, TestUtil.createDate(2001, 1, 1));
+        Pool unrelated = this.createPool(owner, other, 5L, past, future);
+        Pool otherOwner = this.createPool(owner3, target, 5L, past, future);
+
+        Entitlement normalEnt = this.createEntitlement(owner, this.createConsumer(owner), normal, null);
+        Entitlement providedEnt = this.createEntitlement(owner2, this.createConsumer(owner2), provided,
+            null);
+        this.createEntitlement(owner, this.createConsumer(owner), expired, null);
+        this.createEntitlement(owner, this.createConsumer(owner), unrelated, null);
+        this.createEntitlement(owner3, this.createConsumer(owner3), otherOwner, null);
+
+        Set<String> ids = poolCurator.getEntitlementIdsForPoolsWithProducts(Arrays.asList(owner, owner2),
+            Collections.singleton(target.getId()), new Date());
+
+        assertEquals(new HashSet<String>(Arrays.asList(normalEnt.getId(), providedEnt.getId())), ids);
+    }
+
     @Test
     public void testProvidesPoolProduct() {
         assertTrue(poolCurator.provides(pool, pool.getProductId()));
@@ -110,6 +110,7 @@ public class PinsetterJobListenerDatabaseTest {
             bind(Configuration.class).toInstance(config);
             bind(JobFactory.class).to(GuiceJobFactory.class);
             bind(JobListener.class).to(PinsetterJobListener.class);
+            bind(PinsetterKernel.class).toInstance(mock(PinsetterKernel.class));
             bind(PrincipalProvider.class).to(TestPrincipalProvider.class);
             bind(Principal.class).toProvider(TestPrincipalProvider.class);
         }
@@ -25,6 +25,7 @@ import org.candlepin.pinsetter.core.model.JobStatus;
 import org.candlepin.pinsetter.core.model.JobStatus.JobState;
 
 import com.google.inject.persist.UnitOfWork;
+import com.google.inject.util.Providers;
 
 import org.apache.commons.lang.RandomStringUtils;
 import org.junit.Before;
@@ -42,13 +43,15 @@ public class PinsetterJobListenerTest {
     private PinsetterJobListener listener;
     private JobCurator jcurator;
     private UnitOfWork unitOfWork;
+    private PinsetterKernel kernel;
     private JobExecutionContext ctx;
 
     @Before
     public void init() {
         jcurator = mock(JobCurator.class);
         unitOfWork = mock(UnitOfWork.class);
-        listener = new PinsetterJobListener(jcurator, unitOfWork);
+        kernel = mock(PinsetterKernel.class);
+        listener = new PinsetterJobListener(jcurator, unitOfWork, Providers.of(kernel));
         ctx = mock(JobExecutionContext.class);
     }
 
@@ -99,6 +102,36 @@ public class PinsetterJobListenerTest {
         verify(jcurator).merge(eq(status));
     }
 
+    @Test
+    public void executedTriggersWaitingJobs() {
+        JobDetail detail = mock(JobDetail.class);
+        JobStatus status = mock(JobStatus.class);
+
+        when(detail.getKey()).thenReturn(jobKey("foo"));
+        when(ctx.getJobDetail()).thenReturn(detail);
+        when(jcurator.find(eq("foo"))).thenReturn(status);
+        when(status.getTargetId()).thenReturn("owner");
+        when(status.getJobClass()).thenReturn("org.candlepin.pinsetter.tasks.RefreshPoolsJob");
+
+        listener.jobWasExecuted(ctx, null);
+
+        verify(kernel).jobCompleted(eq(status));
+    }
+
+    @Test
+    public void executedWithoutTargetTriggersNothing() {
+        JobDetail detail = mock(JobDetail.class);
+        JobStatus status = mock(JobStatus.class);
+
+        when(detail.getKey()).thenReturn(jobKey("foo"));
+        when(ctx.getJobDetail()).thenReturn(detail);
+        when(jcurator.find(eq("foo"))).thenReturn(status);
+
+        listener.jobWasExecuted(ctx, null);
+
+        verifyZeroInteractions(kernel);
+    }
+
     @Test
     public void executedNullStatus() {
         JobExecutionException e = mock(JobExecutionException.class);
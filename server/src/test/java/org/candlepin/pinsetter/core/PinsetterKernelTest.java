@@ -18,6 +18,7 @@ import static org.junit.Assert.*;
 import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 import static org.quartz.CronScheduleBuilder.*;
+import static org.quartz.JobBuilder.*;
 import static org.quartz.JobKey.*;
 import static org.quartz.TriggerBuilder.*;
 import static org.quartz.impl.matchers.GroupMatcher.*;
@@ -28,6 +29,7 @@ import org.candlepin.common.config.Configuration;
 import org.candlepin.common.config.MapConfiguration;
 import org.candlepin.config.ConfigProperties;
 import org.candlepin.model.CandlepinModeChange;
+import org.candlepin.model.CandlepinQuery;
 import org.candlepin.controller.ModeManager;
 import org.candlepin.model.JobCurator;
 import org.candlepin.pinsetter.core.model.JobStatus;
@@ -41,6 +43,7 @@ import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.quartz.CronTrigger;
+import org.quartz.Job;
 import org.quartz.JobDataMap;
 import org.quartz.JobDetail;
 import org.quartz.JobKey;
@@ -56,6 +59,8 @@ import org.quartz.impl.StdSchedulerFactory;
 import org.quartz.impl.matchers.GroupMatcher;
 import org.quartz.spi.JobFactory;
 
+import java.lang.reflect.Field;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -551,4 +556,99 @@ public class PinsetterKernelTest {
         verify(jcurator, atMost(2)).create(any(JobStatus.class));
         verify(sched, atMost(2)).scheduleJob(any(JobDetail.class), any(Trigger.class));
     }
+
+    private JobStatus waitingStatus(Class<? extends Job> jobClass, String name) {
+        JobDataMap map = new JobDataMap();
+        map.put(JobStatus.TARGET_TYPE, JobStatus.TargetType.OWNER);
+        map.put(JobStatus.TARGET_ID, "admin");
+
+        JobDetail detail = newJob(jobClass)
+            .withIdentity(name, PinsetterKernel.SINGLE_JOB_GROUP)
+            .usingJobData(map)
+            .build();
+
+        return new JobStatus(detail, true);
+    }
+
+    @Test
+    public void triggerWaitingJobs() throws Exception {
+        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator,
+            sfactory, triggerListener, modeManager);
+        JobStatus status = waitingStatus(JobCleaner.class, "waiting");
+        when(jcurator.claimWaitingJob(eq("waiting"))).thenReturn(true);
+
+        assertEquals(1, pk.triggerWaitingJobs(Arrays.asList(status)));
+
+        verify(sched).scheduleJob(any(Trigger.class));
+        verify(jcurator).merge(eq(status));
+        assertEquals(JobStatus.JobState.CREATED, status.getState());
+    }
+
+    @Test
+    public void triggerWaitingJobsSkipsJobsClaimedElsewhere() throws Exception {
+        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator,
+            sfactory, triggerListener, modeManager);
+        JobStatus status = waitingStatus(JobCleaner.class, "waiting");
+        when(jcurator.claimWaitingJob(eq("waiting"))).thenReturn(false);
+
+        assertEquals(0, pk.triggerWaitingJobs(Arrays.asList(status)));
+
+        verify(sched, never()).scheduleJob(any(Trigger.class));
+        verify(jcurator, never()).merge(any(JobStatus.class));
+    }
+
+    @Test
+    public void triggerWaitingJobsReleasesClaimWhenTriggerFails() throws Exception {
+        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator,
+            sfactory, triggerListener, modeManager);
+        JobStatus status = waitingStatus(JobCleaner.class, "waiting");
+        when(jcurator.claimWaitingJob(eq("waiting"))).thenReturn(true);
+        doThrow(new SchedulerException("down")).when(sched).scheduleJob(any(Trigger.class));
+
+        assertEquals(0, pk.triggerWaitingJobs(Arrays.asList(status)));
+
+        verify(jcurator).merge(eq(status));
+        assertEquals(JobStatus.JobState.WAITING, status.getState());
+    }
+
+    @Test
+    public void triggerWaitingJobsCancelsUnknownJobClasses() throws Exception {
+        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator,
+            sfactory, triggerListener, modeManager);
+
+        // Allowing setting the value of JobStatus.jobClass since it is private.
+        // Do not want to expose the setter.
+        Field jobClassField = JobStatus.class.getDeclaredField("jobClass");
+        jobClassField.setAccessible(true);
+
+        JobStatus status = new JobStatus();
+        jobClassField.set(status, "unknown.class");
+        status.setState(JobStatus.JobState.WAITING);
+
+        assertEquals(0, pk.triggerWaitingJobs(Arrays.asList(status)));
+
+        assertEquals(JobStatus.JobState.CANCELED, status.getState());
+        assertEquals("Job canceled because job class no longer exists.", status.getResult());
+        verify(jcurator).merge(eq(status));
+        verify(sched, never()).scheduleJob(any(Trigger.class));
+    }
+
+    @Test
+    public void jobCompletedTriggersJobsWaitingOnIt() throws Exception {
+        pk = new PinsetterKernel(config, jfactory, jlistener, jcurator,
+            sfactory, triggerListener, modeManager);
+        JobStatus completed = waitingStatus(JobCleaner.class, "completed");
+        completed.setState(JobStatus.JobState.FINISHED);
+        JobStatus waiting = waitingStatus(JobCleaner.class, "waiting");
+
+        CandlepinQuery<JobStatus> query = mock(CandlepinQuery.class);
+        when(query.list()).thenReturn(Arrays.asList(waiting));
+        when(jcurator.findWaitingJobs(eq(JobCleaner.class.getName()), eq("admin"))).thenReturn(query);
+        when(jcurator.claimWaitingJob(eq("waiting"))).thenReturn(true);
+
+        assertEquals(1, pk.jobCompleted(completed));
+
+        verify(sched).scheduleJob(any(Trigger.class));
+        assertEquals(JobStatus.JobState.CREATED, waiting.getState());
+    }
 }
@@ -16,6 +16,10 @@ package org.candlepin.pinsetter.tasks;
 
 import static org.junit.Assert.*;
 
+import org.candlepin.audit.EventSink;
+import org.candlepin.common.config.Configuration;
+import org.candlepin.common.config.MapConfiguration;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.ConsumerInstalledProduct;
 import org.candlepin.model.ConsumerType;
@@ -24,6 +28,7 @@ import org.candlepin.model.Entitlement;
 import org.candlepin.model.Owner;
 import org.candlepin.model.Pool;
 import org.candlepin.model.Product;
+import org.candlepin.policy.js.compliance.ComplianceRules;
 import org.candlepin.test.DatabaseTestFixture;
 import org.candlepin.util.Util;
 
@@ -31,6 +36,10 @@ import org.junit.Before;
 import org.junit.Test;
 import org.quartz.JobExecutionException;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import javax.inject.Inject;
 
 /**
@@ -73,8 +82,9 @@ public class ActiveEntitlementJobTest extends DatabaseTestFixture {
         assertFalse("valid".equals(consumer.getEntitlementStatus()));
 
         job.toExecute(null);
-        consumerCurator.flush();
-        consumerCurator.refresh(consumer);
+
+        // The job clears the session after each page of consumers
+        consumer = consumerCurator.find(consumer.getId());
         assertEquals("valid", consumer.getEntitlementStatus());
 
         // Should have changed
@@ -117,4 +127,34 @@ public class ActiveEntitlementJobTest extends DatabaseTestFixture {
         // Should not have changed
         assertFalse(entitlementCurator.find(ent.getId()).isUpdatedOnStart());
     }
+
+    @Test
+    public void testActiveEntitlementJobPagesThroughConsumers() throws JobExecutionException {
+        Pool p = createPool(owner, prod, 10L, Util.yesterday(), Util.tomorrow());
+        List<String> consumerIds = new ArrayList<String>();
+
+        for (int i = 0; i < 5; i++) {
+            Consumer c = new Consumer("consumer " + i, "username", owner, ct);
+            c.addInstalledProduct(new ConsumerInstalledProduct(prod.getId(), prod.getName()));
+            consumerCurator.create(c);
+
+            Entitlement ent = this.createEntitlement(owner, c, p,
+                createEntitlementCertificate("entkey" + i, "ecert" + i));
+            ent.setUpdatedOnStart(false);
+            entitlementCurator.merge(ent);
+            consumerIds.add(c.getId());
+        }
+
+        Configuration pagedConfig = new MapConfiguration(Collections.singletonMap(
+            ConfigProperties.ACTIVE_ENTITLEMENT_JOB_BATCH_SIZE, "2"));
+        ActiveEntitlementJob pagedJob = new ActiveEntitlementJob(pagedConfig, consumerCurator,
+            injector.getInstance(ComplianceRules.class), injector.getInstance(EventSink.class));
+
+        pagedJob.toExecute(null);
+
+        assertTrue(consumerCurator.getConsumerIdsWithStartedEnts().isEmpty());
+        for (String id : consumerIds) {
+            assertEquals("valid", consumerCurator.find(id).getEntitlementStatus());
+        }
+    }
 }
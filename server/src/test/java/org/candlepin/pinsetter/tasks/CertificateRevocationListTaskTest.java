@@ -15,6 +15,8 @@
 package org.candlepin.pinsetter.tasks;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -66,4 +68,17 @@ public class CertificateRevocationListTaskTest extends BaseJobTest {
         verify(crlFileUtil).syncCRLWithDB(any(File.class));
     }
 
+    @Test
+    public void executeWithDeltaCrl() throws Exception {
+        when(config.getString(ConfigProperties.CRL_FILE_PATH)).thenReturn("/tmp/test.crl");
+        when(config.getString(ConfigProperties.CRL_DELTA_FILE_PATH)).thenReturn("/tmp/test-delta.crl");
+
+        task.execute(null);
+
+        // The base CRL is rebuilt on every run, however recently it was written
+        verify(crlFileUtil).syncCRLWithDB(eq(new File("/tmp/test.crl")),
+            eq(new File("/tmp/test-delta.crl")), eq(0L));
+        verify(crlFileUtil, never()).syncCRLWithDB(any(File.class));
+    }
+
 }
@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) 2009 - 2012 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pinsetter.tasks;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.audit.EventSink;
+import org.candlepin.common.config.MapConfiguration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.controller.PoolManager;
+import org.candlepin.model.CandlepinQuery;
+import org.candlepin.model.Entitlement;
+import org.candlepin.model.EntitlementCurator;
+import org.candlepin.model.JobCurator;
+import org.candlepin.pinsetter.core.model.JobStatus;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobKey;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+
+/**
+ * DirtyEntitlementSweeperJobTest
+ */
+public class DirtyEntitlementSweeperJobTest {
+
+    private EntitlementCurator entitlementCurator;
+    private PoolManager poolManager;
+    private JobCurator jobCurator;
+    private EventSink eventSink;
+    private JobExecutionContext context;
+    private JobStatus status;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        this.entitlementCurator = mock(EntitlementCurator.class);
+        this.poolManager = mock(PoolManager.class);
+        this.jobCurator = mock(JobCurator.class);
+        this.eventSink = mock(EventSink.class);
+        this.status = mock(JobStatus.class);
+
+        this.context = mock(JobExecutionContext.class);
+        JobDetail detail = mock(JobDetail.class);
+        when(detail.getKey()).thenReturn(new JobKey("sweeper"));
+        when(this.context.getJobDetail()).thenReturn(detail);
+        when(this.jobCurator.find(eq("sweeper"))).thenReturn(this.status);
+
+        // Hand back an entitlement for each requested ID
+        when(this.entitlementCurator.listAllByIds(anyCollection())).thenAnswer(
+            new Answer<CandlepinQuery<Entitlement>>() {
+                @Override
+                public CandlepinQuery<Entitlement> answer(InvocationOnMock invocation) {
+                    List<Entitlement> entitlements = new ArrayList<Entitlement>();
+                    for (Object id : (Collection<Object>) invocation.getArguments()[0]) {
+                        Entitlement entitlement = new Entitlement();
+                        entitlement.setId((String) id);
+                        entitlements.add(entitlement);
+                    }
+
+                    CandlepinQuery<Entitlement> query = mock(CandlepinQuery.class);
+                    when(query.list()).thenReturn(entitlements);
+                    return query;
+                }
+            });
+    }
+
+    private DirtyEntitlementSweeperJob createJob(int batchSize, int maxPerRun) {
+        Map<String, String> settings = new HashMap<String, String>();
+        settings.put(ConfigProperties.DIRTY_ENTITLEMENT_SWEEPER_BATCH_SIZE, String.valueOf(batchSize));
+        settings.put(ConfigProperties.DIRTY_ENTITLEMENT_SWEEPER_MAX_PER_RUN, String.valueOf(maxPerRun));
+        settings.put(ConfigProperties.DIRTY_ENTITLEMENT_SWEEPER_PAUSE, "0");
+
+        return new DirtyEntitlementSweeperJob(new MapConfiguration(settings), this.entitlementCurator,
+            this.poolManager, this.jobCurator, this.eventSink);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void regeneratesDirtyEntitlementsInBatches() throws Exception {
+        when(this.entitlementCurator.listDirtyIdsByLastCheckin(eq(10)))
+            .thenReturn(Arrays.asList("ent1", "ent2", "ent3", "ent4", "ent5"));
+        when(this.entitlementCurator.countDirty()).thenReturn(0L);
+
+        createJob(2, 10).toExecute(this.context);
+
+        ArgumentCaptor<Iterable> captor = ArgumentCaptor.forClass(Iterable.class);
+        verify(this.poolManager, times(3)).regenerateDirtyEntitlements(captor.capture());
+
+        List<String> regenerated = new ArrayList<String>();
+        List<Integer> batchSizes = new ArrayList<Integer>();
+        for (Iterable<Entitlement> batch : captor.getAllValues()) {
+            int size = 0;
+            for (Entitlement entitlement : batch) {
+                regenerated.add(entitlement.getId());
+                size++;
+            }
+            batchSizes.add(size);
+        }
+
+        // In the order given by the curator, that is by last check-in
+        assertEquals(Arrays.asList("ent1", "ent2", "ent3", "ent4", "ent5"), regenerated);
+        assertEquals(Arrays.asList(2, 2, 1), batchSizes);
+
+        verify(this.eventSink, times(3)).sendEvents();
+        verify(this.entitlementCurator, times(3)).clear();
+    }
+
+    @Test
+    public void reportsProgressThroughJobStatus() throws Exception {
+        when(this.entitlementCurator.listDirtyIdsByLastCheckin(eq(3)))
+            .thenReturn(Arrays.asList("ent1", "ent2", "ent3"));
+        when(this.entitlementCurator.countDirty()).thenReturn(4L);
+
+        createJob(2, 3).toExecute(this.context);
+
+        verify(this.status).setResult(eq("Processed 2 of 3 dirty entitlements"));
+        verify(this.status).setResult(eq("Processed 3 of 3 dirty entitlements"));
+        verify(this.jobCurator, times(2)).merge(eq(this.status));
+        verify(this.context).setResult(eq("Processed 3 dirty entitlements; 0 failed; 4 still dirty"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void failingEntitlementDoesNotHaltTheSweep() throws Exception {
+        when(this.entitlementCurator.listDirtyIdsByLastCheckin(eq(10)))
+            .thenReturn(Arrays.asList("ent1", "ent2", "ent3", "ent4"));
+        when(this.entitlementCurator.countDirty()).thenReturn(1L);
+
+        final List<String> regenerated = new ArrayList<String>();
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                List<String> ids = new ArrayList<String>();
+                for (Entitlement entitlement : (Iterable<Entitlement>) invocation.getArguments()[0]) {
+                    ids.add(entitlement.getId());
+                }
+
+                if (ids.contains("ent2")) {
+                    throw new IllegalStateException("cannot regenerate ent2");
+                }
+
+                regenerated.addAll(ids);
+                return null;
+            }
+        }).when(this.poolManager).regenerateDirtyEntitlements(any(Iterable.class));
+
+        createJob(2, 10).toExecute(this.context);
+
+        assertEquals(Arrays.asList("ent1", "ent3", "ent4"), regenerated);
+        verify(this.eventSink, times(2)).rollback();
+        verify(this.eventSink, times(2)).sendEvents();
+        verify(this.context).setResult(eq("Processed 4 dirty entitlements; 1 failed; 1 still dirty"));
+    }
+
+    @Test
+    public void doesNothingWithoutDirtyEntitlements() throws Exception {
+        when(this.entitlementCurator.listDirtyIdsByLastCheckin(anyInt()))
+            .thenReturn(new ArrayList<String>());
+
+        createJob(2, 10).toExecute(this.context);
+
+        verify(this.poolManager, never()).regenerateDirtyEntitlements(any(Iterable.class));
+        verify(this.jobCurator, never()).merge(any(JobStatus.class));
+        verify(this.context).setResult(eq("No dirty entitlements to regenerate"));
+    }
+}
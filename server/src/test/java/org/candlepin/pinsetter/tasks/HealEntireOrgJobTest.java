@@ -0,0 +1,203 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pinsetter.tasks;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.audit.EventSink;
+import org.candlepin.auth.Principal;
+import org.candlepin.common.config.MapConfiguration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.controller.Entitler;
+import org.candlepin.guice.CandlepinRequestScope;
+import org.candlepin.model.CandlepinQuery;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerCurator;
+import org.candlepin.model.Entitlement;
+import org.candlepin.model.Owner;
+import org.candlepin.model.OwnerCurator;
+import org.candlepin.policy.js.RulesInputCache;
+import org.candlepin.resource.dto.AutobindData;
+
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.inject.Provider;
+import com.google.inject.persist.UnitOfWork;
+
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.quartz.JobDataMap;
+import org.quartz.JobExecutionContext;
+import org.xnap.commons.i18n.I18n;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+
+
+
+/**
+ * HealEntireOrgJobTest
+ */
+public class HealEntireOrgJobTest {
+
+    private Entitler entitler;
+    private ConsumerCurator consumerCurator;
+    private OwnerCurator ownerCurator;
+    private CandlepinRequestScope requestScope;
+    private EventSink eventSink;
+    private UnitOfWork unitOfWork;
+    private ExecutorService executor;
+    private JobExecutionContext context;
+    private Principal principal;
+    private RulesInputCache rulesInputCache;
+    private Set<Principal> healedAs;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        this.entitler = mock(Entitler.class);
+        this.consumerCurator = mock(ConsumerCurator.class);
+        this.ownerCurator = mock(OwnerCurator.class);
+        this.requestScope = mock(CandlepinRequestScope.class);
+        this.eventSink = mock(EventSink.class);
+        this.unitOfWork = mock(UnitOfWork.class);
+        this.executor = Executors.newFixedThreadPool(2);
+        this.principal = mock(Principal.class);
+        this.rulesInputCache = new RulesInputCache();
+        this.healedAs = Collections.newSetFromMap(new ConcurrentHashMap<Principal, Boolean>());
+
+        Owner owner = new Owner("test-owner");
+        when(this.ownerCurator.lookupByKey(eq("test-owner"))).thenReturn(owner);
+
+        CandlepinQuery<String> uuids = mock(CandlepinQuery.class);
+        when(uuids.list()).thenReturn(Arrays.asList("c1", "c2", "bad", "c4", "c5"));
+        when(this.ownerCurator.getConsumerUuids(eq(owner))).thenReturn(uuids);
+
+        when(this.consumerCurator.getConsumer(anyString())).thenAnswer(new Answer<Consumer>() {
+            @Override
+            public Consumer answer(InvocationOnMock invocation) {
+                Consumer consumer = new Consumer();
+                consumer.setUuid((String) invocation.getArguments()[0]);
+                return consumer;
+            }
+        });
+
+        when(this.entitler.bindByProducts(any(AutobindData.class), eq(true))).thenAnswer(
+            new Answer<List<Entitlement>>() {
+                @Override
+                public List<Entitlement> answer(InvocationOnMock invocation) {
+                    AutobindData data = (AutobindData) invocation.getArguments()[0];
+                    healedAs.add(ResteasyProviderFactory.getContextData(Principal.class));
+                    rulesInputCache.put(data.getConsumer(), 1, new TokenBuffer(null, false));
+
+                    if ("bad".equals(data.getConsumer().getUuid())) {
+                        throw new RuntimeException("no pools");
+                    }
+
+                    return Collections.<Entitlement>emptyList();
+                }
+            });
+
+        JobDataMap map = new JobDataMap();
+        map.put("ownerId", "test-owner");
+        this.context = mock(JobExecutionContext.class);
+        when(this.context.getMergedJobDataMap()).thenReturn(map);
+
+        ResteasyProviderFactory.pushContext(Principal.class, this.principal);
+    }
+
+    @After
+    public void tearDown() {
+        ResteasyProviderFactory.popContextData(Principal.class);
+        this.executor.shutdownNow();
+    }
+
+    private HealEntireOrgJob createJob(int threads) {
+        return this.createJob(threads, this.executor);
+    }
+
+    private HealEntireOrgJob createJob(int threads, ExecutorService executor) {
+        Provider<Entitler> provider = new Provider<Entitler>() {
+            @Override
+            public Entitler get() {
+                return entitler;
+            }
+        };
+
+        Provider<RulesInputCache> cacheProvider = new Provider<RulesInputCache>() {
+            @Override
+            public RulesInputCache get() {
+                return rulesInputCache;
+            }
+        };
+
+        HealEntireOrgJob job = new HealEntireOrgJob(provider, this.consumerCurator, this.ownerCurator,
+            mock(I18n.class), this.requestScope, this.eventSink, executor, cacheProvider);
+        job.config = new MapConfiguration(Collections.singletonMap(
+            ConfigProperties.HEAL_ENTIRE_ORG_THREADS, String.valueOf(threads)));
+        job.unitOfWork = this.unitOfWork;
+
+        return job;
+    }
+
+    @Test
+    public void healsConsumersAcrossWorkers() throws Exception {
+        createJob(2).toExecute(this.context);
+
+        verify(this.consumerCurator, times(5)).getConsumer(anyString());
+        verify(this.entitler, times(5)).bindByProducts(any(AutobindData.class), eq(true));
+
+        // Each worker heals in its own unit of work and request scope
+        verify(this.unitOfWork, times(2)).begin();
+        verify(this.unitOfWork, times(2)).end();
+        verify(this.requestScope, times(2)).enter();
+        verify(this.requestScope, times(2)).exit();
+
+        verify(this.eventSink, times(4)).sendEvents();
+        verify(this.eventSink, times(1)).rollback();
+        verify(this.context).setResult(eq("Healed 4 of 5 consumers; 1 failed"));
+
+        // Workers heal as the job's principal and leave nothing behind in the rules input cache
+        assertEquals(Collections.singleton(this.principal), this.healedAs);
+        assertEquals(0, this.rulesInputCache.size());
+    }
+
+    @Test
+    public void healsConsumersOnJobThreadWithoutThreads() throws Exception {
+        createJob(0, MoreExecutors.sameThreadExecutor()).toExecute(this.context);
+
+        // The job's own unit of work and request scope are used, and left open for the job
+        verify(this.unitOfWork, never()).begin();
+        verify(this.unitOfWork, never()).end();
+        verify(this.requestScope, never()).enter();
+        verify(this.requestScope, never()).exit();
+
+        assertSame(this.principal, ResteasyProviderFactory.getContextData(Principal.class));
+        assertEquals(Collections.singleton(this.principal), this.healedAs);
+        assertEquals(0, this.rulesInputCache.size());
+        verify(this.context).setResult(eq("Healed 4 of 5 consumers; 1 failed"));
+    }
+}
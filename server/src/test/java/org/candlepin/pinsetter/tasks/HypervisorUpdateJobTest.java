@@ -21,6 +21,7 @@ import static org.mockito.Mockito.*;
 import org.candlepin.audit.EventFactory;
 import org.candlepin.audit.EventSink;
 import org.candlepin.auth.Principal;
+import org.candlepin.model.CandlepinQuery;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.ConsumerCurator;
 import org.candlepin.model.HypervisorId;
@@ -41,12 +42,14 @@ import org.mockito.ArgumentCaptor;
 import org.quartz.JobDetail;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
+import org.quartz.JobKey;
 import org.quartz.ListenerManager;
 import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
 import org.xnap.commons.i18n.I18n;
 import org.xnap.commons.i18n.I18nFactory;
 
+import java.util.Arrays;
 import java.util.Locale;
 import java.util.Set;
 
@@ -263,6 +266,68 @@ public class HypervisorUpdateJobTest extends BaseJobTest{
         assertEquals(newlyScheduledJobStatus, resultStatus);
     }
 
+    /*
+     * A newer report from the same reporter replaces the reports still waiting for the owner.
+     */
+    @Test
+    public void supersedesWaitingJobsOfSameReporter() throws Exception {
+        JobDetail older = HypervisorUpdateJob.forOwner(owner, hypervisorJson, true, principal, "reporter");
+        JobDetail other = HypervisorUpdateJob.forOwner(owner, hypervisorJson, true, principal, "other");
+        JobDetail newer = HypervisorUpdateJob.forOwner(owner, hypervisorJson, true, principal, "reporter");
+        JobStatus olderStatus = new JobStatus(older, true);
+        JobStatus otherStatus = new JobStatus(other, true);
+        JobStatus newerStatus = new JobStatus(newer, true);
+
+        JobCurator jobCurator = mock(JobCurator.class);
+        Scheduler scheduler = mock(Scheduler.class);
+        CandlepinQuery<JobStatus> query = mock(CandlepinQuery.class);
+
+        when(jobCurator.getByClassAndTarget(anyString(), any(Class.class))).thenReturn(olderStatus);
+        when(jobCurator.create(any(JobStatus.class))).thenReturn(newerStatus);
+        when(jobCurator.findWaitingJobs(eq(HypervisorUpdateJob.class.getCanonicalName()), eq("joe")))
+            .thenReturn(query);
+        when(query.list()).thenReturn(Arrays.asList(olderStatus, otherStatus, newerStatus));
+        when(jobCurator.cancelWaitingJob(anyString(), anyString())).thenReturn(true);
+        when(scheduler.getListenerManager()).thenReturn(mock(ListenerManager.class));
+        when(scheduler.getJobDetail(eq(older.getKey()))).thenReturn(older);
+        when(scheduler.getJobDetail(eq(other.getKey()))).thenReturn(other);
+
+        long superseded = new HypervisorUpdateJobStatistics().getSupersededCount();
+        assertEquals(newerStatus, HypervisorUpdateJob.scheduleJob(jobCurator, scheduler, newer, null));
+
+        verify(jobCurator).cancelWaitingJob(eq(olderStatus.getId()), anyString());
+        verify(scheduler).deleteJob(eq(older.getKey()));
+        verify(jobCurator, never()).cancelWaitingJob(eq(otherStatus.getId()), anyString());
+        verify(jobCurator, never()).cancelWaitingJob(eq(newerStatus.getId()), anyString());
+        assertEquals(superseded + 1, new HypervisorUpdateJobStatistics().getSupersededCount());
+    }
+
+    /*
+     * A report which may not create hosts must not replace one which may.
+     */
+    @Test
+    public void doesNotSupersedeWaitingJobAllowedToCreate() throws Exception {
+        JobDetail older = HypervisorUpdateJob.forOwner(owner, hypervisorJson, true, principal, "reporter");
+        JobDetail newer = HypervisorUpdateJob.forOwner(owner, hypervisorJson, false, principal, "reporter");
+        JobStatus olderStatus = new JobStatus(older, true);
+
+        JobCurator jobCurator = mock(JobCurator.class);
+        Scheduler scheduler = mock(Scheduler.class);
+        CandlepinQuery<JobStatus> query = mock(CandlepinQuery.class);
+
+        when(jobCurator.getByClassAndTarget(anyString(), any(Class.class))).thenReturn(olderStatus);
+        when(jobCurator.create(any(JobStatus.class))).thenReturn(new JobStatus(newer, true));
+        when(jobCurator.findWaitingJobs(anyString(), anyString())).thenReturn(query);
+        when(query.list()).thenReturn(Arrays.asList(olderStatus));
+        when(scheduler.getListenerManager()).thenReturn(mock(ListenerManager.class));
+        when(scheduler.getJobDetail(eq(older.getKey()))).thenReturn(older);
+
+        HypervisorUpdateJob.scheduleJob(jobCurator, scheduler, newer, null);
+
+        verify(jobCurator, never()).cancelWaitingJob(anyString(), anyString());
+        verify(scheduler, never()).deleteJob(any(JobKey.class));
+    }
+
     /*
      * Make sure only one test is running at a time.
      */
@@ -27,6 +27,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.quartz.JobDataMap;
 import org.quartz.JobDetail;
 import org.quartz.JobExecutionException;
@@ -100,4 +102,66 @@ public class UniqueByEntityJobTest {
 
         verify(status, times(1)).setState(JobState.FAILED);
     }
+
+    private JobStatus scheduleBehindRunningJob() throws SchedulerException {
+        JobDataMap map = new JobDataMap();
+        map.put(JobStatus.TARGET_ID, "TaylorSwift");
+        JobDetail detail = newJob(TestUniqueByEntityJob.class)
+            .withIdentity(new JobKey("name", "group"))
+            .usingJobData(map)
+            .build();
+
+        JobStatus running = new JobStatus();
+        running.setState(JobState.RUNNING);
+        when(jobCurator.getByClassAndTarget(eq("TaylorSwift"), any(Class.class))).thenReturn(running);
+        when(jobCurator.create(any(JobStatus.class))).thenAnswer(new Answer<JobStatus>() {
+            @Override
+            public JobStatus answer(InvocationOnMock invocation) {
+                return (JobStatus) invocation.getArguments()[0];
+            }
+        });
+        when(scheduler.getListenerManager()).thenReturn(lm);
+
+        return TestUniqueByEntityJob.scheduleJob(jobCurator, scheduler, detail, null);
+    }
+
+    /*
+     * if the blocking job completed while the new job was being queued, the new job must not
+     * be left waiting for the UnpauseJob
+     */
+    @Test
+    public void triggersJobReleasedWhileQueued() throws Exception {
+        when(jobCurator.findNumRunningByClassAndTarget(eq("TaylorSwift"), any(Class.class)))
+            .thenReturn(0L);
+        when(jobCurator.claimWaitingJob(eq("name"))).thenReturn(true);
+
+        JobStatus result = scheduleBehindRunningJob();
+
+        assertEquals(JobState.CREATED, result.getState());
+        verify(scheduler).addJob(any(JobDetail.class), eq(false));
+        verify(scheduler).scheduleJob(any(Trigger.class));
+    }
+
+    @Test
+    public void leavesJobWaitingWhileBlocked() throws Exception {
+        when(jobCurator.findNumRunningByClassAndTarget(eq("TaylorSwift"), any(Class.class)))
+            .thenReturn(1L);
+
+        JobStatus result = scheduleBehindRunningJob();
+
+        assertEquals(JobState.WAITING, result.getState());
+        verify(jobCurator, never()).claimWaitingJob(anyString());
+        verify(scheduler, never()).scheduleJob(any(Trigger.class));
+    }
+
+    @Test
+    public void leavesJobClaimedElsewhereAlone() throws Exception {
+        when(jobCurator.findNumRunningByClassAndTarget(eq("TaylorSwift"), any(Class.class)))
+            .thenReturn(0L);
+        when(jobCurator.claimWaitingJob(eq("name"))).thenReturn(false);
+
+        scheduleBehindRunningJob();
+
+        verify(scheduler, never()).scheduleJob(any(Trigger.class));
+    }
 }
@@ -14,7 +14,6 @@
  */
 package org.candlepin.pinsetter.tasks;
 
-import static org.junit.Assert.*;
 import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 import static org.quartz.JobBuilder.*;
@@ -29,15 +28,11 @@ import org.candlepin.pinsetter.core.model.JobStatus;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
-import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.quartz.JobDetail;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
-import org.quartz.SchedulerException;
-import org.quartz.JobKey;
 
-import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -63,12 +58,7 @@ public class UnpauseJobTest extends BaseJobTest{
     public void noUnPausesTest() throws JobExecutionException {
         when(jobCurator.findWaitingJobs()).thenReturn(new EmptyCandlepinQuery<JobStatus>());
         unpauseJob.execute(ctx);
-        try {
-            verify(pk, never()).addTrigger(any(JobStatus.class));
-        }
-        catch (SchedulerException e) {
-            fail("Should not be executed, much less fail");
-        }
+        verify(pk, never()).triggerWaitingJobs(anyCollection());
     }
 
     @Test
@@ -86,43 +76,6 @@ public class UnpauseJobTest extends BaseJobTest{
         when(jobCurator.findWaitingJobs()).thenReturn(query);
 
         unpauseJob.execute(ctx);
-        try {
-            verify(pk, atLeastOnce()).addTrigger(js);
-        }
-        catch (SchedulerException e) {
-            fail("Should not throw an exception");
-        }
+        verify(pk).triggerWaitingJobs(eq(jl));
     }
-
-    @Test
-    public void ensureJobCancelledWhenJobClassNoLongerExists() throws Exception {
-        JobDetail detail = Mockito.mock(JobDetail.class);
-        JobKey key = new JobKey("fake-job");
-        when(detail.getKey()).thenReturn(key);
-
-        // Allowing setting the value of JobStatus.jobClass since it is private.
-        // Do not want to expose the setter.
-        Class<? extends JobStatus> statusClass = JobStatus.class;
-        Field jobClassField = statusClass.getDeclaredField("jobClass");
-        jobClassField.setAccessible(true);
-
-        JobStatus status = new JobStatus();
-        jobClassField.set(status, "unknown.class");
-        status.setState(JobStatus.JobState.CREATED);
-        assertEquals("unknown.class", status.getJobClass());
-
-        List<JobStatus> jl = new ArrayList<JobStatus>();
-        jl.add(status);
-
-        CandlepinQuery query = mock(CandlepinQuery.class);
-        when(query.list()).thenReturn(jl);
-        when(jobCurator.findWaitingJobs()).thenReturn(query);
-
-        unpauseJob.execute(ctx);
-
-        assertEquals(JobStatus.JobState.CANCELED, status.getState());
-        assertEquals("Job canceled because job class no longer exists.", status.getResult());
-        verify(jobCurator).merge(eq(status));
-    }
-
 }
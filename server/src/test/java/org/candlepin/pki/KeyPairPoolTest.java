@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pki;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.common.config.MapConfiguration;
+import org.candlepin.config.ConfigProperties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.security.KeyPair;
+import java.util.HashMap;
+import java.util.Map;
+
+
+
+/**
+ * KeyPairPoolTest
+ */
+public class KeyPairPoolTest {
+
+    private PKIUtility pki;
+    private KeyPairPool keyPairPool;
+
+    @Before
+    public void setUp() throws Exception {
+        this.pki = mock(PKIUtility.class);
+        when(this.pki.generateNewKeyPair()).thenAnswer(new Answer<KeyPair>() {
+            @Override
+            public KeyPair answer(InvocationOnMock invocation) {
+                return new KeyPair(null, null);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        if (this.keyPairPool != null) {
+            this.keyPairPool.shutdown();
+        }
+    }
+
+    private KeyPairPool createPool(int size, int threads) {
+        Map<String, String> settings = new HashMap<String, String>();
+        settings.put(ConfigProperties.KEYPAIR_POOL_SIZE, String.valueOf(size));
+        settings.put(ConfigProperties.KEYPAIR_POOL_THREADS, String.valueOf(threads));
+
+        this.keyPairPool = new KeyPairPool(this.pki, new MapConfiguration(settings));
+        return this.keyPairPool;
+    }
+
+    private void waitForDepth(int depth) throws InterruptedException {
+        for (int i = 0; i < 500 && this.keyPairPool.getDepth() < depth; i++) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(depth, this.keyPairPool.getDepth());
+    }
+
+    @Test
+    public void generatesInlineUntilStarted() throws Exception {
+        createPool(10, 1);
+
+        assertNotNull(this.keyPairPool.take());
+        verify(this.pki).generateNewKeyPair();
+        assertEquals(1, this.keyPairPool.getInlineFallbackCount());
+        assertEquals(0, this.keyPairPool.getServedCount());
+    }
+
+    @Test
+    public void fillsPoolInBackground() throws Exception {
+        createPool(3, 2).start();
+        waitForDepth(3);
+
+        KeyPair first = this.keyPairPool.take();
+        KeyPair second = this.keyPairPool.take();
+
+        assertNotNull(first);
+        assertNotSame(first, second);
+        assertEquals(2, this.keyPairPool.getServedCount());
+        assertEquals(0, this.keyPairPool.getInlineFallbackCount());
+
+        // Taken key pairs are replaced
+        waitForDepth(3);
+        assertTrue(this.keyPairPool.getGeneratedCount() >= 5);
+    }
+
+    @Test
+    public void generatesInlineWhenDisabled() throws Exception {
+        createPool(0, 2).start();
+
+        assertNotNull(this.keyPairPool.take());
+        assertEquals(0, this.keyPairPool.getDepth());
+        assertEquals(1, this.keyPairPool.getInlineFallbackCount());
+    }
+
+    @Test
+    public void shutdownDiscardsKeyPairs() throws Exception {
+        createPool(3, 1).start();
+        waitForDepth(3);
+
+        this.keyPairPool.shutdown();
+        assertEquals(0, this.keyPairPool.getDepth());
+
+        this.keyPairPool.take();
+        assertEquals(1, this.keyPairPool.getInlineFallbackCount());
+    }
+}
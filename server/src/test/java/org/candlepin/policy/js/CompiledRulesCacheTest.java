@@ -0,0 +1,189 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.candlepin.model.RulesCurator;
+import org.candlepin.pki.PKIReader;
+import org.candlepin.pki.PKIUtility;
+import org.candlepin.pki.impl.BouncyCastlePKIUtility;
+import org.candlepin.test.PKIReaderForTesting;
+import org.candlepin.util.Util;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+
+/**
+ * CompiledRulesCacheTest
+ */
+public class CompiledRulesCacheTest {
+    private static final String RULES = "function answer() { return 6 * 7; }";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Context context;
+    private PKIReader pkiReader;
+    private PKIUtility pkiUtility;
+
+    @Before
+    public void setUp() {
+        pkiReader = new PKIReaderForTesting();
+        pkiUtility = new BouncyCastlePKIUtility(pkiReader, null, null);
+
+        context = Context.enter();
+        context.setOptimizationLevel(9);
+    }
+
+    @After
+    public void tearDown() {
+        Context.exit();
+    }
+
+    private CompiledRulesCache createCache(String dir) {
+        return new CompiledRulesCache(dir, pkiUtility, pkiReader);
+    }
+
+    private Object callAnswer(Script script) {
+        Scriptable scope = context.initStandardObjects();
+        script.exec(context, scope);
+
+        Function func = (Function) ScriptableObject.getProperty(scope, "answer");
+        return func.call(context, scope, scope, Context.emptyArgs);
+    }
+
+    @Test
+    public void compileStoresBytecode() throws Exception {
+        CompiledRulesCache cache = createCache(folder.getRoot().getPath());
+
+        Script script = cache.compile(context, RULES);
+        assertEquals(42, ((Number) callAnswer(script)).intValue());
+        assertEquals(1, folder.getRoot().listFiles().length);
+    }
+
+    @Test
+    public void laterCompilesLoadStoredBytecode() throws Exception {
+        createCache(folder.getRoot().getPath()).compile(context, RULES);
+        File stored = folder.getRoot().listFiles()[0];
+        long modified = stored.lastModified();
+
+        Script script = createCache(folder.getRoot().getPath()).compile(context, RULES);
+        assertEquals(42, ((Number) callAnswer(script)).intValue());
+        assertEquals(1, folder.getRoot().listFiles().length);
+        assertEquals(modified, stored.lastModified());
+    }
+
+    @Test
+    public void differentRulesAreStoredSeparately() throws Exception {
+        CompiledRulesCache cache = createCache(folder.getRoot().getPath());
+        cache.compile(context, RULES);
+        cache.compile(context, "function answer() { return 7; }");
+
+        assertEquals(2, folder.getRoot().listFiles().length);
+    }
+
+    @Test
+    public void corruptEntryIsRecompiled() throws Exception {
+        CompiledRulesCache cache = createCache(folder.getRoot().getPath());
+        cache.compile(context, RULES);
+        FileUtils.writeStringToFile(folder.getRoot().listFiles()[0], "garbage");
+
+        Script script = cache.compile(context, RULES);
+        assertEquals(42, ((Number) callAnswer(script)).intValue());
+    }
+
+    @Test
+    public void tamperedEntryIsNotLoaded() throws Exception {
+        CompiledRulesCache cache = createCache(folder.getRoot().getPath());
+        cache.compile(context, RULES);
+        File stored = folder.getRoot().listFiles()[0];
+
+        byte[] bytes = FileUtils.readFileToByteArray(stored);
+        bytes[bytes.length - 1] ^= 1;
+        FileUtils.writeByteArrayToFile(stored, bytes);
+
+        Script script = cache.compile(context, RULES);
+        assertEquals(42, ((Number) callAnswer(script)).intValue());
+        assertFalse(Arrays.equals(bytes, FileUtils.readFileToByteArray(stored)));
+    }
+
+    @Test
+    public void entryStoredUnderAnotherKeyIsNotLoaded() throws Exception {
+        String other = "function answer() { return 7; }";
+        CompiledRulesCache cache = createCache(folder.getRoot().getPath());
+        cache.compile(context, RULES);
+        File stored = folder.getRoot().listFiles()[0];
+
+        // Copy the (validly signed) entry for RULES over the one for the other rules
+        cache.compile(context, other);
+        for (File file : folder.getRoot().listFiles()) {
+            if (!file.equals(stored)) {
+                FileUtils.copyFile(stored, file);
+            }
+        }
+
+        Script script = cache.compile(context, other);
+        assertEquals(7, ((Number) callAnswer(script)).intValue());
+    }
+
+    @Test
+    public void cacheDirectoryIsCreatedForOwnerOnly() throws Exception {
+        File dir = new File(folder.getRoot(), "rules");
+        createCache(dir.getPath()).compile(context, RULES);
+
+        assertTrue(dir.isDirectory());
+        assertEquals(1, dir.listFiles().length);
+        assertEquals("rwx------", PosixFilePermissions.toString(
+            Files.getPosixFilePermissions(dir.toPath())));
+    }
+
+    @Test
+    public void disabledCacheCompilesInMemory() throws Exception {
+        CompiledRulesCache cache = createCache("");
+        assertFalse(cache.isEnabled());
+
+        Script script = cache.compile(context, RULES);
+        assertEquals(42, ((Number) callAnswer(script)).intValue());
+    }
+
+    @Test
+    public void defaultRulesCanBeCached() throws Exception {
+        String rules = Util.readFile(getClass().getResourceAsStream(RulesCurator.DEFAULT_RULES_FILE));
+
+        createCache(folder.getRoot().getPath()).compile(context, rules);
+        Script script = createCache(folder.getRoot().getPath()).compile(context, rules);
+
+        Scriptable scope = context.initStandardObjects();
+        script.exec(context, scope);
+        assertTrue(ScriptableObject.getProperty(scope, "compliance_name_space") instanceof Function);
+    }
+}
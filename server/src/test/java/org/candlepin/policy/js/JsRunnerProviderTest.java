@@ -14,6 +14,8 @@
  */
 package org.candlepin.policy.js;
 
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -32,7 +34,9 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.inject.Provider;
+import com.google.inject.persist.UnitOfWork;
 /**
  * JsRunnerProviderTest
  */
@@ -99,4 +103,56 @@ public class JsRunnerProviderTest {
         verify(rulesCurator, times(3)).getUpdated();
     }
 
+    @Test
+    public void runnersUsePooledScopes() {
+        RulesScopePool pool = new RulesScopePool(2, MoreExecutors.sameThreadExecutor());
+        provider = new JsRunnerProvider(rulesCurator, cacheProvider, pool,
+            new CompiledRulesCache(null, null, null));
+        when(cacheProvider.get()).thenReturn(new JsRunnerRequestCache());
+
+        provider.get();
+        provider.get();
+        provider.get();
+        Assert.assertEquals(3, pool.getHits());
+        Assert.assertEquals(0, pool.getMisses());
+    }
+
+    @Test
+    public void recompileResetsScopePool() {
+        RulesScopePool pool = new RulesScopePool(2, MoreExecutors.sameThreadExecutor());
+        provider = new JsRunnerProvider(rulesCurator, cacheProvider, pool,
+            new CompiledRulesCache(null, null, null));
+
+        Date time2 = new Date(time1.getTime() + 1000);
+        when(rulesCurator.getUpdated()).thenReturn(time2);
+        when(cacheProvider.get()).thenReturn(new JsRunnerRequestCache());
+
+        provider.get();
+        Assert.assertEquals(1, pool.getHits());
+        Assert.assertNull(pool.take(time1));
+        Assert.assertNotNull(pool.take(time2));
+    }
+
+    @Test
+    public void backgroundRefreshRecompilesNewRules() {
+        RulesScopePool pool = new RulesScopePool(2, MoreExecutors.sameThreadExecutor());
+        provider = new JsRunnerProvider(rulesCurator, cacheProvider, pool,
+            new CompiledRulesCache(null, null, null));
+        UnitOfWork unitOfWork = mock(UnitOfWork.class);
+
+        Date time2 = new Date(time1.getTime() + 1000);
+        when(rulesCurator.getUpdated()).thenReturn(time2);
+
+        provider.startRefresh(unitOfWork, 1);
+
+        try {
+            // Once for the initial load, once for the refresh; no request is made
+            verify(rulesCurator, timeout(5000).times(2)).getRules();
+            verify(unitOfWork, timeout(5000).atLeastOnce()).end();
+            Assert.assertNotNull(pool.take(time2));
+        }
+        finally {
+            provider.shutdown();
+        }
+    }
 }
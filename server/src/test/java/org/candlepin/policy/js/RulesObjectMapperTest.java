@@ -14,7 +14,9 @@
  */
 package org.candlepin.policy.js;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import org.candlepin.jackson.ProductCachedSerializationModule;
 import org.candlepin.model.Consumer;
@@ -30,11 +32,15 @@ import org.candlepin.policy.js.compliance.ComplianceStatus;
 import org.candlepin.test.TestUtil;
 import org.candlepin.util.Util;
 
+import com.google.inject.OutOfScopeException;
+import com.google.inject.Provider;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -51,16 +57,38 @@ public class RulesObjectMapperTest {
     private RulesObjectMapper objMapper;
     private Map<String, Object> context;
     private Owner owner;
+    private ProductCurator productCurator;
 
     @Before
     public void begin() {
         context = new HashMap<String, Object>();
         owner = new Owner("test");
-        ProductCurator productCurator = Mockito.mock(ProductCurator.class);
+        productCurator = Mockito.mock(ProductCurator.class);
         objMapper = new RulesObjectMapper(
                 new ProductCachedSerializationModule(productCurator));
     }
 
+    private RulesObjectMapper createCachingMapper(final RulesInputCache cache) {
+        return new RulesObjectMapper(new ProductCachedSerializationModule(productCurator),
+            new Provider<RulesInputCache>() {
+                @Override
+                public RulesInputCache get() {
+                    if (cache == null) {
+                        throw new OutOfScopeException("no request");
+                    }
+
+                    return cache;
+                }
+            });
+    }
+
+    private Pool createPool() {
+        Pool pool = TestUtil.createPool(owner, TestUtil.createProduct());
+        pool.setId("pool1");
+        pool.setConsumed(2L);
+        return pool;
+    }
+
     @Test
     public void filterConsumerIdCert() {
         Consumer c = new Consumer();
@@ -156,4 +184,63 @@ public class RulesObjectMapperTest {
         // Just need this to parse without error:
         ComplianceStatus cs = objMapper.toObject(json, ComplianceStatus.class);
     }
+
+    @Test
+    public void reusesPoolJsonWithinRequest() {
+        RulesInputCache cache = new RulesInputCache();
+        RulesObjectMapper cachingMapper = createCachingMapper(cache);
+        Pool pool = createPool();
+
+        context.put("pools", Arrays.asList(pool));
+        String expected = objMapper.toJsonString(context);
+
+        assertEquals(expected, cachingMapper.toJsonString(context));
+        assertEquals(1, cache.size());
+        assertEquals(expected, cachingMapper.toJsonString(context));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void reusesPoolJsonAcrossEntities() {
+        RulesInputCache cache = new RulesInputCache();
+        RulesObjectMapper cachingMapper = createCachingMapper(cache);
+        Pool pool = createPool();
+
+        Entitlement entitlement = new Entitlement();
+        entitlement.setPool(pool);
+        entitlement.setQuantity(1);
+
+        context.put("pool", pool);
+        cachingMapper.toJsonString(context);
+
+        context.clear();
+        context.put("entitlements", Arrays.asList(entitlement));
+        assertEquals(objMapper.toJsonString(context), cachingMapper.toJsonString(context));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void reserializesChangedPools() {
+        RulesObjectMapper cachingMapper = createCachingMapper(new RulesInputCache());
+        Pool pool = createPool();
+
+        context.put("pool", pool);
+        cachingMapper.toJsonString(context);
+
+        pool.setConsumed(5L);
+        pool.setAttribute("changed", "yes");
+
+        String output = cachingMapper.toJsonString(context);
+        assertEquals(objMapper.toJsonString(context), output);
+        assertTrue(output.contains("\"consumed\":5"));
+        assertTrue(output.contains("changed"));
+    }
+
+    @Test
+    public void serializesOutsideOfRequestScope() {
+        Pool pool = createPool();
+        context.put("pool", pool);
+
+        assertEquals(objMapper.toJsonString(context), createCachingMapper(null).toJsonString(context));
+    }
 }
@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+
+import java.util.Date;
+
+/**
+ * RulesScopePoolTest
+ */
+public class RulesScopePoolTest {
+
+    private Scriptable rulesScope;
+    private RulesScopePool pool;
+
+    @Before
+    public void setUp() {
+        Context context = Context.enter();
+        try {
+            rulesScope = context.initStandardObjects(null, true);
+        }
+        finally {
+            Context.exit();
+        }
+
+        pool = new RulesScopePool(4, MoreExecutors.sameThreadExecutor());
+    }
+
+    @Test
+    public void poolIsWarmedOnReset() {
+        pool.reset(new Date(1000), rulesScope);
+        assertEquals(4, pool.getSize());
+    }
+
+    @Test
+    public void takeReturnsScopeBackedByRules() {
+        Date updated = new Date(1000);
+        pool.reset(updated, rulesScope);
+
+        Scriptable scope = pool.take(updated);
+        assertNotNull(scope);
+        assertSame(rulesScope, scope.getPrototype());
+        assertNull(scope.getParentScope());
+        assertEquals(1, pool.getHits());
+        assertEquals(0, pool.getMisses());
+    }
+
+    @Test
+    public void scopesAreNeverHandedOutTwice() {
+        Date updated = new Date(1000);
+        pool.reset(updated, rulesScope);
+
+        Scriptable first = pool.take(updated);
+        Scriptable second = pool.take(updated);
+        assertNotSame(first, second);
+    }
+
+    @Test
+    public void poolIsRefilledAfterDraining() {
+        Date updated = new Date(1000);
+        pool.reset(updated, rulesScope);
+
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(pool.take(updated));
+        }
+
+        assertEquals(10, pool.getHits());
+        assertEquals(4, pool.getSize());
+    }
+
+    @Test
+    public void takeForOtherRulesVersionIsMiss() {
+        pool.reset(new Date(1000), rulesScope);
+
+        assertNull(pool.take(new Date(2000)));
+        assertEquals(0, pool.getHits());
+        assertEquals(1, pool.getMisses());
+    }
+
+    @Test
+    public void resetDiscardsScopesForOldRules() {
+        Date oldUpdated = new Date(1000);
+        Date newUpdated = new Date(2000);
+        pool.reset(oldUpdated, rulesScope);
+
+        Scriptable newRulesScope;
+        Context context = Context.enter();
+        try {
+            newRulesScope = context.initStandardObjects(null, true);
+        }
+        finally {
+            Context.exit();
+        }
+
+        pool.reset(newUpdated, newRulesScope);
+
+        assertNull(pool.take(oldUpdated));
+        assertSame(newRulesScope, pool.take(newUpdated).getPrototype());
+    }
+
+    @Test
+    public void disabledPoolNeverReturnsScopes() {
+        pool = new RulesScopePool(0, MoreExecutors.sameThreadExecutor());
+        Date updated = new Date(1000);
+        pool.reset(updated, rulesScope);
+
+        assertNull(pool.take(updated));
+        assertEquals(0, pool.getSize());
+        assertEquals(0, pool.getMisses());
+    }
+}
@@ -0,0 +1,495 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.candlepin.cache.CandlepinCache;
+import org.candlepin.cache.JCacheManagerProvider;
+import org.candlepin.jackson.ProductCachedSerializationModule;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerInstalledProduct;
+import org.candlepin.model.ConsumerType;
+import org.candlepin.model.Entitlement;
+import org.candlepin.model.GuestId;
+import org.candlepin.model.Owner;
+import org.candlepin.model.Pool;
+import org.candlepin.model.Product;
+import org.candlepin.model.ProductCurator;
+import org.candlepin.model.Rules;
+import org.candlepin.model.RulesCurator;
+import org.candlepin.policy.js.JsRunnerProvider;
+import org.candlepin.policy.js.JsRunnerRequestCache;
+import org.candlepin.policy.js.RulesObjectMapper;
+import org.candlepin.test.TestUtil;
+import org.candlepin.util.Util;
+
+import com.google.inject.Provider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import javax.cache.Cache;
+
+
+
+/**
+ * ComplianceEngineDifferentialTest
+ *
+ * Runs the JavaScript and the native compliance engines against the same consumers and
+ * entitlements, and checks both report exactly the same status.
+ */
+public class ComplianceEngineDifferentialTest {
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final String[] PRODUCT_IDS = { "p1", "p2", "p3", "p4" };
+    private static final String[] ARCHES = { "x86_64", "i686", "ppc64", null };
+
+    @Mock private RulesCurator rulesCurator;
+    @Mock private Provider<JsRunnerRequestCache> cacheProvider;
+    @Mock private JsRunnerRequestCache cache;
+    @Mock private ProductCurator productCurator;
+
+    private ComplianceEngine jsEngine;
+    private ComplianceEngine javaEngine;
+    private Cache<String, ConsumerCoverage> coverageCache;
+    private Owner owner;
+    private Date onDate;
+    private int nextId;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        InputStream is = this.getClass().getResourceAsStream(RulesCurator.DEFAULT_RULES_FILE);
+        when(rulesCurator.getUpdated()).thenReturn(new Date());
+        when(rulesCurator.getRules()).thenReturn(new Rules(Util.readFile(is)));
+        when(cacheProvider.get()).thenReturn(cache);
+
+        JsRunnerProvider provider = new JsRunnerProvider(rulesCurator, cacheProvider);
+        jsEngine = new JsComplianceEngine(provider.get(),
+            new RulesObjectMapper(new ProductCachedSerializationModule(productCurator)));
+        CandlepinCache candlepinCache = new CandlepinCache(new JCacheManagerProvider().get());
+        coverageCache = candlepinCache.getComplianceCoverageCache();
+        coverageCache.removeAll();
+        javaEngine = new JavaComplianceEngine(productCurator, candlepinCache);
+
+        owner = new Owner("test");
+        onDate = TestUtil.createDate(2015, 6, 15);
+    }
+
+    private Consumer consumer(String ... installedProductIds) {
+        Consumer consumer = new Consumer();
+        consumer.setUuid("consumer-" + nextId++);
+        consumer.setType(new ConsumerType(ConsumerType.ConsumerTypeEnum.SYSTEM));
+        consumer.setFact("cpu.cpu_socket(s)", "8");
+
+        for (String productId : installedProductIds) {
+            consumer.addInstalledProduct(new ConsumerInstalledProduct(productId, productId));
+        }
+
+        return consumer;
+    }
+
+    private Entitlement entitlement(Consumer consumer, long startOffset, long endOffset, int quantity,
+        String ... providedProductIds) {
+
+        Set<Product> provided = new HashSet<Product>();
+        for (String productId : providedProductIds) {
+            provided.add(new Product(productId, productId));
+        }
+
+        Product product = new Product("sku-" + nextId++, "sku");
+        Pool pool = new Pool(owner, product, provided, 1000L, new Date(onDate.getTime() + startOffset),
+            new Date(onDate.getTime() + endOffset), "1000", "1000", "1000");
+        pool.setId("pool-" + nextId++);
+
+        Entitlement entitlement = new Entitlement(pool, consumer, quantity);
+        entitlement.setId("ent-" + nextId++);
+
+        return entitlement;
+    }
+
+    private Entitlement entitlement(Consumer consumer, String ... providedProductIds) {
+        return this.entitlement(consumer, -30 * DAY, 365 * DAY, 1, providedProductIds);
+    }
+
+    private void assertSameStatus(Consumer consumer, List<Entitlement> entitlements) {
+        ComplianceStatus expected = jsEngine.getStatus(consumer, entitlements, onDate, true, true);
+        ComplianceStatus actual = javaEngine.getStatus(consumer, entitlements, onDate, true, true);
+
+        assertEquals(expected.getStatus(), actual.getStatus());
+        assertEquals(expected.getDate(), actual.getDate());
+        assertEquals(expected.getCompliantUntil(), actual.getCompliantUntil());
+        assertEquals(expected.getNonCompliantProducts(), actual.getNonCompliantProducts());
+        assertEquals(entitlementIds(expected.getCompliantProducts()),
+            entitlementIds(actual.getCompliantProducts()));
+        assertEquals(entitlementIds(expected.getPartiallyCompliantProducts()),
+            entitlementIds(actual.getPartiallyCompliantProducts()));
+        assertEquals(entitlementIds(expected.getPartialStacks()),
+            entitlementIds(actual.getPartialStacks()));
+        assertEquals(reasons(expected), reasons(actual));
+        assertEquals(dateRanges(expected), dateRanges(actual));
+
+        Set<String> stackIds = new HashSet<String>();
+        for (Entitlement entitlement : entitlements) {
+            assertEquals(jsEngine.isEntitlementCompliant(consumer, entitlement, entitlements),
+                javaEngine.isEntitlementCompliant(consumer, entitlement, entitlements));
+
+            String stackId = entitlement.getPool().getProductAttributeValue(Product.Attributes.STACKING_ID);
+            if (stackId != null && stackIds.add(stackId)) {
+                assertEquals(jsEngine.isStackCompliant(consumer, stackId, entitlements),
+                    javaEngine.isStackCompliant(consumer, stackId, entitlements));
+            }
+        }
+    }
+
+    private static Map<String, Set<String>> entitlementIds(Map<String, Set<Entitlement>> map) {
+        Map<String, Set<String>> ids = new TreeMap<String, Set<String>>();
+        for (Map.Entry<String, Set<Entitlement>> entry : map.entrySet()) {
+            Set<String> entitlementIds = new TreeSet<String>();
+            for (Entitlement entitlement : entry.getValue()) {
+                entitlementIds.add(entitlement.getId());
+            }
+
+            ids.put(entry.getKey(), entitlementIds);
+        }
+
+        return ids;
+    }
+
+    private static List<String> reasons(ComplianceStatus status) {
+        List<String> reasons = new ArrayList<String>();
+        for (ComplianceReason reason : status.getReasons()) {
+            reasons.add(reason.getKey() + new TreeMap<String, String>(reason.getAttributes()));
+        }
+
+        Collections.sort(reasons);
+        return reasons;
+    }
+
+    private static Map<String, String> dateRanges(ComplianceStatus status) {
+        // The JavaScript engine leaves the ranges null when they are not calculated
+        Map<String, String> ranges = new TreeMap<String, String>();
+        if (status.getProductComplianceDateRanges() == null) {
+            return ranges;
+        }
+
+        for (Map.Entry<String, DateRange> entry : status.getProductComplianceDateRanges().entrySet()) {
+            DateRange range = entry.getValue();
+            ranges.put(entry.getKey(), range.getStartDate() + " - " + range.getEndDate());
+        }
+
+        return ranges;
+    }
+
+    @Test
+    public void noEntitlements() {
+        assertSameStatus(consumer("p1", "p2"), new LinkedList<Entitlement>());
+    }
+
+    @Test
+    public void partiallyEntitled() {
+        Consumer consumer = consumer("p1", "p2");
+        List<Entitlement> ents = new LinkedList<Entitlement>();
+        ents.add(entitlement(consumer, "p1"));
+
+        assertSameStatus(consumer, ents);
+    }
+
+    @Test
+    public void socketsNotCovered() {
+        Consumer consumer = consumer("p1");
+        List<Entitlement> ents = new LinkedList<Entitlement>();
+        ents.add(entitlement(consumer, "p1"));
+        ents.get(0).getPool().getProduct().setAttribute(Product.Attributes.SOCKETS, "4");
+
+        assertSameStatus(consumer, ents);
+    }
+
+    @Test
+    public void partialStack() {
+        Consumer consumer = consumer("p1", "p2");
+        List<Entitlement> ents = new LinkedList<Entitlement>();
+        for (int i = 0; i < 2; i++) {
+            Entitlement ent = entitlement(consumer, "p1", "p2");
+            ent.getPool().getProduct().setAttribute(Product.Attributes.STACKING_ID, "stack");
+            ent.getPool().getProduct().setAttribute(Product.Attributes.SOCKETS, "2");
+            ents.add(ent);
+        }
+
+        assertSameStatus(consumer, ents);
+    }
+
+    @Test
+    public void instanceBasedStack() {
+        Consumer consumer = consumer("p1");
+        List<Entitlement> ents = new LinkedList<Entitlement>();
+        Entitlement ent = entitlement(consumer, -DAY, 30 * DAY, 7, "p1");
+        ent.getPool().getProduct().setAttribute(Product.Attributes.STACKING_ID, "stack");
+        ent.getPool().getProduct().setAttribute(Product.Attributes.SOCKETS, "2");
+        ent.getPool().getProduct().setAttribute(Product.Attributes.INSTANCE_MULTIPLIER, "2");
+        ents.add(ent);
+
+        assertSameStatus(consumer, ents);
+    }
+
+    @Test
+    public void architectureMismatch() {
+        Consumer consumer = consumer("p1", "p2");
+        consumer.setFact("uname.machine", "x86_64");
+        List<Entitlement> ents = new LinkedList<Entitlement>();
+        ents.add(entitlement(consumer, "p1"));
+        ents.add(entitlement(consumer, "p2"));
+        ents.get(0).getPool().getProduct().setAttribute(Product.Attributes.ARCHITECTURE, "PPC64");
+        ents.get(1).getPool().getProduct().setAttribute(Product.Attributes.ARCHITECTURE, "x86");
+
+        assertSameStatus(consumer, ents);
+    }
+
+    @Test
+    public void hostRestrictedGuest() {
+        Consumer consumer = consumer("p1");
+        consumer.setFact("virt.is_guest", "true");
+        consumer.setFact("cpu.core(s)_per_socket", "4");
+        consumer.setFact("memory.memtotal", "16777216");
+        List<Entitlement> ents = new LinkedList<Entitlement>();
+        Entitlement ent = entitlement(consumer, "p1");
+        ent.getPool().setAttribute(Pool.Attributes.REQUIRES_HOST, "host-uuid");
+        ent.getPool().getProduct().setAttribute(Product.Attributes.VCPU, "1");
+        ent.getPool().getProduct().setAttribute(Product.Attributes.RAM, "2");
+        ents.add(ent);
+
+        assertSameStatus(consumer, ents);
+    }
+
+    @Test
+    public void guestLimit() {
+        Consumer consumer = consumer("p1");
+        Map<String, String> active = new HashMap<String, String>();
+        active.put("virtWhoType", "libvirt");
+        active.put("active", "1");
+        for (int i = 0; i < 5; i++) {
+            consumer.addGuestId(new GuestId("guest-" + i, consumer, active));
+        }
+
+        List<Entitlement> ents = new LinkedList<Entitlement>();
+        ents.add(entitlement(consumer, "p1"));
+        ents.get(0).getPool().getProduct().setAttribute(Product.Attributes.GUEST_LIMIT, "4");
+
+        assertSameStatus(consumer, ents);
+    }
+
+    @Test
+    public void unmappedGuestPool() {
+        Consumer consumer = consumer("p1");
+        List<Entitlement> ents = new LinkedList<Entitlement>();
+        ents.add(entitlement(consumer, "p1"));
+        ents.get(0).getPool().setAttribute(Pool.Attributes.UNMAPPED_GUESTS_ONLY, "true");
+
+        assertSameStatus(consumer, ents);
+    }
+
+    @Test
+    public void compliantUntilAndDateRanges() {
+        Consumer consumer = consumer("p1", "p2");
+        List<Entitlement> ents = new LinkedList<Entitlement>();
+        ents.add(entitlement(consumer, -10 * DAY, 5 * DAY, 1, "p1", "p2"));
+        ents.add(entitlement(consumer, 5 * DAY, 20 * DAY, 1, "p1"));
+        ents.add(entitlement(consumer, 4 * DAY, 40 * DAY, 1, "p2"));
+        ents.add(entitlement(consumer, -40 * DAY, -20 * DAY, 1, "p1"));
+
+        assertSameStatus(consumer, ents);
+    }
+
+    @Test
+    public void incrementalChanges() {
+        Consumer consumer = consumer("p1", "p2");
+        consumer.setFact("virt.is_guest", "false");
+        List<Entitlement> ents = new LinkedList<Entitlement>();
+        ents.add(entitlement(consumer, "p1"));
+        ents.add(entitlement(consumer, "p2"));
+        stack(ents.get(0), "stack1", "4");
+        stack(ents.get(1), "stack1", "2");
+
+        assertSameStatus(consumer, ents);
+        assertNotNull(coverageCache.get(consumer.getUuid()));
+
+        // Complete the stack, then take one of the original entitlements away again
+        Entitlement added = entitlement(consumer, "p1");
+        stack(added, "stack1", "2");
+        ents.add(added);
+        assertSameStatus(consumer, ents);
+
+        ents.remove(0);
+        assertSameStatus(consumer, ents);
+
+        added.setQuantity(4);
+        assertSameStatus(consumer, ents);
+
+        // Coverage calculated for other facts must not be reused
+        consumer.setFact("cpu.cpu_socket(s)", "2");
+        assertSameStatus(consumer, ents);
+    }
+
+    @Test
+    public void providedProductsReusedUntilEntitlementsChange() {
+        Consumer consumer = consumer("p1");
+        Entitlement entitlement = entitlement(consumer, "p1");
+        Pool pool = spy(entitlement.getPool());
+        entitlement.setPool(pool);
+        List<Entitlement> ents = Collections.singletonList(entitlement);
+
+        javaEngine.getStatus(consumer, ents, onDate, true, true);
+        javaEngine.getStatus(consumer, ents, onDate, true, true);
+        verify(pool, times(1)).populateAllTransientProvidedProducts(any(ProductCurator.class));
+
+        pool.setUpdated(new Date());
+        ComplianceStatus status = javaEngine.getStatus(consumer, ents, onDate, true, true);
+        verify(pool, times(2)).populateAllTransientProvidedProducts(any(ProductCurator.class));
+        assertEquals("valid", status.getStatus());
+    }
+
+    private static void stack(Entitlement entitlement, String stackId, String sockets) {
+        entitlement.getPool().getProduct().setAttribute(Product.Attributes.STACKING_ID, stackId);
+        entitlement.getPool().getProduct().setAttribute(Product.Attributes.SOCKETS, sockets);
+    }
+
+    /*
+     * Throws randomly generated (but reproducible) consumers and entitlements at both
+     * engines, to cover the combinations the scenarios above do not.
+     */
+    @Test
+    public void randomizedFixtures() {
+        Random random = new Random(20170101L);
+
+        for (int i = 0; i < 250; i++) {
+            Consumer consumer = randomConsumer(random);
+            List<Entitlement> ents = new LinkedList<Entitlement>();
+
+            int count = random.nextInt(6);
+            for (int j = 0; j < count; j++) {
+                ents.add(randomEntitlement(random, consumer));
+            }
+
+            assertSameStatus(consumer, ents);
+
+            // Check again after a change, with the coverage of the first check cached
+            if (!ents.isEmpty() && random.nextBoolean()) {
+                ents.remove(random.nextInt(ents.size()));
+            }
+            else {
+                ents.add(randomEntitlement(random, consumer));
+            }
+
+            assertSameStatus(consumer, ents);
+        }
+    }
+
+    private Consumer randomConsumer(Random random) {
+        List<String> installed = new ArrayList<String>();
+        for (String productId : PRODUCT_IDS) {
+            if (random.nextBoolean()) {
+                installed.add(productId);
+            }
+        }
+
+        Consumer consumer = consumer(installed.toArray(new String[installed.size()]));
+        consumer.setFact("cpu.cpu_socket(s)", String.valueOf(1 + random.nextInt(8)));
+        consumer.setFact("cpu.core(s)_per_socket", String.valueOf(1 + random.nextInt(4)));
+        consumer.setFact("memory.memtotal", String.valueOf(random.nextInt(32 * 1024 * 1024)));
+
+        String arch = ARCHES[random.nextInt(ARCHES.length)];
+        if (arch != null) {
+            consumer.setFact("uname.machine", arch);
+        }
+
+        if (random.nextInt(3) == 0) {
+            consumer.setFact("virt.is_guest", "true");
+        }
+
+        int guests = random.nextInt(5);
+        for (int i = 0; i < guests; i++) {
+            Map<String, String> attributes = new HashMap<String, String>();
+            attributes.put("virtWhoType", random.nextBoolean() ? "libvirt" : "esx");
+            attributes.put("active", random.nextBoolean() ? "1" : "0");
+            consumer.addGuestId(new GuestId("guest-" + i, consumer, attributes));
+        }
+
+        return consumer;
+    }
+
+    private Entitlement randomEntitlement(Random random, Consumer consumer) {
+        List<String> provided = new ArrayList<String>();
+        for (String productId : PRODUCT_IDS) {
+            if (random.nextInt(3) == 0) {
+                provided.add(productId);
+            }
+        }
+
+        long start = (random.nextInt(60) - 45) * DAY;
+        long end = start + (1 + random.nextInt(90)) * DAY;
+        Entitlement ent = entitlement(consumer, start, end, 1 + random.nextInt(4),
+            provided.toArray(new String[provided.size()]));
+
+        Product product = ent.getPool().getProduct();
+        maybeSet(random, product, Product.Attributes.SOCKETS, "0", "1", "2", "4");
+        maybeSet(random, product, Product.Attributes.CORES, "2", "8", "16");
+        maybeSet(random, product, Product.Attributes.RAM, "2", "8", "32");
+        maybeSet(random, product, Product.Attributes.VCPU, "1", "4");
+        maybeSet(random, product, Product.Attributes.ARCHITECTURE, "x86_64", "x86", "ALL", "ppc64,x86_64");
+        maybeSet(random, product, Product.Attributes.GUEST_LIMIT, "-1", "2", "4");
+        maybeSet(random, product, Product.Attributes.INSTANCE_MULTIPLIER, "2");
+        maybeSet(random, product, Product.Attributes.STACKING_ID, "stack-1", "stack-2");
+        maybeSet(random, product, "storage_band", "1", "256");
+
+        if (random.nextInt(5) == 0) {
+            ent.getPool().setAttribute(Pool.Attributes.REQUIRES_HOST, "host-uuid");
+        }
+
+        if (random.nextInt(10) == 0) {
+            ent.getPool().setAttribute(Pool.Attributes.UNMAPPED_GUESTS_ONLY, "true");
+        }
+
+        return ent;
+    }
+
+    private static void maybeSet(Random random, Product product, String attribute, String ... values) {
+        if (random.nextInt(3) == 0) {
+            product.setAttribute(attribute, values[random.nextInt(values.length)]);
+        }
+    }
+}
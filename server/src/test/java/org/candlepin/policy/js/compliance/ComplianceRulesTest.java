@@ -23,6 +23,7 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -50,6 +51,7 @@ import org.candlepin.policy.js.RulesObjectMapper;
 import org.candlepin.test.TestUtil;
 import org.candlepin.util.Util;
 
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.inject.Provider;
 
 import org.junit.Before;
@@ -65,12 +67,15 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
 
@@ -2088,6 +2093,62 @@ public class ComplianceRulesTest {
         assertEquals(ComplianceStatus.YELLOW, status.getStatus());
     }
 
+    @Test
+    public void getStatusesEvaluatesConsumersInParallel() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            compliance = new ComplianceRules(new JavaComplianceEngine(productCurator, null), entCurator,
+                new StatusReasonMessageGenerator(i18n), eventSink, consumerCurator, executor);
+
+            Map<Consumer, String> expected = new HashMap<Consumer, String>();
+            List<Consumer> consumers = new LinkedList<Consumer>();
+            for (int i = 0; i < 150; i++) {
+                Consumer c = i % 3 == 0 ? mockConsumerWithTwoProductsAndNoEntitlements() :
+                    mockFullyEntitledConsumer();
+
+                c.setUuid("consumer-" + i);
+                consumers.add(c);
+                expected.put(c, i % 3 == 0 ? "invalid" : "valid");
+            }
+
+            Iterator<Map.Entry<Consumer, ComplianceStatus>> statuses =
+                compliance.getStatuses(consumers, true);
+            int count = 0;
+            while (statuses.hasNext()) {
+                Map.Entry<Consumer, ComplianceStatus> entry = statuses.next();
+
+                assertEquals(expected.remove(entry.getKey()), entry.getValue().getStatus());
+                assertEquals(entry.getValue().getStatus(), entry.getKey().getEntitlementStatus());
+                assertNotNull(entry.getKey().getComplianceStatusHash());
+                count++;
+            }
+
+            assertEquals(150, count);
+            assertTrue(expected.isEmpty());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void getStatusesOnlyCalculatesCompliantUntilWhenAsked() {
+        ComplianceEngine engine = spy(new JavaComplianceEngine(productCurator, null));
+        compliance = new ComplianceRules(engine, entCurator, new StatusReasonMessageGenerator(i18n),
+            eventSink, consumerCurator, MoreExecutors.sameThreadExecutor());
+
+        Consumer c = mockFullyEntitledConsumer();
+        Iterator<Map.Entry<Consumer, ComplianceStatus>> statuses =
+            compliance.getStatuses(Arrays.asList(c), false);
+        assertNull(statuses.next().getValue().getCompliantUntil());
+        verify(engine).prepareStatus(eq(c), any(List.class), any(Date.class), eq(false), eq(false));
+
+        statuses = compliance.getStatuses(Arrays.asList(c), true);
+        assertNotNull(statuses.next().getValue().getCompliantUntil());
+        verify(engine).prepareStatus(eq(c), any(List.class), any(Date.class), eq(true), eq(false));
+    }
+
     private void mockEntCurator(Consumer c, List<Entitlement> ents) {
         CandlepinQuery cqmock = mock(CandlepinQuery.class);
 
@@ -33,6 +33,7 @@ import org.candlepin.common.config.Configuration;
 import org.candlepin.common.exceptions.BadRequestException;
 import org.candlepin.common.exceptions.NotFoundException;
 import org.candlepin.config.CandlepinCommonTestConfig;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.controller.CandlepinPoolManager;
 import org.candlepin.controller.Entitler;
 import org.candlepin.controller.ManifestManager;
@@ -105,6 +106,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -270,7 +272,7 @@ public class ConsumerResourceTest {
         CandlepinPoolManager poolManager = new CandlepinPoolManager(
             null, null, null, this.config, null, null, mockedEntitlementCurator,
             mockedConsumerCurator, null, null, null, null, mockedActivationKeyRules, null, null,
-            null, null, null, null, null, null, null, null
+            null, null, null, null, null, null, null, null, null
         );
 
         ConsumerResource consumerResource = new ConsumerResource(
@@ -677,9 +679,11 @@ public class ConsumerResourceTest {
         uuids.add("2");
         when(mockedConsumerCurator.findByUuids(eq(uuids))).thenReturn(cqmock);
 
-        ComplianceStatus status = new ComplianceStatus();
-        when(mockedComplianceRules.getStatus(any(Consumer.class), any(Date.class)))
-            .thenReturn(status);
+        Map<Consumer, ComplianceStatus> statuses = new LinkedHashMap<Consumer, ComplianceStatus>();
+        statuses.put(c, new ComplianceStatus());
+        statuses.put(c2, new ComplianceStatus());
+        when(mockedComplianceRules.getStatuses(eq(consumers), eq(true)))
+            .thenReturn(statuses.entrySet().iterator());
 
         ConsumerResource cr = new ConsumerResource(mockedConsumerCurator, null, null, null, null, null, null,
             null, i18n, null, null, null, null, null, null, null, null, null, null, mockedComplianceRules,
@@ -687,11 +691,24 @@ public class ConsumerResourceTest {
             this.factValidator, null, consumerEnricher, migrationProvider);
 
         Map<String, ComplianceStatus> results = cr.getComplianceStatusList(uuids);
+
         assertEquals(2, results.size());
         assertTrue(results.containsKey("1"));
         assertTrue(results.containsKey("2"));
     }
 
+    @Test(expected = BadRequestException.class)
+    public void testGetComplianceStatusListOverLimit() {
+        this.config.setProperty(ConfigProperties.COMPLIANCE_BULK_MAX_CONSUMERS, "1");
+
+        ConsumerResource cr = new ConsumerResource(mockedConsumerCurator, null, null, null, null, null, null,
+            null, i18n, null, null, null, null, null, null, null, null, null, null, mockedComplianceRules,
+            null, null, null, this.config, null, null, null, consumerBindUtil, null, null,
+            this.factValidator, null, consumerEnricher, migrationProvider);
+
+        cr.getComplianceStatusList(Arrays.asList("1", "2"));
+    }
+
     @Test
     public void testConsumerExistsYes() {
         when(mockedConsumerCurator.doesConsumerExist(any(String.class))).thenReturn(true);
@@ -19,6 +19,7 @@ import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 
 import org.candlepin.common.config.Configuration;
+import org.candlepin.common.exceptions.NotFoundException;
 import org.candlepin.config.ConfigProperties;
 import org.candlepin.model.CandlepinQuery;
 import org.candlepin.model.CertificateSerial;
@@ -87,6 +88,40 @@ public class CrlResourceTest {
         verify(crlFileUtil).syncCRLWithDB(any(File.class));
     }
 
+    @Test
+    public void testGetCurrentCrlWithDeltaCrl() throws Exception {
+        File deltaFile = new File(this.testFile.getAbsolutePath() + "-delta");
+        when(config.getString(ConfigProperties.CRL_DELTA_FILE_PATH))
+            .thenReturn(deltaFile.getAbsolutePath());
+
+        Object response = this.resource.getCurrentCrl(null);
+
+        assertTrue(response != null);
+        verify(crlFileUtil).syncCRLWithDB(any(File.class), eq(deltaFile), eq(0L));
+        verify(crlFileUtil, never()).syncCRLWithDB(any(File.class));
+    }
+
+    @Test
+    public void testGetDeltaCrl() throws Exception {
+        File deltaFile = File.createTempFile("test-", "crl-delta");
+        deltaFile.deleteOnExit();
+
+        when(config.getString(ConfigProperties.CRL_DELTA_FILE_PATH))
+            .thenReturn(deltaFile.getAbsolutePath());
+        when(config.getLong(ConfigProperties.CRL_BASE_REBUILD_INTERVAL)).thenReturn(24L);
+
+        Object response = this.resource.getDeltaCrl(null);
+
+        assertTrue(response != null);
+        verify(crlFileUtil).syncCRLWithDB(eq(this.testFile), eq(deltaFile), eq(86400000L));
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void testGetDeltaCrlWhenDisabled() throws Exception {
+        when(config.getString(ConfigProperties.CRL_DELTA_FILE_PATH)).thenReturn("");
+        this.resource.getDeltaCrl(null);
+    }
+
     @Test
     @SuppressWarnings("unchecked")
     public void testUnrevokeWithArguments() throws Exception {
@@ -121,6 +121,17 @@ public class JobResourceTest {
         verify(jobCurator, atLeastOnce()).cancel("cancel_id");
     }
 
+    @Test
+    public void cancelJobRemovesItFromScheduler() throws PinsetterException {
+        JobStatus createdJobStatus = new JobStatus();
+        createdJobStatus.setState(JobState.CREATED);
+
+        when(jobCurator.find("cancel_id")).thenReturn(createdJobStatus);
+        when(jobCurator.cancel("cancel_id")).thenReturn(createdJobStatus);
+        jobResource.cancel("cancel_id");
+        verify(pinsetterKernel).cancelJob(eq("cancel_id"), eq(createdJobStatus.getGroup()));
+    }
+
     @Test
     public void getStatusesByPrincipal() {
         List<JobStatus> statuses = new ArrayList<JobStatus>();
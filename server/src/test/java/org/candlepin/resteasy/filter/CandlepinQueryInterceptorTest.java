@@ -19,8 +19,13 @@ import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 import static org.junit.Assert.*;
 
+import org.candlepin.common.exceptions.BadRequestException;
+import org.candlepin.common.jackson.DynamicFilterData;
+import org.candlepin.common.paging.Page;
+import org.candlepin.common.paging.PageCursor;
 import org.candlepin.common.paging.PageRequest;
 import org.candlepin.model.Owner;
+import org.candlepin.jackson.ProductCachedSerializationModule;
 import org.candlepin.resteasy.JsonProvider;
 import org.candlepin.test.DatabaseTestFixture;
 import org.candlepin.test.SessionWrapper;
@@ -43,12 +48,17 @@ import org.jboss.resteasy.spi.ResteasyProviderFactory;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xnap.commons.i18n.I18n;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 import javax.persistence.EntityManager;
@@ -67,6 +77,8 @@ public class CandlepinQueryInterceptorTest extends DatabaseTestFixture {
     protected ObjectMapper mockObjectMapper;
     protected OutputStream mockOutputStream;
     protected Provider<EntityManager> emProvider;
+    protected Provider<I18n> i18nProvider;
+    protected ObjectMapper realMapper;
 
     @Override
     public void init() throws Exception {
@@ -77,6 +89,8 @@ public class CandlepinQueryInterceptorTest extends DatabaseTestFixture {
         this.mockJsonGenerator = mock(JsonGenerator.class);
         this.mockObjectMapper = mock(ObjectMapper.class);
         this.mockOutputStream = mock(OutputStream.class);
+        this.i18nProvider = mock(Provider.class);
+        when(this.i18nProvider.get()).thenReturn(this.i18n);
 
         try {
             when(this.mockJsonProvider.locateMapper(any(Class.class), any(MediaType.class)))
@@ -114,13 +128,16 @@ public class CandlepinQueryInterceptorTest extends DatabaseTestFixture {
 
         // Make sure we don't leave any page request on the context to muck with other tests
         ResteasyProviderFactory.popContextData(PageRequest.class);
+        ResteasyProviderFactory.popContextData(Page.class);
+        ResteasyProviderFactory.popContextData(DynamicFilterData.class);
     }
 
     @Test
     public void testWriteCandlepinQueryContents() throws IOException {
         List<Owner> owners = this.ownerCurator.listAll().list();
 
-        CandlepinQueryInterceptor cqi = new CandlepinQueryInterceptor(this.mockJsonProvider, this.emProvider);
+        CandlepinQueryInterceptor cqi = new CandlepinQueryInterceptor(this.mockJsonProvider, this.emProvider,
+            this.i18nProvider);
 
         ServerResponse response = new ServerResponse();
         response.setEntity(this.ownerCurator.listAll());
@@ -169,7 +186,8 @@ public class CandlepinQueryInterceptorTest extends DatabaseTestFixture {
         pageRequest.setSortBy(sortBy);
         pageRequest.setOrder(order);
 
-        CandlepinQueryInterceptor cqi = new CandlepinQueryInterceptor(this.mockJsonProvider, this.emProvider);
+        CandlepinQueryInterceptor cqi = new CandlepinQueryInterceptor(this.mockJsonProvider, this.emProvider,
+            this.i18nProvider);
 
         ServerResponse response = new ServerResponse();
         response.setEntity(this.ownerCurator.listAll());
@@ -195,6 +213,248 @@ public class CandlepinQueryInterceptorTest extends DatabaseTestFixture {
         verify(this.mockJsonGenerator, times(1)).writeEndArray();
     }
 
+    @Test
+    @Parameters({ "ASCENDING", "DESCENDING" })
+    public void testWriteCursorPaginatedCandlepinQueryContents(PageRequest.Order order) throws IOException {
+        List<Owner> owners = this.ownerCurator.listAll()
+            .addOrder(order == PageRequest.Order.ASCENDING ? Order.asc("key") : Order.desc("key"))
+            .list();
+
+        CandlepinQueryInterceptor cqi = new CandlepinQueryInterceptor(this.mockJsonProvider, this.emProvider,
+            this.i18nProvider);
+
+        List<Owner> written = new ArrayList<Owner>();
+        String cursor = "";
+
+        // Walk through the owners two at a time, following the next cursor of each page
+        for (int i = 0; i < owners.size(); i += 2) {
+            PageRequest pageRequest = new PageRequest();
+            pageRequest.setPerPage(2);
+            pageRequest.setSortBy("key");
+            pageRequest.setOrder(order);
+            pageRequest.setCursor(cursor);
+
+            ServerResponse response = new ServerResponse();
+            response.setEntity(this.ownerCurator.listAll());
+
+            ResteasyProviderFactory.pushContext(PageRequest.class, pageRequest);
+            cqi.postProcess(response);
+
+            Page page = ResteasyProviderFactory.getContextData(Page.class);
+            assertNotNull(page);
+            assertNull(page.getMaxRecords());
+
+            OutputStream stream = mock(OutputStream.class);
+            JsonGenerator generator = mock(JsonGenerator.class);
+            when(this.mockJsonFactory.createGenerator(eq(stream))).thenReturn(generator);
+
+            ((StreamingOutput) response.getEntity()).write(stream);
+
+            for (int j = i; j < owners.size(); ++j) {
+                Owner owner = owners.get(j);
+
+                if (j < i + 2) {
+                    verify(this.mockObjectMapper, times(1)).writeValue(eq(generator), eq(owner));
+                    written.add(owner);
+                }
+                else {
+                    verify(this.mockObjectMapper, never()).writeValue(eq(generator), eq(owner));
+                }
+            }
+
+            cursor = page.getNextCursor();
+
+            if (i + 2 < owners.size()) {
+                assertNotNull(cursor);
+
+                PageCursor decoded = PageCursor.decode(cursor);
+                assertEquals("key", decoded.getSortBy());
+                assertEquals(order, decoded.getOrder());
+                assertEquals(owners.get(i + 1).getKey(), decoded.getValue());
+                assertEquals(owners.get(i + 1).getId(), decoded.getId());
+            }
+            else {
+                assertNull(cursor);
+            }
+        }
+
+        assertEquals(owners, written);
+    }
+
+    @Test
+    @Parameters({ "ASCENDING", "DESCENDING" })
+    public void testCursorPagingKeepsNullSortValues(PageRequest.Order order) throws IOException {
+        // Only two of the five owners have a content prefix
+        List<Owner> owners = this.ownerCurator.listAll().list();
+        owners.get(0).setContentPrefix("/prefix/b");
+        owners.get(2).setContentPrefix("/prefix/a");
+        for (Owner owner : owners) {
+            this.ownerCurator.merge(owner);
+        }
+        this.ownerCurator.flush();
+
+        // Nulls sort after every other value, with the ID breaking ties
+        final boolean ascending = order == PageRequest.Order.ASCENDING;
+        List<Owner> expected = new ArrayList<Owner>(owners);
+        Collections.sort(expected, new Comparator<Owner>() {
+            @Override
+            public int compare(Owner o1, Owner o2) {
+                String p1 = o1.getContentPrefix();
+                String p2 = o2.getContentPrefix();
+                int result = p1 == null ? (p2 == null ? 0 : 1) : (p2 == null ? -1 : p1.compareTo(p2));
+                result = result != 0 ? result : o1.getId().compareTo(o2.getId());
+                return ascending ? result : -result;
+            }
+        });
+
+        CandlepinQueryInterceptor cqi = new CandlepinQueryInterceptor(this.mockJsonProvider, this.emProvider,
+            this.i18nProvider);
+
+        List<Object> written = new ArrayList<Object>();
+        String cursor = "";
+
+        while (cursor != null) {
+            PageRequest pageRequest = new PageRequest();
+            pageRequest.setPerPage(2);
+            pageRequest.setSortBy("contentPrefix");
+            pageRequest.setOrder(order);
+            pageRequest.setCursor(cursor);
+
+            ServerResponse response = new ServerResponse();
+            response.setEntity(this.ownerCurator.listAll());
+
+            ResteasyProviderFactory.pushContext(PageRequest.class, pageRequest);
+            cqi.postProcess(response);
+
+            OutputStream stream = mock(OutputStream.class);
+            JsonGenerator generator = mock(JsonGenerator.class);
+            when(this.mockJsonFactory.createGenerator(eq(stream))).thenReturn(generator);
+
+            ((StreamingOutput) response.getEntity()).write(stream);
+
+            ArgumentCaptor<Object> page = ArgumentCaptor.forClass(Object.class);
+            verify(this.mockObjectMapper, atLeast(0)).writeValue(eq(generator), page.capture());
+            written.addAll(page.getAllValues());
+
+            cursor = ResteasyProviderFactory.getContextData(Page.class).getNextCursor();
+            assertTrue("The listing did not end", written.size() <= owners.size());
+        }
+
+        assertEquals(expected, written);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testCursorOnUnsupportedSortFieldIsRejected() {
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setPerPage(2);
+        pageRequest.setSortBy("parentOwner");
+        pageRequest.setCursor("");
+
+        CandlepinQueryInterceptor cqi = new CandlepinQueryInterceptor(this.mockJsonProvider, this.emProvider,
+            this.i18nProvider);
+
+        ServerResponse response = new ServerResponse();
+        response.setEntity(this.ownerCurator.listAll());
+
+        ResteasyProviderFactory.pushContext(PageRequest.class, pageRequest);
+        cqi.postProcess(response);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testCursorForDifferentSortFieldIsRejected() {
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setPerPage(2);
+        pageRequest.setSortBy("key");
+        pageRequest.setCursor(new PageCursor("displayName", PageRequest.Order.DESCENDING, "Test Owner 1",
+            "some-id").encode());
+
+        CandlepinQueryInterceptor cqi = new CandlepinQueryInterceptor(this.mockJsonProvider, this.emProvider,
+            this.i18nProvider);
+
+        ServerResponse response = new ServerResponse();
+        response.setEntity(this.ownerCurator.listAll());
+
+        ResteasyProviderFactory.pushContext(PageRequest.class, pageRequest);
+        cqi.postProcess(response);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void testMalformedCursorIsRejected() {
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setPerPage(2);
+        pageRequest.setCursor("not a cursor");
+
+        CandlepinQueryInterceptor cqi = new CandlepinQueryInterceptor(this.mockJsonProvider, this.emProvider,
+            this.i18nProvider);
+
+        ServerResponse response = new ServerResponse();
+        response.setEntity(this.ownerCurator.listAll());
+
+        ResteasyProviderFactory.pushContext(PageRequest.class, pageRequest);
+        cqi.postProcess(response);
+    }
+
+    private List<Owner> writeFilteredOwners(DynamicFilterData filterData) throws IOException {
+        // Let the mock mapper introspect entities the way the real one does
+        this.realMapper = new JsonProvider(false, new ProductCachedSerializationModule(this.productCurator))
+            .locateMapper(Object.class, MediaType.APPLICATION_JSON_TYPE);
+
+        when(this.mockObjectMapper.getSerializationConfig())
+            .thenReturn(this.realMapper.getSerializationConfig());
+        when(this.mockObjectMapper.constructType(any(java.lang.reflect.Type.class)))
+            .thenReturn(this.realMapper.constructType(Owner.class));
+
+        CandlepinQueryInterceptor cqi = new CandlepinQueryInterceptor(this.mockJsonProvider, this.emProvider,
+            this.i18nProvider);
+
+        ServerResponse response = new ServerResponse();
+        response.setEntity(this.ownerCurator.listAll());
+
+        ResteasyProviderFactory.pushContext(DynamicFilterData.class, filterData);
+        cqi.postProcess(response);
+
+        ((StreamingOutput) response.getEntity()).write(this.mockOutputStream);
+
+        ArgumentCaptor<Owner> captor = ArgumentCaptor.forClass(Owner.class);
+        verify(this.mockObjectMapper, times(5)).writeValue(eq(this.mockJsonGenerator), captor.capture());
+
+        return captor.getAllValues();
+    }
+
+    @Test
+    public void testIncludeFilterFetchesOnlyIncludedColumns() throws IOException {
+        DynamicFilterData filterData = new DynamicFilterData(true);
+        filterData.includeAttribute("key");
+        filterData.includeAttribute("id");
+
+        List<Owner> owners = this.writeFilteredOwners(filterData);
+
+        for (Owner owner : owners) {
+            Owner expected = this.ownerCurator.lookupByKey(owner.getKey());
+
+            assertNotNull(expected);
+            assertEquals(expected.getId(), owner.getId());
+            assertNull(owner.getDisplayName());
+
+            // The partially fetched owner must still serialize the same as the entire one
+            assertEquals(this.realMapper.writeValueAsString(expected),
+                this.realMapper.writeValueAsString(owner));
+        }
+    }
+
+    @Test
+    public void testFilterOnAssociationFetchesEntireEntities() throws IOException {
+        DynamicFilterData filterData = new DynamicFilterData(true);
+        filterData.includeAttribute("key");
+        filterData.includeAttribute("parentOwner");
+
+        List<Owner> owners = this.writeFilteredOwners(filterData);
+
+        for (Owner owner : owners) {
+            assertNotNull(owner.getDisplayName());
+        }
+    }
+
     @Test
     public void testNonCandlepinQueryObjectsAreIgnored() {
         // This test can't possibly be all-inclusive, so we'll just test most our common cases
@@ -202,7 +462,8 @@ public class CandlepinQueryInterceptorTest extends DatabaseTestFixture {
         // List of entities
         List<Owner> owners = this.ownerCurator.listAll().list();
 
-        CandlepinQueryInterceptor cqi = new CandlepinQueryInterceptor(this.mockJsonProvider, this.emProvider);
+        CandlepinQueryInterceptor cqi = new CandlepinQueryInterceptor(this.mockJsonProvider, this.emProvider,
+            this.i18nProvider);
 
         ServerResponse response = new ServerResponse();
         response.setEntity(owners);
@@ -19,6 +19,7 @@ import static org.mockito.Mockito.*;
 import org.candlepin.auth.ConsumerPrincipal;
 import org.candlepin.auth.Principal;
 import org.candlepin.auth.UpdateConsumerCheckIn;
+import org.candlepin.controller.ConsumerCheckInBuffer;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.ConsumerCurator;
 import org.candlepin.test.DatabaseTestFixture;
@@ -53,6 +54,7 @@ public class ConsumerCheckInFilterTest extends DatabaseTestFixture {
     @Mock private ContainerRequestContext mockRequestContext;
     @Mock private CandlepinSecurityContext mockSecurityContext;
     @Mock private ResourceInfo mockInfo;
+    @Mock private ConsumerCheckInBuffer mockCheckInBuffer;
 
     private ConsumerCheckInFilter interceptor;
     private MockHttpRequest mockReq;
@@ -76,7 +78,7 @@ public class ConsumerCheckInFilterTest extends DatabaseTestFixture {
         ResteasyProviderFactory.pushContext(ResourceInfo.class, mockInfo);
         ResteasyProviderFactory.pushContext(Principal.class, principal);
 
-        interceptor = new ConsumerCheckInFilter(consumerCurator);
+        interceptor = new ConsumerCheckInFilter(mockCheckInBuffer);
     }
 
     private void mockResourceMethod(Method method) {
@@ -95,8 +97,7 @@ public class ConsumerCheckInFilterTest extends DatabaseTestFixture {
         interceptor.filter(getContext());
 
         ConsumerPrincipal p = (ConsumerPrincipal) ResteasyProviderFactory.getContextData(Principal.class);
-        doNothing().when(consumerCurator).updateLastCheckin(p.getConsumer());
-        verify(consumerCurator).updateLastCheckin(p.getConsumer());
+        verify(mockCheckInBuffer).checkIn(p.getConsumer());
     }
 
     @Test
@@ -107,7 +108,7 @@ public class ConsumerCheckInFilterTest extends DatabaseTestFixture {
         interceptor.filter(getContext());
 
         ConsumerPrincipal p = (ConsumerPrincipal) ResteasyProviderFactory.getContextData(Principal.class);
-        verify(consumerCurator, never()).updateLastCheckin(p.getConsumer());
+        verify(mockCheckInBuffer, never()).checkIn(p.getConsumer());
     }
 
     /**
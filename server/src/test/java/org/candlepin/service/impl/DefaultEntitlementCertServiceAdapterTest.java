@@ -43,6 +43,7 @@ import org.candlepin.model.EnvironmentContent;
 import org.candlepin.model.KeyPairCurator;
 import org.candlepin.model.Owner;
 import org.candlepin.model.Pool;
+import org.candlepin.model.PoolQuantity;
 import org.candlepin.model.Product;
 import org.candlepin.model.ProductContent;
 import org.candlepin.model.ProductCurator;
@@ -55,6 +56,7 @@ import org.candlepin.pki.X509ExtensionWrapper;
 import org.candlepin.pki.impl.BouncyCastlePKIUtility;
 import org.candlepin.test.TestUtil;
 import org.candlepin.util.CertificateSizeException;
+import org.candlepin.util.ContentPayloadCache;
 import org.candlepin.util.Util;
 import org.candlepin.util.X509ExtensionUtil;
 import org.candlepin.util.X509V3ExtensionUtil;
@@ -62,6 +64,7 @@ import org.candlepin.util.X509V3ExtensionUtil.HuffNode;
 import org.candlepin.util.X509V3ExtensionUtil.NodePair;
 import org.candlepin.util.X509V3ExtensionUtil.PathNode;
 
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 
@@ -80,6 +83,7 @@ import org.mockito.runners.MockitoJUnitRunner;
 import org.mockito.stubbing.Answer;
 import org.xnap.commons.i18n.I18nFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -103,6 +107,8 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.zip.InflaterOutputStream;
 
 import javax.inject.Inject;
@@ -211,13 +217,13 @@ public class DefaultEntitlementCertServiceAdapterTest {
         );
         injector.injectMembers(this);
 
-        v3extensionUtil = new X509V3ExtensionUtil(config, entCurator);
+        v3extensionUtil = new X509V3ExtensionUtil(config, entCurator, new ContentPayloadCache(config));
         certServiceAdapter = new DefaultEntitlementCertServiceAdapter(
             mockedPKI, extensionUtil, v3extensionUtil,
             mock(EntitlementCertificateCurator.class),
             keyPairCurator, serialCurator, entCurator,
             I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK),
-            config, productCurator);
+            config, productCurator, MoreExecutors.sameThreadExecutor());
 
         product = TestUtil.createProduct("12345", "a product");
         product.setAttribute(Product.Attributes.VERSION, "version");
@@ -348,7 +354,7 @@ public class DefaultEntitlementCertServiceAdapterTest {
             mock(EntitlementCertificateCurator.class),
             keyPairCurator, serialCurator, entCurator,
             I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK),
-            config, productCurator);
+            config, productCurator, MoreExecutors.sameThreadExecutor());
 
         X509Certificate result = certServiceAdapter.createX509Certificate(consumer, pool,
             entitlement, product, new HashSet<Product>(),
@@ -375,7 +381,7 @@ public class DefaultEntitlementCertServiceAdapterTest {
             mock(EntitlementCertificateCurator.class),
             keyPairCurator, serialCurator, entCurator,
             I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK),
-            config, productCurator);
+            config, productCurator, MoreExecutors.sameThreadExecutor());
 
         // pool start date is more than an hour ago, use it
         Calendar cal = Calendar.getInstance();
@@ -834,7 +840,7 @@ public class DefaultEntitlementCertServiceAdapterTest {
             mock(EntitlementCertificateCurator.class),
             keyPairCurator, serialCurator, entCurator,
             I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK),
-            mockConfig, productCurator);
+            mockConfig, productCurator, MoreExecutors.sameThreadExecutor());
 
         entAdapter.createX509Certificate(consumer, pool, entitlement, product,
             new HashSet<Product>(),
@@ -875,7 +881,7 @@ public class DefaultEntitlementCertServiceAdapterTest {
             mock(EntitlementCertificateCurator.class),
             keyPairCurator, serialCurator, entCurator,
             I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK),
-            mockConfig, productCurator);
+            mockConfig, productCurator, MoreExecutors.sameThreadExecutor());
 
         entAdapter.createX509Certificate(consumer, pool, entitlement,
             product, new HashSet<Product>(),
@@ -905,7 +911,7 @@ public class DefaultEntitlementCertServiceAdapterTest {
             mock(EntitlementCertificateCurator.class),
             keyPairCurator, serialCurator, entCurator,
             I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK),
-            mockConfig, productCurator);
+            mockConfig, productCurator, MoreExecutors.sameThreadExecutor());
 
         entAdapter.createX509Certificate(consumer, pool, entitlement,
             product, new HashSet<Product>(),
@@ -932,7 +938,7 @@ public class DefaultEntitlementCertServiceAdapterTest {
             mock(EntitlementCertificateCurator.class),
             keyPairCurator, serialCurator, entCurator,
             I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK),
-            mockConfig, productCurator);
+            mockConfig, productCurator, MoreExecutors.sameThreadExecutor());
 
         entAdapter.createX509Certificate(consumer, pool, entitlement,
             product, new HashSet<Product>(),
@@ -957,7 +963,7 @@ public class DefaultEntitlementCertServiceAdapterTest {
             mock(EntitlementCertificateCurator.class),
             keyPairCurator, serialCurator, entCurator,
             I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK),
-            mockConfig, productCurator);
+            mockConfig, productCurator, MoreExecutors.sameThreadExecutor());
 
         entAdapter.createX509Certificate(consumer, pool, entitlement,
             product, new HashSet<Product>(),
@@ -1693,6 +1699,72 @@ public class DefaultEntitlementCertServiceAdapterTest {
         assertTrue(!cert.getCert().contains("ENTITLEMENT DATA"));
     }
 
+    @Test
+    public void signsCertificatesOfABindInParallel() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        certServiceAdapter = new DefaultEntitlementCertServiceAdapter(
+            realPKI, extensionUtil, v3extensionUtil,
+            mock(EntitlementCertificateCurator.class),
+            keyPairCurator, serialCurator, entCurator,
+            I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK),
+            config, productCurator, executor);
+
+        KeyPair keyPair = realPKI.generateNewKeyPair();
+        when(keyPairCurator.getConsumerKeyPair(any(Consumer.class))).thenReturn(keyPair);
+        consumer.setFact("system.certificate_version", "3.3");
+
+        Map<String, PoolQuantity> poolQuantities = new HashMap<String, PoolQuantity>();
+        Map<String, Entitlement> entitlements = new HashMap<String, Entitlement>();
+        Map<String, Product> products = new HashMap<String, Product>();
+
+        for (int i = 0; i < 5; i++) {
+            Pool nextPool = TestUtil.createPool(owner, product);
+            nextPool.setId("pool" + i);
+            Entitlement ent = TestUtil.createEntitlement(owner, consumer, nextPool, null);
+            ent.setId("ent" + i);
+            ent.setQuantity(1);
+
+            poolQuantities.put(nextPool.getId(), new PoolQuantity(nextPool, 1));
+            entitlements.put(nextPool.getId(), ent);
+            products.put(nextPool.getId(), product);
+        }
+
+        try {
+            Map<String, EntitlementCertificate> certs = certServiceAdapter.generateEntitlementCerts(
+                consumer, poolQuantities, entitlements, products, false);
+
+            assertEquals(5, certs.size());
+            for (int i = 0; i < 5; i++) {
+                EntitlementCertificate cert = certs.get("pool" + i);
+                assertTrue(cert.getCert().contains("ENTITLEMENT DATA"));
+                assertTrue(cert.getCert().contains("RSA SIGNATURE"));
+
+                X509Certificate x509 = (X509Certificate) new PEMReader(
+                    new InputStreamReader(new ByteArrayInputStream(cert.getCert().getBytes())))
+                    .readObject();
+                assertTrue(x509.getSubjectDN().getName().contains("CN=ent" + i));
+                assertEquals(cert.getSerial().getSerial(), x509.getSerialNumber());
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void rethrowsSigningFailures() throws Exception {
+        KeyPair keyPair = realPKI.generateNewKeyPair();
+        when(keyPairCurator.getConsumerKeyPair(any(Consumer.class))).thenReturn(keyPair);
+        when(mockedPKI.createX509Certificate(anyString(), any(Set.class), any(Set.class),
+            any(Date.class), any(Date.class), any(KeyPair.class), any(BigInteger.class), anyString()))
+            .thenThrow(new GeneralSecurityException("signing failed"));
+
+        pool.setId("poolId");
+
+        thrown.expect(GeneralSecurityException.class);
+        certServiceAdapter.generateEntitlementCert(entitlement, product);
+    }
+
     @Test
     public void testContentExtension() throws IOException {
         Set<Product> products = new HashSet<Product>();
@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.test;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+
+
+/**
+ * Records the elapsed time and peak heap usage of the phases of a benchmark, and writes them to
+ * a properties file named after the benchmark, in the directory given by the benchmark.dir
+ * system property (target/benchmarks by default).
+ * <p></p>
+ * Benchmarks are named *Benchmark rather than *Test, so surefire leaves them out of the default
+ * run. Run one by hand with, for example: mvn test -Dtest=X509CRLStreamWriterBenchmark
+ */
+public class BenchmarkReport {
+    private static Logger log = LoggerFactory.getLogger(BenchmarkReport.class);
+
+    private final String name;
+    private final Map<String, Long> results;
+
+    private String phase;
+    private long phaseStart;
+
+    public BenchmarkReport(Class<?> benchmark) {
+        this.name = benchmark.getSimpleName();
+        this.results = new TreeMap<String, Long>();
+    }
+
+    /**
+     * Starts measuring the given phase. The heap is collected first, so the recorded peak heap
+     * usage reflects the phase rather than the garbage left behind by earlier ones.
+     *
+     * @param phase
+     *  the name of the phase to measure
+     */
+    public void start(String phase) {
+        System.gc();
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+
+        this.phase = phase;
+        this.phaseStart = System.currentTimeMillis();
+    }
+
+    /**
+     * Stops measuring the current phase, recording its elapsed time in milliseconds and its
+     * peak heap usage in bytes, summed over the heap memory pools.
+     *
+     * @return
+     *  the elapsed time of the phase, in milliseconds
+     */
+    public long stop() {
+        if (this.phase == null) {
+            throw new IllegalStateException("No phase has been started");
+        }
+
+        long elapsed = System.currentTimeMillis() - this.phaseStart;
+        long peakHeap = 0;
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+
+        this.record(this.phase + ".elapsed_ms", elapsed);
+        this.record(this.phase + ".peak_heap_bytes", peakHeap);
+        this.phase = null;
+
+        return elapsed;
+    }
+
+    /**
+     * Records an additional value, such as the size of the data set the benchmark ran against.
+     *
+     * @param key
+     *  the name of the value
+     *
+     * @param value
+     *  the value to record
+     */
+    public void record(String key, long value) {
+        this.results.put(key, value);
+    }
+
+    /**
+     * Fetches a value recorded by this report.
+     *
+     * @param key
+     *  the name of the value
+     *
+     * @return
+     *  the recorded value, or null if no such value has been recorded
+     */
+    public Long get(String key) {
+        return this.results.get(key);
+    }
+
+    /**
+     * Logs the recorded values and writes them to the report file of the benchmark.
+     *
+     * @throws IOException
+     *  if the report file cannot be written
+     *
+     * @return
+     *  the report file
+     */
+    public File write() throws IOException {
+        File dir = new File(System.getProperty("benchmark.dir", "target/benchmarks"));
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create benchmark report directory: " + dir);
+        }
+
+        Properties properties = new Properties();
+        for (Map.Entry<String, Long> entry : this.results.entrySet()) {
+            log.info("{}: {} = {}", this.name, entry.getKey(), entry.getValue());
+            properties.setProperty(entry.getKey(), String.valueOf(entry.getValue()));
+        }
+
+        File file = new File(dir, this.name + ".properties");
+        OutputStream output = new FileOutputStream(file);
+
+        try {
+            properties.store(output, this.name);
+        }
+        finally {
+            output.close();
+        }
+
+        log.info("Wrote benchmark report {}", file);
+        return file;
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import static org.junit.Assert.*;
+
+import org.candlepin.common.config.MapConfiguration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.util.ContentAccessPayloadCache.Payload;
+
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+
+
+/**
+ * ContentAccessPayloadCacheTest
+ */
+public class ContentAccessPayloadCacheTest {
+
+    private ContentAccessPayloadCache createCache(int size) {
+        Map<String, String> settings = new HashMap<String, String>();
+        settings.put(ConfigProperties.CONTENT_ACCESS_CACHE_SIZE, String.valueOf(size));
+        settings.put(ConfigProperties.CONTENT_ACCESS_CACHE_MAX_AGE, "300");
+
+        return new ContentAccessPayloadCache(new MapConfiguration(settings));
+    }
+
+    private void put(ContentAccessPayloadCache cache, String ownerId, String envId, String content) {
+        cache.put(ownerId, envId, cache.getGeneration(), content, new Date());
+    }
+
+    @Test
+    public void cachesPayloadPerOwnerAndEnvironment() {
+        ContentAccessPayloadCache cache = createCache(10);
+
+        put(cache, "owner1", null, "owner1");
+        put(cache, "owner1", "env1", "owner1-env1");
+        put(cache, "owner2", "env1", "owner2-env1");
+
+        assertEquals("owner1", cache.get("owner1", null).getContent());
+        assertEquals("owner1-env1", cache.get("owner1", "env1").getContent());
+        assertEquals("owner2-env1", cache.get("owner2", "env1").getContent());
+        assertNull(cache.get("owner2", null));
+
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void invalidatesEnvironment() {
+        ContentAccessPayloadCache cache = createCache(10);
+
+        put(cache, "owner1", null, "owner1");
+        put(cache, "owner1", "env1", "owner1-env1");
+        put(cache, "owner1", "env2", "owner1-env2");
+
+        cache.invalidateEnvironment("owner1", "env1");
+
+        assertNull(cache.get("owner1", "env1"));
+        assertNotNull(cache.get("owner1", "env2"));
+        assertNotNull(cache.get("owner1", null));
+    }
+
+    @Test
+    public void invalidatesAllEnvironmentsOfOwner() {
+        ContentAccessPayloadCache cache = createCache(10);
+
+        put(cache, "owner1", null, "owner1");
+        put(cache, "owner1", "env1", "owner1-env1");
+        put(cache, "owner2", "env2", "owner2-env2");
+
+        cache.invalidateOwner("owner1");
+
+        assertNull(cache.get("owner1", null));
+        assertNull(cache.get("owner1", "env1"));
+        assertNotNull(cache.get("owner2", "env2"));
+        assertEquals(1, cache.getGenerationCount());
+    }
+
+    @Test
+    public void skipsPayloadsReadBeforeInvalidation() {
+        ContentAccessPayloadCache cache = createCache(10);
+
+        long generation = cache.getGeneration();
+        cache.invalidateOwner("owner1");
+        Payload payload = cache.put("owner1", "env1", generation, "stale", new Date());
+
+        assertEquals("stale", payload.getContent());
+        assertNull(cache.get("owner1", "env1"));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedPayload() {
+        ContentAccessPayloadCache cache = createCache(2);
+
+        put(cache, "owner1", null, "a");
+        put(cache, "owner2", null, "b");
+        cache.get("owner1", null);
+        put(cache, "owner3", null, "c");
+
+        assertEquals(2, cache.getSize());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get("owner2", null));
+        assertNotNull(cache.get("owner1", null));
+    }
+
+    @Test
+    public void cachesNothingWhenDisabled() {
+        ContentAccessPayloadCache cache = createCache(0);
+
+        put(cache, "owner1", null, "a");
+
+        assertEquals(0, cache.getSize());
+        assertNull(cache.get("owner1", null));
+    }
+
+    @Test
+    public void comparesLastUpdate() {
+        ContentAccessPayloadCache cache = createCache(10);
+        Payload payload = cache.put("owner1", null, cache.getGeneration(), "a", new Date(2000L));
+
+        assertTrue(payload.hasChangedSince(new Date(1000L)));
+        assertFalse(payload.hasChangedSince(new Date(2000L)));
+        assertFalse(payload.hasChangedSince(new Date(3000L)));
+    }
+}
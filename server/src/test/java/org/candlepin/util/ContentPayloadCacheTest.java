@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import static org.junit.Assert.*;
+
+import org.candlepin.common.config.MapConfiguration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.dto.Content;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+
+/**
+ * ContentPayloadCacheTest
+ */
+public class ContentPayloadCacheTest {
+
+    private ContentPayloadCache createCache(int size) {
+        return new ContentPayloadCache(new MapConfiguration(Collections.singletonMap(
+            ConfigProperties.CONTENT_PAYLOAD_CACHE_SIZE, String.valueOf(size))));
+    }
+
+    private List<Content> contents(String... paths) {
+        List<Content> contents = new ArrayList<Content>();
+        for (String path : paths) {
+            Content content = new Content();
+            content.setPath(path);
+            contents.add(content);
+        }
+
+        return contents;
+    }
+
+    private static class CountingBuilder implements Callable<byte[]> {
+        private final AtomicInteger builds = new AtomicInteger();
+
+        @Override
+        public byte[] call() {
+            return new byte[] { (byte) this.builds.incrementAndGet() };
+        }
+    }
+
+    @Test
+    public void reusesPayloadForSamePaths() throws IOException {
+        ContentPayloadCache cache = createCache(10);
+        CountingBuilder builder = new CountingBuilder();
+
+        byte[] first = cache.get(contents("/a/b", "/a/c"), builder);
+        byte[] second = cache.get(contents("/a/b", "/a/c"), builder);
+
+        assertSame(first, second);
+        assertEquals(1, builder.builds.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(50.0, cache.getHitRate(), 0.001);
+    }
+
+    @Test
+    public void buildsNewPayloadWhenPathsChange() throws IOException {
+        ContentPayloadCache cache = createCache(10);
+        CountingBuilder builder = new CountingBuilder();
+
+        cache.get(contents("/a/b", "/a/c"), builder);
+        cache.get(contents("/a/b", "/a/d"), builder);
+        cache.get(contents("/a/c", "/a/b"), builder);
+
+        assertEquals(3, builder.builds.get());
+        assertEquals(3, cache.getSize());
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedPayload() throws IOException {
+        ContentPayloadCache cache = createCache(2);
+        CountingBuilder builder = new CountingBuilder();
+
+        cache.get(contents("/a"), builder);
+        cache.get(contents("/b"), builder);
+        cache.get(contents("/a"), builder);
+        cache.get(contents("/c"), builder);
+
+        assertEquals(2, cache.getSize());
+        assertEquals(1, cache.getEvictions());
+
+        // "/b" was the least recently used, so only it has to be built again
+        cache.get(contents("/a"), builder);
+        assertEquals(3, builder.builds.get());
+        cache.get(contents("/b"), builder);
+        assertEquals(4, builder.builds.get());
+    }
+
+    @Test
+    public void buildsEveryPayloadWhenDisabled() throws IOException {
+        ContentPayloadCache cache = createCache(0);
+        CountingBuilder builder = new CountingBuilder();
+
+        cache.get(contents("/a"), builder);
+        cache.get(contents("/a"), builder);
+
+        assertEquals(2, builder.builds.get());
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getMisses());
+    }
+
+    @Test(expected = IOException.class)
+    public void rethrowsBuildFailures() throws IOException {
+        createCache(10).get(contents("/a"), new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                throw new IOException("failed");
+            }
+        });
+    }
+}
@@ -16,8 +16,11 @@ package org.candlepin.util;
 
 import static org.candlepin.test.MatchesPattern.matchesPattern;
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
 
 import org.candlepin.TestingModules;
+import org.candlepin.model.CandlepinQuery;
+import org.candlepin.model.CertificateSerial;
 import org.candlepin.model.CertificateSerialCurator;
 import org.candlepin.pki.PKIReader;
 import org.candlepin.pki.PKIUtility;
@@ -26,7 +29,11 @@ import com.google.inject.Guice;
 import com.google.inject.Injector;
 
 import org.apache.commons.io.IOUtils;
+import org.bouncycastle.asn1.DERInteger;
+import org.bouncycastle.asn1.DERObjectIdentifier;
+import org.bouncycastle.asn1.x509.X509Extensions;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.x509.extension.X509ExtensionUtil;
 import org.hamcrest.Description;
 import org.hamcrest.TypeSafeMatcher;
 import org.junit.After;
@@ -34,23 +41,32 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileReader;
+import java.io.InputStream;
 import java.math.BigInteger;
 import java.net.URL;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509CRL;
 import java.security.cert.X509CRLEntry;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 
 /**
  * CrlFileUtilTest
@@ -64,7 +80,9 @@ public class CrlFileUtilTest {
     @Inject private PKIReader pkiReader;
     @Inject private PKIUtility pkiUtility;
     @Mock private CertificateSerialCurator certSerialCurator;
+    @Inject @Named("CrlScanExecutor") private ExecutorService scanExecutor;
     private File temp;
+    private File delta;
     private Set<BigInteger> initialEntry;
 
     @Before
@@ -76,8 +94,11 @@ public class CrlFileUtilTest {
         );
         injector.injectMembers(this);
 
-        this.cfu = new CrlFileUtil(this.pkiReader, this.pkiUtility, this.certSerialCurator);
+        this.cfu = new CrlFileUtil(this.pkiReader, this.pkiUtility, this.certSerialCurator,
+            this.scanExecutor);
         this.temp = File.createTempFile("cp_test_crl-", ".pem");
+        this.delta = File.createTempFile("cp_test_delta_crl-", ".pem");
+        this.delta.delete();
         this.initialEntry = new HashSet<BigInteger>();
         this.initialEntry.add(BigInteger.ONE);
     }
@@ -85,6 +106,7 @@ public class CrlFileUtilTest {
     @After
     public void tearDown() {
         temp.delete();
+        delta.delete();
     }
 
     @Test
@@ -215,6 +237,185 @@ public class CrlFileUtilTest {
         assertFalse(new ContainsSerials(temp).matchesSafely(unrevoke));
     }
 
+    @SuppressWarnings("unchecked")
+    private void mockSerials(final List<CertificateSerial> serials) {
+        when(this.certSerialCurator.retrieveTobeCollectedSerials()).thenAnswer(
+            new Answer<CandlepinQuery<CertificateSerial>>() {
+                @Override
+                public CandlepinQuery<CertificateSerial> answer(InvocationOnMock invocation) {
+                    final List<CertificateSerial> uncollected = new LinkedList<CertificateSerial>();
+                    for (CertificateSerial serial : serials) {
+                        if (serial.isRevoked() && !serial.isCollected()) {
+                            uncollected.add(serial);
+                        }
+                    }
+
+                    CandlepinQuery<CertificateSerial> query = mock(CandlepinQuery.class);
+                    when(query.list()).thenReturn(uncollected);
+                    when(query.iterator()).thenAnswer(new Answer<Iterator<CertificateSerial>>() {
+                        @Override
+                        public Iterator<CertificateSerial> answer(InvocationOnMock invocation) {
+                            return uncollected.iterator();
+                        }
+                    });
+
+                    return query;
+                }
+            });
+
+        CandlepinQuery<CertificateSerial> expired = mock(CandlepinQuery.class);
+        when(expired.iterator()).thenReturn(new LinkedList<CertificateSerial>().iterator());
+        when(this.certSerialCurator.getExpiredSerials()).thenReturn(expired);
+    }
+
+    private CertificateSerial revokedSerial(long id) {
+        CertificateSerial serial = new CertificateSerial(id);
+        serial.setRevoked(true);
+        serial.setUpdated(new Date());
+        return serial;
+    }
+
+    private X509CRL readCRL(File file) throws Exception {
+        BufferedInputStream in = new BufferedInputStream(new FileInputStream(file));
+
+        try {
+            X509CRL crl = (X509CRL) CertificateFactory.getInstance("X.509").generateCRL(in);
+            crl.verify(pkiReader.getCACert().getPublicKey(), BC.PROVIDER_NAME);
+            return crl;
+        }
+        finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    private BigInteger getExtensionNumber(X509CRL crl, DERObjectIdentifier oid) throws Exception {
+        byte[] value = crl.getExtensionValue(oid.getId());
+        return value != null ?
+            DERInteger.getInstance(X509ExtensionUtil.fromExtensionValue(value)).getValue() :
+            null;
+    }
+
+    @Test
+    public void testDeltaCRLContainsSerialsRevokedSinceBase() throws Exception {
+        this.cfu.initializeCRLFile(temp, initialEntry);
+        long baseModified = temp.lastModified();
+
+        CertificateSerial serial = this.revokedSerial(3412518L);
+        mockSerials(Arrays.asList(serial));
+
+        this.cfu.syncCRLWithDB(temp, delta, 3600000L);
+
+        // The base CRL is recent enough to be kept as is
+        assertEquals(baseModified, temp.lastModified());
+        assertFalse(serial.isCollected());
+
+        X509CRL deltaCrl = this.readCRL(delta);
+        assertEquals(1, deltaCrl.getRevokedCertificates().size());
+        assertNotNull(deltaCrl.getRevokedCertificate(serial.getSerial()));
+        assertEquals(BigInteger.valueOf(2), getExtensionNumber(deltaCrl, X509Extensions.CRLNumber));
+        assertEquals(BigInteger.ONE, getExtensionNumber(deltaCrl, X509Extensions.DeltaCRLIndicator));
+        assertTrue(deltaCrl.getCriticalExtensionOIDs()
+            .contains(X509Extensions.DeltaCRLIndicator.getId()));
+    }
+
+    @Test
+    public void testDeltaCRLNumbersIncrease() throws Exception {
+        this.cfu.initializeCRLFile(temp, initialEntry);
+        mockSerials(Arrays.asList(this.revokedSerial(4125185L)));
+
+        this.cfu.syncCRLWithDB(temp, delta, 3600000L);
+        this.cfu.syncCRLWithDB(temp, delta, 3600000L);
+
+        X509CRL deltaCrl = this.readCRL(delta);
+        assertEquals(BigInteger.valueOf(3), getExtensionNumber(deltaCrl, X509Extensions.CRLNumber));
+        assertEquals(BigInteger.ONE, getExtensionNumber(deltaCrl, X509Extensions.DeltaCRLIndicator));
+    }
+
+    @Test
+    public void testDeltaCRLIsReplacedNotRewritten() throws Exception {
+        this.cfu.initializeCRLFile(temp, initialEntry);
+        mockSerials(Arrays.asList(this.revokedSerial(4125185L)));
+        this.cfu.syncCRLWithDB(temp, delta, 3600000L);
+
+        // A reader streaming the delta CRL keeps seeing the complete CRL it opened
+        InputStream in = new BufferedInputStream(new FileInputStream(delta));
+
+        try {
+            this.cfu.syncCRLWithDB(temp, delta, 3600000L);
+
+            X509CRL opened = (X509CRL) CertificateFactory.getInstance("X.509").generateCRL(in);
+            assertEquals(BigInteger.valueOf(2), getExtensionNumber(opened, X509Extensions.CRLNumber));
+        }
+        finally {
+            IOUtils.closeQuietly(in);
+        }
+
+        assertEquals(BigInteger.valueOf(3),
+            getExtensionNumber(this.readCRL(delta), X509Extensions.CRLNumber));
+    }
+
+    @Test
+    public void testStaleBaseCRLIsRebuilt() throws Exception {
+        this.cfu.initializeCRLFile(temp, initialEntry);
+
+        CertificateSerial serial1 = this.revokedSerial(2351823L);
+        CertificateSerial serial2 = this.revokedSerial(8127135L);
+        List<CertificateSerial> serials = new LinkedList<CertificateSerial>(Arrays.asList(serial1));
+        mockSerials(serials);
+
+        this.cfu.syncCRLWithDB(temp, delta, 3600000L);
+        assertEquals(BigInteger.valueOf(2),
+            getExtensionNumber(this.readCRL(delta), X509Extensions.CRLNumber));
+
+        serials.add(serial2);
+        this.cfu.syncCRLWithDB(temp, delta, 0L);
+
+        // The rebuilt base CRL takes the next number after the delta CRL
+        X509CRL baseCrl = this.readCRL(temp);
+        assertEquals(BigInteger.valueOf(3), getExtensionNumber(baseCrl, X509Extensions.CRLNumber));
+        assertThat(new HashSet<BigInteger>(Arrays.asList(serial1.getSerial(), serial2.getSerial())),
+            new ContainsSerials(temp));
+        assertTrue(serial1.isCollected());
+        assertTrue(serial2.isCollected());
+
+        X509CRL deltaCrl = this.readCRL(delta);
+        assertNull(deltaCrl.getRevokedCertificates());
+        assertEquals(BigInteger.valueOf(4), getExtensionNumber(deltaCrl, X509Extensions.CRLNumber));
+        assertEquals(BigInteger.valueOf(3),
+            getExtensionNumber(deltaCrl, X509Extensions.DeltaCRLIndicator));
+    }
+
+    @Test
+    public void testDeltaCRLReadsBaseCRLNumberWithoutDelta() throws Exception {
+        Set<BigInteger> prime = new HashSet<BigInteger>(Arrays.asList(
+            new BigInteger("1513822751"),
+            new BigInteger("2918273155")
+        ));
+
+        this.cfu.initializeCRLFile(temp, initialEntry);
+        this.cfu.updateCRLFile(temp, prime, null);
+        mockSerials(new LinkedList<CertificateSerial>());
+
+        this.cfu.syncCRLWithDB(temp, delta, 3600000L);
+
+        X509CRL deltaCrl = this.readCRL(delta);
+        assertEquals(BigInteger.valueOf(2),
+            getExtensionNumber(deltaCrl, X509Extensions.DeltaCRLIndicator));
+        assertEquals(BigInteger.valueOf(3), getExtensionNumber(deltaCrl, X509Extensions.CRLNumber));
+    }
+
+    @Test
+    public void testDeltaCRLInitializesMissingBaseCRL() throws Exception {
+        temp.delete();
+        mockSerials(new LinkedList<CertificateSerial>());
+
+        this.cfu.syncCRLWithDB(temp, delta, 3600000L);
+
+        assertTrue(temp.length() > 0);
+        assertEquals(BigInteger.ONE,
+            getExtensionNumber(this.readCRL(delta), X509Extensions.DeltaCRLIndicator));
+    }
+
     public class ContainsSerials extends TypeSafeMatcher<Set<BigInteger>> {
         private Set<BigInteger> serials;
 
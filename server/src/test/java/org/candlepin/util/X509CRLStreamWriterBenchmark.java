@@ -0,0 +1,192 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import static org.junit.Assert.*;
+
+import org.candlepin.test.BenchmarkReport;
+
+import org.apache.commons.io.FileUtils;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.CRLNumber;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.X509Extension;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.jce.provider.X509CRLEntryObject;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.x509.extension.AuthorityKeyIdentifierStructure;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+
+/**
+ * Compares the streamed and the memory-mapped pre-scan and rewrite of a synthetic CRL with five
+ * million entries, deleting one entry in a thousand. Building the CRL takes several minutes and a
+ * few GB of heap, so this is only run by hand (benchmark.crl.entries sets a different size):
+ *
+ *   mvn test -Dtest=X509CRLStreamWriterBenchmark -DargLine=-Xmx4g
+ *
+ * The elapsed time and peak heap usage of both runs are written to
+ * target/benchmarks/X509CRLStreamWriterBenchmark.properties.
+ */
+public class X509CRLStreamWriterBenchmark {
+    private static final BouncyCastleProvider BC = new BouncyCastleProvider();
+    private static final int ENTRIES = Integer.getInteger("benchmark.crl.entries", 5000000);
+    private static final int ROUND = Math.min(ENTRIES, 500000);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private KeyPair keyPair;
+    private File crl;
+    private int deleted;
+
+    private final CRLEntryValidator validator = new CRLEntryValidator() {
+        @Override
+        public boolean shouldDelete(X509CRLEntryObject entry) {
+            return isDeleted(entry.getSerialNumber());
+        }
+    };
+
+    private static boolean isDeleted(BigInteger serial) {
+        return serial.mod(BigInteger.valueOf(10000)).signum() == 0;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        keyPair = generator.generateKeyPair();
+
+        X509v2CRLBuilder crlBuilder = new X509v2CRLBuilder(new X500Name("CN=Test Issuer"), new Date());
+        crlBuilder.addExtension(X509Extension.authorityKeyIdentifier, false,
+            new AuthorityKeyIdentifierStructure(keyPair.getPublic()));
+        crlBuilder.addExtension(X509Extension.cRLNumber, false, new CRLNumber(new BigInteger("127")));
+        crlBuilder.addCRLEntry(new BigInteger("100"), new Date(), CRLReason.unspecified);
+
+        ContentSigner signer = new JcaContentSignerBuilder("SHA256WithRSAEncryption")
+            .setProvider(BC)
+            .build(keyPair.getPrivate());
+
+        crl = folder.newFile();
+        FileUtils.writeByteArrayToFile(crl, crlBuilder.build(signer).getEncoded());
+
+        BigInteger serial = new BigInteger("741696FE9E30AD27", 16);
+
+        // Grow the CRL a round at a time, as building it in one go needs far too much memory
+        for (int added = 0; added < ENTRIES; added += ROUND) {
+            X509CRLStreamWriter stream = this.newWriter();
+
+            for (int i = 0; i < ROUND; i++) {
+                serial = serial.add(BigInteger.TEN);
+                stream.add(serial, new Date(), CRLReason.privilegeWithdrawn);
+
+                if (isDeleted(serial)) {
+                    deleted++;
+                }
+            }
+
+            stream.preScan(crl).lock();
+            crl = this.write(stream);
+        }
+    }
+
+    private X509CRLStreamWriter newWriter() throws Exception {
+        return new X509CRLStreamWriter(crl, (RSAPrivateKey) keyPair.getPrivate(),
+            (RSAPublicKey) keyPair.getPublic());
+    }
+
+    private File write(X509CRLStreamWriter stream) throws Exception {
+        File out = folder.newFile();
+        OutputStream o = new BufferedOutputStream(new FileOutputStream(out));
+
+        try {
+            stream.write(o);
+        }
+        finally {
+            o.close();
+        }
+
+        return out;
+    }
+
+    private int countEntries(File file) throws Exception {
+        X509CRLEntryStream entries = new X509CRLEntryStream(file);
+        int count = 0;
+
+        try {
+            while (entries.hasNext()) {
+                entries.next();
+                count++;
+            }
+        }
+        finally {
+            entries.close();
+        }
+
+        return count;
+    }
+
+    @Test
+    public void benchmarkMappedPreScan() throws Exception {
+        BenchmarkReport report = new BenchmarkReport(this.getClass());
+        report.record("entries", ENTRIES);
+        report.record("crl_bytes", crl.length());
+
+        report.start("streamed");
+        X509CRLStreamWriter stream = this.newWriter();
+        stream.preScan(crl, validator).lock();
+        File streamed = this.write(stream);
+        report.stop();
+
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+        report.start("mapped");
+        try {
+            stream = this.newWriter();
+            stream.preScan(crl, validator, executor).lock();
+        }
+        finally {
+            executor.shutdown();
+        }
+        File mapped = this.write(stream);
+        report.stop();
+
+        report.write();
+
+        // The initial entry, plus all generated entries which were not deleted
+        int expected = ENTRIES + 1 - deleted;
+        assertEquals(expected, countEntries(streamed));
+        assertEquals(expected, countEntries(mapped));
+    }
+}
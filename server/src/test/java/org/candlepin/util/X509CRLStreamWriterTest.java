@@ -65,6 +65,8 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
 public class X509CRLStreamWriterTest {
@@ -733,4 +735,124 @@ public class X509CRLStreamWriterTest {
 
         assertEquals(expected, discoveredSerials);
     }
+
+    private Set<BigInteger> readSerials() throws Exception {
+        Set<BigInteger> discoveredSerials = new HashSet<BigInteger>();
+
+        for (X509CRLEntry entry : readCRL().getRevokedCertificates()) {
+            discoveredSerials.add(entry.getSerialNumber());
+        }
+
+        return discoveredSerials;
+    }
+
+    private File writeBigCRL(Set<BigInteger> serials, int count) throws Exception {
+        X509v2CRLBuilder crlBuilder = createCRLBuilder();
+        serials.add(new BigInteger("100"));
+
+        BigInteger serial = new BigInteger("741696FE9E30AD27", 16);
+        for (int i = 0; i < count; i++) {
+            serial = serial.add(BigInteger.TEN);
+            crlBuilder.addCRLEntry(serial, new Date(), CRLReason.privilegeWithdrawn);
+            serials.add(serial);
+        }
+
+        return writeCRL(crlBuilder.build(signer));
+    }
+
+    @Test
+    public void testMappedPreScanAddsEntries() throws Exception {
+        Set<BigInteger> expected = new HashSet<BigInteger>();
+        File crlToChange = writeBigCRL(expected, 10000);
+
+        X509CRLStreamWriter stream = new X509CRLStreamWriter(crlToChange,
+            (RSAPrivateKey) keyPair.getPrivate(), (RSAPublicKey) keyPair.getPublic());
+        stream.add(new BigInteger("9000"), new Date(), 0);
+        expected.add(new BigInteger("9000"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            stream.preScan(crlToChange, null, executor).lock();
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        OutputStream o = new BufferedOutputStream(new FileOutputStream(outfile));
+        stream.write(o);
+        o.close();
+
+        assertEquals(expected, readSerials());
+        assertEquals(new BigInteger("128"), stream.getCrlNumber());
+    }
+
+    @Test
+    public void testMappedPreScanDeletesEntries() throws Exception {
+        Set<BigInteger> expected = new HashSet<BigInteger>();
+        File crlToChange = writeBigCRL(expected, 120000);
+
+        // Delete every third entry, spread over several chunks
+        final Set<BigInteger> deleted = new HashSet<BigInteger>();
+        int i = 0;
+        for (BigInteger serial : expected) {
+            if (i++ % 3 == 0) {
+                deleted.add(serial);
+            }
+        }
+        expected.removeAll(deleted);
+
+        CRLEntryValidator validator = new CRLEntryValidator() {
+            @Override
+            public boolean shouldDelete(X509CRLEntryObject entry) {
+                return deleted.contains(entry.getSerialNumber());
+            }
+        };
+
+        X509CRLStreamWriter stream = new X509CRLStreamWriter(crlToChange,
+            (RSAPrivateKey) keyPair.getPrivate(), (RSAPublicKey) keyPair.getPublic());
+        stream.add(new BigInteger("9000"), new Date(), 0);
+        expected.add(new BigInteger("9000"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            stream.preScan(crlToChange, validator, executor).lock();
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        OutputStream o = new BufferedOutputStream(new FileOutputStream(outfile));
+        stream.write(o);
+        o.close();
+
+        assertEquals(expected, readSerials());
+    }
+
+    @Test
+    public void testMappedPreScanOfEmptyCRL() throws Exception {
+        X509v2CRLBuilder crlBuilder = new X509v2CRLBuilder(issuer, new Date());
+        crlBuilder.addExtension(X509Extension.authorityKeyIdentifier, false,
+            new AuthorityKeyIdentifierStructure(keyPair.getPublic()));
+        crlBuilder.addExtension(X509Extension.cRLNumber, false, new CRLNumber(new BigInteger("127")));
+        crlBuilder.setNextUpdate(new Date(new Date().getTime() + 100000));
+        File crlToChange = writeCRL(crlBuilder.build(signer));
+
+        X509CRLStreamWriter stream = new X509CRLStreamWriter(crlToChange,
+            (RSAPrivateKey) keyPair.getPrivate(), (RSAPublicKey) keyPair.getPublic());
+        stream.add(new BigInteger("9000"), new Date(), 0);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            stream.preScan(crlToChange, null, executor).lock();
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        OutputStream o = new BufferedOutputStream(new FileOutputStream(outfile));
+        stream.write(o);
+        o.close();
+
+        assertEquals(new HashSet<BigInteger>(Arrays.asList(new BigInteger("9000"))), readSerials());
+    }
 }
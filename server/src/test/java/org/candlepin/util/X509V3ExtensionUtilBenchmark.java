@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2009 - 2017 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.common.config.MapConfiguration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.EntitlementCurator;
+import org.candlepin.model.dto.Content;
+import org.candlepin.model.dto.Product;
+import org.candlepin.test.BenchmarkReport;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+
+
+/**
+ * Compares building the content set payload of v3 entitlement certificates with and without the
+ * content payload cache, for products with 200 content sets. Run by hand, next to the cache tests
+ * in X509V3ExtensionUtilTest:
+ *
+ *   mvn test -Dtest=X509V3ExtensionUtilBenchmark
+ *
+ * The elapsed time and peak heap usage of both runs are written to
+ * target/benchmarks/X509V3ExtensionUtilBenchmark.properties.
+ */
+public class X509V3ExtensionUtilBenchmark {
+    private static final int ITERATIONS = Integer.getInteger("benchmark.payload.iterations", 2000);
+    private static final int CONTENT_SETS = 200;
+
+    private ContentPayloadCache createPayloadCache(int size) {
+        return new ContentPayloadCache(new MapConfiguration(Collections.singletonMap(
+            ConfigProperties.CONTENT_PAYLOAD_CACHE_SIZE, String.valueOf(size))));
+    }
+
+    private List<Product> createProductModels(int contentCount) {
+        List<Content> contents = new ArrayList<Content>();
+        for (int i = 0; i < contentCount; i++) {
+            Content content = new Content();
+            content.setPath("/content/dist/rhel/server/" + (i % 7) + "/$releasever/$basearch/repo" + i);
+            contents.add(content);
+        }
+
+        Product product = new Product();
+        product.setContent(contents);
+        return Arrays.asList(product);
+    }
+
+    private void buildPayloads(BenchmarkReport report, String phase, X509V3ExtensionUtil util)
+        throws Exception {
+
+        report.start(phase);
+        for (int i = 0; i < ITERATIONS; i++) {
+            util.getByteExtensions(null, createProductModels(CONTENT_SETS), null, null);
+        }
+        report.stop();
+    }
+
+    @Test
+    public void benchmarkContentPayload() throws Exception {
+        Configuration config = mock(Configuration.class);
+        EntitlementCurator ec = mock(EntitlementCurator.class);
+        ContentPayloadCache payloadCache = createPayloadCache(10);
+
+        BenchmarkReport report = new BenchmarkReport(this.getClass());
+        report.record("iterations", ITERATIONS);
+        report.record("content_sets", CONTENT_SETS);
+
+        buildPayloads(report, "uncached", new X509V3ExtensionUtil(config, ec, createPayloadCache(0)));
+        buildPayloads(report, "cached", new X509V3ExtensionUtil(config, ec, payloadCache));
+
+        report.record("cached.hits", payloadCache.getHits());
+        report.record("cached.misses", payloadCache.getMisses());
+        report.write();
+
+        // Every payload after the first must have come from the cache
+        assertEquals(1, payloadCache.getMisses());
+        assertEquals(ITERATIONS - 1, payloadCache.getHits());
+    }
+}
@@ -18,6 +18,8 @@ import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
 import org.candlepin.common.config.Configuration;
+import org.candlepin.common.config.MapConfiguration;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.model.Branding;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.Content;
@@ -28,6 +30,7 @@ import org.candlepin.model.Pool;
 import org.candlepin.model.Product;
 import org.candlepin.model.ProductContent;
 import org.candlepin.model.Owner;
+import org.candlepin.pki.X509ByteExtensionWrapper;
 import org.candlepin.test.TestUtil;
 import org.candlepin.util.X509V3ExtensionUtil.NodePair;
 import org.candlepin.util.X509V3ExtensionUtil.PathNode;
@@ -35,7 +38,10 @@ import org.candlepin.util.X509V3ExtensionUtil.PathNode;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -49,6 +55,7 @@ import java.util.Set;
 public class X509V3ExtensionUtilTest {
     private Configuration config;
     private EntitlementCurator ec;
+    private ContentPayloadCache payloadCache;
     private X509V3ExtensionUtil util;
 
 
@@ -56,7 +63,72 @@ public class X509V3ExtensionUtilTest {
     public void init() {
         config = mock(Configuration.class);
         ec = mock(EntitlementCurator.class);
-        util = new X509V3ExtensionUtil(config, ec);
+        payloadCache = createPayloadCache(10);
+        util = new X509V3ExtensionUtil(config, ec, payloadCache);
+    }
+
+    private ContentPayloadCache createPayloadCache(int size) {
+        return new ContentPayloadCache(new MapConfiguration(Collections.singletonMap(
+            ConfigProperties.CONTENT_PAYLOAD_CACHE_SIZE, String.valueOf(size))));
+    }
+
+    private List<org.candlepin.model.dto.Product> createProductModels(int contentCount) {
+        List<org.candlepin.model.dto.Content> contents = new ArrayList<org.candlepin.model.dto.Content>();
+        for (int i = 0; i < contentCount; i++) {
+            org.candlepin.model.dto.Content content = new org.candlepin.model.dto.Content();
+            content.setPath("/content/dist/rhel/server/" + (i % 7) + "/$releasever/$basearch/repo" + i);
+            contents.add(content);
+        }
+
+        org.candlepin.model.dto.Product product = new org.candlepin.model.dto.Product();
+        product.setContent(contents);
+        return Arrays.asList(product);
+    }
+
+    private byte[] getContentPayload(X509V3ExtensionUtil extensionUtil,
+        List<org.candlepin.model.dto.Product> productModels) throws IOException {
+
+        Set<X509ByteExtensionWrapper> extensions = extensionUtil.getByteExtensions(null, productModels,
+            null, null);
+        return extensions.iterator().next().getValue();
+    }
+
+    @Test
+    public void contentPayloadIsBuiltOncePerContentSet() throws Exception {
+        X509V3ExtensionUtil uncached = new X509V3ExtensionUtil(config, ec, createPayloadCache(0));
+
+        byte[] expected = getContentPayload(uncached, createProductModels(20));
+        byte[] first = getContentPayload(util, createProductModels(20));
+        byte[] second = getContentPayload(util, createProductModels(20));
+
+        // The encoding order of the nodes varies, but the decoded paths must match
+        assertEquals(uncached.hydrateContentPackage(expected), util.hydrateContentPackage(first));
+        assertSame(first, second);
+        assertEquals(1, payloadCache.getMisses());
+        assertEquals(1, payloadCache.getHits());
+
+        getContentPayload(util, createProductModels(21));
+        assertEquals(2, payloadCache.getMisses());
+    }
+
+    @Test
+    public void leastRecentContentPayloadIsEvicted() throws Exception {
+        payloadCache = createPayloadCache(2);
+        util = new X509V3ExtensionUtil(config, ec, payloadCache);
+
+        byte[] first = getContentPayload(util, createProductModels(1));
+        getContentPayload(util, createProductModels(2));
+        assertSame(first, getContentPayload(util, createProductModels(1)));
+
+        // The payload of two content sets is now the least recently used
+        getContentPayload(util, createProductModels(3));
+        assertEquals(1, payloadCache.getEvictions());
+        assertEquals(2, payloadCache.getSize());
+
+        assertSame(first, getContentPayload(util, createProductModels(1)));
+        getContentPayload(util, createProductModels(2));
+        assertEquals(4, payloadCache.getMisses());
+        assertEquals(2, payloadCache.getHits());
     }
 
     @Test